@@ -0,0 +1,95 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the stream and regular expression based versions of the attribute
+ * name qualification and resolution ({@link RegexAttributeNames}) with the
+ * batch versions of {@link AttributeNamesUtilities}. Run with the
+ * {@code benchmarks} profile, which reports the allocation rate too
+ * ({@code -prof gc}):
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -DskipTests
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeNamesBenchmark {
+
+    private static final String[] DATASETS = { "*", "ds1", "ds2" };
+    private static final String[] DATA = { "*", "patient", "episode" };
+    private static final String[] ATTRIBUTES = { "pat_id", "pat_name", "pat_last1", "ep_pat" };
+
+    @Param({ "10", "1000" })
+    private int count;
+
+    private List<String> nameList;
+    private String[] names;
+    private String[] qualifiedNames;
+    private String[] protectedNames;
+    private String[] resolved;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        names = new String[count];
+        qualifiedNames = new String[count];
+        protectedNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            String attribute = ATTRIBUTES[random.nextInt(ATTRIBUTES.length)];
+            String data = DATA[1 + random.nextInt(DATA.length - 1)];
+            String dataset = DATASETS[1 + random.nextInt(DATASETS.length - 1)];
+            // unqualified, partially qualified and fully qualified names
+            int parts = random.nextInt(3);
+            qualifiedNames[i] = dataset + "/" + data + "/" + attribute;
+            names[i] = parts == 0 ? attribute : parts == 1 ? data + "/" + attribute : qualifiedNames[i];
+            protectedNames[i] = "csp" + random.nextInt(2) + "/" + DATASETS[random.nextInt(DATASETS.length)] + "/"
+                    + DATA[random.nextInt(DATA.length)] + "/" + attribute;
+        }
+        nameList = Arrays.asList(names);
+        resolved = new String[count];
+    }
+
+    @Benchmark
+    public List<String> regexFullyQualified() {
+        return RegexAttributeNames.fullyQualified(nameList);
+    }
+
+    @Benchmark
+    public String[] fullyQualified() {
+        return AttributeNamesUtilities.fullyQualified(names, resolved);
+    }
+
+    @Benchmark
+    public void regexResolveProtectedAttributeName(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(RegexAttributeNames.resolveProtectedAttributeName(protectedNames[i], qualifiedNames[i]));
+        }
+    }
+
+    @Benchmark
+    public String[] resolveProtectedAttributeNames() {
+        return AttributeNamesUtilities.resolveProtectedAttributeNames(protectedNames, qualifiedNames, resolved);
+    }
+}
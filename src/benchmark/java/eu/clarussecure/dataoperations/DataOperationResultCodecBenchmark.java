@@ -0,0 +1,116 @@
+package eu.clarussecure.dataoperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of {@link DataOperationResultCodec} with the
+ * default Java serialization, on a promise of one command per CSP with
+ * {@code rows} protected rows each. Run with the {@code benchmarks} profile:
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -DskipTests -Dbenchmarks=DataOperationResultCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataOperationResultCodecBenchmark {
+
+    private static final String[] ATTRIBUTES = { "ds/patient/pat_id", "ds/patient/pat_name", "ds/patient/pat_last1",
+            "ds/patient/geom" };
+    private static final int CSPS = 3;
+
+    public static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+
+        public Command() {
+        }
+    }
+
+    @Param({ "10", "10000" })
+    private int rows;
+
+    private final DataOperationResultCodec codec = new DataOperationResultCodec();
+    private List<DataOperationResult> promise;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        promise = new ArrayList<>();
+        for (int csp = 0; csp < CSPS; csp++) {
+            Command command = new Command();
+            command.setAttributeNames(ATTRIBUTES);
+            String[] protectedNames = new String[ATTRIBUTES.length];
+            Map<String, String> mapping = new LinkedHashMap<>();
+            for (int i = 0; i < ATTRIBUTES.length; i++) {
+                protectedNames[i] = "csp" + csp + "/" + ATTRIBUTES[i];
+                mapping.put(ATTRIBUTES[i], protectedNames[i]);
+            }
+            command.setProtectedAttributeNames(protectedNames);
+            command.setMapping(mapping);
+            String[][] contents = new String[rows][];
+            for (int row = 0; row < rows; row++) {
+                contents[row] = new String[] { Integer.toString(row), Long.toHexString(random.nextLong()),
+                        Long.toHexString(random.nextLong()), "0101000000" + Long.toHexString(random.nextLong()) };
+            }
+            command.setProtectedContents(contents);
+            command.setCriteria(new Criteria[] { new Criteria(protectedNames[0], ">", "5") });
+            promise.add(command);
+        }
+        encoded = codec.toByteArray(promise);
+        serialized = serialize();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.toByteArray(promise);
+    }
+
+    @Benchmark
+    public List<DataOperationResult> decode() throws IOException {
+        return codec.fromByteArray(encoded);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(promise);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of the CLARUS Data Operation module interface.
+ * <p>
+ * Each operation has the same semantic than the corresponding operation of
+ * {@link DataOperation}, but returns a {@code CompletableFuture} that is
+ * completed with the result, or completed exceptionally with the exception
+ * the operation raised. Use {@link AsyncDataOperations} to adapt a
+ * synchronous data operation to this interface and vice versa.
+ */
+public interface AsyncDataOperation {
+
+    /** Outbound GET operation (see {@link DataOperation#get(String[], Criteria[])}).
+     * @param attributeNames names of the attributes, as given by the request.
+     * @param criteria conditions of the get call.
+     * @return a future {@code List} of {@code DataOperationCommands} (the promise).
+     */
+    public CompletableFuture<List<DataOperationCommand>> get(String[] attributeNames, Criteria[] criteria);
+
+    /** Inbound GET operation (see {@link DataOperation#get(List, List)}).
+     * @param promise references to the original call.
+     * @param contents data returned by the CSP.
+     * @return a future {@code List} of {@code DataOperationResults}.
+     */
+    public CompletableFuture<List<DataOperationResult>> get(List<DataOperationCommand> promise,
+            List<String[][]> contents);
+
+    /** Outbound POST operation (see {@link DataOperation#post(String[], String[][])}).
+     * @param attributeNames names of the attributes, as given by the request.
+     * @param contents unprotected records
+     * @return a future {@code List} of {@code DataOperationCommand}
+     */
+    public CompletableFuture<List<DataOperationCommand>> post(String[] attributeNames, String[][] contents);
+
+    /** Outbound PUT operation (see {@link DataOperation#put(String[], Criteria[], String[][])}).
+     * @param attributeNames names of the attributes, as given by the request.
+     * @param criteria conditions of the put call.
+     * @param contents unprotected records
+     * @return a future {@code List} of {@code DataOperationCommand}
+     */
+    public CompletableFuture<List<DataOperationCommand>> put(String[] attributeNames, Criteria[] criteria,
+            String[][] contents);
+
+    /** Outbound DELETE operation (see {@link DataOperation#delete(String[], Criteria[])}).
+     * @param attributeNames names of the attributes, as given by the request.
+     * @param criteria conditions of the delete call.
+     * @return a future {@code List} of {@code DataOperationCommand}
+     */
+    public CompletableFuture<List<DataOperationCommand>> delete(String[] attributeNames, Criteria[] criteria);
+
+    /** HEAD operation (see {@link DataOperation#head(String[])}).
+     * @param attributeNames unprotected attribute names.
+     * @return a future {@code List} of Mapping objects.
+     */
+    public CompletableFuture<List<Map<String, String>>> head(String[] attributeNames);
+}
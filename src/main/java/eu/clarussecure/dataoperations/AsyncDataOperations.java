@@ -0,0 +1,199 @@
+package eu.clarussecure.dataoperations;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapters between {@link DataOperation} and {@link AsyncDataOperation}.
+ */
+public class AsyncDataOperations {
+
+    private static final class DefaultExecutorHolder {
+        private static final ExecutorService EXECUTOR = newDefaultExecutor();
+    }
+
+    private static final class SyncToAsync implements AsyncDataOperation {
+        private final DataOperation dataOperation;
+        private final Executor executor;
+
+        private SyncToAsync(DataOperation dataOperation, Executor executor) {
+            this.dataOperation = dataOperation;
+            this.executor = executor;
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> get(String[] attributeNames, Criteria[] criteria) {
+            return CompletableFuture.supplyAsync(() -> dataOperation.get(attributeNames, criteria), executor);
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationResult>> get(List<DataOperationCommand> promise,
+                List<String[][]> contents) {
+            return CompletableFuture.supplyAsync(() -> dataOperation.get(promise, contents), executor);
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> post(String[] attributeNames, String[][] contents) {
+            return CompletableFuture.supplyAsync(() -> dataOperation.post(attributeNames, contents), executor);
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> put(String[] attributeNames, Criteria[] criteria,
+                String[][] contents) {
+            return CompletableFuture.supplyAsync(() -> dataOperation.put(attributeNames, criteria, contents), executor);
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> delete(String[] attributeNames, Criteria[] criteria) {
+            return CompletableFuture.supplyAsync(() -> dataOperation.delete(attributeNames, criteria), executor);
+        }
+
+        @Override
+        public CompletableFuture<List<Map<String, String>>> head(String[] attributeNames) {
+            return CompletableFuture.supplyAsync(() -> dataOperation.head(attributeNames), executor);
+        }
+    }
+
+    private static final class AsyncToSync implements DataOperation {
+        private final AsyncDataOperation asyncDataOperation;
+
+        private AsyncToSync(AsyncDataOperation asyncDataOperation) {
+            this.asyncDataOperation = asyncDataOperation;
+        }
+
+        @Override
+        public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+            return join(asyncDataOperation.get(attributeNames, criteria));
+        }
+
+        @Override
+        public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+            return join(asyncDataOperation.get(promise, contents));
+        }
+
+        @Override
+        public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+            return join(asyncDataOperation.post(attributeNames, contents));
+        }
+
+        @Override
+        public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
+            return join(asyncDataOperation.put(attributeNames, criteria, contents));
+        }
+
+        @Override
+        public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+            return join(asyncDataOperation.delete(attributeNames, criteria));
+        }
+
+        @Override
+        public List<Map<String, String>> head(String[] attributeNames) {
+            return join(asyncDataOperation.head(attributeNames));
+        }
+    }
+
+    private AsyncDataOperations() {
+    }
+
+    /**
+     * Adapts a synchronous data operation. Each operation is run by the
+     * executor.
+     *
+     * @param dataOperation
+     *            the synchronous data operation
+     * @param executor
+     *            the executor that runs the operations
+     * @return an asynchronous data operation
+     */
+    public static AsyncDataOperation async(DataOperation dataOperation, Executor executor) {
+        if (dataOperation instanceof AsyncToSync) {
+            return ((AsyncToSync) dataOperation).asyncDataOperation;
+        }
+        return new SyncToAsync(dataOperation, executor);
+    }
+
+    /**
+     * Adapts a synchronous data operation. Each operation is run by the
+     * {@link #defaultExecutor() default executor}.
+     *
+     * @param dataOperation
+     *            the synchronous data operation
+     * @return an asynchronous data operation
+     */
+    public static AsyncDataOperation async(DataOperation dataOperation) {
+        return async(dataOperation, defaultExecutor());
+    }
+
+    /**
+     * Adapts an asynchronous data operation. Each operation waits for the
+     * completion of the future, and throws the exception the future completed
+     * with, if any.
+     *
+     * @param asyncDataOperation
+     *            the asynchronous data operation
+     * @return a synchronous data operation
+     */
+    public static DataOperation sync(AsyncDataOperation asyncDataOperation) {
+        if (asyncDataOperation instanceof SyncToAsync) {
+            return ((SyncToAsync) asyncDataOperation).dataOperation;
+        }
+        return new AsyncToSync(asyncDataOperation);
+    }
+
+    /**
+     * Returns the executor used by default to run synchronous data operations.
+     * On Java 21 or later, it starts a virtual thread per operation. Otherwise,
+     * it is a cached pool of daemon threads.
+     *
+     * @return the default executor
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // virtual threads are not available
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "dataoperation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Matching of attribute name patterns without regular expressions.
+ * <p>
+ * An attribute name pattern is made of parts separated by slashes (/). Each
+ * part may contain asterisks (*) that match any sequence of characters except
+ * the slash. This is exactly the language of the regular expressions built by
+ * {@link AttributeNamesUtilities#escapeRegex(String)}, as long as the pattern
+ * does not contain a regular expression meta character that escapeRegex lets
+ * through (e.g. + or ?). Such patterns are rare, and they still fall back to a
+ * regular expression in order to keep the exact same behavior.
+ */
+final class AttributeNamePatterns {
+
+    private static final String UNESCAPED_REGEX_CHARACTERS = "\\^$|?+{}";
+
+    private AttributeNamePatterns() {
+    }
+
+    /**
+     * Compiles an attribute name pattern into a predicate
+     *
+     * @param pattern
+     *            the attribute name pattern
+     * @return a predicate that tests if an attribute name entirely matches the
+     *         pattern
+     */
+    static Predicate<String> compile(String pattern) {
+        if (isRegexFree(pattern)) {
+            return name -> matches(pattern, name);
+        }
+        Pattern regex = Pattern.compile(AttributeNamesUtilities.escapeRegex(pattern));
+        return name -> regex.matcher(name).matches();
+    }
+
+    /**
+     * Tests if a pattern can be matched without regular expression
+     *
+     * @param pattern
+     *            the attribute name pattern
+     * @return true if the pattern only contains characters that are literal or
+     *         escaped by {@link AttributeNamesUtilities#escapeRegex(String)}
+     */
+    static boolean isRegexFree(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (UNESCAPED_REGEX_CHARACTERS.indexOf(pattern.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests if an attribute name entirely matches a regex free pattern
+     *
+     * @param pattern
+     *            the attribute name pattern (see {@link #isRegexFree(String)})
+     * @param name
+     *            the attribute name
+     * @return true if the attribute name matches the pattern
+     */
+    static boolean matches(String pattern, String name) {
+        int patternStart = 0;
+        int nameStart = 0;
+        while (true) {
+            int patternEnd = pattern.indexOf('/', patternStart);
+            int nameEnd = name.indexOf('/', nameStart);
+            if ((patternEnd == -1) != (nameEnd == -1)) {
+                // not the same number of parts
+                return false;
+            }
+            if (!matchesPart(pattern, patternStart, patternEnd == -1 ? pattern.length() : patternEnd, name, nameStart,
+                    nameEnd == -1 ? name.length() : nameEnd)) {
+                return false;
+            }
+            if (patternEnd == -1) {
+                return true;
+            }
+            patternStart = patternEnd + 1;
+            nameStart = nameEnd + 1;
+        }
+    }
+
+    /**
+     * Tests if a part of an attribute name matches a part of a pattern. None of
+     * the parts contain slash.
+     *
+     * @param pattern
+     *            the attribute name pattern
+     * @param patternFrom
+     *            start of the pattern part (inclusive)
+     * @param patternTo
+     *            end of the pattern part (exclusive)
+     * @param name
+     *            the attribute name
+     * @param nameFrom
+     *            start of the attribute name part (inclusive)
+     * @param nameTo
+     *            end of the attribute name part (exclusive)
+     * @return true if the attribute name part matches the pattern part
+     */
+    static boolean matchesPart(String pattern, int patternFrom, int patternTo, String name, int nameFrom, int nameTo) {
+        int p = patternFrom;
+        int n = nameFrom;
+        int lastAsterisk = -1;
+        int lastAsteriskMatch = -1;
+        while (n < nameTo) {
+            if (p < patternTo && pattern.charAt(p) == '*') {
+                lastAsterisk = p++;
+                lastAsteriskMatch = n;
+            } else if (p < patternTo && pattern.charAt(p) == name.charAt(n)) {
+                p++;
+                n++;
+            } else if (lastAsterisk != -1) {
+                // let the last asterisk consume one more character
+                p = lastAsterisk + 1;
+                n = ++lastAsteriskMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < patternTo && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == patternTo;
+    }
+}
@@ -0,0 +1,163 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Index of attribute names (e.g. dataset/data/attribute) that finds the names
+ * an attribute name pattern (e.g. *&#47;patient/pat_* or *&#47;*&#47;pat_id)
+ * matches.
+ * <p>
+ * Names are stored in a trie with one level per part (dataset, data and
+ * attribute), whose edges are looked up by hash. Finding the names a pattern
+ * matches therefore costs about one hash lookup per literal part of the
+ * pattern, plus the evaluation of the edges visited by the parts with
+ * asterisks, whatever the number of names is.
+ * <p>
+ * An asterisk matches any sequence of characters except the slash (/), as in
+ * {@link AttributeNamesUtilities#escapeRegex(String)}.
+ * <p>
+ * The trie is not synchronized: names must be added before the trie is
+ * shared, then {@link #find(String)} can be called by several threads.
+ *
+ * @param <V>
+ *            the type of the values associated to the names
+ */
+public class AttributeNameTrie<V> {
+
+    private static final class Node<V> {
+        private Map<String, Node<V>> literals;
+        private List<Entry<V>> entries;
+    }
+
+    private static final class Entry<V> {
+        private final int order;
+        private final V value;
+        private final String name;
+
+        private Entry(int order, V value, String name) {
+            this.order = order;
+            this.value = value;
+            this.name = name;
+        }
+    }
+
+    private final Node<V> names = new Node<>();
+    private final List<Entry<V>> nameEntries = new ArrayList<>();
+    private int size;
+
+    /**
+     * @return the number of added names
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an attribute name. Asterisks in the name are not wildcards: the
+     * name is only found by the patterns that match it (see
+     * {@link #find(String)}). The same name can be added several times with
+     * different values.
+     *
+     * @param name
+     *            the attribute name
+     * @param value
+     *            the value to associate to the name
+     */
+    public void addName(String name, V value) {
+        Node<V> node = names;
+        int start = 0;
+        int end;
+        do {
+            end = name.indexOf('/', start);
+            String part = name.substring(start, end == -1 ? name.length() : end);
+            if (node.literals == null) {
+                node.literals = new HashMap<>();
+            }
+            node = node.literals.computeIfAbsent(part, p -> new Node<>());
+            start = end + 1;
+        } while (end != -1);
+        if (node.entries == null) {
+            node.entries = new ArrayList<>(1);
+        }
+        Entry<V> entry = new Entry<>(size++, value, name);
+        node.entries.add(entry);
+        nameEntries.add(entry);
+    }
+
+    /**
+     * Finds the attribute names (added by {@link #addName(String, Object)})
+     * that a pattern matches. The literal parts of the pattern are looked up
+     * by hash, so the cost depends on the number of names that match the
+     * parts with asterisks, not on the number of names.
+     *
+     * @param pattern
+     *            the attribute name pattern
+     * @return the values associated to the matching names, in the order the
+     *         names have been added
+     */
+    public List<V> find(String pattern) {
+        List<Entry<V>> found = new ArrayList<>();
+        if (AttributeNamePatterns.isRegexFree(pattern)) {
+            search(names, pattern, 0, found);
+        } else {
+            Predicate<String> regex = AttributeNamePatterns.compile(pattern);
+            for (Entry<V> entry : nameEntries) {
+                if (regex.test(entry.name)) {
+                    found.add(entry);
+                }
+            }
+        }
+        return values(found);
+    }
+
+    private void search(Node<V> node, String pattern, int start, List<Entry<V>> found) {
+        if (node.literals == null) {
+            return;
+        }
+        int end = pattern.indexOf('/', start);
+        int partEnd = end == -1 ? pattern.length() : end;
+        int asterisk = pattern.indexOf('*', start);
+        if (asterisk == -1 || asterisk >= partEnd) {
+            Node<V> child = node.literals.get(pattern.substring(start, partEnd));
+            if (child != null) {
+                found(child, pattern, end, found);
+            }
+        } else {
+            for (Map.Entry<String, Node<V>> e : node.literals.entrySet()) {
+                String part = e.getKey();
+                if (AttributeNamePatterns.matchesPart(pattern, start, partEnd, part, 0, part.length())) {
+                    found(e.getValue(), pattern, end, found);
+                }
+            }
+        }
+    }
+
+    private void found(Node<V> child, String pattern, int end, List<Entry<V>> found) {
+        if (end == -1) {
+            if (child.entries != null) {
+                found.addAll(child.entries);
+            }
+        } else {
+            search(child, pattern, end + 1, found);
+        }
+    }
+
+    private List<V> values(List<Entry<V>> found) {
+        if (found.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (found.size() > 1) {
+            found.sort((e1, e2) -> Integer.compare(e1.order, e2.order));
+        }
+        List<V> values = new ArrayList<>(found.size());
+        for (Entry<V> entry : found) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+}
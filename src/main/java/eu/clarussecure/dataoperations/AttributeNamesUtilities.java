@@ -1,17 +1,21 @@
 package eu.clarussecure.dataoperations;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class AttributeNamesUtilities {
 
-    private static final Pattern START_WITH_DOUBLE_ASTERISKS = Pattern.compile("^([^/*]*\\*/[^/*]*\\*/)([^/*]*)");
-    private static final Pattern START_WITH_SINGLE_ASTERISK = Pattern.compile("^([^/*]*\\*/)([^/*]*/[^/*]*)");
+    static final Pattern START_WITH_DOUBLE_ASTERISKS = Pattern.compile("^([^/*]*\\*/[^/*]*\\*/)([^/*]*)");
+    static final Pattern START_WITH_SINGLE_ASTERISK = Pattern.compile("^([^/*]*\\*/)([^/*]*/[^/*]*)");
+
+    /**
+     * Qualified forms of the unqualified attribute names, cleared when full
+     */
+    private static final int QUALIFIED_NAMES_CACHE_SIZE = 4096;
+    private static final Map<String, String> QUALIFIED_NAMES = new ConcurrentHashMap<>();
 
     /**
      * Replace unqualified attribute names by a generic qualified one (with
@@ -33,7 +37,38 @@ public class AttributeNamesUtilities {
      * @return the fully qualified attribute names
      */
     public static List<String> fullyQualified(List<String> attributeNames) {
-        return attributeNames.stream().map(an -> fullyQualified(an)).collect(Collectors.toList());
+        List<String> qualified = new ArrayList<>(attributeNames.size());
+        for (String attributeName : attributeNames) {
+            qualified.add(fullyQualified(attributeName));
+        }
+        return qualified;
+    }
+
+    /**
+     * Replace unqualified attribute names by a generic qualified one (with
+     * asterisks), as {@link #fullyQualified(String)}. The qualified forms of
+     * the names already seen are cached, so no string is built for them.
+     *
+     * @param attributeNames
+     *            the (potentially unqualified) attribute names
+     * @param qualified
+     *            the array to write the fully qualified attribute names to (at
+     *            least as long as the attribute names, may be the same array),
+     *            or {@code null} to allocate one
+     * @return the fully qualified attribute names (i.e. {@code qualified} if
+     *         it is not {@code null})
+     */
+    public static String[] fullyQualified(String[] attributeNames, String[] qualified) {
+        if (qualified == null) {
+            qualified = new String[attributeNames.length];
+        } else if (qualified.length < attributeNames.length) {
+            throw new IllegalArgumentException(String.format("expected an array of at least %d names, got %d",
+                    attributeNames.length, qualified.length));
+        }
+        for (int i = 0; i < attributeNames.length; i++) {
+            qualified[i] = fullyQualified(attributeNames[i]);
+        }
+        return qualified;
     }
 
     /**
@@ -56,6 +91,23 @@ public class AttributeNamesUtilities {
      * @return the fully qualified attribute name
      */
     public static String fullyQualified(String attributeName) {
+        int first = attributeName.indexOf('/');
+        if (first != -1 && attributeName.indexOf('/', first + 1) != -1) {
+            // nothing to build if there is two /
+            return attributeName;
+        }
+        String qualified = QUALIFIED_NAMES.get(attributeName);
+        if (qualified == null) {
+            qualified = qualify(attributeName);
+            if (QUALIFIED_NAMES.size() >= QUALIFIED_NAMES_CACHE_SIZE) {
+                QUALIFIED_NAMES.clear();
+            }
+            QUALIFIED_NAMES.put(attributeName, qualified);
+        }
+        return qualified;
+    }
+
+    private static String qualify(String attributeName) {
         return attributeName.indexOf('/') == -1
                 // prepend with */*/ if there is no /
                 ? "*/*/" + attributeName
@@ -104,6 +156,10 @@ public class AttributeNamesUtilities {
      *
      * </blockquote>
      * <p>
+     * This method analyzes the attributes to protect on each call. Protection
+     * modules that resolve attribute names for each operation should rather
+     * build a {@link CompiledAttributeResolver} once.
+     * <p>
      *
      * @param operationAttributeNames
      *            the operation attribute names to resolve.
@@ -114,47 +170,7 @@ public class AttributeNamesUtilities {
      */
     public static String[] resolveOperationAttributeNames(String[] operationAttributeNames,
             List<String> attributesToProtect) {
-        String[] resolvedAttributeNames;
-        if (Arrays.stream(operationAttributeNames).filter(an -> an.indexOf('*') != -1).count() == 0) {
-            // Attribute names don't contain asterisk (*)
-            resolvedAttributeNames = operationAttributeNames;
-        } else {
-            // Replace attribute names that contain asterisk (*) by the matching
-            // data identifiers
-            List<Map.Entry<String, Pattern>> attributeNamePatterns = Arrays.stream(operationAttributeNames)
-                    .map(an -> new SimpleEntry<>(an, Pattern.compile(escapeRegex(an)))).collect(Collectors.toList());
-            Stream<String> retainedDataIds = attributesToProtect.stream().filter(id -> id.indexOf('*') == -1);
-            Stream<String> missingDataIds1 = attributesToProtect.stream()
-                    .map(id -> START_WITH_DOUBLE_ASTERISKS.matcher(id)).filter(m -> m.matches())
-                    .map(m -> new String[] { m.group(1), m.group(2) }).flatMap(groups -> {
-                        Pattern firstPartPattern = Pattern.compile(escapeRegex(groups[0]));
-                        String lastPart = groups[1];
-                        return Arrays.stream(operationAttributeNames)
-                                .map(an -> an.substring(0, an.lastIndexOf('/') + 1))
-                                .filter(an -> firstPartPattern.matcher(an).matches()).map(an -> an + lastPart);
-                    });
-            Stream<String> missingDataIds2 = attributesToProtect.stream()
-                    .map(id -> START_WITH_SINGLE_ASTERISK.matcher(id)).filter(m -> m.matches())
-                    .map(m -> new String[] { m.group(1), m.group(2) }).flatMap(groups -> {
-                        Pattern firstPartPattern = Pattern.compile(escapeRegex(groups[0]));
-                        String lastPart = groups[1];
-                        return Arrays.stream(operationAttributeNames).map(an -> an.substring(0, an.indexOf('/') + 1))
-                                .filter(an -> firstPartPattern.matcher(an).matches()).map(an -> an + lastPart);
-                    });
-            List<String> dataIds = Stream.concat(retainedDataIds, Stream.concat(missingDataIds1, missingDataIds2))
-                    .distinct().collect(Collectors.toList());
-            List<Map.Entry<String, Stream<String>>> resolvedDataIds = attributeNamePatterns.stream()
-                    .map(e -> new SimpleEntry<>(e.getKey(),
-                            dataIds.stream().filter(id -> e.getValue().matcher(id).matches())))
-                    .collect(Collectors.toList());
-            List<Map.Entry<String, Stream<String>>> unresolvedAttributeNames = attributeNamePatterns.stream()
-                    .filter(e -> dataIds.stream().noneMatch(id -> e.getValue().matcher(id).matches()))
-                    .map(e -> new SimpleEntry<>(e.getKey(), Stream.of(e.getKey()))).collect(Collectors.toList());
-            // Concatenate all found attributes
-            resolvedAttributeNames = Stream.concat(resolvedDataIds.stream(), unresolvedAttributeNames.stream())
-                    .flatMap(Map.Entry::getValue).toArray(String[]::new);
-        }
-        return resolvedAttributeNames;
+        return new CompiledAttributeResolver(attributesToProtect).resolve(operationAttributeNames);
     }
 
     /**
@@ -209,18 +225,81 @@ public class AttributeNamesUtilities {
      * @return the protected attribute name resolved according to the reference
      */
     public static String resolveProtectedAttributeName(String protectedAttributeName, String attributeName) {
-        if (attributeName.chars().filter(c -> c == '/').count() == 2) {
-            // remove CSP prefix
-            protectedAttributeName = protectedAttributeName.substring(protectedAttributeName.indexOf('/') + 1);
-            if (START_WITH_DOUBLE_ASTERISKS.matcher(protectedAttributeName).matches()) {
-                protectedAttributeName = attributeName.substring(0, attributeName.lastIndexOf('/'))
-                        + protectedAttributeName.substring(protectedAttributeName.lastIndexOf('/'));
-            } else if (START_WITH_SINGLE_ASTERISK.matcher(protectedAttributeName).matches()) {
-                protectedAttributeName = attributeName.substring(0, attributeName.indexOf('/'))
-                        + protectedAttributeName.substring(protectedAttributeName.lastIndexOf('/'));
+        int first = attributeName.indexOf('/');
+        int second = first == -1 ? -1 : attributeName.indexOf('/', first + 1);
+        if (second == -1 || attributeName.indexOf('/', second + 1) != -1) {
+            return protectedAttributeName;
+        }
+        // remove CSP prefix
+        int start = protectedAttributeName.indexOf('/') + 1;
+        // same as START_WITH_DOUBLE_ASTERISKS and START_WITH_SINGLE_ASTERISK
+        // (i.e. exactly three parts, the first one ending with an asterisk)
+        int end = protectedAttributeName.length();
+        int s1 = protectedAttributeName.indexOf('/', start);
+        int s2 = s1 == -1 ? -1 : protectedAttributeName.indexOf('/', s1 + 1);
+        if (s2 != -1 && protectedAttributeName.indexOf('/', s2 + 1) == -1
+                && endsWithSingleAsterisk(protectedAttributeName, start, s1)
+                && !hasAsterisk(protectedAttributeName, s2 + 1, end)) {
+            if (endsWithSingleAsterisk(protectedAttributeName, s1 + 1, s2)) {
+                return attributeName.substring(0, second).concat(protectedAttributeName.substring(s2));
+            }
+            if (!hasAsterisk(protectedAttributeName, s1 + 1, s2)) {
+                return attributeName.substring(0, first).concat(protectedAttributeName.substring(s2));
+            }
+        }
+        return protectedAttributeName.substring(start);
+    }
+
+    /**
+     * Resolves protected attribute names that contain asterisk (*) according
+     * to the operation input attribute names, as
+     * {@link #resolveProtectedAttributeName(String, String)}.
+     *
+     * @param protectedAttributeNames
+     *            the protected attribute names to resolve
+     * @param attributeNames
+     *            the data operation input attribute names to use as a
+     *            reference (one per protected attribute name)
+     * @param resolved
+     *            the array to write the resolved protected attribute names to
+     *            (at least as long as the protected attribute names, may be
+     *            the same array), or {@code null} to allocate one
+     * @return the resolved protected attribute names (i.e. {@code resolved}
+     *         if it is not {@code null})
+     */
+    public static String[] resolveProtectedAttributeNames(String[] protectedAttributeNames, String[] attributeNames,
+            String[] resolved) {
+        if (attributeNames.length != protectedAttributeNames.length) {
+            throw new IllegalArgumentException(String.format("expected %d attribute names, got %d",
+                    protectedAttributeNames.length, attributeNames.length));
+        }
+        if (resolved == null) {
+            resolved = new String[protectedAttributeNames.length];
+        } else if (resolved.length < protectedAttributeNames.length) {
+            throw new IllegalArgumentException(String.format("expected an array of at least %d names, got %d",
+                    protectedAttributeNames.length, resolved.length));
+        }
+        for (int i = 0; i < protectedAttributeNames.length; i++) {
+            resolved[i] = resolveProtectedAttributeName(protectedAttributeNames[i], attributeNames[i]);
+        }
+        return resolved;
+    }
+
+    /**
+     * @return true if the part [from, to) of the string is not empty, ends
+     *         with an asterisk and contains no other asterisk
+     */
+    private static boolean endsWithSingleAsterisk(String str, int from, int to) {
+        return to > from && str.charAt(to - 1) == '*' && !hasAsterisk(str, from, to - 1);
+    }
+
+    private static boolean hasAsterisk(String str, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (str.charAt(i) == '*') {
+                return true;
             }
         }
-        return protectedAttributeName;
+        return false;
     }
 
 }
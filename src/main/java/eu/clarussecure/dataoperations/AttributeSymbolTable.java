@@ -0,0 +1,132 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of fully qualified attribute names (see
+ * {@link AttributeNamesUtilities#fullyQualified(String)}), each one
+ * identified by a dense int id (0, 1, 2...).
+ * <p>
+ * The attribute names of the requests are usually the same few hundred
+ * names. Interning them once per request allows the protection modules to
+ * index arrays, or {@link IntIntMap}, by attribute id instead of hashing the
+ * names again on each lookup (see
+ * {@link DataOperationCommand#getAttributeIds(AttributeSymbolTable)} and
+ * {@link DataOperationCommand#getMappingIds(AttributeSymbolTable)}).
+ * <p>
+ * The names given as-is are cached too, so interning a name already seen
+ * costs one hash lookup. The table only grows: it is meant to be shared by
+ * all the requests of a protection module, and is thread-safe.
+ */
+public class AttributeSymbolTable {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * Interns an attribute name
+     *
+     * @param attributeName
+     *            the (potentially unqualified) attribute name
+     * @return the id of the fully qualified attribute name
+     */
+    public int intern(String attributeName) {
+        Integer id = ids.get(attributeName);
+        if (id != null) {
+            return id;
+        }
+        String qualifiedName = AttributeNamesUtilities.fullyQualified(attributeName);
+        synchronized (this) {
+            id = ids.get(qualifiedName);
+            if (id == null) {
+                id = size;
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, size * 2);
+                }
+                names[size++] = qualifiedName;
+                ids.put(qualifiedName, id);
+            }
+            ids.put(attributeName, id);
+        }
+        return id;
+    }
+
+    /**
+     * Interns attribute names
+     *
+     * @param attributeNames
+     *            the (potentially unqualified) attribute names
+     * @return the ids of the fully qualified attribute names, in the same
+     *         order ({@code null} if the attribute names are {@code null})
+     */
+    public int[] intern(String[] attributeNames) {
+        if (attributeNames == null) {
+            return null;
+        }
+        int[] result = new int[attributeNames.length];
+        for (int i = 0; i < attributeNames.length; i++) {
+            result[i] = intern(attributeNames[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Interns the keys and the values of a mapping (e.g. between original and
+     * protected attribute names)
+     *
+     * @param mapping
+     *            the mapping
+     * @return the mapping of the ids ({@code null} if the mapping is
+     *         {@code null})
+     */
+    public IntIntMap intern(Map<String, String> mapping) {
+        if (mapping == null) {
+            return null;
+        }
+        IntIntMap result = new IntIntMap(mapping.size(), -1);
+        for (Map.Entry<String, String> e : mapping.entrySet()) {
+            result.put(intern(e.getKey()), intern(e.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the id of an attribute name without interning it
+     *
+     * @param attributeName
+     *            the (potentially unqualified) attribute name
+     * @return the id of the fully qualified attribute name, or -1 if it has
+     *         not been interned
+     */
+    public int lookup(String attributeName) {
+        Integer id = ids.get(attributeName);
+        if (id == null) {
+            id = ids.get(AttributeNamesUtilities.fullyQualified(attributeName));
+        }
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id
+     *            an attribute id
+     * @return the fully qualified attribute name
+     */
+    public String getName(int id) {
+        String[] names = this.names;
+        if (id < 0 || id >= names.length || names[id] == null) {
+            throw new IllegalArgumentException("unknown attribute id: " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * @return the number of interned attribute names (i.e. the upper bound of
+     *         the ids)
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
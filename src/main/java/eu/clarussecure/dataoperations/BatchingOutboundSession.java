@@ -0,0 +1,104 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.List;
+
+/**
+ * Default implementation of {@link OutboundSession}, that protects each batch
+ * through the Outbound POST or PUT operation of a data operation.
+ * <p>
+ * Nothing is kept between two batches, so the memory use only depends on the
+ * batch size. This is only relevant for protection modules that protect each
+ * row independently of the others.
+ */
+public class BatchingOutboundSession implements OutboundSession {
+
+    private final DataOperation dataOperation;
+    private final String[] attributeNames;
+    private final Criteria[] criteria;
+    private final boolean put;
+    private volatile boolean closed;
+    private int cspCount = -1;
+
+    /**
+     * Builds a session for the Outbound POST operation.
+     *
+     * @param dataOperation
+     *            the data operation that protects the rows
+     * @param attributeNames
+     *            names of the attributes, as given by the request.
+     */
+    public BatchingOutboundSession(DataOperation dataOperation, String[] attributeNames) {
+        this(dataOperation, attributeNames, null, false);
+    }
+
+    /**
+     * Builds a session for the Outbound PUT operation.
+     *
+     * @param dataOperation
+     *            the data operation that protects the rows
+     * @param attributeNames
+     *            names of the attributes, as given by the request.
+     * @param criteria
+     *            conditions of the put call.
+     */
+    public BatchingOutboundSession(DataOperation dataOperation, String[] attributeNames, Criteria[] criteria) {
+        this(dataOperation, attributeNames, criteria, true);
+    }
+
+    private BatchingOutboundSession(DataOperation dataOperation, String[] attributeNames, Criteria[] criteria,
+            boolean put) {
+        this.dataOperation = dataOperation;
+        this.attributeNames = attributeNames.clone();
+        this.criteria = criteria;
+        this.put = put;
+    }
+
+    @Override
+    public String[] getAttributeNames() {
+        return attributeNames.clone();
+    }
+
+    @Override
+    public List<DataOperationCommand> push(String[][] contents) {
+        if (closed) {
+            throw new IllegalStateException("session is closed");
+        }
+        List<DataOperationCommand> commands = put ? dataOperation.put(attributeNames.clone(), criteria, contents)
+                : dataOperation.post(attributeNames.clone(), contents);
+        checkAlignment(commands);
+        return commands;
+    }
+
+    /**
+     * Checks there is one protected batch per CSP, as for the previous
+     * batches, and that the protected batches have the same number of rows
+     * for all the CSPs that are involved.
+     *
+     * @param commands
+     *            the protected batches
+     */
+    protected void checkAlignment(List<DataOperationCommand> commands) {
+        if (cspCount == -1) {
+            cspCount = commands.size();
+        } else if (cspCount != commands.size()) {
+            throw new IllegalStateException(
+                    String.format("%d protected batches instead of %d (one per CSP)", commands.size(), cspCount));
+        }
+        int rowCount = 0;
+        for (int csp = 0; csp < commands.size(); csp++) {
+            int n = commands.get(csp).getProtectedContentsRowCount();
+            if (n != 0) {
+                if (rowCount != 0 && rowCount != n) {
+                    throw new IllegalStateException(
+                            String.format("CSP %d has %d protected rows instead of %d", csp, n, rowCount));
+                }
+                rowCount = n;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,224 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import eu.clarussecure.dataoperations.criteria.CompiledCriteria;
+import eu.clarussecure.dataoperations.criteria.CriteriaCompiler;
+import eu.clarussecure.dataoperations.criteria.PushdownPlan;
+
+/**
+ * Row cursor that reconstructs rows by batches, through the Inbound GET
+ * operation ({@link DataOperation#get(List, List)}).
+ * <p>
+ * Each batch is made of at most {@code batchSize} rows read from each CSP
+ * row iterator. The batches are passed to the data operation with the
+ * promise, as if they were the whole contents returned by the CSPs. So, the
+ * memory use is bounded by the batch size, not by the size of the results.
+ * <p>
+ * The CSPs that return no row in the first batch are not involved in the
+ * results. All the other CSPs must return the same number of rows in each
+ * batch: an {@code IllegalStateException} is thrown if one of them runs out
+ * of rows before the others, so rows are never misaligned.
+ * <p>
+ * This is only relevant for protection modules that reconstruct each row
+ * independently of the others, and that do not ask for additional calls to
+ * the CSPs (i.e. that only return {@code DataOperationResponse}). An
+ * {@code IllegalStateException} is thrown if a {@code DataOperationCommand}
+ * is returned.
+ * <p>
+ * If the promise records residual criteria (see {@link PushdownPlan}), the
+ * reconstructed rows that do not satisfy them are skipped, and the attributes
+ * that were only fetched to evaluate them are not returned.
+ */
+public class BatchingRowCursor implements RowCursor {
+
+    private final DataOperation dataOperation;
+    private final List<DataOperationCommand> promise;
+    private final List<? extends Iterator<String[]>> contents;
+    private final int batchSize;
+    private final Criteria[] residualCriteria;
+    private final String[] residualAttributeNames;
+    private CompiledCriteria residual;
+    private String[] attributeNames;
+    private int[] returnedColumns;
+    private String[] returnedAttributeNames;
+    private List<String[][]> batch = new ArrayList<>();
+    private int batchIndex;
+    private int rowIndex;
+    private boolean exhausted;
+    private boolean[] involved;
+
+    /**
+     * Builds a cursor.
+     *
+     * @param dataOperation
+     *            the data operation that reconstructs the rows
+     * @param promise
+     *            references to the original call.
+     * @param contents
+     *            the row iterators of the CSPs (one per
+     *            {@code DataOperationCommand} in the promise)
+     * @param batchSize
+     *            the maximum number of rows to read from each CSP at once
+     */
+    public BatchingRowCursor(DataOperation dataOperation, List<DataOperationCommand> promise,
+            List<? extends Iterator<String[]>> contents, int batchSize) {
+        if (promise.size() != contents.size()) {
+            throw new IllegalArgumentException(
+                    String.format("expected %d CSP row iterators, got %d", promise.size(), contents.size()));
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.dataOperation = dataOperation;
+        this.promise = promise;
+        this.contents = contents;
+        this.batchSize = batchSize;
+        this.residualCriteria = PushdownPlan.getResidualCriteria(promise);
+        this.residualAttributeNames = PushdownPlan.getResidualAttributeNames(promise);
+        setAttributeNames(promise.isEmpty() ? new String[0] : promise.get(0).getAttributeNames());
+    }
+
+    @Override
+    public String[] getAttributeNames() {
+        return returnedAttributeNames;
+    }
+
+    /**
+     * Sets the attribute names of the reconstructed rows.
+     */
+    private void setAttributeNames(String[] attributeNames) {
+        this.attributeNames = attributeNames;
+        this.residual = null;
+        this.returnedColumns = attributeNames != null
+                ? PushdownPlan.getReturnedColumns(attributeNames, residualAttributeNames) : null;
+        this.returnedAttributeNames = returnedColumns != null ? PushdownPlan.project(attributeNames, returnedColumns)
+                : attributeNames;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (batchIndex == batch.size() && !exhausted) {
+            fetch();
+        }
+        return batchIndex < batch.size();
+    }
+
+    @Override
+    public String[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String[][] rows = batch.get(batchIndex);
+        String[] row = rows[rowIndex];
+        rows[rowIndex] = null;
+        if (++rowIndex == rows.length) {
+            batchIndex++;
+            rowIndex = 0;
+        }
+        return row;
+    }
+
+    /**
+     * Reads the next batch of rows from the CSPs and reconstructs it.
+     */
+    protected void fetch() {
+        List<String[][]> cspContents = new ArrayList<>(contents.size());
+        boolean firstBatch = involved == null;
+        if (firstBatch) {
+            involved = new boolean[contents.size()];
+        }
+        int rowCount = -1;
+        for (int csp = 0; csp < contents.size(); csp++) {
+            Iterator<String[]> it = contents.get(csp);
+            List<String[]> rows = new ArrayList<>(Math.min(batchSize, 1024));
+            while (rows.size() < batchSize && it.hasNext()) {
+                rows.add(it.next());
+            }
+            if (firstBatch) {
+                // the CSPs that are not involved in the results return no row
+                involved[csp] = !rows.isEmpty();
+            }
+            if (involved[csp]) {
+                if (rowCount == -1) {
+                    rowCount = rows.size();
+                } else if (rowCount != rows.size()) {
+                    throw new IllegalStateException(
+                            String.format("CSP %d returned %d rows instead of %d", csp, rows.size(), rowCount));
+                }
+            } else if (!rows.isEmpty()) {
+                throw new IllegalStateException(
+                        String.format("CSP %d is not involved in the results but returned rows", csp));
+            }
+            cspContents.add(rows.toArray(new String[rows.size()][]));
+        }
+        batch = new ArrayList<>();
+        batchIndex = 0;
+        rowIndex = 0;
+        if (rowCount <= 0) {
+            exhausted = true;
+            return;
+        }
+        for (DataOperationResult result : dataOperation.get(promise, cspContents)) {
+            if (!(result instanceof DataOperationResponse)) {
+                throw new IllegalStateException("the data operation requested a new call to the CSPs");
+            }
+            DataOperationResponse response = (DataOperationResponse) result;
+            if (response.getAttributeNames() != null && !Arrays.equals(response.getAttributeNames(), attributeNames)) {
+                setAttributeNames(response.getAttributeNames());
+            }
+            String[][] rows = response.getContents();
+            if (rows != null && residualCriteria != null) {
+                if (residual == null) {
+                    residual = new CriteriaCompiler(attributeNames)
+                            .compile(PushdownPlan.resolveResidualCriteria(residualCriteria, attributeNames));
+                }
+                rows = PushdownPlan.filter(residual, rows);
+                if (returnedColumns != null) {
+                    rows = PushdownPlan.project(rows, returnedColumns);
+                }
+            }
+            if (rows != null && rows.length > 0) {
+                batch.add(rows);
+            }
+        }
+    }
+
+    /**
+     * Closes the CSP row iterators that are {@link AutoCloseable}. All of them
+     * are closed, even if some fail: the exception of the first failing one is
+     * thrown (wrapped in an {@code IllegalStateException} if it is checked),
+     * with the exceptions of the others as suppressed exceptions.
+     */
+    @Override
+    public void close() {
+        exhausted = true;
+        batch = new ArrayList<>();
+        batchIndex = 0;
+        rowIndex = 0;
+        Exception failure = null;
+        for (Iterator<String[]> it : contents) {
+            if (it instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) it).close();
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("cannot close the CSP row iterators", failure);
+        }
+    }
+}
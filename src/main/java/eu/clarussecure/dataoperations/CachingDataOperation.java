@@ -0,0 +1,261 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Data operation that memoizes the results of the {@link #head(String[])}
+ * operation of another data operation. The other operations are delegated
+ * as-is.
+ * <p>
+ * The results of the HEAD operation only depend on the attribute names and on
+ * the security policy. They are kept in a concurrent cache bounded by a
+ * maximum number of entries: lookups do not lock, and once the cache is full,
+ * the least recently used entries are evicted by batches. The results are
+ * cached per attribute names, as spelled and ordered by the caller: the keys of
+ * the mappings and their order depend on them (e.g. patient/pat_id is mapped,
+ * not *&#47;patient/pat_id), so the HEAD operation of the other data operation
+ * is called with the caller's names and the cache returns exactly what it
+ * returned. The cached {@code List} and {@code Map} are unmodifiable and
+ * shared by all the callers.
+ * <p>
+ * Prepared operations (see {@link #prepare(String[], String[])}) get their
+ * mappings from the cache too.
+ * <p>
+ * Cached results are discarded when the security policy changes: either the
+ * policy version (as returned by the supplier given at construction) changes,
+ * or {@link #invalidate()} is called.
+ */
+public class CachingDataOperation implements DataOperation {
+
+    private static final class CachedHead {
+        private final long policyVersion;
+        private final long generation;
+        private final List<Map<String, String>> mappings;
+        private volatile long lastAccess;
+
+        private CachedHead(long policyVersion, long generation, List<Map<String, String>> mappings, long lastAccess) {
+            this.policyVersion = policyVersion;
+            this.generation = generation;
+            this.mappings = mappings;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final DataOperation delegate;
+    private final LongSupplier policyVersion;
+    private final int maximumSize;
+    private final ConcurrentMap<List<String>, CachedHead> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Builds a caching data operation for a security policy that is only
+     * changed through {@link #invalidate()}.
+     *
+     * @param delegate
+     *            the data operation to delegate to
+     * @param maximumSize
+     *            the maximum number of cached HEAD results
+     */
+    public CachingDataOperation(DataOperation delegate, int maximumSize) {
+        this(delegate, maximumSize, () -> 0L);
+    }
+
+    /**
+     * Builds a caching data operation.
+     *
+     * @param delegate
+     *            the data operation to delegate to
+     * @param maximumSize
+     *            the maximum number of cached HEAD results
+     * @param policyVersion
+     *            supplier of the current version of the security policy. It is
+     *            called on each HEAD operation and must be cheap.
+     */
+    public CachingDataOperation(DataOperation delegate, int maximumSize, LongSupplier policyVersion) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximum size must be positive: " + maximumSize);
+        }
+        this.delegate = delegate;
+        this.policyVersion = policyVersion;
+        this.maximumSize = maximumSize;
+    }
+
+    public DataOperation getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+        return delegate.get(attributeNames, criteria);
+    }
+
+    @Override
+    public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+        return delegate.get(promise, contents);
+    }
+
+    @Override
+    public RowCursor get(List<DataOperationCommand> promise, List<? extends Iterator<String[]>> contents,
+            int batchSize) {
+        return delegate.get(promise, contents, batchSize);
+    }
+
+    @Override
+    public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+        return delegate.post(attributeNames, contents);
+    }
+
+    @Override
+    public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
+        return delegate.put(attributeNames, criteria, contents);
+    }
+
+    @Override
+    public OutboundSession openPost(String[] attributeNames) {
+        return delegate.openPost(attributeNames);
+    }
+
+    @Override
+    public OutboundSession openPut(String[] attributeNames, Criteria[] criteria) {
+        return delegate.openPut(attributeNames, criteria);
+    }
+
+    @Override
+    public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+        return delegate.delete(attributeNames, criteria);
+    }
+
+    /**
+     * Returns the mappings between unprotected attribute names and protected
+     * attribute names (see {@link DataOperation#head(String[])}).
+     * <p>
+     * The returned {@code List} and {@code Map} are unmodifiable.
+     */
+    @Override
+    public List<Map<String, String>> head(String[] attributeNames) {
+        String[] names = attributeNames.clone();
+        List<String> key = Collections.unmodifiableList(Arrays.asList(names));
+        long version = policyVersion.getAsLong();
+        long gen = generation.get();
+        CachedHead cached = cache.get(key);
+        if (cached != null && cached.policyVersion == version && cached.generation == gen) {
+            cached.lastAccess = System.nanoTime();
+            hits.increment();
+            return cached.mappings;
+        }
+        misses.increment();
+        List<Map<String, String>> result = delegate.head(names.clone());
+        List<Map<String, String>> mappings = new ArrayList<>(result.size());
+        for (Map<String, String> mapping : result) {
+            mappings.add(Collections.unmodifiableMap(new LinkedHashMap<>(mapping)));
+        }
+        mappings = Collections.unmodifiableList(mappings);
+        cache.put(key, new CachedHead(version, gen, mappings, System.nanoTime()));
+        if (cache.size() > maximumSize) {
+            evict();
+        }
+        return mappings;
+    }
+
+    /**
+     * Evicts the least recently used entries, so the cache is filled to
+     * about 7/8 of its maximum size (so the eviction cost is shared by
+     * several misses). Only one thread evicts at a time.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = cache.size() - maximumSize;
+            if (excess <= 0) {
+                return;
+            }
+            // snapshot the access times, as they change during the sort
+            List<Map.Entry<List<String>, CachedHead>> entries = new ArrayList<>(cache.entrySet());
+            long[] accesses = new long[entries.size()];
+            for (int i = 0; i < accesses.length; i++) {
+                accesses[i] = entries.get(i).getValue().lastAccess;
+            }
+            Integer[] order = new Integer[accesses.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i1, i2) -> Long.compare(accesses[i1], accesses[i2]));
+            int count = Math.min(order.length, excess + maximumSize / 8);
+            for (int i = 0; i < count; i++) {
+                Map.Entry<List<String>, CachedHead> e = entries.get(order[i]);
+                if (cache.remove(e.getKey(), e.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Prepares a data operation whose mappings are the cached results of the
+     * HEAD operation. The executions are delegated to the other data
+     * operation.
+     */
+    @Override
+    public PreparedDataOperation prepare(String[] attributeNames, String[] criteriaAttributeNames) {
+        return new DefaultPreparedDataOperation(this, attributeNames, criteriaAttributeNames);
+    }
+
+    /**
+     * Discards all the cached HEAD results. Must be called when the security
+     * policy changes, unless the policy version supplier already reflects the
+     * change.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * @return the number of cached HEAD results
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of HEAD operations served from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of HEAD operations delegated because the result was
+     *         not cached or was stale
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of HEAD results discarded because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
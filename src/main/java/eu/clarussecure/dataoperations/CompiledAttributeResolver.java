@@ -0,0 +1,256 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+
+/**
+ * Resolves operation attribute names according to the attributes a protection
+ * module has to protect (i.e. the attributes which are defined in the security
+ * policy).
+ * <p>
+ * The attributes to protect are analyzed once, when the resolver is built:
+ * the attributes without asterisk are indexed in an {@link AttributeNameTrie},
+ * and so are the last parts of the attributes that start with asterisks.
+ * Then, {@link #resolve(String[])} does not compile any regular expression:
+ * each operation attribute name is looked up in these tries, so the cost
+ * depends on the number of matching attributes rather than on the size of the
+ * security policy. The result is the same as the one of
+ * {@link AttributeNamesUtilities#resolveOperationAttributeNames(String[], List)}
+ * .
+ * <p>
+ * Instances are immutable and can be shared by several threads. A protection
+ * module should build one resolver per security policy.
+ */
+public class CompiledAttributeResolver {
+
+    /**
+     * Rule that builds a data identifier from the first part of an operation
+     * attribute name and from the last part of an attribute to protect.
+     */
+    private static final class PrefixRule {
+        private final Predicate<String> firstPart;
+        private final String lastPart;
+
+        private PrefixRule(String firstPart, String lastPart) {
+            this.firstPart = AttributeNamePatterns.compile(firstPart);
+            this.lastPart = lastPart;
+        }
+    }
+
+    /**
+     * Data identifier matched by an operation attribute name, with its rank
+     * in the data identifiers: the attributes to protect without asterisk
+     * first, then the identifiers built by the double asterisks rules, then
+     * the ones built by the single asterisk rules (by rule, then by operation
+     * attribute name).
+     */
+    private static final class Match {
+        private final String dataId;
+        private final int group;
+        private final int index;
+        private final int operationIndex;
+
+        private Match(String dataId, int group, int index, int operationIndex) {
+            this.dataId = dataId;
+            this.group = group;
+            this.index = index;
+            this.operationIndex = operationIndex;
+        }
+
+        private int compareTo(Match other) {
+            int c = Integer.compare(group, other.group);
+            if (c == 0) {
+                c = Integer.compare(index, other.index);
+            }
+            if (c == 0) {
+                c = Integer.compare(operationIndex, other.operationIndex);
+            }
+            return c;
+        }
+    }
+
+    private static final int RETAINED = 0;
+    private static final int DOUBLE_ASTERISKS = 1;
+    private static final int SINGLE_ASTERISK = 2;
+
+    private final List<String> retainedDataIds;
+    private final List<PrefixRule> doubleAsterisksRules;
+    private final List<PrefixRule> singleAsteriskRules;
+    private final AttributeNameTrie<Integer> retainedIndex = new AttributeNameTrie<>();
+    private final AttributeNameTrie<Integer> doubleAsterisksIndex = new AttributeNameTrie<>();
+    private final AttributeNameTrie<Integer> singleAsteriskIndex = new AttributeNameTrie<>();
+
+    /**
+     * Builds a resolver for the given attributes to protect.
+     *
+     * @param attributesToProtect
+     *            the attribute the protection module protect (i.e. the
+     *            attributes which are defined in the security policy). They
+     *            must be fully qualified (dataset/data/attribute).
+     */
+    public CompiledAttributeResolver(Collection<String> attributesToProtect) {
+        Set<String> retained = new LinkedHashSet<>();
+        List<PrefixRule> doubleAsterisks = new ArrayList<>();
+        List<PrefixRule> singleAsterisk = new ArrayList<>();
+        for (String id : attributesToProtect) {
+            if (id.indexOf('*') == -1) {
+                retained.add(id);
+            }
+            Matcher m = AttributeNamesUtilities.START_WITH_DOUBLE_ASTERISKS.matcher(id);
+            if (m.matches()) {
+                doubleAsterisksIndex.addName(m.group(2), doubleAsterisks.size());
+                doubleAsterisks.add(new PrefixRule(m.group(1), m.group(2)));
+            }
+            m = AttributeNamesUtilities.START_WITH_SINGLE_ASTERISK.matcher(id);
+            if (m.matches()) {
+                singleAsteriskIndex.addName(m.group(2), singleAsterisk.size());
+                singleAsterisk.add(new PrefixRule(m.group(1), m.group(2)));
+            }
+        }
+        this.retainedDataIds = new ArrayList<>(retained);
+        for (int i = 0; i < retainedDataIds.size(); i++) {
+            retainedIndex.addName(retainedDataIds.get(i), i);
+        }
+        this.doubleAsterisksRules = doubleAsterisks;
+        this.singleAsteriskRules = singleAsterisk;
+    }
+
+    /**
+     * Resolves the operation input attribute names that contain asterisk (*).
+     * See
+     * {@link AttributeNamesUtilities#resolveOperationAttributeNames(String[], List)}
+     * for details.
+     *
+     * @param operationAttributeNames
+     *            the operation attribute names to resolve.
+     * @return the resolved operation attribute names
+     */
+    public String[] resolve(String[] operationAttributeNames) {
+        boolean asterisk = false;
+        for (String an : operationAttributeNames) {
+            if (an.indexOf('*') != -1) {
+                asterisk = true;
+                break;
+            }
+        }
+        if (!asterisk) {
+            // Attribute names don't contain asterisk (*)
+            return operationAttributeNames;
+        }
+        // Replace attribute names that contain asterisk (*) by the matching
+        // data identifiers
+        List<String> resolvedAttributeNames = new ArrayList<>();
+        List<String> unresolvedAttributeNames = new ArrayList<>();
+        for (String an : operationAttributeNames) {
+            List<String> matchingDataIds = find(an, operationAttributeNames);
+            if (matchingDataIds.isEmpty()) {
+                unresolvedAttributeNames.add(an);
+            } else {
+                resolvedAttributeNames.addAll(matchingDataIds);
+            }
+        }
+        // Concatenate all found attributes
+        resolvedAttributeNames.addAll(unresolvedAttributeNames);
+        return resolvedAttributeNames.toArray(new String[resolvedAttributeNames.size()]);
+    }
+
+    /**
+     * Finds the data identifiers an operation attribute name matches. The data
+     * identifiers are the attributes to protect without asterisk, followed by
+     * the attributes to protect that start with asterisks, completed with the
+     * first parts of the operation attribute names. Only the rules whose last
+     * part matches the last parts of the operation attribute name are applied.
+     *
+     * @param pattern
+     *            the operation attribute name to resolve
+     * @param operationAttributeNames
+     *            all the operation attribute names (for the first parts)
+     * @return the distinct matching data identifiers, in the order of the data
+     *         identifiers
+     */
+    private List<String> find(String pattern, String[] operationAttributeNames) {
+        Predicate<String> predicate = AttributeNamePatterns.compile(pattern);
+        Map<String, Match> matches = new HashMap<>();
+        for (int i : retainedIndex.find(pattern)) {
+            add(matches, new Match(retainedDataIds.get(i), RETAINED, i, 0));
+        }
+        int lastSlash = pattern.lastIndexOf('/');
+        boolean regexFree = AttributeNamePatterns.isRegexFree(pattern);
+        if (!doubleAsterisksRules.isEmpty() && (lastSlash != -1 || !regexFree)) {
+            for (int r : rules(doubleAsterisksIndex, doubleAsterisksRules, pattern, lastSlash)) {
+                PrefixRule rule = doubleAsterisksRules.get(r);
+                for (int j = 0; j < operationAttributeNames.length; j++) {
+                    String an = operationAttributeNames[j];
+                    String firstPart = an.substring(0, an.lastIndexOf('/') + 1);
+                    if (rule.firstPart.test(firstPart)) {
+                        String id = firstPart + rule.lastPart;
+                        if (predicate.test(id)) {
+                            add(matches, new Match(id, DOUBLE_ASTERISKS, r, j));
+                        }
+                    }
+                }
+            }
+        }
+        int firstSlash = pattern.indexOf('/');
+        if (!singleAsteriskRules.isEmpty() && (firstSlash != -1 || !regexFree)) {
+            for (int r : rules(singleAsteriskIndex, singleAsteriskRules, pattern, firstSlash)) {
+                PrefixRule rule = singleAsteriskRules.get(r);
+                for (int j = 0; j < operationAttributeNames.length; j++) {
+                    String an = operationAttributeNames[j];
+                    String firstPart = an.substring(0, an.indexOf('/') + 1);
+                    if (rule.firstPart.test(firstPart)) {
+                        String id = firstPart + rule.lastPart;
+                        if (predicate.test(id)) {
+                            add(matches, new Match(id, SINGLE_ASTERISK, r, j));
+                        }
+                    }
+                }
+            }
+        }
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Match> sorted = new ArrayList<>(matches.values());
+        sorted.sort(Match::compareTo);
+        List<String> dataIds = new ArrayList<>(sorted.size());
+        for (Match match : sorted) {
+            dataIds.add(match.dataId);
+        }
+        return dataIds;
+    }
+
+    /**
+     * Finds the rules whose last part matches the end of a pattern (after the
+     * given slash). All the rules are returned if the pattern must be matched
+     * by a regular expression (its meta characters might span several parts).
+     */
+    private static List<Integer> rules(AttributeNameTrie<Integer> index, List<PrefixRule> rules, String pattern,
+            int slash) {
+        if (AttributeNamePatterns.isRegexFree(pattern)) {
+            return index.find(pattern.substring(slash + 1));
+        }
+        List<Integer> all = new ArrayList<>(rules.size());
+        for (int r = 0; r < rules.size(); r++) {
+            all.add(r);
+        }
+        return all;
+    }
+
+    /**
+     * Keeps the first occurrence of a data identifier
+     */
+    private static void add(Map<String, Match> matches, Match match) {
+        Match previous = matches.putIfAbsent(match.dataId, match);
+        if (previous != null && match.compareTo(previous) < 0) {
+            matches.put(match.dataId, match);
+        }
+    }
+}
@@ -6,6 +6,9 @@ import java.io.Serializable;
  * Created URV.
  */
 public class Criteria implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     private String attributeName;
     private String operator;
     private String value;
@@ -0,0 +1,144 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/**
+ * Runs independent per-CSP tasks concurrently (e.g. the protection of the
+ * partition of each CSP in an outbound operation, or the decryption of the
+ * contents returned by each CSP in the inbound GET operation).
+ * <p>
+ * The results are returned in the order of the CSPs, whatever the order the
+ * tasks complete in. The latency is therefore the one of the slowest CSP
+ * rather than the sum of all of them. The task of the last CSP is run by the
+ * calling thread.
+ * <p>
+ * If a task fails, the exception of the first failing CSP (in the order of
+ * the CSPs) is thrown once all the tasks are done.
+ */
+public class CspFanOutExecutor {
+
+    /**
+     * A task to run for a CSP
+     *
+     * @param <T>
+     *            the type of the CSP partition
+     * @param <R>
+     *            the type of the result
+     */
+    @FunctionalInterface
+    public interface CspTask<T, R> {
+        /**
+         * Processes the partition of a CSP
+         *
+         * @param csp
+         *            the index of the CSP
+         * @param partition
+         *            the partition of the CSP
+         * @return the result for the CSP
+         */
+        public R apply(int csp, T partition);
+    }
+
+    private final Executor executor;
+
+    /**
+     * Builds an executor that runs the tasks in the common ForkJoin pool. This
+     * is suitable for CPU bound tasks (e.g. encryption).
+     */
+    public CspFanOutExecutor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds an executor that runs the tasks with the given executor. Tasks
+     * that block (e.g. calls to a key server) should rather use
+     * {@link AsyncDataOperations#defaultExecutor()}.
+     *
+     * @param executor
+     *            the executor that runs the tasks
+     */
+    public CspFanOutExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs a task for each CSP partition.
+     *
+     * @param partitions
+     *            the partitions (one per CSP)
+     * @param task
+     *            the task to run for each partition
+     * @return the results, in the same order than the partitions
+     */
+    public <T, R> List<R> map(List<T> partitions, CspTask<? super T, ? extends R> task) {
+        return map(partitions.size(), csp -> task.apply(csp, partitions.get(csp)));
+    }
+
+    /**
+     * Runs a task for each CSP.
+     *
+     * @param cspCount
+     *            the number of CSPs
+     * @param task
+     *            the task to run for each CSP (given its index)
+     * @return the results, in the order of the CSPs
+     */
+    public <R> List<R> map(int cspCount, IntFunction<? extends R> task) {
+        if (cspCount == 0) {
+            return Collections.emptyList();
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(cspCount);
+        for (int csp = 0; csp < cspCount - 1; csp++) {
+            int index = csp;
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(index), executor));
+        }
+        CompletableFuture<R> last = new CompletableFuture<>();
+        try {
+            last.complete(task.apply(cspCount - 1));
+        } catch (RuntimeException | Error e) {
+            last.completeExceptionally(e);
+        }
+        futures.add(last);
+        List<R> results = new ArrayList<>(cspCount);
+        Throwable failure = null;
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() != null ? e.getCause() : e;
+                }
+                results.add(null);
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new CompletionException(failure);
+        }
+        return results;
+    }
+
+    /**
+     * Runs a task for each CSP partition, without result.
+     *
+     * @param partitions
+     *            the partitions (one per CSP)
+     * @param task
+     *            the task to run for each partition
+     */
+    public <T> void forEach(List<T> partitions, CspTask<? super T, ?> task) {
+        map(partitions, task);
+    }
+}
@@ -1,5 +1,6 @@
 package eu.clarussecure.dataoperations;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +38,9 @@ public interface DataOperation {
      * <br>{@code DataOperationCommands.criteria} must be the protected version of the input {@code criteria} for the CSP.
      * <br>- The list is empty if the CSP is not involved in the GET operation.
      * <br>- {@code DataOperationCommands.criteria} must be in the same order than the input {@code criteria}.
+     * <br>- Criteria the CSP cannot evaluate may be left out of {@code DataOperationCommands.criteria}, provided they are
+     * recorded in {@code DataOperationCommands.residualCriteria} and evaluated by the Inbound GET operation
+     * (see {@link eu.clarussecure.dataoperations.criteria.PushdownPlan}).
      * </p>
      * @param attributeNames names of the attributes, as given by the request.
      * @param criteria conditions of the get call.
@@ -69,6 +73,30 @@ public interface DataOperation {
      */
     public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents);
 
+    /** Streaming Inbound GET operation (RESPONSE), reconstructs data received by CSP while it is read.
+     * <p>Callers (i.e. the protocol module) must pass the {@code contents} according to the promise,
+     * as for the Inbound {@link get} operation, except that the rows of each CSP are read from an {@code Iterator}:
+     * <br>- {@code contents} cannot be {@code null} and must have the same size than the number of {@code DataOperationCommands} (number of CSPs).
+     * <br>- For each CSP, the number of rows must be equal, except if the CSP is not involved in the results (in this case, the iterator must be empty)
+     * <br>- Iterators that are {@code AutoCloseable} are closed when the returned {@code RowCursor} is closed.
+     * </p><p>
+     * The streaming Inbound GET operation returns a {@code RowCursor} over the reconstructed rows.
+     * <br>- The rows are in the same order than the attribute names of the cursor.
+     * <br>- At most {@code batchSize} rows are read from each CSP before being reconstructed.
+     * <br>- The default implementation reconstructs each batch through the Inbound {@link get} operation (see {@link BatchingRowCursor}).
+     * Protection modules that do not reconstruct rows independently of each other, or that request new calls to the CSP,
+     * must override this method.
+     * </p>
+     * @param promise references to the original call.
+     * @param contents iterators over the data returned by the CSP (one per CSP).
+     * @param batchSize maximum number of rows to read from each CSP at once.
+     * @return a {@code RowCursor} over the reconstructed rows.
+     */
+    public default RowCursor get(List<DataOperationCommand> promise, List<? extends Iterator<String[]>> contents,
+            int batchSize) {
+        return new BatchingRowCursor(this, promise, contents, batchSize);
+    }
+
     /** Outbound POST Operation, modifies data according to security policy.
      * <p>{@code attributeNames} must be fully qualified (i.e. dataset/data/attribute).
      * <br>- {@code attributeNames} may contain asterisks in the first parts (e.g. *&#47;*&#47;pat_name),
@@ -156,6 +184,36 @@ public interface DataOperation {
      */
     public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents);
 
+    /** Opens a chunked Outbound POST operation.
+     * <p>{@code attributeNames} must be fully qualified (i.e. dataset/data/attribute), as for the Outbound {@link post} operation.
+     * <br>- The rows are pushed by batches to the returned {@code OutboundSession}, and each batch is protected as soon as it is pushed.
+     * <br>- The protected batches follow the same rules than the result of the Outbound {@link post} operation.
+     * <br>- The default implementation protects each batch through the Outbound {@link post} operation (see {@link BatchingOutboundSession}).
+     * Protection modules that do not protect rows independently of each other must override this method.
+     * </p>
+     * @param attributeNames names of the attributes, as given by the request.
+     * @return an {@code OutboundSession}
+     */
+    public default OutboundSession openPost(String[] attributeNames) {
+        return new BatchingOutboundSession(this, attributeNames);
+    }
+
+    /** Opens a chunked Outbound PUT operation.
+     * <p>{@code attributeNames} and attribute names in {@code criteria} must be fully qualified (i.e. dataset/data/attribute),
+     * as for the Outbound {@link put} operation.
+     * <br>- The rows are pushed by batches to the returned {@code OutboundSession}, and each batch is protected as soon as it is pushed.
+     * <br>- The protected batches follow the same rules than the result of the Outbound {@link put} operation.
+     * <br>- The default implementation protects each batch through the Outbound {@link put} operation (see {@link BatchingOutboundSession}).
+     * Protection modules that do not protect rows independently of each other must override this method.
+     * </p>
+     * @param attributeNames names of the attributes, as given by the request.
+     * @param criteria conditions of the put call.
+     * @return an {@code OutboundSession}
+     */
+    public default OutboundSession openPut(String[] attributeNames, Criteria[] criteria) {
+        return new BatchingOutboundSession(this, attributeNames, criteria);
+    }
+
     /** Outbound DELETE Operation, deletes data specified by criteria.
      * <p>{@code attributeNames} and attribute names in {@code criteria} must be fully qualified (i.e. dataset/data/attribute).
      * <br>- Attribute names may contain asterisks in the first parts (e.g. *&#47;*&#47;pat_name),
@@ -215,4 +273,24 @@ public interface DataOperation {
      * @return a List of Mapping objects.
      */
     public List<Map<String, String>> head(String[] attributeNames);
+
+    /** Prepares a data operation for the given attribute names and criteria attribute names.
+     * <p>{@code attributeNames} and {@code criteriaAttributeNames} must be fully qualified (i.e. dataset/data/attribute),
+     * with the same restrictions than for the Outbound GET, POST, PUT and DELETE operations.
+     * <br>- The returned {@code PreparedDataOperation} can be executed several times with different criteria and contents.
+     * <br>- The criteria passed to the {@code PreparedDataOperation} must refer to the {@code criteriaAttributeNames}, in the same order.
+     * <br>- Protection modules should override this method in order to resolve the attribute names, the protected attribute names
+     * and the mappings once, when the operation is prepared.
+     * <br>- The default implementation is only a fallback: it delegates each execution to this data operation with the
+     * prepared attribute names, so the attribute names are resolved again at each execution (only the mappings, computed
+     * through the {@link head} operation, are resolved once). Repeated executions skip name resolution only if the
+     * protection module overrides this method.
+     * </p>
+     * @param attributeNames names of the attributes, as given by the request.
+     * @param criteriaAttributeNames names of the attributes in the criteria, as given by the request.
+     * @return a {@code PreparedDataOperation}.
+     */
+    public default PreparedDataOperation prepare(String[] attributeNames, String[] criteriaAttributeNames) {
+        return new DefaultPreparedDataOperation(this, attributeNames, criteriaAttributeNames);
+    }
 }
@@ -1,8 +1,15 @@
 package eu.clarussecure.dataoperations;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
+import eu.clarussecure.dataoperations.binary.BinaryPayload;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
 /**
  * Parent class for data objects returned by several
  * methods in the API. Commands contain information
@@ -12,6 +19,8 @@ import java.util.Map;
  */
 public abstract class DataOperationCommand extends DataOperationResult {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Names of the protected attributes
      */
@@ -31,6 +40,14 @@ public abstract class DataOperationCommand extends DataOperationResult {
      */
     protected InputStream[] extraBinaryContent;
 
+    /**
+     * Binary data to append to the call, as re-readable payloads that can be
+     * transferred to the CSP without copy (e.g. file regions). Used when
+     * extraBinaryContent is not set. Not serialized as is: the content of the
+     * payloads is serialized, and deserialized as in-memory payloads.
+     */
+    protected transient BinaryPayload[] extraBinaryPayloads;
+
     /**
      * Mapping between the original attribute names
      * and the protected attribute names.
@@ -43,11 +60,50 @@ public abstract class DataOperationCommand extends DataOperationResult {
      */
     protected String[][] protectedContents;
 
+    /**
+     * Protected content, in column-major format. Either protectedContents or
+     * protectedContentsTable is set: it is the protected content, and the getter of the
+     * other format returns a conversion of it.
+     */
+    protected ColumnarTable protectedContentsTable;
+
+    /**
+     * Conversion of the protected content to the other format, and the
+     * protectedContents or protectedContentsTable it was converted from. Not serialized.
+     */
+    private transient String[][] convertedProtectedContents;
+    private transient ColumnarTable convertedProtectedContentsTable;
+    private transient Object convertedFrom;
+
     /**
      * Search criteria
      */
     protected Criteria[] criteria;
 
+    /**
+     * Criteria that are not evaluated by the CSP, and that must be evaluated
+     * on the reconstructed rows (on the original attribute names). See
+     * {@link eu.clarussecure.dataoperations.criteria.PushdownPlan}.
+     */
+    protected Criteria[] residualCriteria;
+
+    /**
+     * Attributes that are only fetched to evaluate the residual criteria, and
+     * that must be dropped from the reconstructed rows after filtering.
+     */
+    protected String[] residualAttributeNames;
+
+    /**
+     * Ids of the attribute names, protected attribute names and mapping, in
+     * the symbol table they were interned in. Computed on demand, and reset
+     * by the setters of the names (guarded by this command, as the conversions
+     * of the protected contents).
+     */
+    private transient AttributeSymbolTable symbolTable;
+    private transient int[] attributeIds;
+    private transient int[] protectedAttributeIds;
+    private transient IntIntMap mappingIds;
+
     public String[] getProtectedAttributeNames() {
         return protectedAttributeNames;
     }
@@ -56,10 +112,55 @@ public abstract class DataOperationCommand extends DataOperationResult {
         return extraProtectedAttributeNames;
     }
 
+    /**
+     * Returns the binary data to append to the call, as set by
+     * {@link #setExtraBinaryContent(InputStream[])}. Commands that only have
+     * payloads return {@code null}: use {@link #openExtraBinaryContent()} to
+     * read them as streams.
+     *
+     * @return the binary data, as streams
+     */
     public InputStream[] getExtraBinaryContent() {
         return extraBinaryContent;
     }
 
+    /**
+     * Returns the binary data to append to the call, as streams. If only
+     * payloads are set, new streams are opened on them at each call, and must
+     * be closed by the caller.
+     *
+     * @return the binary data, as streams
+     * @throws IOException
+     *             if a payload cannot be opened
+     */
+    public InputStream[] openExtraBinaryContent() throws IOException {
+        if (extraBinaryContent != null || extraBinaryPayloads == null) {
+            return extraBinaryContent;
+        }
+        InputStream[] streams = new InputStream[extraBinaryPayloads.length];
+        try {
+            for (int i = 0; i < streams.length; i++) {
+                streams[i] = extraBinaryPayloads[i] != null ? extraBinaryPayloads[i].openStream() : null;
+            }
+        } catch (IOException e) {
+            for (InputStream stream : streams) {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+            }
+            throw e;
+        }
+        return streams;
+    }
+
+    public BinaryPayload[] getExtraBinaryPayloads() {
+        return extraBinaryPayloads;
+    }
+
     public Map<String, String> getMapping() {
         return mapping;
     }
@@ -68,12 +169,134 @@ public abstract class DataOperationCommand extends DataOperationResult {
         return criteria;
     }
 
-    public String[][] getProtectedContents() {
-        return protectedContents;
+    public Criteria[] getResidualCriteria() {
+        return residualCriteria;
+    }
+
+    public String[] getResidualAttributeNames() {
+        return residualAttributeNames;
+    }
+
+    /**
+     * Returns the ids of the attribute names. The ids are cached until the
+     * attribute names are set (changes made to the returned array or to the
+     * attribute names array are not taken into account).
+     *
+     * @param table
+     *            the symbol table to intern the attribute names in
+     * @return the ids of the attribute names, in the same order
+     */
+    public synchronized int[] getAttributeIds(AttributeSymbolTable table) {
+        useSymbolTable(table);
+        if (attributeIds == null) {
+            attributeIds = table.intern(attributeNames);
+        }
+        return attributeIds;
+    }
+
+    /**
+     * Returns the ids of the protected attribute names. The ids are cached
+     * until the protected attribute names are set.
+     *
+     * @param table
+     *            the symbol table to intern the protected attribute names in
+     * @return the ids of the protected attribute names, in the same order
+     */
+    public synchronized int[] getProtectedAttributeIds(AttributeSymbolTable table) {
+        useSymbolTable(table);
+        if (protectedAttributeIds == null) {
+            protectedAttributeIds = table.intern(protectedAttributeNames);
+        }
+        return protectedAttributeIds;
+    }
+
+    /**
+     * Returns the mapping between the ids of the original attribute names and
+     * the ids of the protected attribute names. The ids are cached until the
+     * mapping is set (changes made to the mapping in place are not taken into
+     * account).
+     *
+     * @param table
+     *            the symbol table to intern the attribute names in
+     * @return the mapping of the ids
+     */
+    public synchronized IntIntMap getMappingIds(AttributeSymbolTable table) {
+        useSymbolTable(table);
+        if (mappingIds == null) {
+            mappingIds = table.intern(mapping);
+        }
+        return mappingIds;
+    }
+
+    private void useSymbolTable(AttributeSymbolTable table) {
+        if (symbolTable != table) {
+            symbolTable = table;
+            attributeIds = null;
+            protectedAttributeIds = null;
+            mappingIds = null;
+        }
+    }
+
+    /**
+     * Returns the protected content as rows. If it has been set in column-major
+     * format, a conversion of the table is returned: it is computed once, then
+     * cached until the protected content is set again. Changes made to the
+     * conversion are not taken into account (set the rows to apply them).
+     *
+     * @return the protected content as rows
+     */
+    public synchronized String[][] getProtectedContents() {
+        if (protectedContents != null || protectedContentsTable == null) {
+            return protectedContents;
+        }
+        if (convertedProtectedContents == null || convertedFrom != protectedContentsTable) {
+            convertedProtectedContents = protectedContentsTable.toRows();
+            convertedProtectedContentsTable = null;
+            convertedFrom = protectedContentsTable;
+        }
+        return convertedProtectedContents;
+    }
+
+    /**
+     * Returns the protected content in column-major format. If it has been set as
+     * rows, a conversion of the rows is returned: it is computed once, then
+     * cached until the protected content is set again. Changes made to the
+     * conversion are not taken into account (set the table to apply them).
+     *
+     * @return the protected content as a columnar table
+     */
+    public synchronized ColumnarTable getProtectedContentsTable() {
+        if (protectedContentsTable != null || protectedContents == null) {
+            return protectedContentsTable;
+        }
+        if (convertedProtectedContentsTable == null || convertedFrom != protectedContents) {
+            convertedProtectedContentsTable = ColumnarTable.fromRows(protectedContents,
+                    protectedAttributeNames != null ? protectedAttributeNames.length : 0);
+            convertedProtectedContents = null;
+            convertedFrom = protectedContents;
+        }
+        return convertedProtectedContentsTable;
+    }
+
+    /**
+     * Returns the number of rows of the protected content, without converting it
+     *
+     * @return the number of rows, or 0 if there is no protected content
+     */
+    public synchronized int getProtectedContentsRowCount() {
+        return protectedContents != null ? protectedContents.length
+                : protectedContentsTable != null ? protectedContentsTable.getRowCount() : 0;
     }
 
-    public void setProtectedAttributeNames(String[] protectedAttributeNames) {
+    @Override
+    public synchronized void setAttributeNames(String[] attributeNames) {
+        super.setAttributeNames(attributeNames);
+        this.attributeIds = null;
+    }
+
+    public synchronized void setProtectedAttributeNames(String[] protectedAttributeNames) {
         this.protectedAttributeNames = protectedAttributeNames;
+        this.protectedAttributeIds = null;
     }
 
     public void setExtraProtectedAttributeNames(String[] extraProtectedAttributeNames) {
@@ -82,17 +305,80 @@ public abstract class DataOperationCommand extends DataOperationResult {
 
     public void setExtraBinaryContent(InputStream[] extraBinaryContent) {
         this.extraBinaryContent = extraBinaryContent;
+        this.extraBinaryPayloads = null;
     }
 
-    public void setMapping(Map<String, String> mapping) {
+    /**
+     * Sets the binary data to append to the call, as payloads. The extra
+     * binary content streams, if any, are discarded.
+     *
+     * @param extraBinaryPayloads
+     *            the binary data
+     */
+    public void setExtraBinaryPayloads(BinaryPayload[] extraBinaryPayloads) {
+        this.extraBinaryPayloads = extraBinaryPayloads;
+        this.extraBinaryContent = null;
+    }
+
+    public synchronized void setMapping(Map<String, String> mapping) {
         this.mapping = mapping;
+        this.mappingIds = null;
     }
 
-    public void setProtectedContents(String[][] protectedContents) {
+    public synchronized void setProtectedContents(String[][] protectedContents) {
         this.protectedContents = protectedContents;
+        this.protectedContentsTable = null;
+        this.convertedProtectedContents = null;
+        this.convertedProtectedContentsTable = null;
+        this.convertedFrom = null;
+    }
+
+    public synchronized void setProtectedContentsTable(ColumnarTable protectedContentsTable) {
+        this.protectedContentsTable = protectedContentsTable;
+        this.protectedContents = null;
+        this.convertedProtectedContents = null;
+        this.convertedProtectedContentsTable = null;
+        this.convertedFrom = null;
     }
 
     public void setCriteria(Criteria[] criteria) {
         this.criteria = criteria;
     }
+
+    public void setResidualCriteria(Criteria[] residualCriteria) {
+        this.residualCriteria = residualCriteria;
+    }
+
+    public void setResidualAttributeNames(String[] residualAttributeNames) {
+        this.residualAttributeNames = residualAttributeNames;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(extraBinaryPayloads == null ? -1 : extraBinaryPayloads.length);
+        if (extraBinaryPayloads != null) {
+            for (BinaryPayload payload : extraBinaryPayloads) {
+                if (payload == null) {
+                    out.writeObject(null);
+                } else {
+                    ByteBuffer buffer = payload.asByteBuffer();
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    out.writeObject(bytes);
+                }
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int length = in.readInt();
+        if (length >= 0) {
+            extraBinaryPayloads = new BinaryPayload[length];
+            for (int i = 0; i < length; i++) {
+                byte[] bytes = (byte[]) in.readObject();
+                extraBinaryPayloads[i] = bytes != null ? BinaryPayload.wrap(bytes) : null;
+            }
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package eu.clarussecure.dataoperations;
 
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
 /**
  * Parent class for data objects returned by the get
  * operation. Classes which contain the reconstructed
@@ -10,12 +12,91 @@ package eu.clarussecure.dataoperations;
  */
 public abstract class DataOperationResponse extends DataOperationResult {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Reconstructed data.
      */
     protected String[][] contents;
 
-    public String[][] getContents() {
-        return contents;
+    /**
+     * Reconstructed data, in column-major format. Either contents or
+     * contentsTable is set: it is the reconstructed data, and the getter of the
+     * other format returns a conversion of it.
+     */
+    protected ColumnarTable contentsTable;
+
+    /**
+     * Conversion of the reconstructed data to the other format, and the
+     * contents or contentsTable it was converted from. Not serialized.
+     */
+    private transient String[][] convertedContents;
+    private transient ColumnarTable convertedContentsTable;
+    private transient Object convertedFrom;
+
+    /**
+     * Returns the reconstructed data as rows. If it has been set in column-major
+     * format, a conversion of the table is returned: it is computed once, then
+     * cached until the reconstructed data is set again. Changes made to the
+     * conversion are not taken into account (set the rows to apply them).
+     *
+     * @return the reconstructed data as rows
+     */
+    public synchronized String[][] getContents() {
+        if (contents != null || contentsTable == null) {
+            return contents;
+        }
+        if (convertedContents == null || convertedFrom != contentsTable) {
+            convertedContents = contentsTable.toRows();
+            convertedContentsTable = null;
+            convertedFrom = contentsTable;
+        }
+        return convertedContents;
+    }
+
+    /**
+     * Returns the reconstructed data in column-major format. If it has been set as
+     * rows, a conversion of the rows is returned: it is computed once, then
+     * cached until the reconstructed data is set again. Changes made to the
+     * conversion are not taken into account (set the table to apply them).
+     *
+     * @return the reconstructed data as a columnar table
+     */
+    public synchronized ColumnarTable getContentsTable() {
+        if (contentsTable != null || contents == null) {
+            return contentsTable;
+        }
+        if (convertedContentsTable == null || convertedFrom != contents) {
+            convertedContentsTable = ColumnarTable.fromRows(contents,
+                    attributeNames != null ? attributeNames.length : 0);
+            convertedContents = null;
+            convertedFrom = contents;
+        }
+        return convertedContentsTable;
+    }
+
+    /**
+     * Returns the number of rows of the reconstructed data, without converting it
+     *
+     * @return the number of rows, or 0 if there is no reconstructed data
+     */
+    public synchronized int getContentsRowCount() {
+        return contents != null ? contents.length : contentsTable != null ? contentsTable.getRowCount() : 0;
+    }
+
+    public synchronized void setContents(String[][] contents) {
+        this.contents = contents;
+        this.contentsTable = null;
+        this.convertedContents = null;
+        this.convertedContentsTable = null;
+        this.convertedFrom = null;
+    }
+
+    public synchronized void setContentsTable(ColumnarTable contentsTable) {
+        this.contentsTable = contentsTable;
+        this.contents = null;
+        this.convertedContents = null;
+        this.convertedContentsTable = null;
+        this.convertedFrom = null;
     }
 }
@@ -10,6 +10,8 @@ import java.io.Serializable;
  */
 public abstract class DataOperationResult implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Unique identifier of the object within
      * the CLARUS proxy. Meant for bookkeeping.
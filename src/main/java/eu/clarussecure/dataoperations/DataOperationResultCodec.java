@@ -0,0 +1,536 @@
+package eu.clarussecure.dataoperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Constructor;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.clarussecure.dataoperations.binary.BinaryPayload;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+/**
+ * Versioned binary encoding of {@link DataOperationResult} (e.g. to ship a
+ * promise to another proxy node or to persist it), as an alternative to the
+ * default Java serialization.
+ * <p>
+ * The encoding starts with a magic number and a version, followed by the
+ * results. Attribute names, mapping keys and values, criteria attribute names
+ * and operators, and class names are deduplicated: each distinct string is
+ * written once, then referred to by its index. The values of the contents are
+ * written as-is. The extra binary payloads of the commands are written
+ * inline, by chunks. A stream can only be read once: so, before being
+ * written, the extra binary contents of a command are read to the end (and
+ * closed) into in-memory payloads, that replace them in the command (see
+ * {@link DataOperationCommand#setExtraBinaryPayloads(BinaryPayload[])}). The
+ * command can still be sent to the CSPs after having been encoded. The decoded
+ * extra binary contents are in-memory payloads.
+ * <p>
+ * Results are instantiated through the no-arg constructor of their class
+ * (which might be private), so the classes of the protection modules must
+ * have one and must be visible from the class loader of the codec. Additional
+ * fields of these classes can be encoded by overriding
+ * {@link #writeExtra(DataOperationResult, DataOutputStream)} and
+ * {@link #readExtra(DataOperationResult, DataInputStream)}.
+ * <p>
+ * Instances are stateless and can be shared by all the threads.
+ */
+public class DataOperationResultCodec {
+
+    /** Magic number ("CLRS") */
+    public static final int MAGIC = 0x434C5253;
+
+    /** Current version of the encoding */
+    public static final int VERSION = 1;
+
+    private static final int OTHER = 0;
+    private static final int COMMAND = 1;
+    private static final int RESPONSE = 2;
+
+    private static final int CHUNK_SIZE = 8192;
+    /**
+     * Maximum number of elements allocated from a length read in the stream,
+     * before the elements are actually read (so a corrupted length fails on
+     * the end of the stream instead of allocating a huge array)
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    private static final int PAYLOAD_CHUNK_SIZE = 1 << 30;
+
+    /**
+     * Strings already written, by index
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+    }
+
+    /**
+     * Encodes results
+     *
+     * @param results
+     *            the results (e.g. a promise)
+     * @param out
+     *            the stream to write to (not closed)
+     * @throws IOException
+     *             if the stream cannot be written or if an extra binary
+     *             content cannot be read
+     */
+    public void write(List<? extends DataOperationResult> results, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        StringTable table = new StringTable();
+        writeVarInt(data, results.size());
+        for (DataOperationResult result : results) {
+            writeResult(result, data, table);
+        }
+        data.flush();
+    }
+
+    /**
+     * Encodes results
+     *
+     * @param results
+     *            the results (e.g. a promise)
+     * @return the encoded results
+     * @throws IOException
+     *             if an extra binary content cannot be read
+     */
+    public byte[] toByteArray(List<? extends DataOperationResult> results) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(results, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes results
+     *
+     * @param in
+     *            the stream to read from (not closed)
+     * @return the results
+     * @throws IOException
+     *             if the stream cannot be read, is not an encoding of results
+     *             or refers to a class that cannot be instantiated
+     */
+    public List<DataOperationResult> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new StreamCorruptedException("not an encoding of data operation results");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("unsupported version: " + version);
+        }
+        List<String> table = new ArrayList<>();
+        int count = readVarInt(data);
+        List<DataOperationResult> results = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            results.add(readResult(data, table));
+        }
+        return results;
+    }
+
+    /**
+     * Decodes results
+     *
+     * @param bytes
+     *            the encoded results
+     * @return the results
+     * @throws IOException
+     *             if the bytes are not an encoding of results or refer to a
+     *             class that cannot be instantiated
+     */
+    public List<DataOperationResult> fromByteArray(byte[] bytes) throws IOException {
+        return read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Writes the additional fields of a result. Does nothing by default.
+     *
+     * @param result
+     *            the result
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    protected void writeExtra(DataOperationResult result, DataOutputStream out) throws IOException {
+    }
+
+    /**
+     * Reads the additional fields of a result, as written by
+     * {@link #writeExtra(DataOperationResult, DataOutputStream)}. Does
+     * nothing by default.
+     *
+     * @param result
+     *            the result
+     * @param in
+     *            the stream to read from
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    protected void readExtra(DataOperationResult result, DataInputStream in) throws IOException {
+    }
+
+    private void writeResult(DataOperationResult result, DataOutputStream out, StringTable table) throws IOException {
+        writeSymbol(out, result.getClass().getName(), table);
+        int kind = result instanceof DataOperationCommand ? COMMAND
+                : result instanceof DataOperationResponse ? RESPONSE : OTHER;
+        out.writeByte(kind);
+        out.writeInt(result.id);
+        writeSymbols(out, result.attributeNames, table);
+        if (kind == COMMAND) {
+            DataOperationCommand command = (DataOperationCommand) result;
+            writeSymbols(out, command.protectedAttributeNames, table);
+            writeSymbols(out, command.extraProtectedAttributeNames, table);
+            writeMapping(out, command.mapping, table);
+            writeContents(out, command.protectedContents, command.protectedContentsTable);
+            writeCriteria(out, command.criteria, table);
+            writeCriteria(out, command.residualCriteria, table);
+            writeSymbols(out, command.residualAttributeNames, table);
+            if (command.extraBinaryContent != null) {
+                command.setExtraBinaryPayloads(readStreams(command.extraBinaryContent));
+            }
+            writePayloads(out, command.extraBinaryPayloads);
+        } else if (kind == RESPONSE) {
+            DataOperationResponse response = (DataOperationResponse) result;
+            writeContents(out, response.contents, response.contentsTable);
+        }
+        writeExtra(result, out);
+    }
+
+    private DataOperationResult readResult(DataInputStream in, List<String> table) throws IOException {
+        String className = readSymbol(in, table);
+        int kind = in.readUnsignedByte();
+        DataOperationResult result = instantiate(className);
+        if ((kind == COMMAND) != (result instanceof DataOperationCommand)
+                || (kind == RESPONSE) != (result instanceof DataOperationResponse)) {
+            throw new InvalidClassException(className, "unexpected kind of result");
+        }
+        result.id = in.readInt();
+        result.attributeNames = readSymbols(in, table);
+        if (kind == COMMAND) {
+            DataOperationCommand command = (DataOperationCommand) result;
+            command.protectedAttributeNames = readSymbols(in, table);
+            command.extraProtectedAttributeNames = readSymbols(in, table);
+            command.mapping = readMapping(in, table);
+            command.setProtectedContents(readContents(in));
+            command.criteria = readCriteria(in, table);
+            command.residualCriteria = readCriteria(in, table);
+            command.residualAttributeNames = readSymbols(in, table);
+            command.extraBinaryPayloads = readPayloads(in);
+        } else if (kind == RESPONSE) {
+            ((DataOperationResponse) result).setContents(readContents(in));
+        }
+        readExtra(result, in);
+        return result;
+    }
+
+    private DataOperationResult instantiate(String className) throws IOException {
+        try {
+            Class<?> type = Class.forName(className, false, getClass().getClassLoader());
+            if (!DataOperationResult.class.isAssignableFrom(type)) {
+                throw new InvalidClassException(className, "not a data operation result");
+            }
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (DataOperationResult) constructor.newInstance();
+        } catch (ReflectiveOperationException | SecurityException e) {
+            InvalidClassException exception = new InvalidClassException(className, "cannot instantiate");
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    // strings
+
+    private static void writeSymbol(DataOutputStream out, String value, StringTable table) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        Integer index = table.indexes.get(value);
+        if (index != null) {
+            writeVarInt(out, index + 2);
+        } else {
+            table.indexes.put(value, table.strings.size());
+            table.strings.add(value);
+            writeVarInt(out, 1);
+            writeString(out, value);
+        }
+    }
+
+    private static String readSymbol(DataInputStream in, List<String> table) throws IOException {
+        int ref = readVarInt(in);
+        if (ref == 0) {
+            return null;
+        }
+        if (ref == 1) {
+            String value = readString(in);
+            table.add(value);
+            return value;
+        }
+        if (ref - 2 >= table.size()) {
+            throw new StreamCorruptedException("invalid string reference: " + ref);
+        }
+        return table.get(ref - 2);
+    }
+
+    private static void writeSymbols(DataOutputStream out, String[] values, StringTable table) throws IOException {
+        writeVarInt(out, values == null ? 0 : values.length + 1);
+        if (values != null) {
+            for (String value : values) {
+                writeSymbol(out, value, table);
+            }
+        }
+    }
+
+    private static String[] readSymbols(DataInputStream in, List<String> table) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(Math.min(length, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < length; i++) {
+            values.add(readSymbol(in, table));
+        }
+        return values.toArray(new String[length]);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // structures
+
+    private static void writeMapping(DataOutputStream out, Map<String, String> mapping, StringTable table)
+            throws IOException {
+        writeVarInt(out, mapping == null ? 0 : mapping.size() + 1);
+        if (mapping != null) {
+            for (Map.Entry<String, String> entry : mapping.entrySet()) {
+                writeSymbol(out, entry.getKey(), table);
+                writeSymbol(out, entry.getValue(), table);
+            }
+        }
+    }
+
+    private static Map<String, String> readMapping(DataInputStream in, List<String> table) throws IOException {
+        int size = readVarInt(in) - 1;
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> mapping = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            mapping.put(readSymbol(in, table), readSymbol(in, table));
+        }
+        return mapping;
+    }
+
+    private static void writeContents(DataOutputStream out, String[][] contents) throws IOException {
+        writeVarInt(out, contents == null ? 0 : contents.length + 1);
+        if (contents != null) {
+            for (String[] row : contents) {
+                writeVarInt(out, row == null ? 0 : row.length + 1);
+                if (row != null) {
+                    for (String value : row) {
+                        writeString(out, value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the contents in the format they are set in (the rows if both are
+     * set), without converting them
+     */
+    private static void writeContents(DataOutputStream out, String[][] rows, ColumnarTable table) throws IOException {
+        if (rows != null || table == null) {
+            writeContents(out, rows);
+            return;
+        }
+        int columnCount = table.getColumnCount();
+        writeVarInt(out, table.getRowCount() + 1);
+        for (int row = 0; row < table.getRowCount(); row++) {
+            writeVarInt(out, columnCount + 1);
+            for (int column = 0; column < columnCount; column++) {
+                writeString(out, table.getColumn(column).get(row));
+            }
+        }
+    }
+
+    private static String[][] readContents(DataInputStream in) throws IOException {
+        int rowCount = readVarInt(in) - 1;
+        if (rowCount < 0) {
+            return null;
+        }
+        List<String[]> contents = new ArrayList<>(Math.min(rowCount, MAX_INITIAL_CAPACITY));
+        List<String> row = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            int length = readVarInt(in) - 1;
+            if (length < 0) {
+                contents.add(null);
+                continue;
+            }
+            row.clear();
+            for (int j = 0; j < length; j++) {
+                row.add(readString(in));
+            }
+            contents.add(row.toArray(new String[length]));
+        }
+        return contents.toArray(new String[rowCount][]);
+    }
+
+    private static void writeCriteria(DataOutputStream out, Criteria[] criteria, StringTable table) throws IOException {
+        writeVarInt(out, criteria == null ? 0 : criteria.length + 1);
+        if (criteria != null) {
+            for (Criteria c : criteria) {
+                out.writeBoolean(c != null);
+                if (c != null) {
+                    writeSymbol(out, c.getAttributeName(), table);
+                    writeSymbol(out, c.getOperator(), table);
+                    writeString(out, c.getValue());
+                }
+            }
+        }
+    }
+
+    private static Criteria[] readCriteria(DataInputStream in, List<String> table) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        List<Criteria> criteria = new ArrayList<>(Math.min(length, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < length; i++) {
+            criteria.add(in.readBoolean() ? new Criteria(readSymbol(in, table), readSymbol(in, table), readString(in))
+                    : null);
+        }
+        return criteria.toArray(new Criteria[length]);
+    }
+
+    /**
+     * Reads streams to the end into in-memory payloads, and closes them
+     */
+    private static BinaryPayload[] readStreams(InputStream[] streams) throws IOException {
+        BinaryPayload[] payloads = new BinaryPayload[streams.length];
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int i = 0; i < streams.length; i++) {
+            if (streams[i] != null) {
+                try (InputStream stream = streams[i]) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    int n;
+                    while ((n = stream.read(chunk)) != -1) {
+                        bytes.write(chunk, 0, n);
+                    }
+                    payloads[i] = BinaryPayload.wrap(bytes.toByteArray());
+                }
+            }
+        }
+        return payloads;
+    }
+
+    /**
+     * Writes payloads by chunks: each chunk is prefixed by its length, and a
+     * zero length ends the payload. Payloads are written by large chunks, with
+     * {@link BinaryPayload#transferTo(WritableByteChannel, long, long)}.
+     */
+    private static void writePayloads(DataOutputStream out, BinaryPayload[] payloads) throws IOException {
+        writeVarInt(out, payloads == null ? 0 : payloads.length + 1);
+        if (payloads == null) {
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (BinaryPayload payload : payloads) {
+            out.writeBoolean(payload != null);
+            if (payload != null) {
+                long size = payload.size();
+                for (long position = 0; position < size;) {
+                    int n = (int) Math.min(size - position, PAYLOAD_CHUNK_SIZE);
+                    writeVarInt(out, n);
+                    payload.transferTo(channel, position, n);
+                    position += n;
+                }
+                writeVarInt(out, 0);
+            }
+        }
+    }
+
+    private static BinaryPayload[] readPayloads(DataInputStream in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        BinaryPayload[] payloads = new BinaryPayload[length];
+        for (int i = 0; i < length; i++) {
+            if (in.readBoolean()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int n;
+                while ((n = readVarInt(in)) > 0) {
+                    while (n > 0) {
+                        int read = in.read(chunk, 0, Math.min(n, chunk.length));
+                        if (read == -1) {
+                            throw new EOFException();
+                        }
+                        bytes.write(chunk, 0, read);
+                        n -= read;
+                    }
+                }
+                payloads[i] = BinaryPayload.wrap(bytes.toByteArray());
+            }
+        }
+        return payloads;
+    }
+
+    // numbers
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("malformed variable length integer");
+    }
+}
@@ -0,0 +1,157 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Default implementation of {@link PreparedDataOperation}, built on the
+ * methods of {@link DataOperation}.
+ * <p>
+ * The mappings are resolved once, through the {@link DataOperation#head}
+ * operation, the first time they are requested. The protected attribute names
+ * are the ones the mappings associate to the prepared attribute names, or to
+ * the attribute names the HEAD operation expanded them to (e.g. for
+ * *&#47;patient/* or patient/pat_id).
+ * <p>
+ * This implementation is a fallback for the protection modules that do not
+ * override {@link DataOperation#prepare(String[], String[])}: executions are
+ * delegated to the data operation with the prepared attribute names, after
+ * checking that the criteria refer to the prepared criteria attribute names.
+ * The {@link DataOperation} methods take unresolved attribute names only, so
+ * the data operation resolves them again at each execution: the mappings and
+ * protected attribute names computed here are not reused by the executions.
+ */
+public class DefaultPreparedDataOperation implements PreparedDataOperation {
+
+    private final DataOperation dataOperation;
+    private final String[] attributeNames;
+    private final String[] criteriaAttributeNames;
+    private volatile List<Map<String, String>> mappings;
+    private volatile List<String[]> protectedAttributeNames;
+
+    public DefaultPreparedDataOperation(DataOperation dataOperation, String[] attributeNames,
+            String[] criteriaAttributeNames) {
+        this.dataOperation = dataOperation;
+        this.attributeNames = attributeNames.clone();
+        this.criteriaAttributeNames = criteriaAttributeNames != null ? criteriaAttributeNames.clone() : new String[0];
+    }
+
+    protected DataOperation getDataOperation() {
+        return dataOperation;
+    }
+
+    @Override
+    public String[] getAttributeNames() {
+        return attributeNames.clone();
+    }
+
+    @Override
+    public String[] getCriteriaAttributeNames() {
+        return criteriaAttributeNames.clone();
+    }
+
+    @Override
+    public List<Map<String, String>> getMappings() {
+        List<Map<String, String>> mappings = this.mappings;
+        if (mappings == null) {
+            mappings = new ArrayList<>();
+            for (Map<String, String> mapping : dataOperation.head(attributeNames.clone())) {
+                mappings.add(Collections.unmodifiableMap(new LinkedHashMap<>(mapping)));
+            }
+            mappings = Collections.unmodifiableList(mappings);
+            this.mappings = mappings;
+        }
+        return mappings;
+    }
+
+    @Override
+    public List<String[]> getProtectedAttributeNames() {
+        List<String[]> protectedAttributeNames = this.protectedAttributeNames;
+        if (protectedAttributeNames == null) {
+            List<Predicate<String>> patterns = new ArrayList<>(attributeNames.length);
+            for (String attributeName : attributeNames) {
+                patterns.add(AttributeNamePatterns.compile(AttributeNamesUtilities.fullyQualified(attributeName)));
+            }
+            protectedAttributeNames = new ArrayList<>();
+            for (Map<String, String> mapping : getMappings()) {
+                Set<String> keys = new LinkedHashSet<>();
+                for (int i = 0; i < attributeNames.length; i++) {
+                    if (mapping.containsKey(attributeNames[i])) {
+                        keys.add(attributeNames[i]);
+                    } else {
+                        // attribute name expanded by the HEAD operation (e.g.
+                        // */patient/* or patient/pat_id)
+                        for (String key : mapping.keySet()) {
+                            if (patterns.get(i).test(AttributeNamesUtilities.fullyQualified(key))) {
+                                keys.add(key);
+                            }
+                        }
+                    }
+                }
+                List<String> names = new ArrayList<>(keys.size());
+                for (String key : keys) {
+                    names.add(mapping.get(key));
+                }
+                protectedAttributeNames.add(names.toArray(new String[names.size()]));
+            }
+            protectedAttributeNames = Collections.unmodifiableList(protectedAttributeNames);
+            this.protectedAttributeNames = protectedAttributeNames;
+        }
+        return protectedAttributeNames;
+    }
+
+    @Override
+    public List<DataOperationCommand> get(Criteria[] criteria) {
+        checkCriteria(criteria);
+        return dataOperation.get(attributeNames.clone(), criteria);
+    }
+
+    @Override
+    public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+        return dataOperation.get(promise, contents);
+    }
+
+    @Override
+    public List<DataOperationCommand> post(String[][] contents) {
+        return dataOperation.post(attributeNames.clone(), contents);
+    }
+
+    @Override
+    public List<DataOperationCommand> put(Criteria[] criteria, String[][] contents) {
+        checkCriteria(criteria);
+        return dataOperation.put(attributeNames.clone(), criteria, contents);
+    }
+
+    @Override
+    public List<DataOperationCommand> delete(Criteria[] criteria) {
+        checkCriteria(criteria);
+        return dataOperation.delete(attributeNames.clone(), criteria);
+    }
+
+    /**
+     * Checks the criteria refer to the prepared criteria attribute names, in
+     * the same order
+     *
+     * @param criteria
+     *            the criteria to check
+     */
+    protected void checkCriteria(Criteria[] criteria) {
+        int length = criteria != null ? criteria.length : 0;
+        if (length != criteriaAttributeNames.length) {
+            throw new IllegalArgumentException(
+                    String.format("expected %d criteria, got %d", criteriaAttributeNames.length, length));
+        }
+        for (int i = 0; i < length; i++) {
+            if (!criteriaAttributeNames[i].equals(criteria[i].getAttributeName())) {
+                throw new IllegalArgumentException(String.format("criteria %d: expected attribute %s, got %s", i,
+                        criteriaAttributeNames[i], criteria[i].getAttributeName()));
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.Arrays;
+
+/**
+ * Map of non-negative int keys (e.g. attribute ids of an
+ * {@link AttributeSymbolTable}) to int values, without boxing.
+ * <p>
+ * Entries are stored in two arrays with open addressing (linear probing), so
+ * a lookup is a multiplication and one or a few array reads. The map is not
+ * synchronized.
+ */
+public class IntIntMap {
+
+    private static final int FREE = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    /**
+     * Builds an empty map that returns -1 for missing keys
+     */
+    public IntIntMap() {
+        this(DEFAULT_CAPACITY, -1);
+    }
+
+    /**
+     * Builds an empty map
+     *
+     * @param expectedSize
+     *            the expected number of entries
+     * @param missingValue
+     *            the value returned by {@link #get(int)} for missing keys
+     */
+    public IntIntMap(int expectedSize, int missingValue) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expected size must not be negative: " + expectedSize);
+        }
+        this.missingValue = missingValue;
+        // keep the load factor at most 0.5
+        allocate(Math.max(DEFAULT_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+    }
+
+    private int slot(int key) {
+        return (key * 0x9E3779B9) >>> shift & mask;
+    }
+
+    /**
+     * Associates a value to a key
+     *
+     * @param key
+     *            the key (non-negative)
+     * @param value
+     *            the value
+     * @return the previous value of the key, or the missing value
+     */
+    public int put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("key must not be negative: " + key);
+        }
+        int i = slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return missingValue;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != FREE) {
+                int i = slot(oldKeys[j]);
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return the value of the key, or the missing value
+     */
+    public int get(int key) {
+        if (key >= 0) {
+            int i = slot(key);
+            int k;
+            while ((k = keys[i]) != FREE) {
+                if (k == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+        }
+        return missingValue;
+    }
+
+    /**
+     * @param key
+     *            the key
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(int key) {
+        if (key >= 0) {
+            int i = slot(key);
+            int k;
+            while ((k = keys[i]) != FREE) {
+                if (k == key) {
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the keys, in no particular order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int key : keys) {
+            if (key != FREE) {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+}
@@ -0,0 +1,71 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Chunked Outbound POST or PUT operation, as returned by
+ * {@link DataOperation#openPost(String[])} and
+ * {@link DataOperation#openPut(String[], Criteria[])}.
+ * <p>
+ * The unprotected rows are pushed by batches. Each batch is protected as soon
+ * as it is pushed, and the protected batches are returned as a {@code List}
+ * of {@code DataOperationCommand}, with the same guarantees than the Outbound
+ * POST and PUT operations:
+ * <br>- There is one {@code DataOperationCommand} per CSP.
+ * <br>- The number of rows in {@code DataOperationCommand.protectedContents}
+ * is equal for all the CSPs, except for CSPs that are not involved (zero
+ * rows).
+ * <br>So, the protected rows of the successive batches stay aligned across
+ * the CSPs.
+ */
+public interface OutboundSession extends AutoCloseable {
+
+    /**
+     * @return the attribute names of the pushed rows
+     */
+    public String[] getAttributeNames();
+
+    /**
+     * Protects a batch of rows.
+     *
+     * @param contents
+     *            unprotected records, with the same column size than the
+     *            attribute names. The batch may contain zero rows.
+     * @return a {@code List} of {@code DataOperationCommand} (one per CSP)
+     *         that contain the protected batch.
+     */
+    public List<DataOperationCommand> push(String[][] contents);
+
+    /**
+     * Protects all the rows of an iterator, batch by batch.
+     *
+     * @param rows
+     *            the unprotected records
+     * @param batchSize
+     *            the maximum number of rows per batch
+     * @param sink
+     *            consumer of the protected batches
+     */
+    public default void pushAll(Iterator<String[]> rows, int batchSize, Consumer<List<DataOperationCommand>> sink) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        List<String[]> batch = new ArrayList<>(Math.min(batchSize, 1024));
+        while (rows.hasNext()) {
+            batch.add(rows.next());
+            if (batch.size() == batchSize || !rows.hasNext()) {
+                sink.accept(push(batch.toArray(new String[batch.size()][])));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Ends the session. No more batch can be pushed.
+     */
+    @Override
+    public void close();
+}
@@ -0,0 +1,100 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A data operation prepared for a given set of attribute names and criteria
+ * attribute names, as returned by
+ * {@link DataOperation#prepare(String[], String[])}.
+ * <p>
+ * Protection modules that return their own implementation resolve the
+ * attribute names once, when the operation is prepared, and cache anything
+ * that only depends on them (resolved names, protected attribute names,
+ * mappings, ...). Then, each execution only binds the criteria (operators and
+ * values) and the contents.
+ * <p>
+ * The {@link DefaultPreparedDataOperation fallback} returned by default by
+ * {@link DataOperation#prepare(String[], String[])} cannot pass resolved names
+ * to the data operation: its executions resolve the attribute names again.
+ * <p>
+ * The semantic of each execution is the one of the corresponding
+ * {@link DataOperation} method called with the prepared attribute names.
+ */
+public interface PreparedDataOperation {
+
+    /**
+     * @return the prepared attribute names
+     */
+    public String[] getAttributeNames();
+
+    /**
+     * @return the prepared criteria attribute names
+     */
+    public String[] getCriteriaAttributeNames();
+
+    /** Returns the protected attribute names managed by each CSP.
+     * <p>There is one array per CSP, even for CSPs that are not involved (in this case the array is empty).
+     * <br>- The protected attribute names are in the same order than the prepared attribute names.
+     * </p>
+     * @return a {@code List} of protected attribute names (one array per CSP).
+     */
+    public List<String[]> getProtectedAttributeNames();
+
+    /** Returns the mappings between the prepared attribute names and the protected attribute names.
+     * <p>There is one {@code Map} per CSP, even for CSPs that are not involved (in this case the {@code Map} is empty).
+     * </p>
+     * @return a {@code List} of unmodifiable {@code Map} (one per CSP).
+     */
+    public List<Map<String, String>> getMappings();
+
+    /** Builds the criteria to pass to an execution.
+     * @param operators the operators, in the same order than the prepared criteria attribute names.
+     * @param values the values, in the same order than the prepared criteria attribute names.
+     * @return the criteria.
+     */
+    public default Criteria[] bind(String[] operators, String[] values) {
+        String[] criteriaAttributeNames = getCriteriaAttributeNames();
+        if (operators.length != criteriaAttributeNames.length || values.length != criteriaAttributeNames.length) {
+            throw new IllegalArgumentException(String.format("expected %d operators and values, got %d and %d",
+                    criteriaAttributeNames.length, operators.length, values.length));
+        }
+        Criteria[] criteria = new Criteria[criteriaAttributeNames.length];
+        for (int i = 0; i < criteria.length; i++) {
+            criteria[i] = new Criteria(criteriaAttributeNames[i], operators[i], values[i]);
+        }
+        return criteria;
+    }
+
+    /** Outbound GET operation (see {@link DataOperation#get(String[], Criteria[])}).
+     * @param criteria conditions of the get call, on the prepared criteria attribute names.
+     * @return a {@code List} of {@code DataOperationCommands} (the promise).
+     */
+    public List<DataOperationCommand> get(Criteria[] criteria);
+
+    /** Inbound GET operation (see {@link DataOperation#get(List, List)}).
+     * @param promise references to the original call.
+     * @param contents data returned by the CSP.
+     * @return a {@code List} of {@code DataOperationResults}.
+     */
+    public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents);
+
+    /** Outbound POST operation (see {@link DataOperation#post(String[], String[][])}).
+     * @param contents unprotected records, in the same order than the prepared attribute names.
+     * @return a {@code List} of {@code DataOperationCommand}
+     */
+    public List<DataOperationCommand> post(String[][] contents);
+
+    /** Outbound PUT operation (see {@link DataOperation#put(String[], Criteria[], String[][])}).
+     * @param criteria conditions of the put call, on the prepared criteria attribute names.
+     * @param contents unprotected records, in the same order than the prepared attribute names.
+     * @return a {@code List} of {@code DataOperationCommand}
+     */
+    public List<DataOperationCommand> put(Criteria[] criteria, String[][] contents);
+
+    /** Outbound DELETE operation (see {@link DataOperation#delete(String[], Criteria[])}).
+     * @param criteria conditions of the delete call, on the prepared criteria attribute names.
+     * @return a {@code List} of {@code DataOperationCommand}
+     */
+    public List<DataOperationCommand> delete(Criteria[] criteria);
+}
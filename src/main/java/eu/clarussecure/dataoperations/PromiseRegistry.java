@@ -0,0 +1,362 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+/**
+ * Registry of the promises returned by the Outbound operations, kept by the
+ * protocol module until the CSPs respond.
+ * <p>
+ * Each registered promise gets a unique identifier, that is set as the
+ * {@link DataOperationResult#getId() id} of its commands, and is looked up or
+ * removed by this identifier when the responses of the CSPs are received.
+ * Identifiers are issued by an atomic counter (skipping 0 and the identifiers
+ * still in use when it wraps around) and promises are stored in a concurrent
+ * map, so registrations and lookups do not contend with each other.
+ * <p>
+ * Promises that are not removed (e.g. because a CSP timed out) are evicted
+ * once their time to live is elapsed. The oldest promises are also evicted
+ * when the estimated size of the registered promises exceeds the memory
+ * budget. Eviction is done when promises are registered, and by
+ * {@link #evictExpired()} (which the protocol module may schedule). An
+ * eviction listener is notified of the evicted promises (e.g. to fail the
+ * pending requests).
+ */
+public class PromiseRegistry {
+
+    /**
+     * Registered promise
+     */
+    private static final class Entry {
+        private final int id;
+        private final long expiration;
+        private final long size;
+        private volatile List<DataOperationCommand> promise;
+
+        private Entry(int id, List<DataOperationCommand> promise, long expiration, long size) {
+            this.id = id;
+            this.promise = promise;
+            this.expiration = expiration;
+            this.size = size;
+        }
+    }
+
+    private final long timeToLive;
+    private final long memoryBudget;
+    private final BiConsumer<Integer, List<DataOperationCommand>> evictionListener;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, Entry> promises;
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicLong memoryUsage = new AtomicLong();
+    private final LongAdder registeredCount = new LongAdder();
+    private final LongAdder removedCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    /**
+     * Builds a registry without eviction listener
+     *
+     * @param timeToLive
+     *            the time after which a promise is evicted
+     * @param unit
+     *            the unit of the time to live
+     * @param memoryBudget
+     *            the estimated size of the registered promises (bytes) above
+     *            which the oldest promises are evicted
+     */
+    public PromiseRegistry(long timeToLive, TimeUnit unit, long memoryBudget) {
+        this(timeToLive, unit, memoryBudget, null);
+    }
+
+    /**
+     * Builds a registry
+     *
+     * @param timeToLive
+     *            the time after which a promise is evicted
+     * @param unit
+     *            the unit of the time to live
+     * @param memoryBudget
+     *            the estimated size of the registered promises (bytes) above
+     *            which the oldest promises are evicted
+     * @param evictionListener
+     *            notified of the identifier and the promise of each evicted
+     *            promise, by the thread that evicts it (may be {@code null})
+     */
+    public PromiseRegistry(long timeToLive, TimeUnit unit, long memoryBudget,
+            BiConsumer<Integer, List<DataOperationCommand>> evictionListener) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("time to live must be positive: " + timeToLive);
+        }
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memory budget must be positive: " + memoryBudget);
+        }
+        this.timeToLive = unit.toNanos(timeToLive);
+        this.memoryBudget = memoryBudget;
+        this.evictionListener = evictionListener;
+        this.promises = new ConcurrentHashMap<>(256, 0.75f, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Registers a promise. The identifier of the promise is set as the id of
+     * its commands.
+     *
+     * @param promise
+     *            the promise returned by an Outbound operation
+     * @return the identifier of the promise
+     */
+    public int register(List<DataOperationCommand> promise) {
+        long now = System.nanoTime();
+        Entry entry;
+        int id;
+        do {
+            id = nextId.incrementAndGet();
+            if (id == 0) {
+                continue;
+            }
+            entry = new Entry(id, promise, now + timeToLive, estimateSize(promise));
+            if (promises.putIfAbsent(id, entry) == null) {
+                break;
+            }
+        } while (true);
+        for (DataOperationCommand command : promise) {
+            command.id = id;
+        }
+        insertionOrder.add(entry);
+        queuedCount.incrementAndGet();
+        memoryUsage.addAndGet(entry.size);
+        registeredCount.increment();
+        evict(now);
+        return id;
+    }
+
+    /**
+     * Returns a registered promise
+     *
+     * @param id
+     *            the identifier of the promise
+     * @return the promise, or {@code null} if it has been removed or evicted
+     */
+    public List<DataOperationCommand> get(int id) {
+        Entry entry = promises.get(id);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (entry.expiration - System.nanoTime() <= 0) {
+            if (release(entry)) {
+                expiredCount.increment();
+                notifyEviction(entry);
+            }
+            missCount.increment();
+            return null;
+        }
+        return entry.promise;
+    }
+
+    /**
+     * Removes a registered promise (e.g. once the CSPs responded)
+     *
+     * @param id
+     *            the identifier of the promise
+     * @return the promise, or {@code null} if it has already been removed or
+     *         evicted
+     */
+    public List<DataOperationCommand> remove(int id) {
+        Entry entry = promises.get(id);
+        if (entry != null) {
+            List<DataOperationCommand> promise = entry.promise;
+            if (release(entry)) {
+                entry.promise = null;
+                removedCount.increment();
+                return promise;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Evicts the promises whose time to live is elapsed
+     */
+    public void evictExpired() {
+        evict(System.nanoTime());
+    }
+
+    /**
+     * Evicts the expired promises, then the oldest promises while the memory
+     * budget is exceeded. Removed promises are purged from the insertion order
+     * on the way.
+     */
+    private void evict(long now) {
+        Entry entry;
+        while ((entry = insertionOrder.peek()) != null) {
+            boolean expired = entry.expiration - now <= 0;
+            boolean overBudget = memoryUsage.get() > memoryBudget;
+            if (entry.promise != null && !expired && !overBudget) {
+                break;
+            }
+            if (insertionOrder.remove(entry)) {
+                queuedCount.decrementAndGet();
+                if (release(entry)) {
+                    (expired ? expiredCount : evictedCount).increment();
+                    notifyEviction(entry);
+                }
+            }
+        }
+        // removed promises that are behind an older pending one
+        int queued = queuedCount.get();
+        if (queued > 64 && queued > 2 * promises.size()) {
+            insertionOrder.removeIf(e -> {
+                if (e.promise == null) {
+                    queuedCount.decrementAndGet();
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Removes an entry from the map
+     *
+     * @return true if the entry was removed by this call
+     */
+    private boolean release(Entry entry) {
+        if (promises.remove(entry.id, entry)) {
+            memoryUsage.addAndGet(-entry.size);
+            return true;
+        }
+        return false;
+    }
+
+    private void notifyEviction(Entry entry) {
+        List<DataOperationCommand> promise = entry.promise;
+        entry.promise = null;
+        if (evictionListener != null && promise != null) {
+            evictionListener.accept(entry.id, promise);
+        }
+    }
+
+    /**
+     * Estimates the memory used by a promise
+     *
+     * @param promise
+     *            the promise
+     * @return the estimated size (bytes)
+     */
+    protected long estimateSize(List<DataOperationCommand> promise) {
+        long size = 64;
+        for (DataOperationCommand command : promise) {
+            size += 64 + estimateSize(command.attributeNames) + estimateSize(command.protectedAttributeNames)
+                    + estimateSize(command.extraProtectedAttributeNames);
+            if (command.mapping != null) {
+                for (Map.Entry<String, String> e : command.mapping.entrySet()) {
+                    size += 32 + estimateSize(e.getKey()) + estimateSize(e.getValue());
+                }
+            }
+            if (command.protectedContents != null) {
+                for (String[] row : command.protectedContents) {
+                    size += estimateSize(row);
+                }
+            }
+            ColumnarTable table = command.protectedContentsTable;
+            if (table != null) {
+                size += 32L * table.getRowCount() * table.getColumnCount();
+            }
+            size += estimateSize(command.criteria) + estimateSize(command.residualCriteria)
+                    + estimateSize(command.residualAttributeNames);
+        }
+        return size;
+    }
+
+    private static long estimateSize(Criteria[] criteria) {
+        long size = 0;
+        if (criteria != null) {
+            for (Criteria c : criteria) {
+                size += 32 + estimateSize(c.getAttributeName()) + estimateSize(c.getOperator())
+                        + estimateSize(c.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(String[] values) {
+        if (values == null) {
+            return 0;
+        }
+        long size = 16 + 8L * values.length;
+        for (String value : values) {
+            size += estimateSize(value);
+        }
+        return size;
+    }
+
+    private static long estimateSize(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    /**
+     * @return the number of registered promises
+     */
+    public int size() {
+        return promises.size();
+    }
+
+    /**
+     * @return the estimated size of the registered promises (bytes)
+     */
+    public long getMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    /**
+     * @return the number of promises registered since the creation of the
+     *         registry
+     */
+    public long getRegisteredCount() {
+        return registeredCount.sum();
+    }
+
+    /**
+     * @return the number of promises removed by {@link #remove(int)}
+     */
+    public long getRemovedCount() {
+        return removedCount.sum();
+    }
+
+    /**
+     * @return the number of lookups or removals of promises that were not
+     *         registered anymore
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of promises evicted because their time to live was
+     *         elapsed
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * @return the number of promises evicted because the memory budget was
+     *         exceeded
+     */
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+}
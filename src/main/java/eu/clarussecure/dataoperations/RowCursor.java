@@ -0,0 +1,27 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.Iterator;
+
+/**
+ * Pull-based cursor over reconstructed rows, as returned by the streaming
+ * Inbound GET operation
+ * ({@link DataOperation#get(java.util.List, java.util.List, int)}).
+ * <p>
+ * Each row has the same size than {@link #getAttributeNames()} and its values
+ * are in the same order. Rows are produced on demand, so callers must close
+ * the cursor if they do not consume all the rows.
+ */
+public interface RowCursor extends Iterator<String[]>, AutoCloseable {
+
+    /**
+     * @return the attribute names of the reconstructed rows
+     */
+    public String[] getAttributeNames();
+
+    /**
+     * Releases the resources held by the cursor (e.g. the CSP row iterators
+     * that are {@link AutoCloseable}).
+     */
+    @Override
+    public void close();
+}
@@ -0,0 +1,472 @@
+package eu.clarussecure.dataoperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Store of the rows returned by the CSPs in the Inbound GET operation, that
+ * spills them to files once they exceed a memory threshold.
+ * <p>
+ * The protocol module adds the rows of each CSP as they are received, then
+ * passes the row iterators of the store to the streaming Inbound GET
+ * operation ({@link DataOperation#get(List, List, int)}), so results larger
+ * than the heap can be reconstructed:
+ *
+ * <pre>
+ * try (SpillableRowStore store = new SpillableRowStore(promise.size(), 64 &lt;&lt; 20)) {
+ *     for (int csp = 0; csp &lt; promise.size(); csp++) {
+ *         store.addAll(csp, receive(csp));
+ *     }
+ *     try (RowCursor cursor = dataOperation.get(promise, store.iterators(), 1024)) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * As long as the estimated size of the rows of all the CSPs is below the
+ * threshold, they are kept in memory. Once it is crossed, the rows of each
+ * CSP are written to a temporary file (when the next row of the CSP is
+ * added), and so are the rows added afterwards. Each row is written as its
+ * number of values followed by the values, each one prefixed by its length
+ * (variable-length integers, the length of a {@code null} value is 0 and the
+ * length of other values is shifted by 1), in UTF-8. The files are read back
+ * through memory-mapped windows, so the spilled rows are not held in the
+ * heap.
+ * <p>
+ * Rows can be added concurrently for different CSPs. Rows added after the
+ * creation of the iterators are not seen by them. Closing the store deletes
+ * the files.
+ */
+public class SpillableRowStore implements AutoCloseable {
+
+    /** Default size of the memory-mapped windows (bytes) */
+    public static final int DEFAULT_WINDOW_SIZE = 16 << 20;
+
+    private static final int WRITE_BUFFER_SIZE = 64 << 10;
+    private static final int MAX_VARINT_SIZE = 5;
+
+    private final long memoryThreshold;
+    private final Path directory;
+    private final int windowSize;
+    private final Partition[] partitions;
+    private long memoryUsage;
+    private boolean spilled;
+    private boolean closed;
+
+    /**
+     * Builds a store that spills to the default temporary directory
+     *
+     * @param cspCount
+     *            the number of CSPs
+     * @param memoryThreshold
+     *            the estimated size of the rows (bytes) above which the rows
+     *            are spilled
+     */
+    public SpillableRowStore(int cspCount, long memoryThreshold) {
+        this(cspCount, memoryThreshold, null, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Builds a store
+     *
+     * @param cspCount
+     *            the number of CSPs
+     * @param memoryThreshold
+     *            the estimated size of the rows (bytes) above which the rows
+     *            are spilled
+     * @param directory
+     *            the directory of the spill files ({@code null} for the
+     *            default temporary directory)
+     * @param windowSize
+     *            the size of the memory-mapped windows used to read the spill
+     *            files (bytes)
+     */
+    public SpillableRowStore(int cspCount, long memoryThreshold, Path directory, int windowSize) {
+        if (cspCount < 0) {
+            throw new IllegalArgumentException("number of CSPs must not be negative: " + cspCount);
+        }
+        if (memoryThreshold < 0) {
+            throw new IllegalArgumentException("memory threshold must not be negative: " + memoryThreshold);
+        }
+        if (windowSize < MAX_VARINT_SIZE) {
+            throw new IllegalArgumentException("window size too small: " + windowSize);
+        }
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+        this.windowSize = windowSize;
+        this.partitions = new Partition[cspCount];
+        for (int csp = 0; csp < cspCount; csp++) {
+            partitions[csp] = new Partition(csp);
+        }
+    }
+
+    /**
+     * @return the number of CSPs
+     */
+    public int getCspCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @param csp
+     *            the index of the CSP
+     * @return the number of rows added for the CSP
+     */
+    public long getRowCount(int csp) {
+        Partition partition = partitions[csp];
+        synchronized (partition) {
+            return partition.rowCount;
+        }
+    }
+
+    /**
+     * @return true if the rows have been spilled to files
+     */
+    public synchronized boolean isSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Adds a row returned by a CSP
+     *
+     * @param csp
+     *            the index of the CSP
+     * @param row
+     *            the row
+     */
+    public void add(int csp, String[] row) {
+        Partition partition = partitions[csp];
+        synchronized (partition) {
+            checkOpen();
+            if (partition.file == null) {
+                long size = estimateSize(row);
+                if (reserve(size)) {
+                    partition.rows.add(row);
+                    partition.rowCount++;
+                    return;
+                }
+                partition.spill();
+            }
+            partition.write(row);
+            partition.rowCount++;
+        }
+    }
+
+    /**
+     * Adds rows returned by a CSP
+     *
+     * @param csp
+     *            the index of the CSP
+     * @param rows
+     *            the rows
+     */
+    public void addAll(int csp, String[][] rows) {
+        for (String[] row : rows) {
+            add(csp, row);
+        }
+    }
+
+    /**
+     * Reserves memory for a row. Once the threshold is crossed, no more
+     * memory is reserved: each partition spills when its next row is added.
+     */
+    private synchronized boolean reserve(long size) {
+        if (!spilled && memoryUsage + size > memoryThreshold) {
+            spilled = true;
+        }
+        if (spilled) {
+            return false;
+        }
+        memoryUsage += size;
+        return true;
+    }
+
+    private static long estimateSize(String[] row) {
+        long size = 16 + 4L * row.length;
+        for (String value : row) {
+            if (value != null) {
+                size += 40 + 2L * value.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns iterators over the rows of each CSP, to pass to the streaming
+     * Inbound GET operation. The iterators are {@link AutoCloseable}: closing
+     * them releases the memory-mapped windows (the files are deleted when the
+     * store is closed).
+     *
+     * @return the row iterators (one per CSP)
+     * @throws IllegalStateException
+     *             if the CSPs that returned rows did not return the same
+     *             number of rows
+     */
+    public List<Iterator<String[]>> iterators() {
+        long rowCount = 0;
+        List<Iterator<String[]>> iterators = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                checkOpen();
+                if (partition.rowCount != 0) {
+                    if (rowCount != 0 && rowCount != partition.rowCount) {
+                        throw new IllegalStateException(String.format("CSP %d returned %d rows instead of %d",
+                                partition.csp, partition.rowCount, rowCount));
+                    }
+                    rowCount = partition.rowCount;
+                }
+                iterators.add(partition.iterator());
+            }
+        }
+        return iterators;
+    }
+
+    /**
+     * Deletes the spill files and releases the rows kept in memory
+     */
+    @Override
+    public void close() {
+        IOException failure = null;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                try {
+                    partition.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        synchronized (this) {
+            closed = true;
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private synchronized void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("row store is closed");
+        }
+    }
+
+    /**
+     * Rows of a CSP, either in memory or in a file
+     */
+    private class Partition {
+        private final int csp;
+        private List<String[]> rows = new ArrayList<>();
+        private long rowCount;
+        private Path file;
+        private FileChannel channel;
+        private ByteBuffer buffer;
+
+        Partition(int csp) {
+            this.csp = csp;
+        }
+
+        void spill() {
+            try {
+                file = directory == null ? Files.createTempFile("clarus-csp" + csp + "-", ".rows")
+                        : Files.createTempFile(directory, "clarus-csp" + csp + "-", ".rows");
+                channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+                List<String[]> kept = rows;
+                rows = null;
+                for (String[] row : kept) {
+                    write(row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void write(String[] row) {
+            try {
+                ensureWritable(MAX_VARINT_SIZE);
+                putVarInt(row.length);
+                for (String value : row) {
+                    if (value == null) {
+                        ensureWritable(MAX_VARINT_SIZE);
+                        putVarInt(0);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        ensureWritable(MAX_VARINT_SIZE);
+                        putVarInt(bytes.length + 1);
+                        for (int offset = 0; offset < bytes.length;) {
+                            ensureWritable(1);
+                            int n = Math.min(bytes.length - offset, buffer.remaining());
+                            buffer.put(bytes, offset, n);
+                            offset += n;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void putVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensureWritable(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        Iterator<String[]> iterator() {
+            if (file == null) {
+                return new ArrayList<>(rows).iterator();
+            }
+            try {
+                flush();
+                return new SpilledRowIterator(file, channel.size(), rowCount, windowSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() throws IOException {
+            rows = null;
+            buffer = null;
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                channel = null;
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterator over the rows of a spill file, read through memory-mapped
+     * windows
+     */
+    private static class SpilledRowIterator implements Iterator<String[]>, AutoCloseable {
+        private final long size;
+        private final int windowSize;
+        private FileChannel channel;
+        private MappedByteBuffer window;
+        private long windowPosition;
+        private long remainingRows;
+        private byte[] bytes = new byte[256];
+
+        SpilledRowIterator(Path file, long size, long rowCount, int windowSize) throws IOException {
+            this.size = size;
+            this.windowSize = windowSize;
+            this.remainingRows = rowCount;
+            if (rowCount > 0) {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remainingRows > 0;
+        }
+
+        @Override
+        public String[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (channel == null) {
+                throw new IllegalStateException("row iterator is closed");
+            }
+            try {
+                String[] row = new String[getVarInt()];
+                for (int i = 0; i < row.length; i++) {
+                    int length = getVarInt() - 1;
+                    if (length >= 0) {
+                        ensureReadable(length);
+                        if (bytes.length < length) {
+                            bytes = new byte[Math.max(length, bytes.length * 2)];
+                        }
+                        window.get(bytes, 0, length);
+                        row[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                    }
+                }
+                if (--remainingRows == 0) {
+                    close();
+                }
+                return row;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int getVarInt() throws IOException {
+            ensureReadable((int) Math.min(MAX_VARINT_SIZE, size - position()));
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = window.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("corrupted spill file: invalid length");
+        }
+
+        private long position() {
+            return window == null ? 0 : windowPosition + window.position();
+        }
+
+        /**
+         * Maps a new window at the current position if the current one has
+         * less than {@code n} bytes left
+         */
+        private void ensureReadable(int n) throws IOException {
+            if (window != null && window.remaining() >= n) {
+                return;
+            }
+            long position = position();
+            long length = Math.min(Math.max(windowSize, n), size - position);
+            if (length < n) {
+                throw new IllegalStateException("corrupted spill file: unexpected end of file");
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            windowPosition = position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package eu.clarussecure.dataoperations.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary data to append to a call to a CSP (e.g. an encrypted blob or a part
+ * of a split file), as an alternative to the {@code InputStream} extra binary
+ * contents of {@code DataOperationCommand}.
+ * <p>
+ * Unlike a stream, a payload has a known size and can be read several times
+ * (e.g. to retry a call). It can be transferred to a channel (e.g. a socket)
+ * without being copied in the Java heap: payloads backed by a file region are
+ * transferred with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+ * and payloads backed by a direct or memory-mapped buffer are written as-is.
+ */
+public abstract class BinaryPayload {
+
+    /**
+     * @return the size of the payload (bytes)
+     */
+    public abstract long size();
+
+    /**
+     * Opens a stream on the payload. Each call returns a new stream that
+     * reads the payload from its beginning.
+     *
+     * @return a stream on the payload, to be closed by the caller
+     * @throws IOException
+     *             if the payload cannot be read
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * Writes a part of the payload to a channel
+     *
+     * @param target
+     *            the channel to write to (not closed)
+     * @param position
+     *            the position of the first byte to write
+     * @param count
+     *            the number of bytes to write
+     * @return the number of bytes written (i.e. {@code count})
+     * @throws IOException
+     *             if the payload cannot be read or the channel cannot be
+     *             written
+     */
+    public abstract long transferTo(WritableByteChannel target, long position, long count) throws IOException;
+
+    /**
+     * Writes the payload to a channel
+     *
+     * @param target
+     *            the channel to write to (not closed)
+     * @return the number of bytes written (i.e. {@link #size()})
+     * @throws IOException
+     *             if the payload cannot be read or the channel cannot be
+     *             written
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return transferTo(target, 0, size());
+    }
+
+    /**
+     * Returns the payload as a read-only buffer. File regions are
+     * memory-mapped.
+     *
+     * @return a buffer that contains the payload, from its position to its
+     *         limit
+     * @throws IOException
+     *             if the payload cannot be read
+     */
+    public abstract ByteBuffer asByteBuffer() throws IOException;
+
+    protected void checkRange(long position, long count) {
+        if (position < 0 || count < 0 || count > size() - position) {
+            throw new IndexOutOfBoundsException(
+                    String.format("range [%d, %d) out of payload of %d bytes", position, position + count, size()));
+        }
+    }
+
+    /**
+     * Builds a payload backed by a buffer (e.g. a direct buffer). The buffer
+     * is not copied: its content must not be modified while the payload is
+     * used.
+     *
+     * @param buffer
+     *            the buffer, from its position to its limit
+     * @return the payload
+     */
+    public static BinaryPayload wrap(ByteBuffer buffer) {
+        return new ByteBufferPayload(buffer);
+    }
+
+    /**
+     * Builds a payload backed by an array. The array is not copied.
+     *
+     * @param bytes
+     *            the bytes
+     * @return the payload
+     */
+    public static BinaryPayload wrap(byte[] bytes) {
+        return new ByteBufferPayload(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Builds a payload backed by a whole file. The file is opened on demand
+     * (i.e. each time the payload is read), so it must not be deleted or
+     * modified while the payload is used.
+     *
+     * @param file
+     *            the file
+     * @return the payload
+     * @throws IOException
+     *             if the size of the file cannot be read
+     */
+    public static BinaryPayload of(Path file) throws IOException {
+        return new FileRegionPayload(file, 0, Files.size(file));
+    }
+
+    /**
+     * Builds a payload backed by a region of a file. The file is opened on
+     * demand (i.e. each time the payload is read), so it must not be deleted
+     * or modified while the payload is used.
+     *
+     * @param file
+     *            the file
+     * @param position
+     *            the position of the region in the file
+     * @param size
+     *            the size of the region
+     * @return the payload
+     */
+    public static BinaryPayload of(Path file, long position, long size) {
+        return new FileRegionPayload(file, position, size);
+    }
+
+    /**
+     * Builds a payload backed by a memory-mapped region of a file. The region
+     * is mapped once, and stays mapped until the payload is garbage collected.
+     *
+     * @param file
+     *            the file
+     * @param position
+     *            the position of the region in the file
+     * @param size
+     *            the size of the region (at most {@code Integer.MAX_VALUE})
+     * @return the payload
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    public static BinaryPayload map(Path file, long position, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ByteBufferPayload(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package eu.clarussecure.dataoperations.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Payload backed by a buffer (heap, direct or memory-mapped)
+ */
+public class ByteBufferPayload extends BinaryPayload {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Builds a payload. The buffer is not copied.
+     *
+     * @param buffer
+     *            the buffer, from its position to its limit
+     */
+    public ByteBufferPayload(ByteBuffer buffer) {
+        this.buffer = buffer.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public long size() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public InputStream openStream() {
+        ByteBuffer source = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, source.remaining());
+                source.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                int skipped = (int) Math.max(0, Math.min(n, source.remaining()));
+                source.position(source.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return source.remaining();
+            }
+        };
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+        checkRange(position, count);
+        ByteBuffer source = buffer.duplicate();
+        source.position((int) position);
+        source.limit((int) (position + count));
+        while (source.hasRemaining()) {
+            target.write(source);
+        }
+        return count;
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return buffer.duplicate();
+    }
+}
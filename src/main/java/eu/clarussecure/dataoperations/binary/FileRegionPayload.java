@@ -0,0 +1,142 @@
+package eu.clarussecure.dataoperations.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Payload backed by a region of a file. The file is opened each time the
+ * payload is read, and is transferred to channels with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} (i.e.
+ * without copy in the Java heap when the operating system supports it).
+ */
+public class FileRegionPayload extends BinaryPayload {
+
+    private final Path file;
+    private final long position;
+    private final long size;
+
+    /**
+     * Builds a payload
+     *
+     * @param file
+     *            the file
+     * @param position
+     *            the position of the region in the file
+     * @param size
+     *            the size of the region
+     */
+    public FileRegionPayload(Path file, long position, long size) {
+        if (position < 0 || size < 0) {
+            throw new IllegalArgumentException(String.format("invalid region: position %d, size %d", position, size));
+        }
+        this.file = file;
+        this.position = position;
+        this.size = size;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            channel.position(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        InputStream in = Channels.newInputStream(channel);
+        return new InputStream() {
+            private long remaining = size;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int b = in.read();
+                if (b != -1) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (remaining == 0) {
+                    return -1;
+                }
+                int n = in.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(remaining, Integer.MAX_VALUE);
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+        checkRange(position, count);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long transferred = 0;
+            while (transferred < count) {
+                long n = channel.transferTo(this.position + position + transferred, count - transferred, target);
+                if (n <= 0 && this.position + position + transferred >= channel.size()) {
+                    throw new IOException(String.format("%s is shorter than the payload", file));
+                }
+                transferred += n;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Memory-maps the region. The file is checked to contain the whole
+     * region, as accessing a mapping beyond the end of a file fails
+     * unpredictably.
+     *
+     * @return the mapped region
+     * @throws IOException
+     *             if the file cannot be mapped, or is shorter than the region
+     */
+    @Override
+    public ByteBuffer asByteBuffer() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (position + size > channel.size()) {
+                throw new IOException(String.format("%s is shorter than the payload", file));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.BitSet;
+
+import eu.clarussecure.dataoperations.table.Column;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+import eu.clarussecure.dataoperations.table.DictionaryColumn;
+
+/**
+ * Criteria on the values of a single column
+ */
+abstract class ColumnCriteria extends CompiledCriteria {
+
+    protected final int column;
+
+    protected ColumnCriteria(int column) {
+        this.column = column;
+    }
+
+    /**
+     * Tests a non {@code null} value
+     *
+     * @param value
+     *            the value
+     * @return true if the value satisfies the criteria
+     */
+    protected abstract boolean matches(String value);
+
+    /**
+     * @return true if {@code null} values satisfy the criteria
+     */
+    protected boolean matchesNull() {
+        return false;
+    }
+
+    /**
+     * Tests a value of a column. Criteria on typed values override it to
+     * avoid converting values to {@code String}.
+     *
+     * @param values
+     *            the column
+     * @param row
+     *            the index of the row
+     * @return true if the value satisfies the criteria
+     */
+    protected boolean matches(Column values, int row) {
+        String value = values.get(row);
+        return value == null ? matchesNull() : matches(value);
+    }
+
+    @Override
+    public boolean test(String[] row) {
+        String value = column < row.length ? row[column] : null;
+        return value == null ? matchesNull() : matches(value);
+    }
+
+    @Override
+    public void filter(ColumnarTable table, BitSet selection) {
+        Column values = table.getColumn(column);
+        if (values instanceof DictionaryColumn) {
+            // evaluate each distinct value once
+            DictionaryColumn dictionary = (DictionaryColumn) values;
+            byte[] results = new byte[dictionary.getCardinality()];
+            boolean matchesNull = matchesNull();
+            for (int row = selection.nextSetBit(0); row >= 0; row = selection.nextSetBit(row + 1)) {
+                int code = dictionary.getCode(row);
+                boolean matches;
+                if (code < 0) {
+                    matches = matchesNull;
+                } else {
+                    if (results[code] == 0) {
+                        results[code] = matches(dictionary.decode(code)) ? (byte) 1 : (byte) 2;
+                    }
+                    matches = results[code] == 1;
+                }
+                if (!matches) {
+                    selection.clear(row);
+                }
+            }
+        } else {
+            for (int row = selection.nextSetBit(0); row >= 0; row = selection.nextSetBit(row + 1)) {
+                if (!matches(values, row)) {
+                    selection.clear(row);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import eu.clarussecure.dataoperations.table.Column;
+import eu.clarussecure.dataoperations.table.DoubleColumn;
+import eu.clarussecure.dataoperations.table.LongColumn;
+
+/**
+ * Comparison of the values of a column with a constant, as numbers, dates or
+ * strings
+ */
+class ComparisonCriteria extends ColumnCriteria {
+
+    enum Comparison {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        private Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        boolean test(int comparison) {
+            switch (this) {
+            case EQ:
+                return comparison == 0;
+            case NE:
+                return comparison != 0;
+            case LT:
+                return comparison < 0;
+            case LE:
+                return comparison <= 0;
+            case GT:
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+            }
+        }
+
+        boolean test(double value, double constant) {
+            switch (this) {
+            case EQ:
+                return value == constant;
+            case NE:
+                return value != constant;
+            case LT:
+                return value < constant;
+            case LE:
+                return value <= constant;
+            case GT:
+                return value > constant;
+            default:
+                return value >= constant;
+            }
+        }
+    }
+
+    enum Kind {
+        NUMBER, DATE, STRING
+    }
+
+    private final Comparison comparison;
+    private final Kind kind;
+    private final double number;
+    private final long date;
+    private final String string;
+
+    ComparisonCriteria(int column, Comparison comparison, String constant, boolean quoted) {
+        super(column);
+        this.comparison = comparison;
+        this.string = constant;
+        Double number = quoted ? null : CriteriaValues.parseNumber(constant);
+        Long date = number == null ? CriteriaValues.parseDate(constant) : null;
+        this.kind = number != null ? Kind.NUMBER : date != null ? Kind.DATE : Kind.STRING;
+        this.number = number != null ? number : Double.NaN;
+        this.date = date != null ? date : 0L;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    protected boolean matches(String value) {
+        switch (kind) {
+        case NUMBER: {
+            Double v = CriteriaValues.parseNumber(value);
+            return v != null && comparison.test(v, number);
+        }
+        case DATE: {
+            Long v = CriteriaValues.parseDate(value);
+            return v != null && comparison.test(Long.compare(v, date));
+        }
+        default:
+            return comparison.test(value.compareTo(string));
+        }
+    }
+
+    @Override
+    protected boolean matches(Column values, int row) {
+        if (kind == Kind.NUMBER) {
+            if (values instanceof LongColumn) {
+                LongColumn longs = (LongColumn) values;
+                return !longs.isNull(row) && comparison.test(longs.getLong(row), number);
+            }
+            if (values instanceof DoubleColumn) {
+                DoubleColumn doubles = (DoubleColumn) values;
+                return !doubles.isNull(row) && comparison.test(doubles.getDouble(row), number);
+            }
+        }
+        return super.matches(values, row);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("$%d %s %s", column, comparison.symbol, string);
+    }
+}
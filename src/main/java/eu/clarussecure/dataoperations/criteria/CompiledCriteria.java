@@ -0,0 +1,231 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+/**
+ * A predicate on the rows of a result set, compiled from criteria by
+ * {@link CriteriaCompiler}: operators are resolved, constants are parsed and
+ * attribute names are bound to column indexes once.
+ * <p>
+ * A compiled criteria can be evaluated on a single row, or on a batch of rows
+ * (row-major {@code String[][]} contents or {@link ColumnarTable}) to narrow a
+ * selection bitmap. Column batches are evaluated column by column, with
+ * primitive values for typed columns and once per distinct value for
+ * dictionary encoded columns.
+ * <p>
+ * As in SQL, a comparison with a {@code null} value is never satisfied (except
+ * by {@code IS NULL}).
+ */
+public abstract class CompiledCriteria {
+
+    /** Criteria satisfied by all the rows */
+    public static final CompiledCriteria TRUE = new CompiledCriteria() {
+        @Override
+        public boolean test(String[] row) {
+            return true;
+        }
+
+        @Override
+        public void filter(ColumnarTable table, BitSet selection) {
+        }
+
+        @Override
+        public String toString() {
+            return "TRUE";
+        }
+    };
+
+    /**
+     * Tests a row
+     *
+     * @param row
+     *            the values of the row
+     * @return true if the row satisfies the criteria
+     */
+    public abstract boolean test(String[] row);
+
+    /**
+     * Narrows a selection of rows to the rows that satisfy the criteria
+     *
+     * @param rows
+     *            the row-major contents
+     * @param selection
+     *            the selected rows, from which the rows that do not satisfy
+     *            the criteria are removed
+     */
+    public void filter(String[][] rows, BitSet selection) {
+        for (int row = selection.nextSetBit(0); row >= 0 && row < rows.length; row = selection.nextSetBit(row + 1)) {
+            if (!test(rows[row])) {
+                selection.clear(row);
+            }
+        }
+    }
+
+    /**
+     * Narrows a selection of rows to the rows that satisfy the criteria
+     *
+     * @param table
+     *            the column-major contents
+     * @param selection
+     *            the selected rows, from which the rows that do not satisfy
+     *            the criteria are removed
+     */
+    public abstract void filter(ColumnarTable table, BitSet selection);
+
+    /**
+     * Evaluates the criteria on all the rows
+     *
+     * @param rows
+     *            the row-major contents
+     * @return the rows that satisfy the criteria
+     */
+    public BitSet select(String[][] rows) {
+        BitSet selection = new BitSet(rows.length);
+        selection.set(0, rows.length);
+        filter(rows, selection);
+        return selection;
+    }
+
+    /**
+     * Evaluates the criteria on all the rows
+     *
+     * @param table
+     *            the column-major contents
+     * @return the rows that satisfy the criteria
+     */
+    public BitSet select(ColumnarTable table) {
+        BitSet selection = new BitSet(table.getRowCount());
+        selection.set(0, table.getRowCount());
+        filter(table, selection);
+        return selection;
+    }
+
+    /**
+     * Builds the conjunction of criteria
+     *
+     * @param criteria
+     *            the criteria
+     * @return a criteria satisfied if all the criteria are satisfied
+     */
+    public static CompiledCriteria and(CompiledCriteria... criteria) {
+        List<CompiledCriteria> operands = new ArrayList<>(criteria.length);
+        for (CompiledCriteria c : criteria) {
+            if (c != TRUE) {
+                operands.add(c);
+            }
+        }
+        return operands.isEmpty() ? TRUE : operands.size() == 1 ? operands.get(0) : new And(operands);
+    }
+
+    /**
+     * Builds the disjunction of criteria
+     *
+     * @param criteria
+     *            the criteria
+     * @return a criteria satisfied if one of the criteria is satisfied
+     */
+    public static CompiledCriteria or(CompiledCriteria... criteria) {
+        for (CompiledCriteria c : criteria) {
+            if (c == TRUE) {
+                return TRUE;
+            }
+        }
+        return criteria.length == 1 ? criteria[0] : new Or(Arrays.asList(criteria.clone()));
+    }
+
+    private static final class And extends CompiledCriteria {
+        private final List<CompiledCriteria> operands;
+
+        private And(List<CompiledCriteria> operands) {
+            this.operands = Collections.unmodifiableList(operands);
+        }
+
+        @Override
+        public boolean test(String[] row) {
+            for (CompiledCriteria operand : operands) {
+                if (!operand.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void filter(String[][] rows, BitSet selection) {
+            for (CompiledCriteria operand : operands) {
+                if (selection.isEmpty()) {
+                    break;
+                }
+                operand.filter(rows, selection);
+            }
+        }
+
+        @Override
+        public void filter(ColumnarTable table, BitSet selection) {
+            for (CompiledCriteria operand : operands) {
+                if (selection.isEmpty()) {
+                    break;
+                }
+                operand.filter(table, selection);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "AND" + operands;
+        }
+    }
+
+    private static final class Or extends CompiledCriteria {
+        private final List<CompiledCriteria> operands;
+
+        private Or(List<CompiledCriteria> operands) {
+            this.operands = Collections.unmodifiableList(operands);
+        }
+
+        @Override
+        public boolean test(String[] row) {
+            for (CompiledCriteria operand : operands) {
+                if (operand.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void filter(String[][] rows, BitSet selection) {
+            BitSet result = new BitSet();
+            for (CompiledCriteria operand : operands) {
+                BitSet remaining = (BitSet) selection.clone();
+                remaining.andNot(result);
+                operand.filter(rows, remaining);
+                result.or(remaining);
+            }
+            selection.and(result);
+        }
+
+        @Override
+        public void filter(ColumnarTable table, BitSet selection) {
+            BitSet result = new BitSet();
+            for (CompiledCriteria operand : operands) {
+                BitSet remaining = (BitSet) selection.clone();
+                remaining.andNot(result);
+                operand.filter(table, remaining);
+                result.or(remaining);
+            }
+            selection.and(result);
+        }
+
+        @Override
+        public String toString() {
+            return "OR" + operands;
+        }
+    }
+}
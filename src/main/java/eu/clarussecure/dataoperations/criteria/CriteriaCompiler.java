@@ -0,0 +1,181 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.geometry.EnvelopeIndex;
+
+/**
+ * Compiles {@link Criteria} into {@link CompiledCriteria} bound to the
+ * columns of a result set.
+ * <p>
+ * Supported operators (case insensitive) are:
+ * <ul>
+ * <li>{@code =}, {@code ==}, {@code <>}, {@code !=}, {@code <},
+ * {@code <=}, {@code >} and {@code >=}: values are compared as numbers if
+ * the constant is an unquoted number, as dates if the constant is an ISO date
+ * or date time (e.g. 2017-10-20 or '2017-10-20 12:30:00'), and as strings
+ * otherwise,</li>
+ * <li>{@code IN} and {@code NOT IN}, with a list of constants (e.g.
+ * {@code (1, 2, 3)} or {@code ('a', 'b')}),</li>
+ * <li>{@code LIKE}, {@code NOT LIKE}, {@code ILIKE} and {@code NOT ILIKE},
+ * with a SQL pattern,</li>
+ * <li>{@code IS NULL} and {@code IS NOT NULL} (the value is ignored),</li>
+ * <li>{@code &&}, with a box or a geometry (bounding box intersection).</li>
+ * </ul>
+ * String constants may be quoted (e.g. 'it''s').
+ * <p>
+ * Unknown attributes, unsupported operators and malformed constants are
+ * reported at compilation time, by an {@code IllegalArgumentException}.
+ */
+public final class CriteriaCompiler {
+
+    private final String[] attributeNames;
+    private final Map<String, Integer> columns;
+
+    /**
+     * Builds a compiler for a result set
+     *
+     * @param attributeNames
+     *            the attribute names of the result set (i.e. of its columns)
+     */
+    public CriteriaCompiler(String[] attributeNames) {
+        this.attributeNames = attributeNames.clone();
+        this.columns = new HashMap<>();
+        for (int i = attributeNames.length - 1; i >= 0; i--) {
+            columns.put(attributeNames[i], i);
+        }
+    }
+
+    public String[] getAttributeNames() {
+        return attributeNames.clone();
+    }
+
+    /**
+     * Returns the column of an attribute
+     *
+     * @param attributeName
+     *            the attribute name
+     * @return the index of the column, or -1 if the attribute is not in the
+     *         result set
+     */
+    public int getColumn(String attributeName) {
+        Integer column = columns.get(attributeName);
+        return column != null ? column : -1;
+    }
+
+    /**
+     * Compiles the conjunction of criteria
+     *
+     * @param criteria
+     *            the criteria (all of them must be satisfied)
+     * @return the compiled criteria ({@link CompiledCriteria#TRUE} if there is
+     *         no criteria)
+     * @throws IllegalArgumentException
+     *             if a criteria is not supported
+     */
+    public CompiledCriteria compile(Criteria... criteria) {
+        if (criteria == null) {
+            return CompiledCriteria.TRUE;
+        }
+        CompiledCriteria[] compiled = new CompiledCriteria[criteria.length];
+        for (int i = 0; i < criteria.length; i++) {
+            compiled[i] = compile(criteria[i]);
+        }
+        return CompiledCriteria.and(compiled);
+    }
+
+    /**
+     * Compiles a criteria
+     *
+     * @param criteria
+     *            the criteria
+     * @return the compiled criteria
+     * @throws IllegalArgumentException
+     *             if the criteria is not supported
+     */
+    public CompiledCriteria compile(Criteria criteria) {
+        int column = getColumn(criteria.getAttributeName());
+        if (column == -1) {
+            throw new IllegalArgumentException("unknown attribute: " + criteria.getAttributeName());
+        }
+        String operator = normalize(criteria.getOperator());
+        if (operator.equals("IS NULL") || operator.equals("IS NOT NULL")) {
+            return new NullCriteria(column, operator.equals("IS NULL"));
+        }
+        if (criteria.getValue() == null) {
+            throw new IllegalArgumentException("missing value for operator " + criteria.getOperator());
+        }
+        String value = criteria.getValue().trim();
+        switch (operator) {
+        case "=":
+        case "==":
+            return comparison(column, ComparisonCriteria.Comparison.EQ, value);
+        case "<>":
+        case "!=":
+            return comparison(column, ComparisonCriteria.Comparison.NE, value);
+        case "<":
+            return comparison(column, ComparisonCriteria.Comparison.LT, value);
+        case "<=":
+            return comparison(column, ComparisonCriteria.Comparison.LE, value);
+        case ">":
+            return comparison(column, ComparisonCriteria.Comparison.GT, value);
+        case ">=":
+            return comparison(column, ComparisonCriteria.Comparison.GE, value);
+        case "IN":
+        case "NOT IN": {
+            List<String> constants = CriteriaValues.parseList(value);
+            if (constants.isEmpty()) {
+                throw new IllegalArgumentException("empty list for operator " + criteria.getOperator());
+            }
+            return new InCriteria(column, constants, operator.equals("NOT IN"));
+        }
+        case "LIKE":
+        case "NOT LIKE":
+        case "ILIKE":
+        case "NOT ILIKE":
+            return new LikeCriteria(column, CriteriaValues.unquote(value), operator.startsWith("NOT "),
+                    operator.endsWith("ILIKE"));
+        case EnvelopeIndex.INTERSECTS_OPERATOR: {
+            double[] box = EnvelopeIndex.parseBox(CriteriaValues.unquote(value));
+            if (box == null) {
+                throw new IllegalArgumentException("not a box nor a geometry: " + value);
+            }
+            return new IntersectsCriteria(column, box);
+        }
+        default:
+            throw new IllegalArgumentException("unsupported operator: " + criteria.getOperator());
+        }
+    }
+
+    /**
+     * Tests if a criteria is supported, without compiling it
+     *
+     * @param criteria
+     *            the criteria
+     * @return true if the criteria can be compiled
+     */
+    public boolean isSupported(Criteria criteria) {
+        try {
+            compile(criteria);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static CompiledCriteria comparison(int column, ComparisonCriteria.Comparison comparison, String value) {
+        return new ComparisonCriteria(column, comparison, CriteriaValues.unquote(value),
+                CriteriaValues.isQuoted(value));
+    }
+
+    private static String normalize(String operator) {
+        if (operator == null) {
+            throw new IllegalArgumentException("missing operator");
+        }
+        return operator.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+}
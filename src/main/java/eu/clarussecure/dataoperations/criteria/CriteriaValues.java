@@ -0,0 +1,126 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsing of the values of criteria and of the rows
+ */
+final class CriteriaValues {
+
+    private CriteriaValues() {
+    }
+
+    /**
+     * Parses a number, without throwing an exception if the value is not a
+     * number
+     *
+     * @param value
+     *            the value
+     * @return the number, or {@code null} if the value is not a number
+     */
+    static Double parseNumber(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') {
+                return null;
+            }
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses an ISO date (e.g. 2017-10-20), date time (e.g. 2017-10-20
+     * 12:30:00 or 2017-10-20T12:30:00.000) or date time with offset (e.g.
+     * 2017-10-20T12:30:00+02:00). Date and date times without offset are in
+     * UTC.
+     *
+     * @param value
+     *            the value
+     * @return the number of milliseconds since the epoch, or {@code null} if
+     *         the value is not a date
+     */
+    static Long parseDate(String value) {
+        if (value.length() < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+            String dateTime = value.charAt(10) == ' ' ? value.substring(0, 10) + 'T' + value.substring(11) : value;
+            char last = dateTime.charAt(dateTime.length() - 1);
+            if (last == 'Z' || dateTime.lastIndexOf('+') > 10 || dateTime.lastIndexOf('-') > 10) {
+                return OffsetDateTime.parse(dateTime).toInstant().toEpochMilli();
+            }
+            return LocalDateTime.parse(dateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param value
+     *            a constant
+     * @return true if the constant is quoted (e.g. 'abc')
+     */
+    static boolean isQuoted(String value) {
+        return value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'';
+    }
+
+    /**
+     * Removes the quotes of a constant, if any (e.g. 'it''s' becomes it's)
+     *
+     * @param value
+     *            the constant
+     * @return the unquoted constant
+     */
+    static String unquote(String value) {
+        return isQuoted(value) ? value.substring(1, value.length() - 1).replace("''", "'") : value;
+    }
+
+    /**
+     * Splits a list of constants (e.g. (1, 2, 3) or ('a', 'b,c')). Commas
+     * inside quotes are not separators.
+     *
+     * @param value
+     *            the list, with or without parentheses
+     * @return the constants, trimmed but still quoted
+     */
+    static List<String> parseList(String value) {
+        String list = value.trim();
+        if (list.startsWith("(") && list.endsWith(")")) {
+            list = list.substring(1, list.length() - 1);
+        }
+        List<String> values = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < list.length(); i++) {
+            char c = list.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                values.add(list.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        String last = list.substring(start).trim();
+        if (!last.isEmpty() || !values.isEmpty()) {
+            values.add(last);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,78 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import eu.clarussecure.dataoperations.table.Column;
+import eu.clarussecure.dataoperations.table.DoubleColumn;
+import eu.clarussecure.dataoperations.table.LongColumn;
+
+/**
+ * Membership of the values of a column in a list of constants (IN and NOT
+ * IN). If all the constants are unquoted numbers, values are compared as
+ * numbers, otherwise as strings.
+ */
+class InCriteria extends ColumnCriteria {
+
+    private final boolean negated;
+    private final double[] numbers;
+    private final Set<String> strings;
+
+    InCriteria(int column, List<String> constants, boolean negated) {
+        super(column);
+        this.negated = negated;
+        double[] numbers = new double[constants.size()];
+        Set<String> strings = new HashSet<>();
+        for (int i = 0; i < constants.size(); i++) {
+            String constant = constants.get(i);
+            Double number = CriteriaValues.isQuoted(constant) ? null : CriteriaValues.parseNumber(constant);
+            if (number != null && numbers != null) {
+                numbers[i] = number;
+            } else {
+                numbers = null;
+            }
+            strings.add(CriteriaValues.unquote(constant));
+        }
+        if (numbers != null) {
+            Arrays.sort(numbers);
+        }
+        this.numbers = numbers;
+        this.strings = numbers == null ? strings : null;
+    }
+
+    private boolean contains(double value) {
+        return Arrays.binarySearch(numbers, value) >= 0;
+    }
+
+    @Override
+    protected boolean matches(String value) {
+        if (numbers != null) {
+            Double number = CriteriaValues.parseNumber(value);
+            return number != null && contains(number) != negated;
+        }
+        return strings.contains(value) != negated;
+    }
+
+    @Override
+    protected boolean matches(Column values, int row) {
+        if (numbers != null) {
+            if (values instanceof LongColumn) {
+                LongColumn longs = (LongColumn) values;
+                return !longs.isNull(row) && contains(longs.getLong(row)) != negated;
+            }
+            if (values instanceof DoubleColumn) {
+                DoubleColumn doubles = (DoubleColumn) values;
+                return !doubles.isNull(row) && contains(doubles.getDouble(row)) != negated;
+            }
+        }
+        return super.matches(values, row);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("$%d %s %s", column, negated ? "NOT IN" : "IN",
+                numbers != null ? Arrays.toString(numbers) : strings);
+    }
+}
@@ -0,0 +1,47 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import eu.clarussecure.dataoperations.geometry.EnvelopeIndex;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+/**
+ * Bounding box intersection of the geometries of a column with a box or a
+ * geometry ({@code &&}). Geometries that cannot be decoded do not satisfy the
+ * criteria.
+ * <p>
+ * Rows are tested with an envelope reader per thread, so the hexadecimal WKB
+ * values are decoded in a reused buffer. Columns are filtered by a query on
+ * their {@link EnvelopeIndex} (built once per column).
+ */
+class IntersectsCriteria extends ColumnCriteria {
+
+    private static final ThreadLocal<EnvelopeIndex.EnvelopeReader> READERS = ThreadLocal
+            .withInitial(EnvelopeIndex.EnvelopeReader::new);
+
+    private final double[] box;
+
+    IntersectsCriteria(int column, double[] box) {
+        super(column);
+        this.box = box;
+    }
+
+    @Override
+    protected boolean matches(String value) {
+        // comparisons with the NaN envelope of undecodable values are false
+        double[] envelope = READERS.get().read(value);
+        return envelope[0] <= box[2] && envelope[1] <= box[3] && envelope[2] >= box[0] && envelope[3] >= box[1];
+    }
+
+    @Override
+    public void filter(ColumnarTable table, BitSet selection) {
+        EnvelopeIndex index = EnvelopeIndex.of(table.getColumn(column));
+        selection.and(index.query(box[0], box[1], box[2], box[3]));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("$%d && %s", column, Arrays.toString(box));
+    }
+}
@@ -0,0 +1,98 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matching of the values of a column with a SQL pattern (LIKE, NOT LIKE,
+ * ILIKE and NOT ILIKE): {@code %} matches any sequence of characters,
+ * {@code _} matches any character, and {@code \} escapes the next character.
+ * <p>
+ * Patterns that are a simple prefix, suffix or infix (e.g. {@code abc%},
+ * {@code %abc} or {@code %abc%}) are matched without regular expression.
+ */
+class LikeCriteria extends ColumnCriteria {
+
+    private enum Mode {
+        EQUALS, STARTS_WITH, ENDS_WITH, CONTAINS, REGEX
+    }
+
+    private final String pattern;
+    private final boolean negated;
+    private final boolean caseInsensitive;
+    private final Mode mode;
+    private final String literal;
+    private final Pattern regex;
+
+    LikeCriteria(int column, String pattern, boolean negated, boolean caseInsensitive) {
+        super(column);
+        this.pattern = pattern;
+        this.negated = negated;
+        this.caseInsensitive = caseInsensitive;
+        String body = pattern;
+        boolean leading = body.startsWith("%");
+        boolean trailing = body.length() > (leading ? 1 : 0) && body.endsWith("%") && !body.endsWith("\\%");
+        body = body.substring(leading ? 1 : 0, body.length() - (trailing ? 1 : 0));
+        if (!caseInsensitive && body.indexOf('%') == -1 && body.indexOf('_') == -1 && body.indexOf('\\') == -1) {
+            this.mode = leading && trailing ? Mode.CONTAINS
+                    : leading ? Mode.ENDS_WITH : trailing ? Mode.STARTS_WITH : Mode.EQUALS;
+            this.literal = body;
+            this.regex = null;
+        } else {
+            this.mode = Mode.REGEX;
+            this.literal = null;
+            this.regex = toRegex(pattern, caseInsensitive);
+        }
+    }
+
+    private static Pattern toRegex(String pattern, boolean caseInsensitive) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                literal.append(pattern.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        int flags = Pattern.DOTALL | (caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        return Pattern.compile(regex.toString(), flags);
+    }
+
+    @Override
+    protected boolean matches(String value) {
+        boolean matches;
+        switch (mode) {
+        case EQUALS:
+            matches = value.equals(literal);
+            break;
+        case STARTS_WITH:
+            matches = value.startsWith(literal);
+            break;
+        case ENDS_WITH:
+            matches = value.endsWith(literal);
+            break;
+        case CONTAINS:
+            matches = value.contains(literal);
+            break;
+        default:
+            matches = regex.matcher(value).matches();
+            break;
+        }
+        return matches != negated;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("$%d %s%s %s", column, negated ? "NOT " : "", caseInsensitive ? "ILIKE" : "LIKE", pattern);
+    }
+}
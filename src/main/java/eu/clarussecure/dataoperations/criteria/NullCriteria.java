@@ -0,0 +1,29 @@
+package eu.clarussecure.dataoperations.criteria;
+
+/**
+ * Test of the {@code null} values of a column (IS NULL and IS NOT NULL)
+ */
+class NullCriteria extends ColumnCriteria {
+
+    private final boolean isNull;
+
+    NullCriteria(int column, boolean isNull) {
+        super(column);
+        this.isNull = isNull;
+    }
+
+    @Override
+    protected boolean matches(String value) {
+        return !isNull;
+    }
+
+    @Override
+    protected boolean matchesNull() {
+        return isNull;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("$%d %s", column, isNull ? "IS NULL" : "IS NOT NULL");
+    }
+}
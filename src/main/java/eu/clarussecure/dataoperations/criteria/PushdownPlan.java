@@ -0,0 +1,453 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import eu.clarussecure.dataoperations.AttributeNamesUtilities;
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.DataOperationCommand;
+import eu.clarussecure.dataoperations.DataOperationResponse;
+import eu.clarussecure.dataoperations.DataOperationResult;
+
+/**
+ * Split of the criteria of a GET operation between the criteria pushed down
+ * to the CSPs and the residual criteria, evaluated by the proxy after the
+ * reconstruction of the rows.
+ * <p>
+ * In the Outbound GET operation, a protection module splits the criteria
+ * according to what the CSPs can evaluate (e.g. equality on a
+ * deterministically encrypted attribute, but not a range), fetches the
+ * attributes the residual criteria need (see
+ * {@link #getFetchedAttributeNames()}), protects the pushed criteria for each
+ * CSP and records the residual criteria in the promise (see
+ * {@link #recordResidualCriteria(List)}):
+ *
+ * <pre>
+ * PushdownPlan plan = PushdownPlan.split(attributeNames, criteria, c -&gt; isDeterministic(c.getAttributeName()));
+ * List&lt;DataOperationCommand&gt; promise = protect(plan.getFetchedAttributeNames());
+ * for (DataOperationCommand command : promise) {
+ *     command.setCriteria(protect(plan.getPushedCriteria(), csp));
+ * }
+ * plan.recordResidualCriteria(promise);
+ * </pre>
+ *
+ * In the Inbound GET operation, the residual criteria are evaluated on the
+ * reconstructed rows, then the attributes that were only fetched for them
+ * are dropped: automatically by {@code BatchingRowCursor}, or with
+ * {@link #filter(List, List)}.
+ * <p>
+ * The residual criteria are on the original attribute names of the
+ * reconstructed rows, and must be supported by {@link CriteriaCompiler}. The
+ * attribute name of a residual criteria may be spelled differently from the
+ * attribute names of the GET operation (e.g. {@code pat_name} for
+ * {@code ds/patient/pat_name}): it is resolved with the same rules as
+ * {@link AttributeNamesUtilities#fullyQualified(String)}, to the attribute
+ * name of the GET operation when it is concrete, or else to the matching
+ * attribute name of the reconstructed rows (see
+ * {@link #resolveResidualCriteria(Criteria[], String[])}). A residual criteria
+ * on an attribute that is not requested (e.g. {@code SELECT a WHERE b > 5}) is
+ * evaluated on the fetched attribute {@code b}, which is not returned. An
+ * attribute that an attribute name with asterisks of the GET operation might
+ * cover (e.g. <code>*&#47;data/*</code>) is not fetched: it must then be among
+ * the reconstructed attributes.
+ */
+public final class PushdownPlan {
+
+    private static final Criteria[] NO_CRITERIA = new Criteria[0];
+    private static final String[] NO_NAMES = new String[0];
+
+    private final String[] attributeNames;
+    private final Criteria[] pushedCriteria;
+    private final Criteria[] residualCriteria;
+    private final String[] residualAttributeNames;
+
+    /**
+     * Builds a plan
+     *
+     * @param attributeNames
+     *            the attribute names of the GET operation (i.e. the attributes
+     *            to return)
+     * @param pushedCriteria
+     *            the criteria evaluated by the CSPs
+     * @param residualCriteria
+     *            the criteria evaluated by the proxy
+     * @throws IllegalArgumentException
+     *             if the attribute name of a residual criteria matches
+     *             several attribute names of the GET operation
+     */
+    public PushdownPlan(String[] attributeNames, Criteria[] pushedCriteria, Criteria[] residualCriteria) {
+        this.attributeNames = attributeNames.clone();
+        this.pushedCriteria = pushedCriteria != null ? pushedCriteria.clone() : NO_CRITERIA;
+        Set<String> missing = new LinkedHashSet<>();
+        this.residualCriteria = residualCriteria != null
+                ? resolveAttributeNames(this.attributeNames, residualCriteria, missing) : NO_CRITERIA;
+        this.residualAttributeNames = missing.toArray(new String[missing.size()]);
+    }
+
+    /**
+     * Splits criteria. The relative order of the criteria is kept.
+     *
+     * @param attributeNames
+     *            the attribute names of the GET operation (i.e. the attributes
+     *            to return)
+     * @param criteria
+     *            the criteria of the GET operation
+     * @param pushable
+     *            tests if a criteria can be evaluated by the CSPs
+     * @return the plan
+     * @throws IllegalArgumentException
+     *             if the attribute name of a residual criteria matches
+     *             several attribute names of the GET operation
+     */
+    public static PushdownPlan split(String[] attributeNames, Criteria[] criteria,
+            Predicate<? super Criteria> pushable) {
+        if (criteria == null) {
+            return new PushdownPlan(attributeNames, NO_CRITERIA, NO_CRITERIA);
+        }
+        List<Criteria> pushed = new ArrayList<>(criteria.length);
+        List<Criteria> residual = new ArrayList<>();
+        for (Criteria c : criteria) {
+            (pushable.test(c) ? pushed : residual).add(c);
+        }
+        return new PushdownPlan(attributeNames, pushed.toArray(new Criteria[pushed.size()]),
+                residual.toArray(new Criteria[residual.size()]));
+    }
+
+    /**
+     * Resolves the attribute names of the residual criteria to the concrete
+     * attribute names of the GET operation they match, and collects the
+     * attributes that no attribute name of the GET operation may cover, in
+     * order of appearance. Asterisks may cover anything: an attribute name
+     * that might be returned is not fetched again, as it could not be told
+     * apart from the returned one, and is resolved on the reconstructed rows.
+     */
+    private static Criteria[] resolveAttributeNames(String[] attributeNames, Criteria[] residualCriteria,
+            Set<String> missing) {
+        String[][] parts = new String[attributeNames.length][];
+        for (int i = 0; i < attributeNames.length; i++) {
+            parts[i] = parts(attributeNames[i]);
+        }
+        Criteria[] resolved = new Criteria[residualCriteria.length];
+        for (int c = 0; c < residualCriteria.length; c++) {
+            Criteria criteria = residualCriteria[c];
+            String[] criteriaParts = parts(criteria.getAttributeName());
+            String match = null;
+            boolean covered = false;
+            for (int i = 0; i < attributeNames.length; i++) {
+                if (!mayMatch(parts[i], criteriaParts)) {
+                    continue;
+                }
+                if (attributeNames[i].indexOf('*') != -1) {
+                    covered = true;
+                } else if (match == null || match.equals(attributeNames[i])) {
+                    match = attributeNames[i];
+                } else {
+                    throw new IllegalArgumentException(String.format("ambiguous attribute %s: %s or %s",
+                            criteria.getAttributeName(), match, attributeNames[i]));
+                }
+            }
+            if (match == null && !covered) {
+                missing.add(criteria.getAttributeName());
+            }
+            resolved[c] = rename(criteria, match);
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves the attribute names of residual criteria to the attribute
+     * names of the reconstructed rows: an attribute name that is not among
+     * them is resolved to the only one it matches, with the same rules as
+     * {@link AttributeNamesUtilities#fullyQualified(String)} (e.g.
+     * {@code pat_name} to {@code ds/patient/pat_name}). An attribute name that
+     * matches none of them is kept as is.
+     *
+     * @param residualCriteria
+     *            the residual criteria
+     * @param attributeNames
+     *            the attribute names of the reconstructed rows
+     * @return the resolved criteria (the same array if they are all among the
+     *         attribute names)
+     * @throws IllegalArgumentException
+     *             if the attribute name of a criteria matches several
+     *             attribute names of the reconstructed rows
+     */
+    public static Criteria[] resolveResidualCriteria(Criteria[] residualCriteria, String[] attributeNames) {
+        Set<String> names = new HashSet<>(Arrays.asList(attributeNames));
+        Criteria[] resolved = residualCriteria;
+        String[][] parts = null;
+        for (int c = 0; c < residualCriteria.length; c++) {
+            Criteria criteria = residualCriteria[c];
+            if (names.contains(criteria.getAttributeName())) {
+                continue;
+            }
+            if (parts == null) {
+                parts = new String[attributeNames.length][];
+                for (int i = 0; i < attributeNames.length; i++) {
+                    parts[i] = parts(attributeNames[i]);
+                }
+                resolved = residualCriteria.clone();
+            }
+            String[] criteriaParts = parts(criteria.getAttributeName());
+            String match = null;
+            for (int i = 0; i < attributeNames.length; i++) {
+                if (mayMatch(parts[i], criteriaParts)) {
+                    if (match != null && !match.equals(attributeNames[i])) {
+                        throw new IllegalArgumentException(String.format("ambiguous attribute %s: %s or %s",
+                                criteria.getAttributeName(), match, attributeNames[i]));
+                    }
+                    match = attributeNames[i];
+                }
+            }
+            resolved[c] = rename(criteria, match);
+        }
+        return resolved;
+    }
+
+    private static String[] parts(String attributeName) {
+        return AttributeNamesUtilities.fullyQualified(attributeName).split("/", -1);
+    }
+
+    private static Criteria rename(Criteria criteria, String attributeName) {
+        return attributeName == null || attributeName.equals(criteria.getAttributeName()) ? criteria
+                : new Criteria(attributeName, criteria.getOperator(), criteria.getValue());
+    }
+
+    private static boolean mayMatch(String[] parts1, String[] parts2) {
+        if (parts1.length != parts2.length) {
+            return false;
+        }
+        for (int i = 0; i < parts1.length; i++) {
+            if (!parts1[i].equals(parts2[i]) && parts1[i].indexOf('*') == -1 && parts2[i].indexOf('*') == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the attribute names to fetch from the CSPs: the attribute names
+     *         of the GET operation, followed by the attributes that are only
+     *         needed to evaluate the residual criteria
+     */
+    public String[] getFetchedAttributeNames() {
+        String[] fetched = Arrays.copyOf(attributeNames, attributeNames.length + residualAttributeNames.length);
+        System.arraycopy(residualAttributeNames, 0, fetched, attributeNames.length, residualAttributeNames.length);
+        return fetched;
+    }
+
+    /**
+     * @return the attributes that are only fetched to evaluate the residual
+     *         criteria, and that are dropped from the reconstructed rows
+     */
+    public String[] getResidualAttributeNames() {
+        return residualAttributeNames.clone();
+    }
+
+    /**
+     * @return the criteria evaluated by the CSPs (unprotected)
+     */
+    public Criteria[] getPushedCriteria() {
+        return pushedCriteria.clone();
+    }
+
+    /**
+     * @return the criteria evaluated by the proxy
+     */
+    public Criteria[] getResidualCriteria() {
+        return residualCriteria.clone();
+    }
+
+    /**
+     * @return true if some criteria are evaluated by the proxy
+     */
+    public boolean hasResidualCriteria() {
+        return residualCriteria.length > 0;
+    }
+
+    /**
+     * Records the residual criteria, and the attributes that are only fetched
+     * to evaluate them, in the commands of a promise
+     *
+     * @param promise
+     *            the promise returned by the Outbound GET operation
+     */
+    public void recordResidualCriteria(List<? extends DataOperationCommand> promise) {
+        for (DataOperationCommand command : promise) {
+            command.setResidualCriteria(hasResidualCriteria() ? getResidualCriteria() : null);
+            command.setResidualAttributeNames(residualAttributeNames.length > 0 ? getResidualAttributeNames() : null);
+        }
+    }
+
+    /**
+     * Returns the residual criteria recorded in a promise
+     *
+     * @param promise
+     *            the promise
+     * @return the residual criteria of the first command that has some, or
+     *         {@code null} if there is none
+     */
+    public static Criteria[] getResidualCriteria(List<? extends DataOperationCommand> promise) {
+        for (DataOperationCommand command : promise) {
+            Criteria[] residual = command.getResidualCriteria();
+            if (residual != null && residual.length > 0) {
+                return residual;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the attributes that are only fetched to evaluate the residual
+     * criteria, recorded in a promise
+     *
+     * @param promise
+     *            the promise
+     * @return the residual attribute names of the first command that has
+     *         some, or {@code null} if there is none
+     */
+    public static String[] getResidualAttributeNames(List<? extends DataOperationCommand> promise) {
+        for (DataOperationCommand command : promise) {
+            String[] residual = command.getResidualAttributeNames();
+            if (residual != null && residual.length > 0) {
+                return residual;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the reconstructed rows that do not satisfy the residual
+     * criteria of a promise, then the attributes that were only fetched to
+     * evaluate them, in place
+     *
+     * @param promise
+     *            the promise
+     * @param results
+     *            the results of the Inbound GET operation. The contents and
+     *            the attribute names of the {@code DataOperationResponse} are
+     *            filtered.
+     */
+    public static void filter(List<? extends DataOperationCommand> promise,
+            List<? extends DataOperationResult> results) {
+        Criteria[] residual = getResidualCriteria(promise);
+        if (residual == null) {
+            return;
+        }
+        String[] residualAttributeNames = getResidualAttributeNames(promise);
+        for (DataOperationResult result : results) {
+            if (result instanceof DataOperationResponse) {
+                DataOperationResponse response = (DataOperationResponse) result;
+                String[] attributeNames = response.getAttributeNames();
+                if (response.getContents() != null && attributeNames != null) {
+                    CompiledCriteria compiled = new CriteriaCompiler(attributeNames)
+                            .compile(resolveResidualCriteria(residual, attributeNames));
+                    String[][] rows = filter(compiled, response.getContents());
+                    int[] columns = getReturnedColumns(attributeNames, residualAttributeNames);
+                    if (columns != null) {
+                        response.setAttributeNames(project(attributeNames, columns));
+                        rows = project(rows, columns);
+                    }
+                    response.setContents(rows);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the columns to return, i.e. without the attributes that are
+     * only fetched to evaluate the residual criteria
+     *
+     * @param attributeNames
+     *            the attribute names of the reconstructed rows
+     * @param residualAttributeNames
+     *            the attributes to drop (may be {@code null})
+     * @return the indexes of the columns to return, or {@code null} if all
+     *         the columns are returned
+     */
+    public static int[] getReturnedColumns(String[] attributeNames, String[] residualAttributeNames) {
+        if (residualAttributeNames == null || residualAttributeNames.length == 0) {
+            return null;
+        }
+        Set<String> dropped = new HashSet<>(Arrays.asList(residualAttributeNames));
+        int[] columns = new int[attributeNames.length];
+        int count = 0;
+        for (int i = 0; i < attributeNames.length; i++) {
+            if (!dropped.contains(attributeNames[i])) {
+                columns[count++] = i;
+            }
+        }
+        return count == attributeNames.length ? null : Arrays.copyOf(columns, count);
+    }
+
+    /**
+     * Keeps some columns of a row
+     *
+     * @param row
+     *            the row (or the attribute names)
+     * @param columns
+     *            the indexes of the columns to keep
+     * @return the projected row
+     */
+    public static String[] project(String[] row, int[] columns) {
+        if (row == null) {
+            return null;
+        }
+        String[] projected = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            projected[i] = row[columns[i]];
+        }
+        return projected;
+    }
+
+    /**
+     * Keeps some columns of rows
+     *
+     * @param rows
+     *            the rows
+     * @param columns
+     *            the indexes of the columns to keep
+     * @return the projected rows
+     */
+    public static String[][] project(String[][] rows, int[] columns) {
+        String[][] projected = new String[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            projected[i] = project(rows[i], columns);
+        }
+        return projected;
+    }
+
+    /**
+     * Keeps the rows that satisfy a criteria
+     *
+     * @param criteria
+     *            the criteria
+     * @param rows
+     *            the rows
+     * @return the rows that satisfy the criteria (the same array if all of
+     *         them do)
+     */
+    public static String[][] filter(CompiledCriteria criteria, String[][] rows) {
+        if (criteria == CompiledCriteria.TRUE) {
+            return rows;
+        }
+        int count = 0;
+        String[][] selected = null;
+        for (int i = 0; i < rows.length; i++) {
+            if (criteria.test(rows[i])) {
+                if (selected != null) {
+                    selected[count] = rows[i];
+                }
+                count++;
+            } else if (selected == null) {
+                selected = Arrays.copyOf(rows, rows.length);
+            }
+        }
+        return selected == null ? rows : Arrays.copyOf(selected, count);
+    }
+}
@@ -0,0 +1,322 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bulk operations on primitive coordinate arrays: clamping or wrapping to
+ * bounds, normalization to [0, 1] (e.g. for grid based coarsening) and
+ * denormalization.
+ * <p>
+ * Each operation exists in two forms:
+ * <ul>
+ * <li>on contiguous values of a single axis (e.g. all the X of a column),
+ * with a simple counted loop without branch that the JIT compiler
+ * vectorizes,</li>
+ * <li>on interleaved coordinates (as in {@link FlatGeometry}), for a given
+ * axis or for all the axes of a {@link ProjectedCRS}.</li>
+ * </ul>
+ * The operations on a {@link ProjectedCRS} are also available as
+ * {@link CoordinateTransform}, to be applied to a {@link FlatGeometry}. The
+ * ordinates of a point are always easting then northing (as in WKB and WKT),
+ * whatever the order of the axes of the CRS is: the bounds of X are the ones
+ * of the east or west axis, and the bounds of Y are the ones of the north or
+ * south axis.
+ */
+public final class CoordinateKernels {
+
+    private CoordinateKernels() {
+    }
+
+    /**
+     * Clamps contiguous values to bounds, in place
+     *
+     * @param values
+     *            the values
+     * @param offset
+     *            the index of the first value
+     * @param count
+     *            the number of values
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void clamp(double[] values, int offset, int count, double min, double max) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            values[i] = Math.min(Math.max(values[i], min), max);
+        }
+    }
+
+    /**
+     * Wraps contiguous values to [min, max), in place (e.g. a longitude of 190
+     * is wrapped to -170 in [-180, 180))
+     *
+     * @param values
+     *            the values
+     * @param offset
+     *            the index of the first value
+     * @param count
+     *            the number of values
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void wrap(double[] values, int offset, int count, double min, double max) {
+        double range = max - min;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            values[i] = wrap(values[i], min, max, range);
+        }
+    }
+
+    /**
+     * Normalizes contiguous values to [0, 1], in place: min is mapped to 0 and
+     * max to 1
+     *
+     * @param values
+     *            the values
+     * @param offset
+     *            the index of the first value
+     * @param count
+     *            the number of values
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void normalize(double[] values, int offset, int count, double min, double max) {
+        double scale = 1 / (max - min);
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            values[i] = (values[i] - min) * scale;
+        }
+    }
+
+    /**
+     * Denormalizes contiguous values from [0, 1], in place: 0 is mapped to
+     * min and 1 to max
+     *
+     * @param values
+     *            the values
+     * @param offset
+     *            the index of the first value
+     * @param count
+     *            the number of values
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void denormalize(double[] values, int offset, int count, double min, double max) {
+        double scale = max - min;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            values[i] = values[i] * scale + min;
+        }
+    }
+
+    /**
+     * Clamps an axis of interleaved coordinates to bounds, in place
+     *
+     * @param coordinates
+     *            the interleaved coordinates
+     * @param offset
+     *            the index of the first ordinate of the first point
+     * @param count
+     *            the number of points
+     * @param stride
+     *            the number of ordinates per point
+     * @param axis
+     *            the index of the axis in a point (0 for X)
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void clamp(double[] coordinates, int offset, int count, int stride, int axis, double min,
+            double max) {
+        int end = offset + count * stride;
+        for (int i = offset + axis; i < end; i += stride) {
+            coordinates[i] = Math.min(Math.max(coordinates[i], min), max);
+        }
+    }
+
+    /**
+     * Wraps an axis of interleaved coordinates to [min, max), in place
+     *
+     * @param coordinates
+     *            the interleaved coordinates
+     * @param offset
+     *            the index of the first ordinate of the first point
+     * @param count
+     *            the number of points
+     * @param stride
+     *            the number of ordinates per point
+     * @param axis
+     *            the index of the axis in a point (0 for X)
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void wrap(double[] coordinates, int offset, int count, int stride, int axis, double min, double max) {
+        double range = max - min;
+        int end = offset + count * stride;
+        for (int i = offset + axis; i < end; i += stride) {
+            coordinates[i] = wrap(coordinates[i], min, max, range);
+        }
+    }
+
+    /**
+     * Wraps a value to [min, max). The rounding of the quotient can give a
+     * result just below min (e.g. 179.99999999999997 in [-180, 180)), that is
+     * moved back to the range.
+     */
+    private static double wrap(double v, double min, double max, double range) {
+        double r = v - Math.floor((v - min) / range) * range;
+        if (r < min) {
+            r += range;
+        }
+        return r < max ? r : Math.nextDown(max);
+    }
+
+    /**
+     * Normalizes an axis of interleaved coordinates to [0, 1], in place
+     *
+     * @param coordinates
+     *            the interleaved coordinates
+     * @param offset
+     *            the index of the first ordinate of the first point
+     * @param count
+     *            the number of points
+     * @param stride
+     *            the number of ordinates per point
+     * @param axis
+     *            the index of the axis in a point (0 for X)
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void normalize(double[] coordinates, int offset, int count, int stride, int axis, double min,
+            double max) {
+        double scale = 1 / (max - min);
+        int end = offset + count * stride;
+        for (int i = offset + axis; i < end; i += stride) {
+            coordinates[i] = (coordinates[i] - min) * scale;
+        }
+    }
+
+    /**
+     * Denormalizes an axis of interleaved coordinates from [0, 1], in place
+     *
+     * @param coordinates
+     *            the interleaved coordinates
+     * @param offset
+     *            the index of the first ordinate of the first point
+     * @param count
+     *            the number of points
+     * @param stride
+     *            the number of ordinates per point
+     * @param axis
+     *            the index of the axis in a point (0 for X)
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     */
+    public static void denormalize(double[] coordinates, int offset, int count, int stride, int axis, double min,
+            double max) {
+        double scale = max - min;
+        int end = offset + count * stride;
+        for (int i = offset + axis; i < end; i += stride) {
+            coordinates[i] = coordinates[i] * scale + min;
+        }
+    }
+
+    /**
+     * @param crs
+     *            a projected CRS
+     * @return a transformation that clamps the coordinates to the bounds of
+     *         the axes of the CRS
+     */
+    public static CoordinateTransform clamping(ProjectedCRS crs) {
+        List<ProjectedCRS.Axis> axes = ordinateAxes(crs);
+        return (coordinates, offset, count, stride) -> {
+            for (int axis = 0; axis < Math.min(stride, axes.size()); axis++) {
+                clamp(coordinates, offset, count, stride, axis, axes.get(axis).getMin(), axes.get(axis).getMax());
+            }
+        };
+    }
+
+    /**
+     * @param crs
+     *            a projected CRS
+     * @return a transformation that wraps the coordinates to the bounds of the
+     *         axes of the CRS
+     */
+    public static CoordinateTransform wrapping(ProjectedCRS crs) {
+        List<ProjectedCRS.Axis> axes = ordinateAxes(crs);
+        return (coordinates, offset, count, stride) -> {
+            for (int axis = 0; axis < Math.min(stride, axes.size()); axis++) {
+                wrap(coordinates, offset, count, stride, axis, axes.get(axis).getMin(), axes.get(axis).getMax());
+            }
+        };
+    }
+
+    /**
+     * @param crs
+     *            a projected CRS
+     * @return a transformation that normalizes the coordinates to [0, 1],
+     *         according to the bounds of the axes of the CRS
+     */
+    public static CoordinateTransform normalizing(ProjectedCRS crs) {
+        List<ProjectedCRS.Axis> axes = ordinateAxes(crs);
+        return (coordinates, offset, count, stride) -> {
+            for (int axis = 0; axis < Math.min(stride, axes.size()); axis++) {
+                normalize(coordinates, offset, count, stride, axis, axes.get(axis).getMin(), axes.get(axis).getMax());
+            }
+        };
+    }
+
+    /**
+     * @param crs
+     *            a projected CRS
+     * @return a transformation that denormalizes the coordinates from [0, 1],
+     *         according to the bounds of the axes of the CRS
+     */
+    public static CoordinateTransform denormalizing(ProjectedCRS crs) {
+        List<ProjectedCRS.Axis> axes = ordinateAxes(crs);
+        return (coordinates, offset, count, stride) -> {
+            for (int axis = 0; axis < Math.min(stride, axes.size()); axis++) {
+                denormalize(coordinates, offset, count, stride, axis, axes.get(axis).getMin(), axes.get(axis).getMax());
+            }
+        };
+    }
+
+    /**
+     * Returns the axes of a CRS in the order of the ordinates: the east or
+     * west axis for X, then the north or south axis for Y. Axes that have
+     * another orientation (e.g. polar CRS) are taken in the order of the CRS.
+     */
+    private static List<ProjectedCRS.Axis> ordinateAxes(ProjectedCRS crs) {
+        List<ProjectedCRS.Axis> axes = crs.getAxes();
+        if (axes.size() != 2) {
+            return axes;
+        }
+        ProjectedCRS.Axis x = null;
+        ProjectedCRS.Axis y = null;
+        for (ProjectedCRS.Axis axis : axes) {
+            String orientation = axis.getOrientation();
+            if ("east".equalsIgnoreCase(orientation) || "west".equalsIgnoreCase(orientation)) {
+                x = axis;
+            } else if ("north".equalsIgnoreCase(orientation) || "south".equalsIgnoreCase(orientation)) {
+                y = axis;
+            }
+        }
+        return x != null && y != null ? Arrays.asList(x, y) : axes;
+    }
+}
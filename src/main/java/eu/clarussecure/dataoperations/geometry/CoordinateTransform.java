@@ -0,0 +1,26 @@
+package eu.clarussecure.dataoperations.geometry;
+
+/**
+ * Bulk, in place, transformation of coordinates (e.g. coarsening, noise
+ * addition or shifting), applied to the flat coordinates of a
+ * {@link FlatGeometry}.
+ */
+@FunctionalInterface
+public interface CoordinateTransform {
+
+    /**
+     * Transforms coordinates in place. Coordinates are interleaved: the
+     * ordinates of the point {@code i} are stored from
+     * {@code offset + i * stride} (X, Y, then Z and/or M if any).
+     *
+     * @param coordinates
+     *            the coordinates to transform
+     * @param offset
+     *            the index of the first ordinate of the first point
+     * @param count
+     *            the number of points to transform
+     * @param stride
+     *            the number of ordinates per point (2, 3 or 4)
+     */
+    public void transform(double[] coordinates, int offset, int count, int stride);
+}
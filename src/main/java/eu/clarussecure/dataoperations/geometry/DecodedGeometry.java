@@ -0,0 +1,44 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import org.postgis.Geometry;
+import org.postgis.PGboxbase;
+
+/**
+ * A geometry (or a box) decoded by the {@link GeometryCodec}, together with
+ * the format it was encoded in.
+ */
+public final class DecodedGeometry {
+
+    private final Object value;
+    private final GeometryFormat format;
+
+    public DecodedGeometry(Object value, GeometryFormat format) {
+        this.value = value;
+        this.format = format;
+    }
+
+    /**
+     * @return the decoded {@link Geometry} or {@link PGboxbase}
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return the decoded geometry, or {@code null} if the value is a box
+     */
+    public Geometry getGeometry() {
+        return value instanceof Geometry ? (Geometry) value : null;
+    }
+
+    /**
+     * @return the decoded box, or {@code null} if the value is a geometry
+     */
+    public PGboxbase getBox() {
+        return value instanceof PGboxbase ? (PGboxbase) value : null;
+    }
+
+    public GeometryFormat getFormat() {
+        return format;
+    }
+}
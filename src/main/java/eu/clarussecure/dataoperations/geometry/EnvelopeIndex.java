@@ -0,0 +1,508 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+import org.postgis.Geometry;
+import org.postgis.PGboxbase;
+import org.postgis.PGgeometry;
+import org.postgis.Point;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.table.Column;
+import eu.clarussecure.dataoperations.table.DictionaryColumn;
+
+/**
+ * Spatial pre-filter over a column of geometries.
+ * <p>
+ * The 2D envelope (bounding box) of each row is computed once, without
+ * building PostGIS geometries for WKT and hexadecimal WKB values (see
+ * {@link FlatGeometry}). The envelopes are indexed by a packed R-tree: rows
+ * are sorted along a Hilbert curve and grouped by nodes of
+ * {@code nodeSize} entries, level by level, in flat {@code double[]} and
+ * {@code int[]} arrays.
+ * <p>
+ * A bounding box query returns the rows whose envelope intersects the box, so
+ * the rows that cannot satisfy a spatial criteria (e.g.
+ * {@code geom && BOX(0 0,10 10)}) are rejected before their geometry is fully
+ * decoded. Rows with a {@code null} or empty geometry, and rows that are
+ * neither a geometry nor a box, never match (as for
+ * {@link eu.clarussecure.dataoperations.criteria.CriteriaCompiler compiled}
+ * criteria).
+ * <p>
+ * The index of a column is built once and cached on the column until it is
+ * modified (see {@link #of(Column)}).
+ */
+public final class EnvelopeIndex {
+
+    /** Default maximum number of entries per node */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    /** Operator of the bounding box intersection criteria */
+    public static final String INTERSECTS_OPERATOR = "&&";
+
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private final int size;
+    private final int nodeSize;
+    // envelopes of the rows: min X, min Y, max X, max Y
+    private final double[] envelopes;
+    // boxes of the nodes, level by level (the rows first, in Hilbert order)
+    private final double[] boxes;
+    // for a row: the index of the row, for a node: the index of its first
+    // child
+    private final int[] indices;
+    // the index of the first node of each level, followed by the number of
+    // nodes
+    private final int[] levelBounds;
+
+    /**
+     * Builds an index over envelopes
+     *
+     * @param envelopes
+     *            the envelopes of the rows: min X, min Y, max X and max Y for
+     *            each row (NaN for rows that never match). The array is not
+     *            copied.
+     * @param nodeSize
+     *            the maximum number of entries per node
+     */
+    public EnvelopeIndex(double[] envelopes, int nodeSize) {
+        if ((envelopes.length & 3) != 0) {
+            throw new IllegalArgumentException("expected 4 values per envelope, got " + envelopes.length);
+        }
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("node size must be at least 2: " + nodeSize);
+        }
+        this.size = envelopes.length / 4;
+        this.nodeSize = nodeSize;
+        this.envelopes = envelopes;
+
+        // select the rows to index and compute their extent
+        int[] rows = new int[size];
+        int count = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int row = 0; row < size; row++) {
+            int i = row * 4;
+            if (Double.isNaN(envelopes[i]) || Double.isNaN(envelopes[i + 1]) || Double.isNaN(envelopes[i + 2])
+                    || Double.isNaN(envelopes[i + 3])) {
+                continue;
+            }
+            rows[count++] = row;
+            // infinite coordinates would flatten the Hilbert curve: their
+            // rows are indexed, but sorted as if they were on the border
+            if (!Double.isInfinite(envelopes[i]) && !Double.isInfinite(envelopes[i + 2])) {
+                minX = Math.min(minX, envelopes[i]);
+                maxX = Math.max(maxX, envelopes[i + 2]);
+            }
+            if (!Double.isInfinite(envelopes[i + 1]) && !Double.isInfinite(envelopes[i + 3])) {
+                minY = Math.min(minY, envelopes[i + 1]);
+                maxY = Math.max(maxY, envelopes[i + 3]);
+            }
+        }
+
+        // sort the rows along the Hilbert curve of their center
+        long[] keys = new long[count];
+        double width = maxX - minX;
+        double height = maxY - minY;
+        for (int k = 0; k < count; k++) {
+            int i = rows[k] * 4;
+            int x = width > 0 ? hilbertCoordinate(((envelopes[i] + envelopes[i + 2]) / 2 - minX) / width) : 0;
+            int y = height > 0 ? hilbertCoordinate(((envelopes[i + 1] + envelopes[i + 3]) / 2 - minY) / height) : 0;
+            keys[k] = (Integer.toUnsignedLong(hilbert(x, y)) << 31) | rows[k];
+        }
+        Arrays.sort(keys);
+
+        // compute the number of nodes of each level
+        int[] bounds = new int[34];
+        int levels = 1;
+        int nodeCount = count;
+        int levelCount = count;
+        while (levelCount > 1) {
+            levelCount = (levelCount + nodeSize - 1) / nodeSize;
+            bounds[levels++] = nodeCount;
+            nodeCount += levelCount;
+        }
+        bounds[levels] = nodeCount;
+        this.levelBounds = Arrays.copyOf(bounds, levels + 1);
+        this.boxes = new double[nodeCount * 4];
+        this.indices = new int[nodeCount];
+
+        // fill the rows then the upper levels
+        for (int k = 0; k < count; k++) {
+            int row = (int) (keys[k] & Integer.MAX_VALUE);
+            indices[k] = row;
+            System.arraycopy(envelopes, row * 4, boxes, k * 4, 4);
+        }
+        for (int level = 1; level < levels; level++) {
+            int childStart = levelBounds[level - 1];
+            int childEnd = levelBounds[level];
+            int node = childEnd;
+            for (int child = childStart; child < childEnd; child += nodeSize, node++) {
+                int end = Math.min(child + nodeSize, childEnd);
+                double nodeMinX = Double.POSITIVE_INFINITY;
+                double nodeMinY = Double.POSITIVE_INFINITY;
+                double nodeMaxX = Double.NEGATIVE_INFINITY;
+                double nodeMaxY = Double.NEGATIVE_INFINITY;
+                for (int c = child; c < end; c++) {
+                    nodeMinX = Math.min(nodeMinX, boxes[c * 4]);
+                    nodeMinY = Math.min(nodeMinY, boxes[c * 4 + 1]);
+                    nodeMaxX = Math.max(nodeMaxX, boxes[c * 4 + 2]);
+                    nodeMaxY = Math.max(nodeMaxY, boxes[c * 4 + 3]);
+                }
+                boxes[node * 4] = nodeMinX;
+                boxes[node * 4 + 1] = nodeMinY;
+                boxes[node * 4 + 2] = nodeMaxX;
+                boxes[node * 4 + 3] = nodeMaxY;
+                indices[node] = child;
+            }
+        }
+    }
+
+    /**
+     * Builds an index over a column of encoded geometries
+     *
+     * @param values
+     *            the encoded geometries or boxes (WKT, EWKT, hexadecimal WKB
+     *            or box)
+     * @return the index
+     */
+    public static EnvelopeIndex build(String[] values) {
+        return build(values.length, row -> values[row]);
+    }
+
+    /**
+     * Builds an index over a column of encoded geometries. The envelope of a
+     * dictionary encoded column is computed once per distinct value.
+     *
+     * @param values
+     *            the column of encoded geometries or boxes (WKT, EWKT,
+     *            hexadecimal WKB or box)
+     * @return the index
+     */
+    public static EnvelopeIndex build(Column values) {
+        if (values instanceof DictionaryColumn) {
+            DictionaryColumn dictionary = (DictionaryColumn) values;
+            double[] distinct = new double[dictionary.getCardinality() * 4];
+            EnvelopeReader reader = new EnvelopeReader();
+            for (int code = 0; code < dictionary.getCardinality(); code++) {
+                System.arraycopy(reader.read(dictionary.decode(code)), 0, distinct, code * 4, 4);
+            }
+            double[] envelopes = new double[dictionary.size() * 4];
+            for (int row = 0; row < dictionary.size(); row++) {
+                int code = dictionary.getCode(row);
+                if (code < 0) {
+                    Arrays.fill(envelopes, row * 4, row * 4 + 4, Double.NaN);
+                } else {
+                    System.arraycopy(distinct, code * 4, envelopes, row * 4, 4);
+                }
+            }
+            return new EnvelopeIndex(envelopes, DEFAULT_NODE_SIZE);
+        }
+        return build(values.size(), values::get);
+    }
+
+    /**
+     * Returns the index of a column of encoded geometries, built on the first
+     * call and cached on the column until it is modified (see
+     * {@link Column#getDerivedValue(Class, java.util.function.Function)}).
+     *
+     * @param values
+     *            the column of encoded geometries or boxes (WKT, EWKT,
+     *            hexadecimal WKB or box)
+     * @return the index
+     */
+    public static EnvelopeIndex of(Column values) {
+        return values.getDerivedValue(EnvelopeIndex.class, EnvelopeIndex::build);
+    }
+
+    private static EnvelopeIndex build(int size, IntFunction<String> values) {
+        double[] envelopes = new double[size * 4];
+        EnvelopeReader reader = new EnvelopeReader();
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(reader.read(values.apply(row)), 0, envelopes, row * 4, 4);
+        }
+        return new EnvelopeIndex(envelopes, DEFAULT_NODE_SIZE);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the envelope of a row
+     *
+     * @param row
+     *            the index of the row
+     * @param envelope
+     *            the array to fill with min X, min Y, max X and max Y (NaN if
+     *            the row never matches)
+     * @return the envelope
+     */
+    public double[] getEnvelope(int row, double[] envelope) {
+        System.arraycopy(envelopes, row * 4, envelope, 0, 4);
+        return envelope;
+    }
+
+    /**
+     * Tests if the envelope of a row intersects a box
+     *
+     * @param row
+     *            the index of the row
+     * @param minX
+     *            the min X of the box
+     * @param minY
+     *            the min Y of the box
+     * @param maxX
+     *            the max X of the box
+     * @param maxY
+     *            the max Y of the box
+     * @return true if the envelope of the row intersects the box
+     */
+    public boolean intersects(int row, double minX, double minY, double maxX, double maxY) {
+        return intersects(envelopes, row * 4, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Returns the rows whose envelope intersects a box
+     *
+     * @param minX
+     *            the min X of the box
+     * @param minY
+     *            the min Y of the box
+     * @param maxX
+     *            the max X of the box
+     * @param maxY
+     *            the max Y of the box
+     * @return the rows whose envelope intersects the box
+     */
+    public BitSet query(double minX, double minY, double maxX, double maxY) {
+        BitSet result = new BitSet(size);
+        int levels = levelBounds.length - 1;
+        if (levelBounds[levels] == 0) {
+            return result;
+        }
+        int[] stack = new int[levels * nodeSize + 1];
+        int top = 0;
+        stack[top++] = levelBounds[levels] - 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!intersects(boxes, node * 4, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (node < levelBounds[1]) {
+                result.set(indices[node]);
+                continue;
+            }
+            int level = level(node);
+            int end = Math.min(indices[node] + nodeSize, levelBounds[level]);
+            for (int child = indices[node]; child < end; child++) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rows that might satisfy a criteria on the indexed column
+     *
+     * @param criteria
+     *            the criteria
+     * @return the rows that might match the box, if the criteria is a
+     *         bounding box intersection (operator {@code &&}) with a box or a
+     *         geometry. Otherwise, all the rows.
+     */
+    public BitSet candidates(Criteria criteria) {
+        double[] box = INTERSECTS_OPERATOR.equals(criteria.getOperator()) && criteria.getValue() != null
+                ? parseBox(criteria.getValue()) : null;
+        if (box == null) {
+            BitSet all = new BitSet(size);
+            all.set(0, size);
+            return all;
+        }
+        return query(box[0], box[1], box[2], box[3]);
+    }
+
+    /**
+     * Parses the box of a spatial criteria
+     *
+     * @param value
+     *            a box or a geometry (e.g. BOX(0 0,10 10), or the
+     *            hexadecimal WKB of a polygon)
+     * @return the 2D envelope of the value (min X, min Y, max X and max Y),
+     *         or {@code null} if the value is neither a box nor a geometry
+     */
+    public static double[] parseBox(String value) {
+        double[] envelope = new EnvelopeReader().read(value);
+        return Double.isNaN(envelope[0]) ? null : envelope;
+    }
+
+    private int level(int node) {
+        int level = 1;
+        while (node >= levelBounds[level]) {
+            level++;
+        }
+        return level - 1;
+    }
+
+    private static boolean intersects(double[] boxes, int i, double minX, double minY, double maxX, double maxY) {
+        return boxes[i] <= maxX && boxes[i + 1] <= maxY && boxes[i + 2] >= minX && boxes[i + 3] >= minY;
+    }
+
+    /**
+     * Computes the 2D envelopes of encoded geometries or boxes (WKT, EWKT,
+     * hexadecimal WKB or box), one after the other: the hexadecimal WKB values
+     * are decoded in a scratch buffer and the envelope is written in an array
+     * that are both reused from value to value. A reader is not thread-safe.
+     */
+    public static final class EnvelopeReader {
+
+        private final double[] envelope = new double[4];
+        private ByteBuffer scratch;
+
+        /**
+         * Computes the envelope of an encoded geometry or box
+         *
+         * @param value
+         *            the encoded geometry or box (may be {@code null})
+         * @return min X, min Y, max X and max Y: NaN for {@code null} and
+         *         empty geometries, and for values that are neither a
+         *         geometry nor a box. The array is overwritten by the next
+         *         call.
+         */
+        public double[] read(String value) {
+            if (value == null) {
+                Arrays.fill(envelope, Double.NaN);
+                return envelope;
+            }
+            try {
+                FlatGeometry geometry = flatGeometry(value);
+                if (geometry != null) {
+                    return geometry.getEnvelope(envelope);
+                }
+            } catch (RuntimeException e) {
+                // not supported by FlatGeometry (e.g. geometry collection)
+            }
+            DecodedGeometry decoded = GeometryCodec.INSTANCE.decode(value);
+            if (decoded == null) {
+                Arrays.fill(envelope, Double.NaN);
+            } else if (decoded.getGeometry() != null) {
+                Geometry geometry = decoded.getGeometry();
+                Arrays.fill(envelope, Double.NaN);
+                for (int i = 0; i < geometry.numPoints(); i++) {
+                    Point point = geometry.getPoint(i);
+                    envelope[0] = i == 0 ? point.x : Math.min(envelope[0], point.x);
+                    envelope[1] = i == 0 ? point.y : Math.min(envelope[1], point.y);
+                    envelope[2] = i == 0 ? point.x : Math.max(envelope[2], point.x);
+                    envelope[3] = i == 0 ? point.y : Math.max(envelope[3], point.y);
+                }
+            } else {
+                PGboxbase box = decoded.getBox();
+                envelope[0] = Math.min(box.getLLB().x, box.getURT().x);
+                envelope[1] = Math.min(box.getLLB().y, box.getURT().y);
+                envelope[2] = Math.max(box.getLLB().x, box.getURT().x);
+                envelope[3] = Math.max(box.getLLB().y, box.getURT().y);
+            }
+            return envelope;
+        }
+
+        private FlatGeometry flatGeometry(String value) {
+            int start = 0;
+            if (value.startsWith(PGgeometry.SRIDPREFIX)) {
+                start = value.indexOf(';') + 1;
+            }
+            if (value.startsWith("00", start) || value.startsWith("01", start)) {
+                int size = (value.length() - start) / 2;
+                if (scratch == null || scratch.capacity() < size) {
+                    scratch = ByteBuffer.allocate(Math.max(size, scratch == null ? 256 : scratch.capacity() * 2));
+                }
+                ByteBuffer wkb = scratch;
+                wkb.clear();
+                HexCodec.decode(value, start, value.length(), wkb);
+                wkb.flip();
+                return FlatGeometry.readWkb(wkb);
+            }
+            if (value.indexOf('(') != -1 && !value.regionMatches(true, start, "BOX", 0, 3)) {
+                return FlatGeometry.parseWkt(value);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Scales a position in [0, 1] to the Hilbert curve coordinates (positions
+     * of infinite or NaN centers are clamped)
+     */
+    private static int hilbertCoordinate(double position) {
+        return position >= 1 ? HILBERT_MAX : position > 0 ? (int) Math.floor(HILBERT_MAX * position) : 0;
+    }
+
+    /**
+     * Computes the position of a point along the Hilbert curve of a 65536 x
+     * 65536 grid
+     */
+    private static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int aa = a | (b >>> 1);
+        int bb = (a >>> 1) ^ a;
+        int cc = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int dd = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >>> 2)) ^ (b & (b >>> 2));
+        bb = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+        cc ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+        dd ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >>> 4)) ^ (b & (b >>> 4));
+        bb = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+        cc ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+        dd ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        cc ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+        dd ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+        a = cc ^ (cc >>> 1);
+        b = dd ^ (dd >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
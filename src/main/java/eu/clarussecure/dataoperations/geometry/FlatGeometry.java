@@ -0,0 +1,865 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.postgis.Geometry;
+
+/**
+ * Lightweight geometry that stores its coordinates in a flat
+ * {@code double[]}, instead of one {@code Point} object per vertex.
+ * <p>
+ * A geometry is made of parts (the geometries of a multi geometry, or a
+ * single part for a point, a line string or a polygon), each part is made of
+ * rings (the exterior and interior rings of a polygon, or a single ring for a
+ * point or a line string), and each ring is a sequence of points. The
+ * structure is described by two offset arrays:
+ * <ul>
+ * <li>the points of the ring {@code r} are the points from
+ * {@link #getRingStart(int)} to {@link #getRingEnd(int)} (exclusive),</li>
+ * <li>the rings of the part {@code p} are the rings from
+ * {@link #getPartRingStart(int)} to {@link #getPartRingEnd(int)}
+ * (exclusive).</li>
+ * </ul>
+ * The ordinates of the points are interleaved in the coordinates array: X, Y,
+ * then Z and/or M if any (see {@link #getStride()}).
+ * <p>
+ * Supported types are the ones of PostGIS, except geometry collections:
+ * {@link Geometry#POINT}, {@link Geometry#LINESTRING},
+ * {@link Geometry#POLYGON}, {@link Geometry#MULTIPOINT},
+ * {@link Geometry#MULTILINESTRING} and {@link Geometry#MULTIPOLYGON}.
+ * Geometries can be read from and written to (E)WKB and (E)WKT, and
+ * transformed in place with a {@link CoordinateTransform}, without per point
+ * allocation. Empty points of multi points (EMPTY in WKT, NaN ordinates in
+ * WKB) are skipped.
+ */
+public final class FlatGeometry {
+
+    private static final int WKB_Z = 0x80000000;
+    private static final int WKB_M = 0x40000000;
+    private static final int WKB_SRID = 0x20000000;
+
+    private final int type;
+    private final boolean hasZ;
+    private final boolean hasM;
+    private int srid;
+    private final double[] coordinates;
+    private final int[] ringOffsets;
+    private final int[] partOffsets;
+
+    /**
+     * Builds a geometry
+     *
+     * @param type
+     *            the type of the geometry (e.g. {@link Geometry#POLYGON})
+     * @param hasZ
+     *            true if points have a Z ordinate
+     * @param hasM
+     *            true if points have a M ordinate
+     * @param srid
+     *            the SRID (0 if unknown)
+     * @param coordinates
+     *            the interleaved ordinates of the points (not copied)
+     * @param ringOffsets
+     *            the index of the first point of each ring, followed by the
+     *            number of points (not copied)
+     * @param partOffsets
+     *            the index of the first ring of each part, followed by the
+     *            number of rings (not copied)
+     */
+    public FlatGeometry(int type, boolean hasZ, boolean hasM, int srid, double[] coordinates, int[] ringOffsets,
+            int[] partOffsets) {
+        if (type < Geometry.POINT || type > Geometry.MULTIPOLYGON) {
+            throw new IllegalArgumentException("unsupported geometry type: " + type);
+        }
+        this.type = type;
+        this.hasZ = hasZ;
+        this.hasM = hasM;
+        this.srid = srid;
+        this.coordinates = coordinates;
+        this.ringOffsets = ringOffsets;
+        this.partOffsets = partOffsets;
+        if (ringOffsets[ringOffsets.length - 1] * getStride() > coordinates.length) {
+            throw new IllegalArgumentException("not enough coordinates");
+        }
+    }
+
+    /**
+     * Converts a PostGIS geometry
+     *
+     * @param geometry
+     *            the geometry to convert
+     * @return the flat geometry
+     */
+    public static FlatGeometry fromGeometry(Geometry geometry) {
+        return readWkb(WkbCodec.INSTANCE.encode(geometry, GeometryFormat.HEX_WKB_LITTLE_ENDIAN.getByteOrder(), null));
+    }
+
+    /**
+     * Converts to a PostGIS geometry
+     *
+     * @return the PostGIS geometry
+     */
+    public Geometry toGeometry() {
+        ByteBuffer wkb = ByteBuffer.allocate(getWkbSize());
+        writeWkb(wkb, ByteOrder.LITTLE_ENDIAN);
+        wkb.flip();
+        return WkbCodec.INSTANCE.decode(wkb);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public boolean hasZ() {
+        return hasZ;
+    }
+
+    public boolean hasM() {
+        return hasM;
+    }
+
+    /**
+     * @return the number of ordinates per point (2, 3 or 4)
+     */
+    public int getStride() {
+        return 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+    }
+
+    public int getSrid() {
+        return srid;
+    }
+
+    public void setSrid(int srid) {
+        this.srid = srid;
+    }
+
+    /**
+     * @return the interleaved ordinates of the points (not a copy)
+     */
+    public double[] getCoordinates() {
+        return coordinates;
+    }
+
+    public int getPointCount() {
+        return ringOffsets[ringOffsets.length - 1];
+    }
+
+    public int getRingCount() {
+        return ringOffsets.length - 1;
+    }
+
+    public int getRingStart(int ring) {
+        return ringOffsets[ring];
+    }
+
+    public int getRingEnd(int ring) {
+        return ringOffsets[ring + 1];
+    }
+
+    public int getPartCount() {
+        return partOffsets.length - 1;
+    }
+
+    public int getPartRingStart(int part) {
+        return partOffsets[part];
+    }
+
+    public int getPartRingEnd(int part) {
+        return partOffsets[part + 1];
+    }
+
+    public double getX(int point) {
+        return coordinates[point * getStride()];
+    }
+
+    public double getY(int point) {
+        return coordinates[point * getStride() + 1];
+    }
+
+    /**
+     * @return true if the geometry has no point
+     */
+    public boolean isEmpty() {
+        return getPointCount() == 0;
+    }
+
+    /**
+     * Transforms all the points in place
+     *
+     * @param transform
+     *            the transformation
+     */
+    public void transform(CoordinateTransform transform) {
+        transform.transform(coordinates, 0, getPointCount(), getStride());
+    }
+
+    /**
+     * Computes the 2D envelope of the geometry. Points whose X or Y is NaN
+     * are ignored.
+     *
+     * @param envelope
+     *            the array to fill with min X, min Y, max X and max Y (NaN if
+     *            the geometry is empty)
+     * @return the envelope
+     */
+    public double[] getEnvelope(double[] envelope) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int stride = getStride();
+        int end = getPointCount() * stride;
+        for (int i = 0; i < end; i += stride) {
+            double x = coordinates[i];
+            double y = coordinates[i + 1];
+            if (Double.isNaN(x) || Double.isNaN(y)) {
+                continue;
+            }
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        if (minX > maxX) {
+            minX = minY = maxX = maxY = Double.NaN;
+        }
+        envelope[0] = minX;
+        envelope[1] = minY;
+        envelope[2] = maxX;
+        envelope[3] = maxY;
+        return envelope;
+    }
+
+    /**
+     * Accumulates the structure and the coordinates of a geometry while it is
+     * read
+     */
+    private static final class Builder {
+        private int type;
+        private boolean hasZ;
+        private boolean hasM;
+        private int srid;
+        private double[] coordinates = new double[16];
+        private int ordinateCount;
+        private int[] rings = new int[4];
+        private int ringCount;
+        private int[] parts = new int[4];
+        private int partCount;
+
+        private int stride() {
+            return 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+        }
+
+        private void startPart() {
+            if (partCount + 1 >= parts.length) {
+                parts = Arrays.copyOf(parts, parts.length * 2);
+            }
+            parts[partCount++] = ringCount;
+        }
+
+        private void startRing() {
+            if (ringCount + 1 >= rings.length) {
+                rings = Arrays.copyOf(rings, rings.length * 2);
+            }
+            rings[ringCount++] = ordinateCount / stride();
+        }
+
+        private void add(double ordinate) {
+            if (ordinateCount == coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            }
+            coordinates[ordinateCount++] = ordinate;
+        }
+
+        private FlatGeometry build() {
+            rings[ringCount] = ordinateCount / stride();
+            parts[partCount] = ringCount;
+            return new FlatGeometry(type, hasZ, hasM, srid, Arrays.copyOf(coordinates, ordinateCount),
+                    Arrays.copyOf(rings, ringCount + 1), Arrays.copyOf(parts, partCount + 1));
+        }
+    }
+
+    // WKB
+
+    /**
+     * Reads a (E)WKB geometry
+     *
+     * @param wkb
+     *            the WKB geometry
+     * @return the geometry
+     */
+    public static FlatGeometry readWkb(byte[] wkb) {
+        return readWkb(ByteBuffer.wrap(wkb));
+    }
+
+    /**
+     * Reads a (E)WKB geometry, from the current position of the buffer. The
+     * position is moved after the geometry. The byte order of the buffer is
+     * left unchanged.
+     *
+     * @param wkb
+     *            the buffer that contains the WKB geometry
+     * @return the geometry
+     */
+    public static FlatGeometry readWkb(ByteBuffer wkb) {
+        ByteOrder order = wkb.order();
+        try {
+            Builder builder = new Builder();
+            readWkb(wkb, builder, true);
+            return builder.build();
+        } finally {
+            wkb.order(order);
+        }
+    }
+
+    private static void readWkb(ByteBuffer wkb, Builder builder, boolean top) {
+        wkb.order(wkb.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int typeWord = wkb.getInt();
+        boolean hasZ = (typeWord & WKB_Z) != 0;
+        boolean hasM = (typeWord & WKB_M) != 0;
+        int type = typeWord & 0x0FFFFFFF;
+        if (type >= 1000) {
+            // ISO WKB
+            int dimensions = type / 1000;
+            type %= 1000;
+            hasZ |= dimensions == 1 || dimensions == 3;
+            hasM |= dimensions == 2 || dimensions == 3;
+        }
+        int srid = (typeWord & WKB_SRID) != 0 ? wkb.getInt() : 0;
+        if (top) {
+            builder.type = type;
+            builder.hasZ = hasZ;
+            builder.hasM = hasM;
+            builder.srid = srid;
+        } else if (hasZ != builder.hasZ || hasM != builder.hasM) {
+            throw new IllegalArgumentException("mixed dimensions are not supported");
+        }
+        int stride = builder.stride();
+        switch (type) {
+        case Geometry.POINT: {
+            builder.startPart();
+            int start = builder.ordinateCount;
+            builder.startRing();
+            boolean empty = true;
+            for (int i = 0; i < stride; i++) {
+                double ordinate = wkb.getDouble();
+                empty &= Double.isNaN(ordinate);
+                builder.add(ordinate);
+            }
+            if (empty) {
+                // POINT EMPTY: no ring, and no part at all in a multi point
+                builder.ordinateCount = start;
+                builder.ringCount--;
+                if (!top) {
+                    builder.partCount--;
+                }
+            }
+            break;
+        }
+        case Geometry.LINESTRING:
+            builder.startPart();
+            readPoints(wkb, builder, stride);
+            break;
+        case Geometry.POLYGON: {
+            builder.startPart();
+            int ringCount = wkb.getInt();
+            for (int r = 0; r < ringCount; r++) {
+                readPoints(wkb, builder, stride);
+            }
+            break;
+        }
+        case Geometry.MULTIPOINT:
+        case Geometry.MULTILINESTRING:
+        case Geometry.MULTIPOLYGON: {
+            if (!top) {
+                throw new IllegalArgumentException("nested multi geometries are not supported");
+            }
+            int partCount = wkb.getInt();
+            for (int p = 0; p < partCount; p++) {
+                readWkb(wkb, builder, false);
+            }
+            break;
+        }
+        default:
+            throw new IllegalArgumentException("unsupported geometry type: " + type);
+        }
+    }
+
+    private static void readPoints(ByteBuffer wkb, Builder builder, int stride) {
+        builder.startRing();
+        int n = wkb.getInt() * stride;
+        for (int i = 0; i < n; i++) {
+            builder.add(wkb.getDouble());
+        }
+    }
+
+    /**
+     * @return the size of the geometry in EWKB (bytes)
+     */
+    public int getWkbSize() {
+        int header = 1 + 4 + (srid != 0 ? 4 : 0);
+        int pointSize = getStride() * 8;
+        int points = getPointCount() * pointSize;
+        switch (type) {
+        case Geometry.POINT:
+            return header + pointSize;
+        case Geometry.LINESTRING:
+            return header + 4 + points;
+        case Geometry.POLYGON:
+            return header + 4 + getRingCount() * 4 + points;
+        case Geometry.MULTIPOINT:
+            return header + 4 + getPartCount() * (1 + 4 + pointSize);
+        case Geometry.MULTILINESTRING:
+            return header + 4 + getPartCount() * (1 + 4 + 4) + points;
+        default:
+            return header + 4 + getPartCount() * (1 + 4 + 4) + getRingCount() * 4 + points;
+        }
+    }
+
+    /**
+     * Writes the geometry in EWKB (as PostGIS does), at the current position
+     * of the buffer. The position is moved after the geometry. The byte order
+     * of the buffer is left unchanged.
+     *
+     * @param wkb
+     *            the buffer to write to (see {@link #getWkbSize()})
+     * @param byteOrder
+     *            the byte order of the WKB geometry
+     */
+    public void writeWkb(ByteBuffer wkb, ByteOrder byteOrder) {
+        ByteOrder order = wkb.order();
+        try {
+            wkb.order(byteOrder);
+            writeWkbHeader(wkb, type, srid);
+            switch (type) {
+            case Geometry.POINT:
+                if (getPointCount() == 0) {
+                    for (int i = 0; i < getStride(); i++) {
+                        wkb.putDouble(Double.NaN);
+                    }
+                } else {
+                    writeWkbPoints(wkb, 0, 1);
+                }
+                break;
+            case Geometry.LINESTRING:
+                writeWkbRing(wkb, 0);
+                break;
+            case Geometry.POLYGON:
+                writeWkbRings(wkb, 0);
+                break;
+            default:
+                wkb.putInt(getPartCount());
+                for (int p = 0; p < getPartCount(); p++) {
+                    writeWkbPart(wkb, p);
+                }
+                break;
+            }
+        } finally {
+            wkb.order(order);
+        }
+    }
+
+    /**
+     * @return the geometry in EWKB, little endian
+     */
+    public byte[] toWkb() {
+        ByteBuffer wkb = ByteBuffer.allocate(getWkbSize());
+        writeWkb(wkb, ByteOrder.LITTLE_ENDIAN);
+        return wkb.array();
+    }
+
+    private void writeWkbHeader(ByteBuffer wkb, int type, int srid) {
+        wkb.put(wkb.order() == ByteOrder.BIG_ENDIAN ? (byte) 0 : (byte) 1);
+        wkb.putInt(type | (hasZ ? WKB_Z : 0) | (hasM ? WKB_M : 0) | (srid != 0 ? WKB_SRID : 0));
+        if (srid != 0) {
+            wkb.putInt(srid);
+        }
+    }
+
+    private void writeWkbPart(ByteBuffer wkb, int part) {
+        int ringStart = getPartRingStart(part);
+        switch (type) {
+        case Geometry.MULTIPOINT:
+            writeWkbHeader(wkb, Geometry.POINT, 0);
+            writeWkbPoints(wkb, getRingStart(ringStart), 1);
+            break;
+        case Geometry.MULTILINESTRING:
+            writeWkbHeader(wkb, Geometry.LINESTRING, 0);
+            writeWkbRing(wkb, ringStart);
+            break;
+        default:
+            writeWkbHeader(wkb, Geometry.POLYGON, 0);
+            writeWkbRings(wkb, part);
+            break;
+        }
+    }
+
+    private void writeWkbRings(ByteBuffer wkb, int part) {
+        int ringStart = getPartCount() == 0 ? 0 : getPartRingStart(part);
+        int ringEnd = getPartCount() == 0 ? 0 : getPartRingEnd(part);
+        wkb.putInt(ringEnd - ringStart);
+        for (int r = ringStart; r < ringEnd; r++) {
+            writeWkbRing(wkb, r);
+        }
+    }
+
+    private void writeWkbRing(ByteBuffer wkb, int ring) {
+        if (ring >= getRingCount()) {
+            wkb.putInt(0);
+            return;
+        }
+        int count = getRingEnd(ring) - getRingStart(ring);
+        wkb.putInt(count);
+        writeWkbPoints(wkb, getRingStart(ring), count);
+    }
+
+    private void writeWkbPoints(ByteBuffer wkb, int point, int count) {
+        int stride = getStride();
+        int end = (point + count) * stride;
+        for (int i = point * stride; i < end; i++) {
+            wkb.putDouble(coordinates[i]);
+        }
+    }
+
+    // WKT
+
+    /**
+     * Parses a (E)WKT geometry (e.g. SRID=4326;POLYGON((0 0,0 1,1 1,0 0)))
+     *
+     * @param wkt
+     *            the WKT geometry
+     * @return the geometry
+     * @throws IllegalArgumentException
+     *             if the WKT geometry is malformed or not supported
+     */
+    public static FlatGeometry parseWkt(String wkt) {
+        return new WktParser(wkt).parse();
+    }
+
+    /**
+     * @return the geometry in (E)WKT, formatted as PostGIS does
+     */
+    public String toWkt() {
+        StringBuilder sb = new StringBuilder();
+        if (srid != 0) {
+            sb.append("SRID=").append(srid).append(';');
+        }
+        sb.append(Geometry.getTypeString(type));
+        if (hasM && !hasZ) {
+            sb.append('M');
+        }
+        if (getPointCount() == 0) {
+            return sb.append(" EMPTY").toString();
+        }
+        switch (type) {
+        case Geometry.POINT:
+        case Geometry.LINESTRING:
+            appendWktRing(sb, 0);
+            break;
+        case Geometry.POLYGON:
+            appendWktRings(sb, 0);
+            break;
+        case Geometry.MULTIPOINT:
+            sb.append('(');
+            for (int p = 0; p < getPartCount(); p++) {
+                if (p > 0) {
+                    sb.append(',');
+                }
+                appendWktPoint(sb, getRingStart(getPartRingStart(p)));
+            }
+            sb.append(')');
+            break;
+        case Geometry.MULTILINESTRING:
+            sb.append('(');
+            for (int p = 0; p < getPartCount(); p++) {
+                if (p > 0) {
+                    sb.append(',');
+                }
+                appendWktRing(sb, getPartRingStart(p));
+            }
+            sb.append(')');
+            break;
+        default:
+            sb.append('(');
+            for (int p = 0; p < getPartCount(); p++) {
+                if (p > 0) {
+                    sb.append(',');
+                }
+                appendWktRings(sb, p);
+            }
+            sb.append(')');
+            break;
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toWkt();
+    }
+
+    private void appendWktRings(StringBuilder sb, int part) {
+        sb.append('(');
+        if (getPartCount() > 0) {
+            for (int r = getPartRingStart(part); r < getPartRingEnd(part); r++) {
+                if (r > getPartRingStart(part)) {
+                    sb.append(',');
+                }
+                appendWktRing(sb, r);
+            }
+        }
+        sb.append(')');
+    }
+
+    private void appendWktRing(StringBuilder sb, int ring) {
+        sb.append('(');
+        for (int point = getRingStart(ring); point < getRingEnd(ring); point++) {
+            if (point > getRingStart(ring)) {
+                sb.append(',');
+            }
+            appendWktPoint(sb, point);
+        }
+        sb.append(')');
+    }
+
+    private void appendWktPoint(StringBuilder sb, int point) {
+        int stride = getStride();
+        for (int i = 0; i < stride; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            double ordinate = coordinates[point * stride + i];
+            long l = (long) ordinate;
+            if (l == ordinate && Math.abs(ordinate) < 1e15) {
+                sb.append(l);
+            } else {
+                sb.append(ordinate);
+            }
+        }
+    }
+
+    /**
+     * Recursive descent parser of (E)WKT geometries
+     */
+    private static final class WktParser {
+        private final String wkt;
+        private int pos;
+        private final Builder builder = new Builder();
+        private int ordinatesPerPoint = -1;
+        private boolean mOnly;
+
+        private WktParser(String wkt) {
+            this.wkt = wkt;
+        }
+
+        private FlatGeometry parse() {
+            skipSpaces();
+            if (wkt.regionMatches(true, pos, "SRID=", 0, 5)) {
+                int end = wkt.indexOf(';', pos);
+                if (end == -1) {
+                    throw error("missing ';' after SRID");
+                }
+                builder.srid = Geometry.parseSRID(Integer.parseInt(wkt.substring(pos + 5, end).trim()));
+                pos = end + 1;
+            }
+            String word = word();
+            if (word.endsWith("M") && !word.equals("M")) {
+                mOnly = true;
+                word = word.substring(0, word.length() - 1);
+            }
+            int type = Arrays.asList(Geometry.ALLTYPES).indexOf(word);
+            if (type < Geometry.POINT || type > Geometry.MULTIPOLYGON) {
+                throw error("unsupported geometry type " + word);
+            }
+            builder.type = type;
+            skipSpaces();
+            if (pos < wkt.length() && Character.isLetter(wkt.charAt(pos))) {
+                String dimensions = word();
+                if (dimensions.equals("Z")) {
+                    ordinatesPerPoint = 3;
+                } else if (dimensions.equals("M")) {
+                    mOnly = true;
+                } else if (dimensions.equals("ZM")) {
+                    ordinatesPerPoint = 4;
+                } else if (dimensions.equals("EMPTY")) {
+                    return empty();
+                } else {
+                    throw error("unexpected " + dimensions);
+                }
+                skipSpaces();
+                if (wkt.regionMatches(true, pos, "EMPTY", 0, 5)) {
+                    pos += 5;
+                    return empty();
+                }
+            }
+            if (mOnly && ordinatesPerPoint == -1) {
+                ordinatesPerPoint = 3;
+            }
+            if (ordinatesPerPoint != -1) {
+                setDimensions(ordinatesPerPoint);
+            }
+            switch (type) {
+            case Geometry.POINT:
+                builder.startPart();
+                expect('(');
+                builder.startRing();
+                point();
+                expect(')');
+                break;
+            case Geometry.LINESTRING:
+                builder.startPart();
+                ring();
+                break;
+            case Geometry.POLYGON:
+                builder.startPart();
+                rings();
+                break;
+            case Geometry.MULTIPOINT:
+                expect('(');
+                do {
+                    skipSpaces();
+                    if (wkt.regionMatches(true, pos, "EMPTY", 0, 5)) {
+                        // empty points are skipped
+                        pos += 5;
+                        continue;
+                    }
+                    builder.startPart();
+                    builder.startRing();
+                    if (peek() == '(') {
+                        expect('(');
+                        point();
+                        expect(')');
+                    } else {
+                        point();
+                    }
+                } while (comma());
+                expect(')');
+                break;
+            case Geometry.MULTILINESTRING:
+                expect('(');
+                do {
+                    builder.startPart();
+                    ring();
+                } while (comma());
+                expect(')');
+                break;
+            default:
+                expect('(');
+                do {
+                    builder.startPart();
+                    rings();
+                } while (comma());
+                expect(')');
+                break;
+            }
+            skipSpaces();
+            if (pos != wkt.length()) {
+                throw error("unexpected trailing characters");
+            }
+            return builder.build();
+        }
+
+        private FlatGeometry empty() {
+            setDimensions(ordinatesPerPoint == -1 ? (mOnly ? 3 : 2) : ordinatesPerPoint);
+            if (builder.type == Geometry.POINT || builder.type == Geometry.LINESTRING
+                    || builder.type == Geometry.POLYGON) {
+                builder.startPart();
+            }
+            return builder.build();
+        }
+
+        private void rings() {
+            expect('(');
+            do {
+                ring();
+            } while (comma());
+            expect(')');
+        }
+
+        private void ring() {
+            expect('(');
+            builder.startRing();
+            do {
+                point();
+            } while (comma());
+            expect(')');
+        }
+
+        private void point() {
+            int count = 0;
+            skipSpaces();
+            while (pos < wkt.length() && wkt.charAt(pos) != ',' && wkt.charAt(pos) != ')') {
+                int start = pos;
+                while (pos < wkt.length() && " \t\r\n,)".indexOf(wkt.charAt(pos)) == -1) {
+                    pos++;
+                }
+                try {
+                    builder.add(Double.parseDouble(wkt.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("invalid number " + wkt.substring(start, pos));
+                }
+                count++;
+                skipSpaces();
+            }
+            if (ordinatesPerPoint == -1) {
+                setDimensions(count);
+                // the first ring was started before the dimensions were known
+                builder.rings[builder.ringCount - 1] = 0;
+            }
+            if (count != ordinatesPerPoint) {
+                throw error(String.format("expected %d ordinates, got %d", ordinatesPerPoint, count));
+            }
+        }
+
+        private void setDimensions(int count) {
+            if (count < 2 || count > 4) {
+                throw error("invalid number of ordinates: " + count);
+            }
+            ordinatesPerPoint = count;
+            builder.hasZ = count == 4 || (count == 3 && !mOnly);
+            builder.hasM = count == 4 || (count == 3 && mOnly);
+        }
+
+        private String word() {
+            skipSpaces();
+            int start = pos;
+            while (pos < wkt.length() && Character.isLetter(wkt.charAt(pos))) {
+                pos++;
+            }
+            return wkt.substring(start, pos).toUpperCase();
+        }
+
+        private boolean comma() {
+            skipSpaces();
+            if (pos < wkt.length() && wkt.charAt(pos) == ',') {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            skipSpaces();
+            return pos < wkt.length() ? wkt.charAt(pos) : 0;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private void skipSpaces() {
+            while (pos < wkt.length() && Character.isWhitespace(wkt.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(String.format("%s at %d in %s", message, pos, wkt));
+        }
+    }
+}
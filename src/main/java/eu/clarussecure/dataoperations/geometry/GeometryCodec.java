@@ -0,0 +1,162 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.sql.SQLException;
+
+import org.postgis.Geometry;
+import org.postgis.PGbox2d;
+import org.postgis.PGbox3d;
+import org.postgis.PGboxbase;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+import org.postgis.binary.ByteGetter;
+import org.postgis.binary.ValueGetter;
+
+/**
+ * Decodes and encodes geometries (and boxes) from and to {@code String}.
+ * <p>
+ * Unlike {@link GeometryBuilder}, the codec is stateless: decoding returns
+ * the format of the value and encoding takes the format as a parameter. So, a
+ * single instance (see {@link #INSTANCE}) can be shared by all the threads.
+ */
+public final class GeometryCodec {
+
+    /** Shared instance */
+    public static final GeometryCodec INSTANCE = new GeometryCodec();
+
+    private static final String BOX2D_PREFIX = new PGbox2d().getPrefix();
+    private static final String BOX3D_PREFIX = new PGbox3d().getPrefix();
+
+    /**
+     * Decodes a geometry or a box
+     *
+     * @param value
+     *            the encoded value (WKT, EWKT, hexadecimal WKB or box)
+     * @return the decoded value, or {@code null} if the value is neither a
+     *         geometry nor a box
+     */
+    public DecodedGeometry decode(String value) {
+        DecodedGeometry decoded = decodeGeometry(value);
+        if (decoded == null) {
+            decoded = decodeBox(value);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes a geometry
+     *
+     * @param value
+     *            the encoded geometry (WKT, EWKT or hexadecimal WKB)
+     * @return the decoded geometry, or {@code null} if the value is not a
+     *         geometry
+     */
+    public DecodedGeometry decodeGeometry(String value) {
+        try {
+            Geometry geometry = PGgeometry.geomFromString(value);
+            return new DecodedGeometry(geometry, detectFormat(value, geometry.getSrid()));
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Detects the format of an encoded geometry
+     *
+     * @param value
+     *            the encoded geometry (WKT, EWKT or hexadecimal WKB)
+     * @param srid
+     *            the SRID of the geometry
+     * @return the format of the geometry
+     * @throws SQLException
+     *             if the SRID prefix is malformed
+     */
+    public GeometryFormat detectFormat(String value, int srid) throws SQLException {
+        boolean sridPrefix = value.startsWith(PGgeometry.SRIDPREFIX);
+        if (sridPrefix) {
+            // break up geometry into srid and wkt or wkb
+            value = PGgeometry.splitSRID(value)[1].trim();
+        }
+        if (value.startsWith("00") || value.startsWith("01")) {
+            boolean bigEndian = new ByteGetter.StringByteGetter(value).get(0) == ValueGetter.XDR.NUMBER;
+            return new GeometryFormat(GeometryFormat.Encoding.HEX_WKB, bigEndian, srid);
+        }
+        return new GeometryFormat(sridPrefix ? GeometryFormat.Encoding.EWKT : GeometryFormat.Encoding.WKT, true, srid);
+    }
+
+    /**
+     * Decodes a box
+     *
+     * @param value
+     *            the encoded box (e.g. BOX(1 2,3 4) or SRID=4326;BOX3D(1 2 3,4
+     *            5 6))
+     * @return the decoded box, or {@code null} if the value is not a box
+     */
+    public DecodedGeometry decodeBox(String value) {
+        try {
+            String prefix = value;
+            if (prefix.startsWith(PGgeometry.SRIDPREFIX)) {
+                prefix = PGgeometry.splitSRID(prefix)[1].trim();
+            }
+            int index = prefix.indexOf('(');
+            if (index == -1) {
+                return null;
+            }
+            prefix = prefix.substring(0, index).trim();
+            PGboxbase box;
+            if (BOX3D_PREFIX.equalsIgnoreCase(prefix)) {
+                box = new PGbox3d(value);
+            } else if (BOX2D_PREFIX.equalsIgnoreCase(prefix)) {
+                box = new PGbox2d(value);
+            } else {
+                return null;
+            }
+            return new DecodedGeometry(box,
+                    new GeometryFormat(GeometryFormat.Encoding.BOX, true, box.getLLB().getSrid()));
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Encodes a geometry or a box
+     *
+     * @param value
+     *            the {@link Geometry} or {@link PGboxbase} to encode
+     * @param format
+     *            the format to encode the geometry in (ignored for boxes)
+     * @return the encoded value, or {@code null} if the value is neither a
+     *         geometry nor a box
+     */
+    public String encode(Object value, GeometryFormat format) {
+        return value instanceof Geometry ? encodeGeometry((Geometry) value, format)
+                : value instanceof PGboxbase ? encodeBox((PGboxbase) value) : null;
+    }
+
+    /**
+     * Encodes a geometry. The SRID is the one of the geometry.
+     *
+     * @param geometry
+     *            the geometry to encode
+     * @param format
+     *            the format to encode the geometry in
+     * @return the encoded geometry
+     */
+    public String encodeGeometry(Geometry geometry, GeometryFormat format) {
+        if (format.isBinary()) {
+            return new BinaryWriter().writeHexed(geometry, format.getByteOrder());
+        }
+        return geometry.toString();
+    }
+
+    /**
+     * Encodes a box
+     *
+     * @param box
+     *            the box to encode
+     * @return the encoded box
+     */
+    public String encodeBox(PGboxbase box) {
+        int srid = box.getLLB().getSrid();
+        return srid != 0 ? PGgeometry.SRIDPREFIX + srid + ';' + box.toString() : box.toString();
+    }
+}
@@ -0,0 +1,297 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+import org.postgis.Geometry;
+import org.postgis.PGboxbase;
+import org.postgis.PGgeometry;
+
+import eu.clarussecure.dataoperations.table.Column;
+
+/**
+ * Decodes and encodes whole columns of geometries (and boxes) at once.
+ * <p>
+ * The format of a column is detected once, on its first non {@code null}
+ * value, and the values are then decoded with the decoder of this format.
+ * Values that are not in the format of the column are decoded one by one with
+ * {@link GeometryCodec}, so a column that mixes formats is still supported.
+ * <p>
+ * Hexadecimal WKB values are decoded and encoded through a scratch buffer that
+ * is reused for all the values of a chunk of rows, instead of intermediate
+ * {@code byte[]} per value. Columns of at least {@code parallelThreshold}
+ * values are split in chunks that are processed in a ForkJoin pool.
+ * <p>
+ * The codec is stateless and can be shared by all the threads.
+ */
+public final class GeometryColumnCodec {
+
+    /** Default minimum number of values to process a column in parallel */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+    /** Shared instance, that runs in the common ForkJoin pool */
+    public static final GeometryColumnCodec INSTANCE = new GeometryColumnCodec();
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    /**
+     * Builds a codec that processes large columns in the common ForkJoin pool
+     */
+    public GeometryColumnCodec() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Builds a codec
+     *
+     * @param pool
+     *            the pool that processes large columns
+     * @param parallelThreshold
+     *            the minimum number of values to process a column in parallel
+     */
+    public GeometryColumnCodec(ForkJoinPool pool, int parallelThreshold) {
+        if (parallelThreshold <= 0) {
+            throw new IllegalArgumentException("parallel threshold must be positive: " + parallelThreshold);
+        }
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Processes a range of rows, with its own scratch buffer
+     */
+    @FunctionalInterface
+    private interface RangeTask {
+        void run(int from, int to, ByteBuffer[] scratch);
+    }
+
+    private final class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RangeTask task;
+        private final int from;
+        private final int to;
+
+        private RangeAction(RangeTask task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= parallelThreshold) {
+                task.run(from, to, new ByteBuffer[] { ByteBuffer.allocate(INITIAL_BUFFER_SIZE) });
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeAction(task, from, middle), new RangeAction(task, middle, to));
+            }
+        }
+    }
+
+    private void run(int size, RangeTask task) {
+        if (size < parallelThreshold || pool.getParallelism() <= 1) {
+            task.run(0, size, new ByteBuffer[] { ByteBuffer.allocate(INITIAL_BUFFER_SIZE) });
+        } else {
+            pool.invoke(new RangeAction(task, 0, size));
+        }
+    }
+
+    /**
+     * Detects the format of a column of geometries
+     *
+     * @param values
+     *            the encoded values
+     * @return the format of the first non {@code null} value, or {@code null}
+     *         if there is no geometry nor box in the column
+     */
+    public GeometryFormat detectFormat(String[] values) {
+        return detectFormat(values.length, row -> values[row]);
+    }
+
+    private GeometryFormat detectFormat(int size, IntFunction<String> values) {
+        for (int row = 0; row < size; row++) {
+            String value = values.apply(row);
+            if (value != null) {
+                DecodedGeometry decoded = GeometryCodec.INSTANCE.decode(value);
+                return decoded != null ? decoded.getFormat() : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a column of geometries or boxes
+     *
+     * @param values
+     *            the encoded values (WKT, EWKT, hexadecimal WKB or box)
+     * @param decoded
+     *            the array to fill with the decoded values: {@link Geometry},
+     *            {@link PGboxbase} or {@code null} (for {@code null} values
+     *            and values that are neither a geometry nor a box)
+     * @return the format of the column (see {@link #detectFormat(String[])})
+     */
+    public GeometryFormat decode(String[] values, Object[] decoded) {
+        return decode(values.length, row -> values[row], decoded);
+    }
+
+    /**
+     * Decodes a column of geometries or boxes
+     *
+     * @param values
+     *            the column of encoded values (WKT, EWKT, hexadecimal WKB or
+     *            box)
+     * @param decoded
+     *            the array to fill with the decoded values: {@link Geometry},
+     *            {@link PGboxbase} or {@code null} (for {@code null} values
+     *            and values that are neither a geometry nor a box)
+     * @return the format of the column (see {@link #detectFormat(String[])})
+     */
+    public GeometryFormat decode(Column values, Object[] decoded) {
+        return decode(values.size(), values::get, decoded);
+    }
+
+    private GeometryFormat decode(int size, IntFunction<String> values, Object[] decoded) {
+        if (decoded.length < size) {
+            throw new IllegalArgumentException(
+                    String.format("expected an array of at least %d values, got %d", size, decoded.length));
+        }
+        GeometryFormat format = detectFormat(size, values);
+        GeometryFormat.Encoding encoding = format != null ? format.getEncoding() : null;
+        run(size, (from, to, scratch) -> {
+            for (int row = from; row < to; row++) {
+                String value = values.apply(row);
+                decoded[row] = value == null ? null : decode(value, encoding, scratch);
+            }
+        });
+        return format;
+    }
+
+    private Object decode(String value, GeometryFormat.Encoding encoding, ByteBuffer[] scratch) {
+        if (encoding == GeometryFormat.Encoding.HEX_WKB) {
+            Geometry geometry = decodeHex(value, scratch);
+            if (geometry != null) {
+                return geometry;
+            }
+        } else if (encoding == GeometryFormat.Encoding.WKT || encoding == GeometryFormat.Encoding.EWKT) {
+            try {
+                return PGgeometry.geomFromString(value);
+            } catch (SQLException e) {
+                // not in the format of the column
+            }
+        } else if (encoding == GeometryFormat.Encoding.BOX) {
+            DecodedGeometry decoded = GeometryCodec.INSTANCE.decodeBox(value);
+            if (decoded != null) {
+                return decoded.getBox();
+            }
+        }
+        DecodedGeometry decoded = GeometryCodec.INSTANCE.decode(value);
+        return decoded != null ? decoded.getValue() : null;
+    }
+
+    private Geometry decodeHex(String value, ByteBuffer[] scratch) {
+        int start = 0;
+        int srid = 0;
+        try {
+            if (value.startsWith(PGgeometry.SRIDPREFIX)) {
+                start = value.indexOf(';');
+                srid = Geometry.parseSRID(Integer.parseInt(value.substring(PGgeometry.SRIDPREFIX.length(), start)));
+                start++;
+            }
+            if (!value.startsWith("00", start) && !value.startsWith("01", start)) {
+                return null;
+            }
+            int size = (value.length() - start) / 2;
+            if (scratch[0].capacity() < size) {
+                scratch[0] = ByteBuffer.allocate(Math.max(size, scratch[0].capacity() * 2));
+            }
+            ByteBuffer wkb = scratch[0];
+            wkb.clear();
+            HexCodec.decode(value, start, value.length(), wkb);
+            wkb.flip();
+            Geometry geometry = WkbCodec.INSTANCE.decode(wkb);
+            if (srid != 0) {
+                geometry.setSrid(srid);
+            }
+            return geometry;
+        } catch (RuntimeException e) {
+            // not in the format of the column
+            return null;
+        }
+    }
+
+    /**
+     * Encodes a column of geometries or boxes
+     *
+     * @param values
+     *            the {@link Geometry}, {@link PGboxbase} or {@code null} values
+     *            to encode
+     * @param format
+     *            the format to encode the geometries in (ignored for boxes)
+     * @param encoded
+     *            the array to fill with the encoded values ({@code null} for
+     *            values that are neither a geometry nor a box)
+     */
+    public void encode(Object[] values, GeometryFormat format, String[] encoded) {
+        if (encoded.length < values.length) {
+            throw new IllegalArgumentException(
+                    String.format("expected an array of at least %d values, got %d", values.length, encoded.length));
+        }
+        encodeValues(values, format, encoded);
+    }
+
+    /**
+     * Encodes a column of geometries or boxes. The values are encoded (in
+     * parallel for large columns) into an intermediate array, that is then
+     * copied to the column by the calling thread, as columns are not
+     * thread-safe.
+     *
+     * @param values
+     *            the {@link Geometry}, {@link PGboxbase} or {@code null} values
+     *            to encode
+     * @param format
+     *            the format to encode the geometries in (ignored for boxes)
+     * @param encoded
+     *            the column to fill with the encoded values ({@code null} for
+     *            values that are neither a geometry nor a box)
+     */
+    public void encode(Object[] values, GeometryFormat format, Column encoded) {
+        if (encoded.size() < values.length) {
+            throw new IllegalArgumentException(
+                    String.format("expected a column of at least %d values, got %d", values.length, encoded.size()));
+        }
+        String[] results = new String[values.length];
+        encodeValues(values, format, results);
+        for (int row = 0; row < results.length; row++) {
+            encoded.set(row, results[row]);
+        }
+    }
+
+    private void encodeValues(Object[] values, GeometryFormat format, String[] encoded) {
+        run(values.length, (from, to, scratch) -> {
+            for (int row = from; row < to; row++) {
+                Object value = values[row];
+                String result;
+                if (value instanceof Geometry) {
+                    Geometry geometry = (Geometry) value;
+                    if (format.isBinary()) {
+                        scratch[0] = WkbCodec.INSTANCE.encode(geometry, format.getByteOrder(), scratch[0]);
+                        result = HexCodec.encode(scratch[0], true);
+                    } else {
+                        result = geometry.toString();
+                    }
+                } else if (value instanceof PGboxbase) {
+                    result = GeometryCodec.INSTANCE.encodeBox((PGboxbase) value);
+                } else {
+                    result = null;
+                }
+                encoded[row] = result;
+            }
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import org.postgis.binary.ValueGetter;
+
+/**
+ * Describes how a geometry was encoded as a {@code String}: the encoding, the
+ * byte order (for WKB) and the SRID. Instances are immutable.
+ */
+public final class GeometryFormat {
+
+    /**
+     * Geometry encodings
+     */
+    public enum Encoding {
+        /** Well-known text (e.g. POINT(1 2)) */
+        WKT,
+        /** Extended well-known text (e.g. SRID=4326;POINT(1 2)) */
+        EWKT,
+        /** Hexadecimal (extended) well-known binary */
+        HEX_WKB,
+        /** PostGIS box (e.g. BOX(1 2,3 4) or BOX3D(1 2 3,4 5 6)) */
+        BOX
+    }
+
+    /** Well-known text without SRID */
+    public static final GeometryFormat WKT = new GeometryFormat(Encoding.WKT, true, 0);
+
+    /** Hexadecimal well-known binary, big endian, without SRID */
+    public static final GeometryFormat HEX_WKB_BIG_ENDIAN = new GeometryFormat(Encoding.HEX_WKB, true, 0);
+
+    /** Hexadecimal well-known binary, little endian, without SRID */
+    public static final GeometryFormat HEX_WKB_LITTLE_ENDIAN = new GeometryFormat(Encoding.HEX_WKB, false, 0);
+
+    private final Encoding encoding;
+    private final boolean bigEndian;
+    private final int srid;
+
+    public GeometryFormat(Encoding encoding, boolean bigEndian, int srid) {
+        this.encoding = encoding;
+        this.bigEndian = bigEndian;
+        this.srid = srid;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return true if the byte order is big endian (only relevant for WKB)
+     */
+    public boolean isBigEndian() {
+        return bigEndian;
+    }
+
+    /**
+     * @return the byte order marker, as defined in WKB
+     */
+    public byte getByteOrder() {
+        return bigEndian ? ValueGetter.XDR.NUMBER : ValueGetter.NDR.NUMBER;
+    }
+
+    /**
+     * @return the SRID (0 if unknown)
+     */
+    public int getSrid() {
+        return srid;
+    }
+
+    /**
+     * @return true if the encoding is a binary one
+     */
+    public boolean isBinary() {
+        return encoding == Encoding.HEX_WKB;
+    }
+
+    @Override
+    public int hashCode() {
+        return (encoding.hashCode() * 31 + (bigEndian ? 1 : 0)) * 31 + srid;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GeometryFormat)) {
+            return false;
+        }
+        GeometryFormat other = (GeometryFormat) obj;
+        return encoding == other.encoding && bigEndian == other.bigEndian && srid == other.srid;
+    }
+
+    @Override
+    public String toString() {
+        return encoding + (isBinary() ? (bigEndian ? " (XDR)" : " (NDR)") : "") + (srid != 0 ? " SRID=" + srid : "");
+    }
+}
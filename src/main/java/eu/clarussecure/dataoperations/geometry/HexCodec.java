@@ -0,0 +1,113 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Table driven hexadecimal encoding and decoding of binary data (e.g. WKB
+ * geometries), meant to be used at the protocol boundary only.
+ */
+public final class HexCodec {
+
+    private static final char[] UPPER_CASE_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char[] LOWER_CASE_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            VALUES[UPPER_CASE_DIGITS[i]] = (byte) i;
+            VALUES[LOWER_CASE_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private HexCodec() {
+    }
+
+    /**
+     * Encodes the remaining bytes of a buffer, without changing its position
+     *
+     * @param buffer
+     *            the bytes to encode
+     * @param upperCase
+     *            true to use upper case digits (as PostGIS does)
+     * @return the hexadecimal representation of the bytes
+     */
+    public static String encode(ByteBuffer buffer, boolean upperCase) {
+        char[] digits = upperCase ? UPPER_CASE_DIGITS : LOWER_CASE_DIGITS;
+        int position = buffer.position();
+        char[] chars = new char[buffer.remaining() * 2];
+        for (int i = 0; i < chars.length; i += 2) {
+            int b = buffer.get(position++) & 0xFF;
+            chars[i] = digits[b >>> 4];
+            chars[i + 1] = digits[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Encodes bytes
+     *
+     * @param bytes
+     *            the bytes to encode
+     * @param offset
+     *            the index of the first byte to encode
+     * @param length
+     *            the number of bytes to encode
+     * @param upperCase
+     *            true to use upper case digits (as PostGIS does)
+     * @return the hexadecimal representation of the bytes
+     */
+    public static String encode(byte[] bytes, int offset, int length, boolean upperCase) {
+        return encode(ByteBuffer.wrap(bytes, offset, length), upperCase);
+    }
+
+    /**
+     * Decodes a part of a hexadecimal string into a buffer
+     *
+     * @param hex
+     *            the hexadecimal string
+     * @param start
+     *            the index of the first character to decode
+     * @param end
+     *            the index after the last character to decode
+     * @param target
+     *            the buffer to decode to, at its current position
+     * @throws IllegalArgumentException
+     *             if the string contains non hexadecimal characters or has an
+     *             odd length
+     */
+    public static void decode(CharSequence hex, int start, int end, ByteBuffer target) {
+        if (((end - start) & 1) != 0) {
+            throw new IllegalArgumentException("odd number of hexadecimal digits: " + (end - start));
+        }
+        for (int i = start; i < end; i += 2) {
+            target.put((byte) ((value(hex, i) << 4) | value(hex, i + 1)));
+        }
+    }
+
+    /**
+     * Decodes a hexadecimal string
+     *
+     * @param hex
+     *            the hexadecimal string
+     * @return the bytes
+     * @throws IllegalArgumentException
+     *             if the string contains non hexadecimal characters or has an
+     *             odd length
+     */
+    public static byte[] decode(CharSequence hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        decode(hex, 0, hex.length(), ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    private static int value(CharSequence hex, int index) {
+        char c = hex.charAt(index);
+        int value = c < 128 ? VALUES[c] : -1;
+        if (value == -1) {
+            throw new IllegalArgumentException(String.format("invalid hexadecimal digit '%c' at %d", c, index));
+        }
+        return value;
+    }
+}
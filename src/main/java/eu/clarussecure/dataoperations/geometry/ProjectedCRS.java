@@ -1,12 +1,16 @@
 package eu.clarussecure.dataoperations.geometry;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 
 public class ProjectedCRS {
@@ -20,8 +24,7 @@ public class ProjectedCRS {
         private final double min;
         private final double max;
 
-        private Axis(int order, String name, String abbreviation, String unit, String orientation, double min,
-                double max) {
+        Axis(int order, String name, String abbreviation, String unit, String orientation, double min, double max) {
             this.order = order;
             this.name = name;
             this.abbreviation = abbreviation;
@@ -65,7 +68,7 @@ public class ProjectedCRS {
     private final List<Axis> axes;
     private final Map<String, Integer> abbreviationToOrder;
 
-    private ProjectedCRS(int id, String name, List<Axis> axes) {
+    ProjectedCRS(int id, String name, List<Axis> axes) {
         super();
         this.id = id;
         this.name = name;
@@ -95,39 +98,112 @@ public class ProjectedCRS {
         return order != null ? getAxis(order) : null;
     }
 
-    private static final Map<Integer, ProjectedCRS> ALL_PROJECTED_CRS;
-
-    static {
-        List<ProjectedCRS> allProjectedCRS = Collections.emptyList();
-        Properties properties = new Properties();
-        try (InputStream inputStream = ProjectedCRS.class.getResourceAsStream("all-projected-crs.properties")) {
-            properties.load(inputStream);
-            allProjectedCRS = properties.keySet().stream().map(String.class::cast)
-                    .map(k -> k.substring(0, k.indexOf('.')))
-                    .distinct().map(
-                            Integer::valueOf)
-                    .map(srid -> new ProjectedCRS(srid,
-                            properties
-                                    .getProperty(
-                                            String.format("%s.name", srid)),
-                            properties.keySet().stream().map(String.class::cast)
-                                    .filter(k -> k.startsWith(String.format("%s.axes.", srid)))
-                                    .map(k -> k.substring(k.lastIndexOf('.') + 1)).distinct().map(Integer::valueOf)
-                                    .sorted()
-                                    .map(order -> order + ","
-                                            + properties.getProperty(String.format("%s.axes.%d", srid, order)))
-                                    .map(axe -> axe.split(","))
-                                    .map(tk -> new ProjectedCRS.Axis(Integer.parseInt(tk[0]), tk[1], tk[2], tk[3],
-                                            tk[4], Double.parseDouble(tk[5]), Double.parseDouble(tk[6])))
-                                    .collect(Collectors.toList())))
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
+    /**
+     * The catalog of projected CRS, in the binary format of
+     * {@link ProjectedCRSCatalogCompiler}. It is loaded on the first call to
+     * {@link ProjectedCRS#resolve(int)}, and CRS are only decoded when they
+     * are resolved.
+     */
+    private static final class Catalog {
+        private static final Catalog INSTANCE = load();
+
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int stringCount;
+        private final AtomicReferenceArray<ProjectedCRS> resolved;
+
+        private Catalog(ByteBuffer buffer) {
+            if (buffer.getInt(0) != ProjectedCRSCatalogCompiler.MAGIC
+                    || buffer.getInt(4) != ProjectedCRSCatalogCompiler.VERSION) {
+                throw new IllegalArgumentException("unsupported catalog of projected CRS");
+            }
+            this.buffer = buffer;
+            this.count = buffer.getInt(8);
+            this.stringCount = buffer.getInt(12);
+            this.resolved = new AtomicReferenceArray<>(count);
+        }
+
+        private static Catalog load() {
+            byte[] bytes = null;
+            try (InputStream inputStream = ProjectedCRS.class.getResourceAsStream("all-projected-crs.bin")) {
+                if (inputStream != null) {
+                    bytes = readFully(inputStream);
+                }
+            } catch (IOException e) {
+            }
+            if (bytes == null) {
+                // no precompiled catalog: compile the properties
+                Properties properties = new Properties();
+                try (InputStream inputStream = ProjectedCRS.class.getResourceAsStream("all-projected-crs.properties")) {
+                    if (inputStream != null) {
+                        properties.load(inputStream);
+                    }
+                } catch (IOException e) {
+                }
+                bytes = ProjectedCRSCatalogCompiler.compile(properties);
+            }
+            return new Catalog(ByteBuffer.wrap(bytes));
+        }
+
+        private static byte[] readFully(InputStream inputStream) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = inputStream.read(chunk)) != -1) {
+                bytes.write(chunk, 0, n);
+            }
+            return bytes.toByteArray();
+        }
+
+        private ProjectedCRS resolve(int srid) {
+            // binary search in the sorted SRIDs
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int value = buffer.getInt(ProjectedCRSCatalogCompiler.HEADER_SIZE + middle * 4);
+                if (value < srid) {
+                    low = middle + 1;
+                } else if (value > srid) {
+                    high = middle - 1;
+                } else {
+                    ProjectedCRS crs = resolved.get(middle);
+                    if (crs == null) {
+                        crs = decode(srid, middle);
+                        resolved.compareAndSet(middle, null, crs);
+                    }
+                    return crs;
+                }
+            }
+            return null;
+        }
+
+        private ProjectedCRS decode(int srid, int index) {
+            int offset = buffer.getInt(ProjectedCRSCatalogCompiler.HEADER_SIZE + (count + index) * 4);
+            String name = string(buffer.getInt(offset));
+            int axisCount = buffer.getInt(offset + 4);
+            List<Axis> axes = new ArrayList<>(axisCount);
+            offset += 8;
+            for (int order = 1; order <= axisCount; order++) {
+                axes.add(new Axis(order, string(buffer.getInt(offset)), string(buffer.getInt(offset + 4)),
+                        string(buffer.getInt(offset + 8)), string(buffer.getInt(offset + 12)),
+                        buffer.getDouble(offset + 16), buffer.getDouble(offset + 24)));
+                offset += ProjectedCRSCatalogCompiler.AXIS_SIZE;
+            }
+            return new ProjectedCRS(srid, name, Collections.unmodifiableList(axes));
+        }
+
+        private String string(int index) {
+            if (index < 0 || index >= stringCount) {
+                return null;
+            }
+            int offset = buffer.getInt(ProjectedCRSCatalogCompiler.HEADER_SIZE + (count * 2 + index) * 4);
+            int length = buffer.getShort(offset) & 0xFFFF;
+            return new String(buffer.array(), offset + 2, length, StandardCharsets.UTF_8);
         }
-        ALL_PROJECTED_CRS = allProjectedCRS.stream()
-                .collect(Collectors.toMap(ProjectedCRS::getId, Function.identity()));
     }
 
     public static final ProjectedCRS resolve(int srid) {
-        return ALL_PROJECTED_CRS.get(srid);
+        return Catalog.INSTANCE.resolve(srid);
     }
 }
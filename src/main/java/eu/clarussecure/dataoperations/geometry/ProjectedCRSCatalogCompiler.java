@@ -0,0 +1,185 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compiles the catalog of projected CRS from the {@code Properties} format
+ * into the binary format read by {@link ProjectedCRS}.
+ * <p>
+ * The {@code Properties} format has one entry for the name of each CRS and
+ * one entry per axis:
+ *
+ * <pre>
+ * 3857.name=WGS 84 / Pseudo-Mercator
+ * 3857.axes.1=Easting,X,metre,east,-20026376.39,20026376.39
+ * 3857.axes.2=Northing,Y,metre,north,-20048966.10,20048966.10
+ * </pre>
+ *
+ * The binary format (big endian) is made of:
+ * <ul>
+ * <li>a header: magic number, version, number of CRS and number of
+ * strings,</li>
+ * <li>the sorted SRIDs (one {@code int} per CRS),</li>
+ * <li>the offsets of the CRS records (one {@code int} per CRS),</li>
+ * <li>the offsets of the strings (one {@code int} per string),</li>
+ * <li>the strings (unsigned short length followed by UTF-8 bytes), each
+ * distinct string being stored once,</li>
+ * <li>the CRS records: index of the name, number of axes, then for each axis:
+ * indexes of the name, abbreviation, unit and orientation, min and max.</li>
+ * </ul>
+ * Usage: {@code ProjectedCRSCatalogCompiler <input.properties> <output.bin>}
+ */
+public final class ProjectedCRSCatalogCompiler {
+
+    /** Magic number of the binary format ("PCRS") */
+    public static final int MAGIC = 0x50435253;
+
+    /** Version of the binary format */
+    public static final int VERSION = 1;
+
+    /** Size of the header (bytes) */
+    static final int HEADER_SIZE = 16;
+
+    /** Size of an axis record (bytes) */
+    static final int AXIS_SIZE = 4 * 4 + 2 * 8;
+
+    private ProjectedCRSCatalogCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: ProjectedCRSCatalogCompiler <input.properties> <output.bin>");
+            System.exit(1);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            properties.load(in);
+        }
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            out.write(compile(properties));
+        }
+    }
+
+    /**
+     * Compiles a catalog
+     *
+     * @param properties
+     *            the catalog in the {@code Properties} format
+     * @return the catalog in the binary format
+     * @throws IllegalArgumentException
+     *             if a property is malformed
+     */
+    public static byte[] compile(Properties properties) {
+        // group the names and the axes by SRID, in a single pass
+        SortedMap<Integer, String> names = new TreeMap<>();
+        SortedMap<Integer, SortedMap<Integer, String[]>> axes = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String[] parts = key.split("\\.");
+            try {
+                int srid = Integer.parseInt(parts[0]);
+                if (parts.length == 2 && parts[1].equals("name")) {
+                    names.put(srid, properties.getProperty(key));
+                } else if (parts.length == 3 && parts[1].equals("axes")) {
+                    String[] tokens = properties.getProperty(key).split(",");
+                    if (tokens.length != 6) {
+                        throw new IllegalArgumentException("malformed axis: " + key);
+                    }
+                    axes.computeIfAbsent(srid, k -> new TreeMap<>()).put(Integer.parseInt(parts[2]), tokens);
+                } else {
+                    throw new IllegalArgumentException("unexpected property: " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("unexpected property: " + key, e);
+            }
+        }
+        axes.keySet().forEach(srid -> names.putIfAbsent(srid, null));
+
+        // build the string table and the records
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[] srids = new int[names.size()];
+        int[] recordOffsets = new int[names.size()];
+        int crs = 0;
+        try {
+            for (Map.Entry<Integer, String> entry : names.entrySet()) {
+                srids[crs] = entry.getKey();
+                recordOffsets[crs++] = records.size();
+                records.writeInt(index(entry.getValue(), strings, stringIndexes));
+                SortedMap<Integer, String[]> crsAxes = axes.getOrDefault(entry.getKey(), new TreeMap<>());
+                if (!crsAxes.isEmpty() && crsAxes.lastKey() != crsAxes.size()) {
+                    throw new IllegalArgumentException("axes of " + entry.getKey() + " are not numbered from 1");
+                }
+                records.writeInt(crsAxes.size());
+                for (String[] tokens : crsAxes.values()) {
+                    for (int i = 0; i < 4; i++) {
+                        records.writeInt(index(tokens[i], strings, stringIndexes));
+                    }
+                    records.writeDouble(Double.parseDouble(tokens[4]));
+                    records.writeDouble(Double.parseDouble(tokens[5]));
+                }
+            }
+
+            ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+            DataOutputStream stringTable = new DataOutputStream(stringBytes);
+            int[] stringOffsets = new int[strings.size()];
+            for (int i = 0; i < strings.size(); i++) {
+                stringOffsets[i] = stringTable.size();
+                byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                stringTable.writeShort(bytes.length);
+                stringTable.write(bytes);
+            }
+
+            // write the catalog, with absolute offsets
+            int stringsStart = HEADER_SIZE + (srids.length * 2 + strings.size()) * 4;
+            int recordsStart = stringsStart + stringTable.size();
+            ByteArrayOutputStream catalogBytes = new ByteArrayOutputStream(recordsStart + records.size());
+            DataOutputStream catalog = new DataOutputStream(catalogBytes);
+            catalog.writeInt(MAGIC);
+            catalog.writeInt(VERSION);
+            catalog.writeInt(srids.length);
+            catalog.writeInt(strings.size());
+            for (int srid : srids) {
+                catalog.writeInt(srid);
+            }
+            for (int offset : recordOffsets) {
+                catalog.writeInt(recordsStart + offset);
+            }
+            for (int offset : stringOffsets) {
+                catalog.writeInt(stringsStart + offset);
+            }
+            stringBytes.writeTo(catalog);
+            recordBytes.writeTo(catalog);
+            catalog.flush();
+            return catalogBytes.toByteArray();
+        } catch (IOException e) {
+            // cannot happen with byte array streams
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int index(String string, List<String> strings, Map<String, Integer> stringIndexes) {
+        if (string == null) {
+            return -1;
+        }
+        return stringIndexes.computeIfAbsent(string, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+}
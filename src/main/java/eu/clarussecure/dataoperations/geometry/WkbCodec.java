@@ -0,0 +1,249 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.postgis.Geometry;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryParser;
+import org.postgis.binary.BinaryWriter;
+import org.postgis.binary.ByteGetter;
+import org.postgis.binary.ByteSetter;
+
+/**
+ * Decodes and encodes geometries from and to binary WKB, without going
+ * through hexadecimal strings.
+ * <p>
+ * Geometries can be read from a {@code byte[]}, a {@code ByteBuffer} or an
+ * {@code InputStream} (e.g. an extra binary content of a
+ * {@code DataOperationCommand}), and written to a reusable
+ * {@code ByteBuffer}. Conversion to or from
+ * hexadecimal strings should only happen at the protocol boundary (see
+ * {@link #toHex(ByteBuffer)} and {@link #decodeHex(String)}).
+ * <p>
+ * The codec is stateless: the shared {@link #INSTANCE} can be used by all the
+ * threads.
+ */
+public final class WkbCodec {
+
+    /** Shared instance */
+    public static final WkbCodec INSTANCE = new WkbCodec();
+
+    private static final class Parser extends BinaryParser {
+        private Geometry parse(ByteGetter bytes) {
+            return parseGeometry(valueGetterForEndian(bytes));
+        }
+    }
+
+    private static final class Writer extends BinaryWriter {
+        private int estimate(Geometry geometry) {
+            return estimateBytes(geometry);
+        }
+
+        private void write(Geometry geometry, ByteSetter bytes, byte byteOrder) {
+            writeGeometry(geometry, valueSetterForEndian(bytes, byteOrder));
+        }
+    }
+
+    /**
+     * Reads bytes of a buffer, relatively to a base position, and keeps track
+     * of the number of bytes read
+     */
+    private static final class BufferByteGetter extends ByteGetter {
+        private final ByteBuffer buffer;
+        private final int base;
+        private int length;
+
+        private BufferByteGetter(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.base = buffer.position();
+        }
+
+        @Override
+        public int get(int index) {
+            if (index >= length) {
+                length = index + 1;
+            }
+            return buffer.get(base + index) & 0xFF;
+        }
+    }
+
+    private static final class BufferByteSetter extends ByteSetter {
+        private final ByteBuffer buffer;
+        private final int base;
+
+        private BufferByteSetter(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.base = buffer.position();
+        }
+
+        @Override
+        public void set(byte b, int index) {
+            buffer.put(base + index, b);
+        }
+    }
+
+    private static final Parser PARSER = new Parser();
+    private static final Writer WRITER = new Writer();
+
+    /**
+     * Decodes a WKB geometry
+     *
+     * @param wkb
+     *            the WKB geometry
+     * @return the decoded geometry
+     */
+    public Geometry decode(byte[] wkb) {
+        return decode(ByteBuffer.wrap(wkb));
+    }
+
+    /**
+     * Decodes a WKB geometry, from the current position of the buffer. The
+     * position is moved after the geometry.
+     *
+     * @param wkb
+     *            the buffer that contains the WKB geometry
+     * @return the decoded geometry
+     */
+    public Geometry decode(ByteBuffer wkb) {
+        BufferByteGetter bytes = new BufferByteGetter(wkb);
+        Geometry geometry = PARSER.parse(bytes);
+        wkb.position(bytes.base + bytes.length);
+        return geometry;
+    }
+
+    /**
+     * Decodes consecutive WKB geometries, from the current position to the
+     * limit of the buffer.
+     *
+     * @param wkb
+     *            the buffer that contains the WKB geometries
+     * @return the decoded geometries
+     */
+    public List<Geometry> decodeAll(ByteBuffer wkb) {
+        List<Geometry> geometries = new ArrayList<>();
+        while (wkb.hasRemaining()) {
+            geometries.add(decode(wkb));
+        }
+        return geometries;
+    }
+
+    /**
+     * Decodes consecutive WKB geometries from a stream (e.g. an extra binary
+     * content of a {@code DataOperationCommand}). The stream is read until its
+     * end, but is not closed.
+     *
+     * @param wkb
+     *            the stream that contains the WKB geometries
+     * @return the decoded geometries
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    public List<Geometry> decodeAll(InputStream wkb) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = wkb.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return decodeAll(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Decodes a hexadecimal WKB geometry, optionally prefixed by a SRID (e.g.
+     * SRID=4326;0101...)
+     *
+     * @param hex
+     *            the hexadecimal WKB geometry
+     * @return the decoded geometry
+     */
+    public Geometry decodeHex(String hex) {
+        int start = 0;
+        int srid = 0;
+        if (hex.startsWith(PGgeometry.SRIDPREFIX)) {
+            start = hex.indexOf(';');
+            srid = Geometry.parseSRID(Integer.parseInt(hex.substring(PGgeometry.SRIDPREFIX.length(), start)));
+            start++;
+        }
+        ByteBuffer wkb = ByteBuffer.allocate((hex.length() - start) / 2);
+        HexCodec.decode(hex, start, hex.length(), wkb);
+        wkb.flip();
+        Geometry geometry = decode(wkb);
+        if (srid != 0) {
+            geometry.setSrid(srid);
+        }
+        return geometry;
+    }
+
+    /**
+     * @param geometry
+     *            a geometry
+     * @return the size of the geometry, in WKB (bytes)
+     */
+    public int size(Geometry geometry) {
+        return WRITER.estimate(geometry);
+    }
+
+    /**
+     * Encodes a geometry to WKB, reusing a buffer if it is large enough.
+     *
+     * @param geometry
+     *            the geometry to encode
+     * @param byteOrder
+     *            the byte order (see {@link GeometryFormat#getByteOrder()})
+     * @param buffer
+     *            the buffer to reuse (might be {@code null}). It is cleared
+     *            before being written.
+     * @return the buffer that contains the WKB geometry, from position 0 to
+     *         the limit (either the given buffer or a new one)
+     */
+    public ByteBuffer encode(Geometry geometry, byte byteOrder, ByteBuffer buffer) {
+        int size = WRITER.estimate(geometry);
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, buffer != null ? buffer.capacity() * 2 : 0));
+        }
+        buffer.clear();
+        WRITER.write(geometry, new BufferByteSetter(buffer), byteOrder);
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Appends a geometry in WKB to a buffer, at its current position. The
+     * position is moved after the geometry.
+     *
+     * @param geometry
+     *            the geometry to encode
+     * @param byteOrder
+     *            the byte order (see {@link GeometryFormat#getByteOrder()})
+     * @param buffer
+     *            the buffer to write to
+     * @throws BufferOverflowException
+     *             if the buffer is too small
+     */
+    public void write(Geometry geometry, byte byteOrder, ByteBuffer buffer) {
+        int size = WRITER.estimate(geometry);
+        if (buffer.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        WRITER.write(geometry, new BufferByteSetter(buffer), byteOrder);
+        buffer.position(buffer.position() + size);
+    }
+
+    /**
+     * Converts a WKB geometry to hexadecimal (as PostGIS does)
+     *
+     * @param wkb
+     *            the buffer that contains the WKB geometry, from its position
+     *            to its limit
+     * @return the hexadecimal WKB geometry
+     */
+    public String toHex(ByteBuffer wkb) {
+        return HexCodec.encode(wkb, true);
+    }
+}
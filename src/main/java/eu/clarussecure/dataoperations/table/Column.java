@@ -0,0 +1,147 @@
+package eu.clarussecure.dataoperations.table;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A column of a {@link ColumnarTable}.
+ * <p>
+ * Whatever the type of the column is, values can be read and written as
+ * {@code String} (i.e. as in the row-major {@code String[][]} contents).
+ * {@code null} values are supported.
+ * <p>
+ * Values derived from a whole column (e.g. an index over its values) can be
+ * cached on the column (see {@link #getDerivedValue(Class, Function)}). They
+ * are discarded when the column is modified.
+ */
+public abstract class Column implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient volatile Map<Class<?>, Object> derivedValues;
+
+    /**
+     * @return the type of the values
+     */
+    public abstract ColumnType getType();
+
+    /**
+     * @return the number of values (i.e. the number of rows)
+     */
+    public abstract int size();
+
+    /**
+     * Returns a value as a {@code String}
+     *
+     * @param row
+     *            the index of the row
+     * @return the value (might be {@code null})
+     */
+    public abstract String get(int row);
+
+    /**
+     * Replaces a value
+     *
+     * @param row
+     *            the index of the row
+     * @param value
+     *            the new value (might be {@code null})
+     */
+    public abstract void set(int row, String value);
+
+    /**
+     * Tests if a value is {@code null}
+     *
+     * @param row
+     *            the index of the row
+     * @return true if the value is {@code null}
+     */
+    public boolean isNull(int row) {
+        return get(row) == null;
+    }
+
+    /**
+     * Replaces each value of the column by the result of the transformation,
+     * in place.
+     *
+     * @param transformation
+     *            the transformation to apply to the values (as
+     *            {@code String})
+     */
+    public void transform(UnaryOperator<String> transformation) {
+        for (int row = 0; row < size(); row++) {
+            set(row, transformation.apply(get(row)));
+        }
+    }
+
+    /**
+     * Replaces each distinct value of the column by the result of the
+     * transformation, in place. This is only relevant for deterministic
+     * transformations (i.e. that always return the same result for the same
+     * value): columns that are dictionary encoded apply the transformation
+     * once per distinct value instead of once per row.
+     *
+     * @param transformation
+     *            the deterministic transformation to apply to the values (as
+     *            {@code String})
+     */
+    public void transformDistinct(UnaryOperator<String> transformation) {
+        transform(transformation);
+    }
+
+    /**
+     * @return a copy of the values as {@code String}
+     */
+    public String[] toArray() {
+        String[] values = new String[size()];
+        for (int row = 0; row < values.length; row++) {
+            values[row] = get(row);
+        }
+        return values;
+    }
+
+    /**
+     * @return a copy of the column
+     */
+    public abstract Column copy();
+
+    /**
+     * Returns a value derived from the column (e.g. an index over its
+     * values). The value is computed on the first call, and cached until the
+     * column is modified.
+     *
+     * @param type
+     *            the type of the derived value (one value is cached per type)
+     * @param factory
+     *            computes the derived value from the column
+     * @return the derived value
+     */
+    public <T> T getDerivedValue(Class<T> type, Function<? super Column, ? extends T> factory) {
+        Map<Class<?>, Object> values = derivedValues;
+        if (values == null) {
+            values = new ConcurrentHashMap<>();
+            derivedValues = values;
+        }
+        Object value = values.get(type);
+        if (value == null) {
+            value = factory.apply(this);
+            values.put(type, value);
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Discards the derived values (see
+     * {@link #getDerivedValue(Class, Function)}). The columns call it when
+     * their values are changed: it must only be called after changes made
+     * directly to the arrays that back them.
+     */
+    public void modified() {
+        if (derivedValues != null) {
+            derivedValues = null;
+        }
+    }
+}
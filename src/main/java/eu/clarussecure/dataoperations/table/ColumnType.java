@@ -0,0 +1,13 @@
+package eu.clarussecure.dataoperations.table;
+
+/**
+ * Type of the values stored in a {@link Column}.
+ */
+public enum ColumnType {
+    /** Character strings, see {@link StringColumn} */
+    STRING,
+    /** 64 bits integers, see {@link LongColumn} */
+    LONG,
+    /** Double precision floating point numbers, see {@link DoubleColumn} */
+    DOUBLE
+}
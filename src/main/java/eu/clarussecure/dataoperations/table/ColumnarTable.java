@@ -0,0 +1,199 @@
+package eu.clarussecure.dataoperations.table;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Column-major alternative to the row-major {@code String[][]} contents.
+ * <p>
+ * Protection transforms usually operate on whole columns (encrypt an
+ * attribute, split another one, ...). With a columnar table, a column is
+ * processed in one pass over a single array, without allocating a row array
+ * per row. Columns may be typed (see {@link ColumnType}), but all of them can
+ * be read and written as {@code String}.
+ * <p>
+ * All the columns have the same size (the number of rows).
+ */
+public class ColumnarTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int rowCount;
+    private final List<Column> columns;
+
+    /**
+     * Builds a table
+     *
+     * @param rowCount
+     *            the number of rows
+     * @param columns
+     *            the columns (each one must have {@code rowCount} values)
+     */
+    public ColumnarTable(int rowCount, List<? extends Column> columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).size() != rowCount) {
+                throw new IllegalArgumentException(
+                        String.format("column %d has %d rows instead of %d", i, columns.get(i).size(), rowCount));
+            }
+        }
+        this.rowCount = rowCount;
+        this.columns = new ArrayList<>(columns);
+    }
+
+    /**
+     * Converts row-major contents. Columns with few distinct values are
+     * dictionary encoded (see {@link DictionaryColumn#DEFAULT_MIN_ROWS} and
+     * {@link DictionaryColumn#DEFAULT_MAX_CARDINALITY_RATIO}), the other ones
+     * are {@link StringColumn}.
+     *
+     * @param rows
+     *            the row-major contents
+     * @param columnCount
+     *            the number of columns (used if there is no row)
+     * @return a columnar table
+     */
+    public static ColumnarTable fromRows(String[][] rows, int columnCount) {
+        return fromRows(rows, columnCount,
+                rows.length >= DictionaryColumn.DEFAULT_MIN_ROWS ? DictionaryColumn.DEFAULT_MAX_CARDINALITY_RATIO : 0);
+    }
+
+    /**
+     * Converts row-major contents. Columns with few distinct values are
+     * dictionary encoded, the other ones are {@link StringColumn}.
+     *
+     * @param rows
+     *            the row-major contents
+     * @param columnCount
+     *            the number of columns (used if there is no row)
+     * @param maxCardinalityRatio
+     *            the maximum ratio of distinct values to rows under which a
+     *            column is dictionary encoded (0 to disable dictionary
+     *            encoding)
+     * @return a columnar table
+     */
+    public static ColumnarTable fromRows(String[][] rows, int columnCount, double maxCardinalityRatio) {
+        if (rows.length > 0) {
+            columnCount = rows[0].length;
+        }
+        List<Column> columns = new ArrayList<>(columnCount);
+        for (int column = 0; column < columnCount; column++) {
+            String[] values = new String[rows.length];
+            for (int row = 0; row < rows.length; row++) {
+                values[row] = rows[row][column];
+            }
+            DictionaryColumn dictionaryColumn = maxCardinalityRatio > 0
+                    ? DictionaryColumn.encode(values, maxCardinalityRatio) : null;
+            columns.add(dictionaryColumn != null ? dictionaryColumn : new StringColumn(values));
+        }
+        return new ColumnarTable(rows.length, columns);
+    }
+
+    /**
+     * Converts to row-major contents.
+     *
+     * @return the row-major contents
+     */
+    public String[][] toRows() {
+        String[][] rows = new String[rowCount][columns.size()];
+        for (int column = 0; column < columns.size(); column++) {
+            Column c = columns.get(column);
+            for (int row = 0; row < rowCount; row++) {
+                rows[row][column] = c.get(row);
+            }
+        }
+        return rows;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * @return the columns (unmodifiable list)
+     */
+    public List<Column> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    public Column getColumn(int column) {
+        return columns.get(column);
+    }
+
+    /**
+     * Replaces a column (e.g. by a typed version of it)
+     *
+     * @param column
+     *            the index of the column
+     * @param values
+     *            the new column
+     */
+    public void setColumn(int column, Column values) {
+        if (values.size() != rowCount) {
+            throw new IllegalArgumentException(
+                    String.format("column has %d rows instead of %d", values.size(), rowCount));
+        }
+        columns.set(column, values);
+    }
+
+    /**
+     * Transforms the values of a column, in place.
+     *
+     * @param column
+     *            the index of the column
+     * @param transformation
+     *            the transformation to apply to the values
+     */
+    public void transformColumn(int column, UnaryOperator<String> transformation) {
+        columns.get(column).transform(transformation);
+    }
+
+    /**
+     * Transforms the distinct values of a column, in place (see
+     * {@link Column#transformDistinct(UnaryOperator)}).
+     *
+     * @param column
+     *            the index of the column
+     * @param transformation
+     *            the deterministic transformation to apply to the values
+     */
+    public void transformColumnDistinct(int column, UnaryOperator<String> transformation) {
+        columns.get(column).transformDistinct(transformation);
+    }
+
+    /**
+     * Returns a view of a row
+     *
+     * @param row
+     *            the index of the row
+     * @return a view of the row
+     */
+    public RowView row(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row: " + row);
+        }
+        return new RowView(this, row);
+    }
+
+    /**
+     * Visits each row, in order, through a single view that is moved from row
+     * to row.
+     *
+     * @param action
+     *            the action to perform on each row
+     */
+    public void forEachRow(Consumer<RowView> action) {
+        RowView view = new RowView(this, 0);
+        for (int row = 0; row < rowCount; row++) {
+            view.moveTo(row);
+            action.accept(view);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package eu.clarussecure.dataoperations.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A column of character strings with few distinct values (codes, categories,
+ * geometries of the same area, ...), stored as an array of integer codes plus
+ * a dictionary of the distinct values.
+ * <p>
+ * Deterministic transformations (deterministic encryption, masking, ...) can
+ * be applied once per distinct value with {@link #transformDistinct}. Note
+ * that {@link #transform} still applies the transformation once per row, as
+ * required by probabilistic transformations.
+ * <p>
+ * Values set with {@link #set} are appended to the dictionary. The values no
+ * row refers to anymore (e.g. after masking the column in place) are dropped
+ * when the dictionary has doubled since it was last compacted, so its size
+ * stays proportional to the number of distinct values. Codes are renumbered
+ * by compaction, so they must not be kept across calls to {@link #set}.
+ */
+public class DictionaryColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximum ratio of distinct values to rows under which columns are
+     * dictionary encoded by default
+     */
+    public static final double DEFAULT_MAX_CARDINALITY_RATIO = 0.25;
+
+    /**
+     * Minimum number of rows from which columns are dictionary encoded by
+     * default
+     */
+    public static final int DEFAULT_MIN_ROWS = 32;
+
+    private static final int NULL_CODE = -1;
+
+    private final int[] codes;
+    private final List<String> dictionary;
+    private transient Map<String, Integer> index;
+    // dictionary size from which unused values are dropped
+    private int compactionSize;
+
+    private DictionaryColumn(int[] codes, List<String> dictionary) {
+        this.codes = codes;
+        this.dictionary = dictionary;
+        this.compactionSize = compactionSize(dictionary.size());
+    }
+
+    /**
+     * Builds a column of {@code null} values
+     *
+     * @param size
+     *            the number of values
+     */
+    public DictionaryColumn(int size) {
+        this(new int[size], new ArrayList<>());
+        Arrays.fill(codes, NULL_CODE);
+    }
+
+    /**
+     * Encodes values if they have few distinct values.
+     *
+     * @param values
+     *            the values to encode
+     * @param maxCardinalityRatio
+     *            the maximum ratio of distinct values to the number of values
+     * @return a dictionary column, or {@code null} if there are too many
+     *         distinct values
+     */
+    public static DictionaryColumn encode(String[] values, double maxCardinalityRatio) {
+        int maxCardinality = (int) (values.length * maxCardinalityRatio);
+        int[] codes = new int[values.length];
+        List<String> dictionary = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        for (int row = 0; row < values.length; row++) {
+            String value = values[row];
+            if (value == null) {
+                codes[row] = NULL_CODE;
+                continue;
+            }
+            Integer code = index.get(value);
+            if (code == null) {
+                if (dictionary.size() == maxCardinality) {
+                    return null;
+                }
+                code = dictionary.size();
+                dictionary.add(value);
+                index.put(value, code);
+            }
+            codes[row] = code;
+        }
+        DictionaryColumn column = new DictionaryColumn(codes, dictionary);
+        column.index = index;
+        return column;
+    }
+
+    /**
+     * Encodes values
+     *
+     * @param values
+     *            the values to encode
+     * @return a dictionary column
+     */
+    public static DictionaryColumn encode(String[] values) {
+        return encode(values, 1.0);
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    public int size() {
+        return codes.length;
+    }
+
+    @Override
+    public String get(int row) {
+        int code = codes[row];
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    @Override
+    public void set(int row, String value) {
+        // the previous value must not prevent its code from being dropped
+        codes[row] = NULL_CODE;
+        if (value != null) {
+            codes[row] = code(value);
+        }
+        modified();
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return codes[row] == NULL_CODE;
+    }
+
+    /**
+     * Returns the code of a value
+     *
+     * @param row
+     *            the index of the row
+     * @return the code of the value, or -1 if the value is {@code null}
+     */
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    /**
+     * @return the number of distinct values
+     */
+    public int getCardinality() {
+        return dictionary.size();
+    }
+
+    /**
+     * Returns a distinct value
+     *
+     * @param code
+     *            the code of the value
+     * @return the value
+     */
+    public String decode(int code) {
+        return dictionary.get(code);
+    }
+
+    /**
+     * Applies the transformation once per row, whatever the value is. The
+     * dictionary is rebuilt from the results.
+     */
+    @Override
+    public void transform(UnaryOperator<String> transformation) {
+        List<String> values = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        for (int row = 0; row < codes.length; row++) {
+            String value = transformation.apply(get(row));
+            if (value == null) {
+                codes[row] = NULL_CODE;
+                continue;
+            }
+            Integer code = index.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                index.put(value, code);
+            }
+            codes[row] = code;
+        }
+        dictionary.clear();
+        dictionary.addAll(values);
+        this.index = index;
+        this.compactionSize = compactionSize(values.size());
+        modified();
+    }
+
+    /**
+     * Applies the transformation once per distinct value. This is only
+     * relevant for deterministic transformations (i.e. that always return the
+     * same result for the same value). Values which are {@code null} are not
+     * transformed.
+     *
+     * @param transformation
+     *            the deterministic transformation
+     */
+    @Override
+    public void transformDistinct(UnaryOperator<String> transformation) {
+        for (int code = 0; code < dictionary.size(); code++) {
+            dictionary.set(code, transformation.apply(dictionary.get(code)));
+        }
+        // transformed values might be null or not distinct anymore
+        index = null;
+        if (dictionary.contains(null)) {
+            for (int row = 0; row < codes.length; row++) {
+                if (codes[row] != NULL_CODE && dictionary.get(codes[row]) == null) {
+                    codes[row] = NULL_CODE;
+                }
+            }
+        }
+        modified();
+    }
+
+    @Override
+    public DictionaryColumn copy() {
+        return new DictionaryColumn(codes.clone(), new ArrayList<>(dictionary));
+    }
+
+    private int code(String value) {
+        if (index == null) {
+            index = new HashMap<>();
+            for (int code = 0; code < dictionary.size(); code++) {
+                if (dictionary.get(code) != null) {
+                    index.putIfAbsent(dictionary.get(code), code);
+                }
+            }
+        }
+        Integer code = index.get(value);
+        if (code == null) {
+            if (dictionary.size() >= compactionSize) {
+                compact();
+            }
+            code = dictionary.size();
+            dictionary.add(value);
+            index.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Drops the values no row refers to, and merges the duplicated values
+     * (e.g. after {@link #transformDistinct}). Rows are renumbered in order of
+     * first occurrence.
+     */
+    private void compact() {
+        int[] newCodes = new int[dictionary.size()];
+        Arrays.fill(newCodes, NULL_CODE);
+        List<String> values = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        for (int row = 0; row < codes.length; row++) {
+            int code = codes[row];
+            if (code == NULL_CODE) {
+                continue;
+            }
+            if (newCodes[code] == NULL_CODE) {
+                String value = dictionary.get(code);
+                Integer newCode = index.get(value);
+                if (newCode == null) {
+                    newCode = values.size();
+                    values.add(value);
+                    index.put(value, newCode);
+                }
+                newCodes[code] = newCode;
+            }
+            codes[row] = newCodes[code];
+        }
+        dictionary.clear();
+        dictionary.addAll(values);
+        this.index = index;
+        this.compactionSize = compactionSize(values.size());
+    }
+
+    private static int compactionSize(int cardinality) {
+        return Math.max(2 * cardinality, DEFAULT_MIN_ROWS);
+    }
+}
@@ -0,0 +1,146 @@
+package eu.clarussecure.dataoperations.table;
+
+import java.util.BitSet;
+
+/**
+ * A column of double precision floating point numbers, backed by a primitive
+ * array.
+ * <p>
+ * Values set as {@code String} are read back as they were written, even if it
+ * is not the canonical form of the number (e.g. 1.50 or 10000000, instead of
+ * 1.5 or 1.0E7), as long as the number is not changed through
+ * {@link #setDouble(int, double)} or {@link #values()}.
+ */
+public class DoubleColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] values;
+    private final BitSet nulls;
+    // original text of the values that are not in canonical form (e.g. 1.50),
+    // or null if there is none
+    private String[] texts;
+
+    /**
+     * Builds a column of zeros
+     *
+     * @param size
+     *            the number of values
+     */
+    public DoubleColumn(int size) {
+        this(new double[size], new BitSet());
+    }
+
+    /**
+     * Builds a column backed by an array (the array is not copied)
+     *
+     * @param values
+     *            the values
+     * @param nulls
+     *            the rows which value is {@code null}
+     */
+    public DoubleColumn(double[] values, BitSet nulls) {
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    /**
+     * Converts a column
+     *
+     * @param column
+     *            the column to convert
+     * @return a column of double precision floating point numbers
+     * @throws NumberFormatException
+     *             if a value is not a number
+     */
+    public static DoubleColumn parse(Column column) {
+        if (column instanceof DoubleColumn) {
+            return (DoubleColumn) column;
+        }
+        DoubleColumn doubleColumn = new DoubleColumn(column.size());
+        for (int row = 0; row < column.size(); row++) {
+            doubleColumn.set(row, column.get(row));
+        }
+        return doubleColumn;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.DOUBLE;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public String get(int row) {
+        if (nulls.get(row)) {
+            return null;
+        }
+        if (texts != null && texts[row] != null) {
+            String text = texts[row];
+            // the value might have been changed through the backing array
+            if (Double.doubleToLongBits(Double.parseDouble(text)) == Double.doubleToLongBits(values[row])) {
+                return text;
+            }
+        }
+        return Double.toString(values[row]);
+    }
+
+    @Override
+    public void set(int row, String value) {
+        if (value == null) {
+            values[row] = 0;
+            nulls.set(row);
+            setText(row, null);
+        } else {
+            values[row] = Double.parseDouble(value);
+            nulls.clear(row);
+            setText(row, Double.toString(values[row]).equals(value) ? null : value);
+        }
+        modified();
+    }
+
+    private void setText(int row, String text) {
+        if (text != null && texts == null) {
+            texts = new String[values.length];
+        }
+        if (texts != null) {
+            texts[row] = text;
+        }
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    public void setDouble(int row, double value) {
+        values[row] = value;
+        nulls.clear(row);
+        setText(row, null);
+        modified();
+    }
+
+    /**
+     * @return the array that backs the column (not a copy). Values of
+     *         {@code null} rows are meaningless. Call {@link #modified()}
+     *         after changing it.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    @Override
+    public DoubleColumn copy() {
+        DoubleColumn copy = new DoubleColumn(values.clone(), (BitSet) nulls.clone());
+        copy.texts = texts != null ? texts.clone() : null;
+        return copy;
+    }
+}
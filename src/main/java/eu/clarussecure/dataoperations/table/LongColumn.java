@@ -0,0 +1,145 @@
+package eu.clarussecure.dataoperations.table;
+
+import java.util.BitSet;
+
+/**
+ * A column of 64 bits integers, backed by a primitive array.
+ * <p>
+ * Values set as {@code String} are read back as they were written, even if it
+ * is not the canonical form of the number (e.g. 007 or +7, instead of 7), as
+ * long as the number is not changed through {@link #setLong(int, long)} or
+ * {@link #values()}.
+ */
+public class LongColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] values;
+    private final BitSet nulls;
+    // original text of the values that are not in canonical form (e.g. 007),
+    // or null if there is none
+    private String[] texts;
+
+    /**
+     * Builds a column of zeros
+     *
+     * @param size
+     *            the number of values
+     */
+    public LongColumn(int size) {
+        this(new long[size], new BitSet());
+    }
+
+    /**
+     * Builds a column backed by an array (the array is not copied)
+     *
+     * @param values
+     *            the values
+     * @param nulls
+     *            the rows which value is {@code null}
+     */
+    public LongColumn(long[] values, BitSet nulls) {
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    /**
+     * Converts a column
+     *
+     * @param column
+     *            the column to convert
+     * @return a column of 64 bits integers
+     * @throws NumberFormatException
+     *             if a value is not an integer
+     */
+    public static LongColumn parse(Column column) {
+        if (column instanceof LongColumn) {
+            return (LongColumn) column;
+        }
+        LongColumn longColumn = new LongColumn(column.size());
+        for (int row = 0; row < column.size(); row++) {
+            longColumn.set(row, column.get(row));
+        }
+        return longColumn;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.LONG;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public String get(int row) {
+        if (nulls.get(row)) {
+            return null;
+        }
+        if (texts != null && texts[row] != null) {
+            String text = texts[row];
+            // the value might have been changed through the backing array
+            if (Long.parseLong(text) == values[row]) {
+                return text;
+            }
+        }
+        return Long.toString(values[row]);
+    }
+
+    @Override
+    public void set(int row, String value) {
+        if (value == null) {
+            values[row] = 0;
+            nulls.set(row);
+            setText(row, null);
+        } else {
+            values[row] = Long.parseLong(value);
+            nulls.clear(row);
+            setText(row, Long.toString(values[row]).equals(value) ? null : value);
+        }
+        modified();
+    }
+
+    private void setText(int row, String text) {
+        if (text != null && texts == null) {
+            texts = new String[values.length];
+        }
+        if (texts != null) {
+            texts[row] = text;
+        }
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    public void setLong(int row, long value) {
+        values[row] = value;
+        nulls.clear(row);
+        setText(row, null);
+        modified();
+    }
+
+    /**
+     * @return the array that backs the column (not a copy). Values of
+     *         {@code null} rows are meaningless. Call {@link #modified()}
+     *         after changing it.
+     */
+    public long[] values() {
+        return values;
+    }
+
+    @Override
+    public LongColumn copy() {
+        LongColumn copy = new LongColumn(values.clone(), (BitSet) nulls.clone());
+        copy.texts = texts != null ? texts.clone() : null;
+        return copy;
+    }
+}
@@ -0,0 +1,57 @@
+package eu.clarussecure.dataoperations.table;
+
+/**
+ * View of a row of a {@link ColumnarTable}. The values are read from and
+ * written to the columns of the table, no row array is allocated.
+ * <p>
+ * The view can be moved from a row to another (see
+ * {@link ColumnarTable#forEachRow(java.util.function.Consumer)}), so it must
+ * not be kept by the caller.
+ */
+public class RowView {
+
+    private final ColumnarTable table;
+    private int row;
+
+    RowView(ColumnarTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
+    void moveTo(int row) {
+        this.row = row;
+    }
+
+    /**
+     * @return the index of the row in the table
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return the number of values (i.e. the number of columns)
+     */
+    public int size() {
+        return table.getColumnCount();
+    }
+
+    public String get(int column) {
+        return table.getColumn(column).get(row);
+    }
+
+    public void set(int column, String value) {
+        table.getColumn(column).set(row, value);
+    }
+
+    /**
+     * @return a copy of the values of the row
+     */
+    public String[] toArray() {
+        String[] values = new String[size()];
+        for (int column = 0; column < values.length; column++) {
+            values[column] = get(column);
+        }
+        return values;
+    }
+}
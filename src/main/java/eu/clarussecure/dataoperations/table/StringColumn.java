@@ -0,0 +1,80 @@
+package eu.clarussecure.dataoperations.table;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * A column of character strings, backed by an array.
+ */
+public class StringColumn extends Column {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] values;
+
+    /**
+     * Builds a column of {@code null} values
+     *
+     * @param size
+     *            the number of values
+     */
+    public StringColumn(int size) {
+        this.values = new String[size];
+    }
+
+    /**
+     * Builds a column backed by an array (the array is not copied)
+     *
+     * @param values
+     *            the values
+     */
+    public StringColumn(String[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public String get(int row) {
+        return values[row];
+    }
+
+    @Override
+    public void set(int row, String value) {
+        values[row] = value;
+        modified();
+    }
+
+    @Override
+    public void transform(UnaryOperator<String> transformation) {
+        for (int row = 0; row < values.length; row++) {
+            values[row] = transformation.apply(values[row]);
+        }
+        modified();
+    }
+
+    @Override
+    public String[] toArray() {
+        return values.clone();
+    }
+
+    /**
+     * @return the array that backs the column (not a copy). Call
+     *         {@link #modified()} after changing it.
+     */
+    public String[] values() {
+        return values;
+    }
+
+    @Override
+    public StringColumn copy() {
+        return new StringColumn(values.clone());
+    }
+}
@@ -0,0 +1,181 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+public class AsyncDataOperationsTest {
+
+    /**
+     * Returns the mapping of its first attribute name for HEAD, and throws the
+     * given exception for the other operations
+     */
+    private static class FailingDataOperation implements DataOperation {
+        private final RuntimeException failure;
+
+        FailingDataOperation(RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public List<Map<String, String>> head(String[] attributeNames) {
+            return Collections.singletonList(Collections.singletonMap(attributeNames[0], "csp1/" + attributeNames[0]));
+        }
+
+        @Override
+        public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+            throw failure;
+        }
+
+        @Override
+        public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+            throw failure;
+        }
+
+        @Override
+        public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+            throw failure;
+        }
+
+        @Override
+        public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
+            throw failure;
+        }
+
+        @Override
+        public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Completes all the operations with the given exception
+     */
+    private static class FailingAsyncDataOperation implements AsyncDataOperation {
+        private final Throwable failure;
+
+        FailingAsyncDataOperation(Throwable failure) {
+            this.failure = failure;
+        }
+
+        private <T> CompletableFuture<T> fail() {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(failure);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> get(String[] attributeNames, Criteria[] criteria) {
+            return fail();
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationResult>> get(List<DataOperationCommand> promise,
+                List<String[][]> contents) {
+            return fail();
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> post(String[] attributeNames, String[][] contents) {
+            return fail();
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> put(String[] attributeNames, Criteria[] criteria,
+                String[][] contents) {
+            return fail();
+        }
+
+        @Override
+        public CompletableFuture<List<DataOperationCommand>> delete(String[] attributeNames, Criteria[] criteria) {
+            return fail();
+        }
+
+        @Override
+        public CompletableFuture<List<Map<String, String>>> head(String[] attributeNames) {
+            return CompletableFuture.supplyAsync(() -> {
+                throw new CompletionException(failure);
+            });
+        }
+    }
+
+    @Test
+    public void runsSynchronousOperationsAsynchronously() throws Exception {
+        AsyncDataOperation async = AsyncDataOperations.async(new FailingDataOperation(null), Runnable::run);
+        assertEquals("csp1/a", async.head(new String[] { "a" }).get().get(0).get("a"));
+    }
+
+    @Test
+    public void completesWithTheExceptionOfTheSynchronousOperation() throws InterruptedException {
+        IllegalStateException failure = new IllegalStateException("failure");
+        AsyncDataOperation async = AsyncDataOperations.async(new FailingDataOperation(failure));
+        try {
+            async.post(new String[] { "a" }, new String[0][]).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void throwsTheRuntimeExceptionOfTheFuture() {
+        IllegalArgumentException failure = new IllegalArgumentException("failure");
+        DataOperation sync = AsyncDataOperations.sync(new FailingAsyncDataOperation(failure));
+        try {
+            sync.get(new String[] { "a" }, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertSame(failure, e);
+        }
+        // wrapped in a CompletionException by the asynchronous operation
+        try {
+            sync.head(new String[] { "a" });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void wrapsTheCheckedExceptionOfTheFuture() {
+        IOException failure = new IOException("failure");
+        DataOperation sync = AsyncDataOperations.sync(new FailingAsyncDataOperation(failure));
+        try {
+            sync.delete(new String[] { "a" }, null);
+            fail();
+        } catch (CompletionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void throwsTheErrorOfTheFuture() {
+        AssertionError failure = new AssertionError("failure");
+        DataOperation sync = AsyncDataOperations.sync(new FailingAsyncDataOperation(failure));
+        try {
+            sync.put(new String[] { "a" }, null, new String[0][]);
+            fail();
+        } catch (AssertionError e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void unwrapsAdaptedOperations() {
+        DataOperation dataOperation = new FailingDataOperation(null);
+        assertSame(dataOperation, AsyncDataOperations.sync(AsyncDataOperations.async(dataOperation)));
+        AsyncDataOperation asyncDataOperation = new FailingAsyncDataOperation(new IOException());
+        assertSame(asyncDataOperation, AsyncDataOperations.async(AsyncDataOperations.sync(asyncDataOperation)));
+        assertSame(AsyncDataOperations.defaultExecutor(), AsyncDataOperations.defaultExecutor());
+    }
+}
@@ -0,0 +1,76 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AttributeNamesUtilitiesTest {
+
+    private static final int COUNT = 2_000_000;
+    private static final int BATCH = 1000;
+
+    private static final String[] CSPS = { "csp1", "csp2", "" };
+    private static final String[] DATASETS = { "*", "ds1", "d*", "*1", "**", "" };
+    private static final String[] DATA = { "*", "patient", "pat*", "*e", "a.b", "" };
+    private static final String[] ATTRIBUTES = { "*", "pat_id", "pat_*", "*_id", "x+y", "*a*", "" };
+
+    /**
+     * Builds a random attribute name, with 0 to 3 parts before the attribute
+     */
+    private static String randomName(Random random, boolean protectedName) {
+        StringBuilder name = new StringBuilder();
+        int parts = random.nextInt(protectedName ? 4 : 3);
+        if (protectedName && parts == 3) {
+            name.append(CSPS[random.nextInt(CSPS.length)]).append('/');
+        }
+        if (parts >= 2) {
+            name.append(DATASETS[random.nextInt(DATASETS.length)]).append('/');
+        }
+        if (parts >= 1) {
+            name.append(DATA[random.nextInt(DATA.length)]).append('/');
+        }
+        return name.append(ATTRIBUTES[random.nextInt(ATTRIBUTES.length)]).toString();
+    }
+
+    @Test
+    public void qualifiesAsTheStreamVersion() {
+        Random random = new Random(42);
+        String[] names = new String[BATCH];
+        String[] qualified = new String[BATCH];
+        for (int n = 0; n < COUNT; n += BATCH) {
+            for (int i = 0; i < BATCH; i++) {
+                names[i] = randomName(random, false);
+            }
+            List<String> expected = RegexAttributeNames.fullyQualified(Arrays.asList(names));
+            assertEquals(expected, AttributeNamesUtilities.fullyQualified(Arrays.asList(names)));
+            assertArrayEquals(expected.toArray(), AttributeNamesUtilities.fullyQualified(names, qualified));
+        }
+    }
+
+    @Test
+    public void resolvesProtectedNamesAsTheRegexVersion() {
+        Random random = new Random(42);
+        String[] protectedNames = new String[BATCH];
+        String[] names = new String[BATCH];
+        String[] expected = new String[BATCH];
+        String[] resolved = new String[BATCH];
+        for (int n = 0; n < COUNT; n += BATCH) {
+            for (int i = 0; i < BATCH; i++) {
+                protectedNames[i] = randomName(random, true);
+                names[i] = randomName(random, false);
+                expected[i] = RegexAttributeNames.resolveProtectedAttributeName(protectedNames[i], names[i]);
+            }
+            AttributeNamesUtilities.resolveProtectedAttributeNames(protectedNames, names, resolved);
+            for (int i = 0; i < BATCH; i++) {
+                assertEquals(protectedNames[i] + " " + names[i], expected[i], resolved[i]);
+                assertEquals(expected[i],
+                        AttributeNamesUtilities.resolveProtectedAttributeName(protectedNames[i], names[i]));
+            }
+        }
+    }
+}
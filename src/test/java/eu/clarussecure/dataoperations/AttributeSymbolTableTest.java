@@ -0,0 +1,187 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class AttributeSymbolTableTest {
+
+    private static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Test
+    public void internsQualifiedAndUnqualifiedNamesToTheSameId() {
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        int id = table.intern("attribute1");
+        assertEquals(0, id);
+        assertEquals(id, table.intern("*/*/attribute1"));
+        assertEquals(id, table.intern("attribute1"));
+        assertEquals("*/*/attribute1", table.getName(id));
+        // other qualifications are other attributes
+        int data = table.intern("data/attribute1");
+        assertEquals(1, data);
+        assertEquals(data, table.intern("*/data/attribute1"));
+        assertEquals("*/data/attribute1", table.getName(data));
+        int dataset = table.intern("dataset/data/attribute1");
+        assertEquals(2, dataset);
+        assertEquals("dataset/data/attribute1", table.getName(dataset));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void looksUpNamesWithoutInterningThem() {
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        assertEquals(-1, table.lookup("attribute1"));
+        assertEquals(0, table.size());
+        int id = table.intern("*/*/attribute1");
+        // the unqualified name has not been seen as is
+        assertEquals(id, table.lookup("attribute1"));
+        assertEquals(id, table.lookup("*/*/attribute1"));
+        assertEquals(-1, table.lookup("data/attribute1"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        String[] names = new String[1000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "data/attribute" + i;
+        }
+        int[] ids = table.intern(names);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(i, ids[i]);
+            assertEquals("*/" + names[i], table.getName(i));
+        }
+        assertEquals(names.length, table.size());
+        assertArrayEquals(ids, table.intern(names));
+    }
+
+    @Test
+    public void rejectsUnknownIds() {
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        table.intern("attribute1");
+        for (int id : new int[] { -1, 1, 64, Integer.MAX_VALUE }) {
+            try {
+                table.getName(id);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertEquals("unknown attribute id: " + id, e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void internsMappings() {
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        Map<String, String> mapping = new LinkedHashMap<>();
+        mapping.put("a", "csp1/data/a");
+        mapping.put("b", "csp1/data/b");
+        IntIntMap ids = table.intern(mapping);
+        assertEquals(2, ids.size());
+        assertEquals(table.lookup("csp1/data/a"), ids.get(table.lookup("a")));
+        assertEquals(table.lookup("csp1/data/b"), ids.get(table.lookup("*/*/b")));
+        assertEquals(-1, ids.get(table.lookup("csp1/data/a")));
+        assertNull(table.intern((Map<String, String>) null));
+        assertNull(table.intern((String[]) null));
+    }
+
+    @Test
+    public void internsConcurrently() throws InterruptedException {
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        Map<String, Integer> ids = new ConcurrentHashMap<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    // each name is interned by several threads, qualified or not
+                    int n = (i + offset * 250) % 2000;
+                    String name = n % 2 == 0 ? "attribute" + n : "*/*/attribute" + n;
+                    int id = table.intern(name);
+                    Integer previous = ids.putIfAbsent("*/*/attribute" + n, id);
+                    if (previous != null && previous != id || !table.getName(id).equals("*/*/attribute" + n)) {
+                        failure.set(name);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(2000, table.size());
+    }
+
+    @Test
+    public void cachesTheIdsOfTheCommandsPerSymbolTable() {
+        AttributeSymbolTable first = new AttributeSymbolTable();
+        AttributeSymbolTable second = new AttributeSymbolTable();
+        second.intern("other");
+        Command command = new Command();
+        command.setAttributeNames(new String[] { "a", "b" });
+        command.setProtectedAttributeNames(new String[] { "csp1/data/a" });
+        command.setMapping(Collections.singletonMap("a", "csp1/data/a"));
+        int[] ids = command.getAttributeIds(first);
+        assertArrayEquals(new int[] { 0, 1 }, ids);
+        assertSame(ids, command.getAttributeIds(first));
+        assertArrayEquals(new int[] { 2 }, command.getProtectedAttributeIds(first));
+        assertEquals(2, command.getMappingIds(first).get(0));
+        // another table resets the cached ids
+        assertArrayEquals(new int[] { 1, 2 }, command.getAttributeIds(second));
+        assertArrayEquals(new int[] { 3 }, command.getProtectedAttributeIds(second));
+        assertEquals(3, command.getMappingIds(second).get(1));
+        // so does a setter
+        command.setAttributeNames(new String[] { "b" });
+        assertArrayEquals(new int[] { 2 }, command.getAttributeIds(second));
+        assertArrayEquals(new int[] { 1 }, command.getAttributeIds(first));
+    }
+
+    @Test
+    public void doesNotCacheTheIdsOfAnotherSymbolTable() throws InterruptedException {
+        // the first table blocks while interning, until the ids of the second
+        // table have been computed (or for 200 ms if they can't be)
+        CountDownLatch interning = new CountDownLatch(1);
+        CountDownLatch computed = new CountDownLatch(1);
+        AttributeSymbolTable slow = new AttributeSymbolTable() {
+            @Override
+            public int[] intern(String[] attributeNames) {
+                interning.countDown();
+                try {
+                    computed.await(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.intern(attributeNames);
+            }
+        };
+        AttributeSymbolTable table = new AttributeSymbolTable();
+        table.intern("other");
+        Command command = new Command();
+        command.setAttributeNames(new String[] { "a", "b" });
+        Thread thread = new Thread(() -> command.getAttributeIds(slow));
+        thread.start();
+        assertTrue(interning.await(10, TimeUnit.SECONDS));
+        int[] ids = command.getAttributeIds(table);
+        computed.countDown();
+        thread.join();
+        assertArrayEquals(new int[] { 1, 2 }, ids);
+        assertArrayEquals(ids, command.getAttributeIds(table));
+    }
+}
@@ -0,0 +1,131 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+public class BatchingOutboundSessionTest {
+
+    private static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Protects each batch for the CSPs of the next row count array: CSP i gets
+     * the given number of copies of the first row (as a table for odd CSPs)
+     */
+    private static class SplittingDataOperation implements DataOperation {
+        private final List<int[]> rowCounts = new ArrayList<>();
+        private final List<String[][]> posted = new ArrayList<>();
+
+        SplittingDataOperation then(int... counts) {
+            rowCounts.add(counts);
+            return this;
+        }
+
+        @Override
+        public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+            posted.add(contents);
+            int[] counts = rowCounts.remove(0);
+            List<DataOperationCommand> commands = new ArrayList<>();
+            for (int csp = 0; csp < counts.length; csp++) {
+                String[][] rows = new String[counts[csp]][];
+                Arrays.fill(rows, contents.length > 0 ? contents[0] : new String[attributeNames.length]);
+                Command command = new Command();
+                command.setProtectedAttributeNames(attributeNames);
+                if (csp % 2 == 0) {
+                    command.setProtectedContents(rows);
+                } else {
+                    command.setProtectedContentsTable(ColumnarTable.fromRows(rows, attributeNames.length));
+                }
+                commands.add(command);
+            }
+            return commands;
+        }
+
+        @Override
+        public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
+            return post(attributeNames, contents);
+        }
+
+        @Override
+        public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Map<String, String>> head(String[] attributeNames) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final String[] ATTRIBUTES = { "a", "b" };
+
+    @Test
+    public void pushesBatches() {
+        SplittingDataOperation dataOperation = new SplittingDataOperation().then(2, 2, 0).then(1, 1, 0).then(0, 0, 0);
+        List<List<DataOperationCommand>> batches = new ArrayList<>();
+        try (OutboundSession session = dataOperation.openPost(ATTRIBUTES)) {
+            assertArrayEquals(ATTRIBUTES, session.getAttributeNames());
+            String[][] rows = { { "1", "x" }, { "2", "y" }, { "3", "z" } };
+            session.pushAll(Arrays.asList(rows).iterator(), 2, batches::add);
+            session.push(new String[0][]);
+        }
+        assertEquals(2, batches.size());
+        assertEquals(2, dataOperation.posted.get(0).length);
+        assertEquals(1, dataOperation.posted.get(1).length);
+        // the tables of the odd CSPs are not converted to check the alignment
+        assertNull(batches.get(0).get(1).protectedContents);
+    }
+
+    @Test
+    public void rejectsMisalignedRows() {
+        OutboundSession session = new SplittingDataOperation().then(2, 1).openPost(ATTRIBUTES);
+        try {
+            session.push(new String[][] { { "1", "x" }, { "2", "y" } });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("CSP 1 has 1 protected rows instead of 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsAChangeOfTheNumberOfCsps() {
+        OutboundSession session = new SplittingDataOperation().then(1, 1).then(1, 1, 1).openPut(ATTRIBUTES, null);
+        session.push(new String[][] { { "1", "x" } });
+        try {
+            session.push(new String[][] { { "2", "y" } });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("3 protected batches instead of 2 (one per CSP)", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsPushesAfterClose() {
+        OutboundSession session = new SplittingDataOperation().then(1).then(1).openPost(ATTRIBUTES);
+        session.push(new String[][] { { "1", "x" } });
+        session.close();
+        session.push(new String[][] { { "2", "y" } });
+    }
+}
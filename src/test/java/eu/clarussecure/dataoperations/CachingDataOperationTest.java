@@ -0,0 +1,103 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CachingDataOperationTest {
+
+    /**
+     * Maps each attribute name to its protected form, in the given order
+     */
+    private static class MappingDataOperation implements DataOperation {
+        private final List<String[]> heads = new ArrayList<>();
+
+        @Override
+        public List<Map<String, String>> head(String[] attributeNames) {
+            heads.add(attributeNames);
+            Map<String, String> mapping = new LinkedHashMap<>();
+            for (String attributeName : attributeNames) {
+                mapping.put(attributeName, "csp1/" + attributeName.replace('/', '_'));
+            }
+            return Collections.singletonList(mapping);
+        }
+
+        @Override
+        public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void returnsTheMappingsOfTheDelegate() {
+        MappingDataOperation delegate = new MappingDataOperation();
+        CachingDataOperation caching = new CachingDataOperation(delegate, 16);
+        String[] names = { "patient/pat_name", "patient/pat_id", "patient/pat_name" };
+        List<Map<String, String>> mappings = caching.head(names);
+        assertArrayEquals(names, delegate.heads.get(0));
+        assertEquals(new MappingDataOperation().head(names), mappings);
+        assertEquals(Arrays.asList("patient/pat_name", "patient/pat_id"), new ArrayList<>(mappings.get(0).keySet()));
+    }
+
+    @Test
+    public void cachesPerSpelling() {
+        MappingDataOperation delegate = new MappingDataOperation();
+        CachingDataOperation caching = new CachingDataOperation(delegate, 16);
+        String[] names = { "patient/pat_id", "patient/pat_name" };
+        List<Map<String, String>> mappings = caching.head(names);
+        names[0] = "changed";
+        assertSame(mappings, caching.head(new String[] { "patient/pat_id", "patient/pat_name" }));
+        assertEquals(1, caching.getHitCount());
+        List<Map<String, String>> qualified = caching.head(new String[] { "*/patient/pat_id", "*/patient/pat_name" });
+        assertEquals(2, delegate.heads.size());
+        assertEquals(Arrays.asList("*/patient/pat_id", "*/patient/pat_name"),
+                new ArrayList<>(qualified.get(0).keySet()));
+        caching.head(new String[] { "patient/pat_name", "patient/pat_id" });
+        assertEquals(3, delegate.heads.size());
+    }
+
+    @Test
+    public void discardsResultsOnInvalidation() {
+        MappingDataOperation delegate = new MappingDataOperation();
+        long[] version = { 1 };
+        CachingDataOperation caching = new CachingDataOperation(delegate, 16, () -> version[0]);
+        String[] names = { "patient/pat_id" };
+        caching.head(names);
+        caching.head(names);
+        version[0]++;
+        caching.head(names);
+        caching.invalidate();
+        caching.head(names);
+        assertEquals(3, delegate.heads.size());
+        assertEquals(1, caching.getHitCount());
+    }
+}
@@ -0,0 +1,61 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompiledAttributeResolverTest {
+
+    private static final List<String> PATIENT = Arrays.asList("*/patient/pat_id", "*/patient/pat_name",
+            "*/patient/pat_last1", "*/patient/pat_last2");
+
+    private static final String[] DATASETS = { "*", "ds1", "ds2", "d*", "*1" };
+    private static final String[] DATA = { "*", "patient", "episode", "pat*", "*e", "a.b" };
+    private static final String[] ATTRIBUTES = { "*", "pat_id", "pat_name", "pat_*", "*_id", "ep_pat", "x+y", "*a*" };
+
+    @Test
+    public void resolvesDocumentedExamples() {
+        CompiledAttributeResolver resolver = new CompiledAttributeResolver(PATIENT);
+        assertArrayEquals(PATIENT.toArray(), resolver.resolve(new String[] { "*/patient/*" }));
+        assertArrayEquals(
+                new String[] { "*/patient/pat_name", "*/patient/pat_id", "*/patient/pat_name", "*/patient/pat_last1",
+                        "*/patient/pat_last2", "*/patient/pat_id" },
+                resolver.resolve(new String[] { "*/patient/pat_name", "*/patient/*", "*/patient/pat_id" }));
+        assertArrayEquals(new String[] { "*/patient/pat_name", "*/patient/pat_id", "*/episode/*" },
+                resolver.resolve(new String[] { "*/patient/pat_name", "*/episode/*", "*/patient/pat_id" }));
+    }
+
+    @Test
+    public void returnsNamesWithoutAsteriskAsIs() {
+        String[] names = { "ds1/patient/pat_id", "ds1/patient/pat_name" };
+        assertEquals(names, new CompiledAttributeResolver(PATIENT).resolve(names));
+    }
+
+    @Test
+    public void resolvesAsTheRegexResolver() {
+        Random random = new Random(42);
+        for (int i = 0; i < 30_000; i++) {
+            List<String> attributesToProtect = randomNames(random, 1 + random.nextInt(8));
+            String[] operationAttributeNames = randomNames(random, 1 + random.nextInt(5)).toArray(new String[0]);
+            String[] expected = RegexAttributeNames.resolveOperationAttributeNames(operationAttributeNames,
+                    attributesToProtect);
+            String[] actual = new CompiledAttributeResolver(attributesToProtect).resolve(operationAttributeNames);
+            assertArrayEquals(attributesToProtect + " " + Arrays.toString(operationAttributeNames), expected, actual);
+        }
+    }
+
+    private static List<String> randomNames(Random random, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(DATASETS[random.nextInt(DATASETS.length)] + "/" + DATA[random.nextInt(DATA.length)] + "/"
+                    + ATTRIBUTES[random.nextInt(ATTRIBUTES.length)]);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,107 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CspFanOutExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final CspFanOutExecutor executor = new CspFanOutExecutor(pool);
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void returnsTheResultsInTheOrderOfTheCsps() {
+        // each CSP waits for the next one to complete: CSP 3 completes first
+        CountDownLatch[] done = new CountDownLatch[4];
+        for (int i = 0; i < done.length; i++) {
+            done[i] = new CountDownLatch(1);
+        }
+        List<String> results = executor.map(Arrays.asList("a", "b", "c", "d"), (csp, partition) -> {
+            if (csp < 3) {
+                await(done[csp + 1]);
+            }
+            done[csp].countDown();
+            return csp + partition;
+        });
+        assertEquals(Arrays.asList("0a", "1b", "2c", "3d"), results);
+    }
+
+    @Test
+    public void runsTheLastTaskInTheCallingThread() {
+        Thread caller = Thread.currentThread();
+        List<Boolean> inCaller = executor.map(3, csp -> Thread.currentThread() == caller);
+        assertEquals(Arrays.asList(false, false, true), inCaller);
+        assertEquals(Collections.emptyList(), executor.map(0, csp -> csp));
+    }
+
+    @Test
+    public void throwsTheFailureOfTheFirstFailingCsp() {
+        // CSP 2 fails before CSP 1, but the failure of CSP 1 is thrown
+        IllegalStateException first = new IllegalStateException("csp 1");
+        IllegalArgumentException second = new IllegalArgumentException("csp 2");
+        CountDownLatch secondFailed = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        try {
+            executor.map(4, csp -> {
+                switch (csp) {
+                case 1:
+                    await(secondFailed);
+                    throw first;
+                case 2:
+                    secondFailed.countDown();
+                    throw second;
+                default:
+                    completed.incrementAndGet();
+                    return csp;
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(first, e);
+        }
+        // all the tasks are done when the failure is thrown
+        assertEquals(2, completed.get());
+    }
+
+    @Test
+    public void throwsTheErrorOfTheLastCsp() {
+        AssertionError error = new AssertionError("csp 1");
+        try {
+            executor.forEach(Arrays.asList("a", "b"), (csp, partition) -> {
+                if (csp == 1) {
+                    throw error;
+                }
+                return null;
+            });
+            fail();
+        } catch (AssertionError e) {
+            assertSame(error, e);
+        }
+    }
+}
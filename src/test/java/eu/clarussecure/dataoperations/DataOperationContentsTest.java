@@ -0,0 +1,149 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import eu.clarussecure.dataoperations.binary.BinaryPayload;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+public class DataOperationContentsTest {
+
+    private static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class Response extends DataOperationResponse {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Test
+    public void keepsTheProtectedContentsAsSet() {
+        Command command = new Command();
+        command.setProtectedAttributeNames(new String[] { "csp1/a", "csp1/b" });
+        String[][] rows = { { "1", "x" }, { "2", "y" } };
+        command.setProtectedContents(rows);
+        ColumnarTable table = command.getProtectedContentsTable();
+        assertSame(table, command.getProtectedContentsTable());
+        // the conversion does not replace the rows
+        assertSame(rows, command.protectedContents);
+        assertSame(rows, command.getProtectedContents());
+        assertEquals(2, command.getProtectedContentsRowCount());
+        table.transformColumn(1, String::toUpperCase);
+        assertEquals("x", command.getProtectedContents()[0][1]);
+        command.setProtectedContentsTable(table);
+        assertNull(command.protectedContents);
+        assertArrayEquals(new String[][] { { "1", "X" }, { "2", "Y" } }, command.getProtectedContents());
+        assertSame(table, command.protectedContentsTable);
+    }
+
+    @Test
+    public void convertsTheContentsAgainWhenTheyAreSet() {
+        Response response = new Response();
+        response.setAttributeNames(new String[] { "a" });
+        response.setContentsTable(ColumnarTable.fromRows(new String[][] { { "x" }, { "y" } }, 1));
+        assertEquals(2, response.getContentsRowCount());
+        String[][] rows = response.getContents();
+        assertArrayEquals(new String[][] { { "x" }, { "y" } }, rows);
+        assertSame(rows, response.getContents());
+        assertNull(response.contents);
+        // a table assigned directly by a subclass is converted too
+        response.contentsTable = ColumnarTable.fromRows(new String[][] { { "z" } }, 1);
+        assertArrayEquals(new String[][] { { "z" } }, response.getContents());
+        response.setContents(new String[][] { { "w" } });
+        assertNull(response.contentsTable);
+        assertEquals("w", response.getContentsTable().getColumn(0).get(0));
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int b;
+        while ((b = stream.read()) != -1) {
+            bytes.write(b);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void opensStreamsOnTheExtraBinaryPayloads() throws IOException {
+        Path file = Files.createTempFile("payload", ".bin");
+        try {
+            Files.write(file, "file".getBytes(StandardCharsets.UTF_8));
+            Command command = new Command();
+            command.setExtraBinaryPayloads(new BinaryPayload[] { BinaryPayload.of(file), null });
+            assertNull(command.getExtraBinaryContent());
+            for (int i = 0; i < 2; i++) {
+                InputStream[] streams = command.openExtraBinaryContent();
+                assertNull(streams[1]);
+                try (InputStream stream = streams[0]) {
+                    assertArrayEquals("file".getBytes(StandardCharsets.UTF_8), read(stream));
+                }
+            }
+            InputStream[] streams = { new ByteArrayInputStream(new byte[1]) };
+            command.setExtraBinaryContent(streams);
+            assertSame(streams, command.getExtraBinaryContent());
+            assertSame(streams, command.openExtraBinaryContent());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void serializesTheExtraBinaryPayloads() throws IOException, ClassNotFoundException {
+        Path file = Files.createTempFile("payload", ".bin");
+        try {
+            Files.write(file, "0123456789".getBytes(StandardCharsets.UTF_8));
+            ByteBuffer direct = ByteBuffer.allocateDirect(4);
+            direct.put(new byte[] { 4, 5, 6, 7 }).position(1).limit(3);
+            Command command = new Command();
+            command.setExtraBinaryPayloads(new BinaryPayload[] { BinaryPayload.wrap(new byte[] { 1, 2, 3 }), null,
+                    BinaryPayload.of(file, 2, 5), BinaryPayload.wrap(direct), BinaryPayload.wrap(new byte[0]) });
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(command);
+            }
+            Command copy;
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                copy = (Command) in.readObject();
+            }
+            BinaryPayload[] payloads = copy.getExtraBinaryPayloads();
+            assertEquals(5, payloads.length);
+            assertNull(payloads[1]);
+            byte[][] expected = { { 1, 2, 3 }, null, "23456".getBytes(StandardCharsets.UTF_8), { 5, 6 }, {} };
+            for (int i = 0; i < payloads.length; i++) {
+                if (expected[i] != null) {
+                    // the copies can be read several times too
+                    for (int j = 0; j < 2; j++) {
+                        try (InputStream stream = payloads[i].openStream()) {
+                            assertArrayEquals(expected[i], read(stream));
+                        }
+                    }
+                }
+            }
+            // a command without payloads
+            bytes.reset();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(new Command());
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                assertNull(((Command) in.readObject()).getExtraBinaryPayloads());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eu.clarussecure.dataoperations.binary.BinaryPayload;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+public class DataOperationResultCodecTest {
+
+    private static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class Response extends DataOperationResponse {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final String[] ATTRIBUTES = { "ds/patient/pat_id", "ds/patient/pat_name", "ds/patient/geom" };
+
+    private final DataOperationResultCodec codec = new DataOperationResultCodec();
+
+    private static Command command(int id, String csp) {
+        Command command = new Command();
+        command.id = id;
+        command.setAttributeNames(ATTRIBUTES);
+        String[] protectedNames = new String[ATTRIBUTES.length];
+        Map<String, String> mapping = new LinkedHashMap<>();
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            protectedNames[i] = csp + "/" + ATTRIBUTES[i];
+            mapping.put(ATTRIBUTES[i], protectedNames[i]);
+        }
+        command.setProtectedAttributeNames(protectedNames);
+        command.setExtraProtectedAttributeNames(new String[] { csp + "/ds/patient/pat_key" });
+        command.setMapping(mapping);
+        command.setProtectedContents(new String[][] { { "1", "Zoë Ørsted", null }, null, { "2", "李雷", "0101" } });
+        command.setCriteria(new Criteria[] { new Criteria(protectedNames[0], "=", "1"), null });
+        command.setResidualCriteria(new Criteria[] { new Criteria(ATTRIBUTES[1], "LIKE", "'Zo%'") });
+        command.setResidualAttributeNames(new String[] { ATTRIBUTES[1] });
+        return command;
+    }
+
+    private static Response response(int id) {
+        Response response = new Response();
+        response.id = id;
+        response.setAttributeNames(ATTRIBUTES);
+        response.setContents(new String[][] { { "1", "Zoë Ørsted", null }, null, { "2", "", "0101" } });
+        return response;
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[7];
+        int n;
+        while ((n = stream.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertCriteriaEquals(Criteria[] expected, Criteria[] actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] == null) {
+                assertNull(actual[i]);
+            } else {
+                assertEquals(expected[i].getAttributeName(), actual[i].getAttributeName());
+                assertEquals(expected[i].getOperator(), actual[i].getOperator());
+                assertEquals(expected[i].getValue(), actual[i].getValue());
+            }
+        }
+    }
+
+    private static void assertPayloadsEquals(BinaryPayload[] expected, BinaryPayload[] actual) throws IOException {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] == null) {
+                assertNull(actual[i]);
+            } else {
+                try (InputStream e = expected[i].openStream(); InputStream a = actual[i].openStream()) {
+                    assertArrayEquals(read(e), read(a));
+                }
+            }
+        }
+    }
+
+    private static void assertResultEquals(DataOperationResult expected, DataOperationResult actual)
+            throws IOException {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getId(), actual.getId());
+        assertArrayEquals(expected.getAttributeNames(), actual.getAttributeNames());
+        if (expected instanceof DataOperationCommand) {
+            DataOperationCommand e = (DataOperationCommand) expected;
+            DataOperationCommand a = (DataOperationCommand) actual;
+            assertArrayEquals(e.getProtectedAttributeNames(), a.getProtectedAttributeNames());
+            assertArrayEquals(e.getExtraProtectedAttributeNames(), a.getExtraProtectedAttributeNames());
+            assertEquals(e.getMapping(), a.getMapping());
+            assertArrayEquals(e.getProtectedContents(), a.getProtectedContents());
+            assertCriteriaEquals(e.getCriteria(), a.getCriteria());
+            assertCriteriaEquals(e.getResidualCriteria(), a.getResidualCriteria());
+            assertArrayEquals(e.getResidualAttributeNames(), a.getResidualAttributeNames());
+            assertPayloadsEquals(e.getExtraBinaryPayloads(), a.getExtraBinaryPayloads());
+        } else {
+            assertArrayEquals(((DataOperationResponse) expected).getContents(),
+                    ((DataOperationResponse) actual).getContents());
+        }
+    }
+
+    @Test
+    public void roundTripsCommandsAndResponses() throws IOException {
+        Command withStreams = command(1, "csp1");
+        byte[] blob = "blob ☃".getBytes(StandardCharsets.UTF_8);
+        withStreams.setExtraBinaryContent(
+                new InputStream[] { new ByteArrayInputStream(blob), null, new ByteArrayInputStream(new byte[20000]) });
+        Command withPayloads = command(2, "csp2");
+        withPayloads.setExtraBinaryPayloads(new BinaryPayload[] { BinaryPayload.wrap(blob) });
+        Command empty = new Command();
+        List<DataOperationResult> results = Arrays.asList(withStreams, withPayloads, response(3), empty,
+                new Response());
+
+        List<DataOperationResult> decoded = codec.fromByteArray(codec.toByteArray(results));
+
+        assertEquals(results.size(), decoded.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertResultEquals(results.get(i), decoded.get(i));
+        }
+        try (InputStream stream = ((Command) decoded.get(0)).getExtraBinaryPayloads()[0].openStream()) {
+            assertArrayEquals(blob, read(stream));
+        }
+        assertEquals(20000, ((Command) decoded.get(0)).getExtraBinaryPayloads()[2].size());
+    }
+
+    @Test
+    public void keepsTheExtraBinaryContentOfEncodedCommands() throws IOException {
+        Command command = command(1, "csp1");
+        byte[] blob = "blob".getBytes(StandardCharsets.UTF_8);
+        command.setExtraBinaryContent(new InputStream[] { new ByteArrayInputStream(blob) });
+        byte[] first = codec.toByteArray(Arrays.asList(command));
+        // the command can still be sent to the CSP, and encoded again
+        try (InputStream stream = command.getExtraBinaryPayloads()[0].openStream()) {
+            assertArrayEquals(blob, read(stream));
+        }
+        assertArrayEquals(first, codec.toByteArray(Arrays.asList(command)));
+    }
+
+    @Test
+    public void encodesTablesWithoutConvertingThem() throws IOException {
+        Command command = command(1, "csp1");
+        ColumnarTable table = ColumnarTable.fromRows(new String[][] { { "1", "Zoë", null }, { "2", "", "0101" } }, 3);
+        command.setProtectedContentsTable(table);
+        Response response = response(2);
+        response.setContentsTable(table);
+        List<DataOperationResult> decoded = codec.fromByteArray(codec.toByteArray(Arrays.asList(command, response)));
+        assertSame(table, command.protectedContentsTable);
+        assertNull(command.protectedContents);
+        assertSame(table, response.contentsTable);
+        assertNull(response.contents);
+        assertArrayEquals(table.toRows(), ((Command) decoded.get(0)).getProtectedContents());
+        assertArrayEquals(table.toRows(), ((Response) decoded.get(1)).getContents());
+    }
+
+    @Test
+    public void failsOnTruncatedLengthsWithoutAllocatingThem() throws IOException {
+        Command command = new Command();
+        command.setAttributeNames(new String[] { "marker" });
+        byte[] encoded = codec.toByteArray(Arrays.asList(command));
+        // the attribute names are written as: count + 1, new string, length + 1, bytes
+        int marker = new String(encoded, StandardCharsets.ISO_8859_1).indexOf("marker");
+        assertEquals(2, encoded[marker - 3]);
+        ByteArrayOutputStream corrupted = new ByteArrayOutputStream();
+        corrupted.write(encoded, 0, marker - 3);
+        // Integer.MAX_VALUE - 1 names
+        corrupted.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+        corrupted.write(encoded, marker - 2, encoded.length - marker + 2);
+        try {
+            codec.fromByteArray(corrupted.toByteArray());
+            fail();
+        } catch (EOFException | StreamCorruptedException e) {
+            // the stream ends before the announced names
+        }
+    }
+
+    @Test
+    public void isSmallerThanJavaSerialization() throws IOException {
+        List<DataOperationResult> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(command(i, "csp" + i));
+            results.add(response(i));
+        }
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(new ArrayList<>(results));
+        }
+        byte[] encoded = codec.toByteArray(results);
+        assertTrue(String.format("encoded in %d bytes, serialized in %d bytes", encoded.length, serialized.size()),
+                encoded.length * 2 < serialized.size());
+    }
+}
@@ -0,0 +1,120 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIntMapTest {
+
+    private static void assertSameEntries(Map<Integer, Integer> expected, IntIntMap map) {
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertTrue(map.containsKey(e.getKey()));
+            assertEquals(e.getValue().intValue(), map.get(e.getKey()));
+        }
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).sorted().toArray(), keys);
+    }
+
+    @Test
+    public void putsAndGetsValues() {
+        IntIntMap map = new IntIntMap();
+        assertEquals(-1, map.put(0, 10));
+        assertEquals(-1, map.put(7, 70));
+        assertEquals(10, map.put(0, 11));
+        assertEquals(11, map.get(0));
+        assertEquals(70, map.get(7));
+        assertEquals(2, map.size());
+        // a value equal to the missing value is stored as is
+        assertEquals(-1, map.put(3, -1));
+        assertTrue(map.containsKey(3));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void returnsTheMissingValueForMissingKeys() {
+        IntIntMap map = new IntIntMap(4, Integer.MIN_VALUE);
+        assertEquals(Integer.MIN_VALUE, map.get(0));
+        map.put(1, 1);
+        for (int key : new int[] { 0, 2, 17, Integer.MAX_VALUE, -1, Integer.MIN_VALUE }) {
+            assertEquals(Integer.MIN_VALUE, map.get(key));
+            assertFalse(map.containsKey(key));
+        }
+        assertEquals(Integer.MIN_VALUE, map.put(2, 2));
+    }
+
+    @Test
+    public void keepsTheEntriesWhenRehashing() {
+        Random random = new Random(42);
+        IntIntMap map = new IntIntMap(0, -1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            // dense keys, then sparse ones, to get both few and many collisions
+            int key = i < 5000 ? i : random.nextInt(Integer.MAX_VALUE);
+            int value = random.nextInt();
+            assertEquals(expected.containsKey(key) ? expected.get(key) : -1, map.put(key, value));
+            expected.put(key, value);
+            if (Integer.bitCount(i + 1) == 1) {
+                assertSameEntries(expected, map);
+            }
+        }
+        assertSameEntries(expected, map);
+    }
+
+    @Test
+    public void keepsTheEntriesOfCollidingKeys() {
+        // keys that only differ in their high bits
+        IntIntMap map = new IntIntMap(4, -1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 64; i++) {
+            int key = i << 24;
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        assertSameEntries(expected, map);
+    }
+
+    @Test
+    public void clearsTheEntries() {
+        IntIntMap map = new IntIntMap(100, -1);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, map.keys().length);
+        assertFalse(map.containsKey(5));
+        assertEquals(-1, map.get(5));
+        map.put(5, 50);
+        assertEquals(50, map.get(5));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void rejectsNegativeKeysAndSizes() {
+        IntIntMap map = new IntIntMap();
+        try {
+            map.put(-1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("key must not be negative: -1", e.getMessage());
+        }
+        assertEquals(0, map.size());
+        try {
+            new IntIntMap(-1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("expected size must not be negative: -1", e.getMessage());
+        }
+    }
+}
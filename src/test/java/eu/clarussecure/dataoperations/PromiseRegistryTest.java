@@ -0,0 +1,196 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class PromiseRegistryTest {
+
+    private static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Registry where each promise has an estimated size of 100 bytes, that
+     * records the evicted promises
+     */
+    private static class Registry extends PromiseRegistry {
+        private final Map<Integer, List<DataOperationCommand>> evicted;
+
+        Registry(long timeToLive, TimeUnit unit, long memoryBudget) {
+            this(timeToLive, unit, memoryBudget, new ConcurrentHashMap<>());
+        }
+
+        private Registry(long timeToLive, TimeUnit unit, long memoryBudget,
+                Map<Integer, List<DataOperationCommand>> evicted) {
+            super(timeToLive, unit, memoryBudget, evicted::put);
+            this.evicted = evicted;
+        }
+
+        @Override
+        protected long estimateSize(List<DataOperationCommand> promise) {
+            return 100;
+        }
+    }
+
+    private static List<DataOperationCommand> promise() {
+        return Arrays.asList(new Command(), new Command());
+    }
+
+    private static Object field(PromiseRegistry registry, String name) throws ReflectiveOperationException {
+        Field field = PromiseRegistry.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(registry);
+    }
+
+    @Test
+    public void registersLooksUpAndRemovesPromises() {
+        PromiseRegistry registry = new PromiseRegistry(1, TimeUnit.HOURS, 1 << 20);
+        List<DataOperationCommand> first = promise();
+        List<DataOperationCommand> second = promise();
+        int id1 = registry.register(first);
+        int id2 = registry.register(second);
+        assertTrue(id1 != id2);
+        assertEquals(id1, first.get(0).getId());
+        assertEquals(id1, first.get(1).getId());
+        assertEquals(id2, second.get(0).getId());
+        assertEquals(2, registry.size());
+        assertTrue(registry.getMemoryUsage() > 0);
+        assertSame(first, registry.get(id1));
+        assertSame(first, registry.remove(id1));
+        assertNull(registry.get(id1));
+        assertNull(registry.remove(id1));
+        assertSame(second, registry.remove(id2));
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getMemoryUsage());
+        assertEquals(2, registry.getRegisteredCount());
+        assertEquals(2, registry.getRemovedCount());
+        assertEquals(2, registry.getMissCount());
+    }
+
+    @Test
+    public void evictsExpiredPromises() throws InterruptedException {
+        Registry registry = new Registry(10, TimeUnit.MILLISECONDS, 1 << 20);
+        List<DataOperationCommand> first = promise();
+        List<DataOperationCommand> second = promise();
+        int id1 = registry.register(first);
+        int id2 = registry.register(second);
+        Thread.sleep(50);
+        // expired on lookup
+        assertNull(registry.get(id1));
+        assertSame(first, registry.evicted.get(id1));
+        // expired by evictExpired
+        registry.evictExpired();
+        assertSame(second, registry.evicted.get(id2));
+        assertNull(registry.remove(id2));
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getMemoryUsage());
+        assertEquals(2, registry.getExpiredCount());
+        assertEquals(0, registry.getEvictedCount());
+        assertEquals(2, registry.evicted.size());
+    }
+
+    @Test
+    public void evictsTheOldestPromisesOverTheMemoryBudget() {
+        Registry registry = new Registry(1, TimeUnit.HOURS, 250);
+        int id1 = registry.register(promise());
+        int id2 = registry.register(promise());
+        int id3 = registry.register(promise());
+        registry.remove(id2);
+        assertEquals(Collections.singleton(id1), registry.evicted.keySet());
+        assertEquals(100, registry.getMemoryUsage());
+        // the removed promise is skipped: the next oldest one is evicted
+        int id4 = registry.register(promise());
+        int id5 = registry.register(promise());
+        assertEquals(new HashSet<>(Arrays.asList(id1, id3)), registry.evicted.keySet());
+        assertNull(registry.get(id3));
+        assertEquals(2, registry.size());
+        assertEquals(200, registry.getMemoryUsage());
+        assertEquals(2, registry.getEvictedCount());
+        assertEquals(0, registry.getExpiredCount());
+        registry.remove(id4);
+        registry.remove(id5);
+        assertEquals(0, registry.getMemoryUsage());
+    }
+
+    @Test
+    public void skipsTheIdentifiersInUseWhenWrappingAround() throws ReflectiveOperationException {
+        PromiseRegistry registry = new PromiseRegistry(1, TimeUnit.HOURS, 1 << 20);
+        assertEquals(1, registry.register(promise()));
+        AtomicInteger nextId = (AtomicInteger) field(registry, "nextId");
+        nextId.set(Integer.MAX_VALUE - 1);
+        assertEquals(Integer.MAX_VALUE, registry.register(promise()));
+        assertEquals(Integer.MIN_VALUE, registry.register(promise()));
+        nextId.set(-2);
+        assertEquals(-1, registry.register(promise()));
+        // 0 is skipped, and so is 1, still in use
+        assertEquals(2, registry.register(promise()));
+        assertEquals(5, registry.size());
+    }
+
+    @Test
+    public void purgesTheRemovedPromisesBehindAPendingOne() throws ReflectiveOperationException {
+        PromiseRegistry registry = new PromiseRegistry(1, TimeUnit.HOURS, 1 << 30);
+        List<DataOperationCommand> pending = promise();
+        registry.register(pending);
+        for (int i = 0; i < 10000; i++) {
+            registry.remove(registry.register(promise()));
+        }
+        Collection<?> insertionOrder = (Collection<?>) field(registry, "insertionOrder");
+        assertTrue(insertionOrder.size() + " queued promises", insertionOrder.size() <= 100);
+        assertEquals(insertionOrder.size(), ((AtomicInteger) field(registry, "queuedCount")).get());
+        assertSame(pending, registry.get(pending.get(0).getId()));
+    }
+
+    @Test
+    public void releasesTheMemoryOfConcurrentlyRemovedPromises() throws InterruptedException {
+        // the small budget makes eviction race with removal
+        Registry registry = new Registry(1, TimeUnit.HOURS, 1000);
+        AtomicLong removed = new AtomicLong();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    if (registry.remove(registry.register(promise())) != null) {
+                        removed.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getMemoryUsage());
+        assertEquals(8 * 20000, registry.getRegisteredCount());
+        assertEquals(removed.get(), registry.getRemovedCount());
+        assertEquals(registry.getRegisteredCount(), registry.getRemovedCount() + registry.getEvictedCount());
+        assertEquals(registry.getEvictedCount(), registry.evicted.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveTimeToLive() {
+        new PromiseRegistry(0, TimeUnit.SECONDS, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveMemoryBudget() {
+        new PromiseRegistry(1, TimeUnit.SECONDS, 0);
+    }
+}
@@ -0,0 +1,99 @@
+package eu.clarussecure.dataoperations;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reference implementations of {@link AttributeNamesUtilities}: the stream and
+ * regular expression based versions of the methods that have been optimized
+ * since, kept as they were in order to check the optimized versions against
+ * them.
+ */
+final class RegexAttributeNames {
+
+    private static final Pattern START_WITH_DOUBLE_ASTERISKS = Pattern.compile("^([^/*]*\\*/[^/*]*\\*/)([^/*]*)");
+    private static final Pattern START_WITH_SINGLE_ASTERISK = Pattern.compile("^([^/*]*\\*/)([^/*]*/[^/*]*)");
+
+    private RegexAttributeNames() {
+    }
+
+    static List<String> fullyQualified(List<String> attributeNames) {
+        return attributeNames.stream().map(an -> fullyQualified(an)).collect(Collectors.toList());
+    }
+
+    static String fullyQualified(String attributeName) {
+        return attributeName.indexOf('/') == -1
+                // prepend with */*/ if there is no /
+                ? "*/*/" + attributeName
+                : attributeName.indexOf('/') == attributeName.lastIndexOf('/')
+                        // prepend with */ if there is one /
+                        ? "*/" + attributeName
+                        // do nothing if there is two /
+                        : attributeName;
+    }
+
+    static String[] resolveOperationAttributeNames(String[] operationAttributeNames, List<String> attributesToProtect) {
+        String[] resolvedAttributeNames;
+        if (Arrays.stream(operationAttributeNames).filter(an -> an.indexOf('*') != -1).count() == 0) {
+            // Attribute names don't contain asterisk (*)
+            resolvedAttributeNames = operationAttributeNames;
+        } else {
+            // Replace attribute names that contain asterisk (*) by the matching
+            // data identifiers
+            List<Map.Entry<String, Pattern>> attributeNamePatterns = Arrays.stream(operationAttributeNames)
+                    .map(an -> new SimpleEntry<>(an, Pattern.compile(AttributeNamesUtilities.escapeRegex(an))))
+                    .collect(Collectors.toList());
+            Stream<String> retainedDataIds = attributesToProtect.stream().filter(id -> id.indexOf('*') == -1);
+            Stream<String> missingDataIds1 = attributesToProtect.stream()
+                    .map(id -> START_WITH_DOUBLE_ASTERISKS.matcher(id)).filter(m -> m.matches())
+                    .map(m -> new String[] { m.group(1), m.group(2) }).flatMap(groups -> {
+                        Pattern firstPartPattern = Pattern.compile(AttributeNamesUtilities.escapeRegex(groups[0]));
+                        String lastPart = groups[1];
+                        return Arrays.stream(operationAttributeNames)
+                                .map(an -> an.substring(0, an.lastIndexOf('/') + 1))
+                                .filter(an -> firstPartPattern.matcher(an).matches()).map(an -> an + lastPart);
+                    });
+            Stream<String> missingDataIds2 = attributesToProtect.stream()
+                    .map(id -> START_WITH_SINGLE_ASTERISK.matcher(id)).filter(m -> m.matches())
+                    .map(m -> new String[] { m.group(1), m.group(2) }).flatMap(groups -> {
+                        Pattern firstPartPattern = Pattern.compile(AttributeNamesUtilities.escapeRegex(groups[0]));
+                        String lastPart = groups[1];
+                        return Arrays.stream(operationAttributeNames).map(an -> an.substring(0, an.indexOf('/') + 1))
+                                .filter(an -> firstPartPattern.matcher(an).matches()).map(an -> an + lastPart);
+                    });
+            List<String> dataIds = Stream.concat(retainedDataIds, Stream.concat(missingDataIds1, missingDataIds2))
+                    .distinct().collect(Collectors.toList());
+            List<Map.Entry<String, Stream<String>>> resolvedDataIds = attributeNamePatterns.stream()
+                    .map(e -> new SimpleEntry<>(e.getKey(),
+                            dataIds.stream().filter(id -> e.getValue().matcher(id).matches())))
+                    .collect(Collectors.toList());
+            List<Map.Entry<String, Stream<String>>> unresolvedAttributeNames = attributeNamePatterns.stream()
+                    .filter(e -> dataIds.stream().noneMatch(id -> e.getValue().matcher(id).matches()))
+                    .map(e -> new SimpleEntry<>(e.getKey(), Stream.of(e.getKey()))).collect(Collectors.toList());
+            // Concatenate all found attributes
+            resolvedAttributeNames = Stream.concat(resolvedDataIds.stream(), unresolvedAttributeNames.stream())
+                    .flatMap(Map.Entry::getValue).toArray(String[]::new);
+        }
+        return resolvedAttributeNames;
+    }
+
+    static String resolveProtectedAttributeName(String protectedAttributeName, String attributeName) {
+        if (attributeName.chars().filter(c -> c == '/').count() == 2) {
+            // remove CSP prefix
+            protectedAttributeName = protectedAttributeName.substring(protectedAttributeName.indexOf('/') + 1);
+            if (START_WITH_DOUBLE_ASTERISKS.matcher(protectedAttributeName).matches()) {
+                protectedAttributeName = attributeName.substring(0, attributeName.lastIndexOf('/'))
+                        + protectedAttributeName.substring(protectedAttributeName.lastIndexOf('/'));
+            } else if (START_WITH_SINGLE_ASTERISK.matcher(protectedAttributeName).matches()) {
+                protectedAttributeName = attributeName.substring(0, attributeName.indexOf('/'))
+                        + protectedAttributeName.substring(protectedAttributeName.lastIndexOf('/'));
+            }
+        }
+        return protectedAttributeName;
+    }
+}
@@ -0,0 +1,233 @@
+package eu.clarussecure.dataoperations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpillableRowStoreTest {
+
+    private static final String[][] ROWS = { { "1", "Zoë Ørsted", null }, { "2", "", "李雷" }, {}, { null },
+            { "3", "emoji 😀", "tab\tand\nnew line" }, { "4", "x", "y" } };
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("spill");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        Files.delete(directory);
+    }
+
+    private long spillFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<String[]> readAll(Iterator<String[]> it) {
+        List<String[]> rows = new ArrayList<>();
+        while (it.hasNext()) {
+            rows.add(it.next());
+        }
+        try {
+            it.next();
+            fail();
+        } catch (NoSuchElementException e) {
+            // end of the rows
+        }
+        return rows;
+    }
+
+    /**
+     * Adds the rows to 2 CSPs and checks that they are read back as they were
+     * added
+     */
+    private void assertRoundTrip(String[][] rows, long memoryThreshold, int windowSize, boolean spilled)
+            throws IOException {
+        try (SpillableRowStore store = new SpillableRowStore(2, memoryThreshold, directory, windowSize)) {
+            for (String[] row : rows) {
+                store.add(0, row);
+                store.add(1, row);
+            }
+            assertEquals(spilled, store.isSpilled());
+            assertEquals(spilled ? 2 : 0, spillFileCount());
+            assertEquals(rows.length, store.getRowCount(0));
+            // the iterators can be created several times
+            for (int i = 0; i < 2; i++) {
+                for (Iterator<String[]> it : store.iterators()) {
+                    assertArrayEquals(rows, readAll(it).toArray());
+                }
+            }
+        }
+        assertEquals(0, spillFileCount());
+    }
+
+    @Test
+    public void keepsTheRowsInMemoryBelowTheThreshold() throws IOException {
+        assertRoundTrip(ROWS, Long.MAX_VALUE, SpillableRowStore.DEFAULT_WINDOW_SIZE, false);
+    }
+
+    @Test
+    public void spillsAllTheRowsWithANullThreshold() throws IOException {
+        assertRoundTrip(ROWS, 0, SpillableRowStore.DEFAULT_WINDOW_SIZE, true);
+    }
+
+    @Test
+    public void spillsTheRowsOnceTheThresholdIsCrossed() throws IOException {
+        // the first rows are kept in memory, then written to the files
+        assertRoundTrip(ROWS, 300, SpillableRowStore.DEFAULT_WINDOW_SIZE, true);
+        try (SpillableRowStore store = new SpillableRowStore(2, 300, directory, 1024)) {
+            store.add(0, ROWS[0]);
+            store.add(1, ROWS[0]);
+            assertFalse(store.isSpilled());
+            store.add(0, ROWS[1]);
+            store.add(0, ROWS[4]);
+            assertTrue(store.isSpilled());
+            // CSP 1 spills when its next row is added
+            assertEquals(1, spillFileCount());
+            store.add(1, ROWS[1]);
+            store.add(1, ROWS[4]);
+            assertEquals(2, spillFileCount());
+            for (Iterator<String[]> it : store.iterators()) {
+                assertArrayEquals(new String[][] { ROWS[0], ROWS[1], ROWS[4] }, readAll(it).toArray());
+            }
+        }
+    }
+
+    @Test
+    public void readsValuesLargerThanTheWindows() throws IOException {
+        Random random = new Random(42);
+        String[][] rows = new String[200][];
+        for (int i = 0; i < rows.length; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(300);
+            for (int j = 0; j < length; j++) {
+                // 1 to 4 bytes per code point in UTF-8
+                value.appendCodePoint(new int[] { 'a', 'é', '李', 0x1F600 }[random.nextInt(4)]);
+            }
+            rows[i] = new String[] { Integer.toString(i), value.toString(), random.nextBoolean() ? null : "" };
+        }
+        for (int windowSize : new int[] { 5, 7, 64, 4096 }) {
+            assertRoundTrip(rows, 0, windowSize, true);
+        }
+    }
+
+    @Test
+    public void rejectsMisalignedCsps() throws IOException {
+        try (SpillableRowStore store = new SpillableRowStore(3, 0, directory, 64)) {
+            store.addAll(0, new String[][] { ROWS[0], ROWS[1] });
+            store.addAll(2, new String[][] { ROWS[0] });
+            try {
+                store.iterators();
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("CSP 2 returned 1 rows instead of 2", e.getMessage());
+            }
+            // the CSPs that return no row are not involved
+            store.add(2, ROWS[1]);
+            List<Iterator<String[]>> iterators = store.iterators();
+            assertFalse(iterators.get(1).hasNext());
+            assertEquals(2, readAll(iterators.get(2)).size());
+        }
+    }
+
+    @Test
+    public void closesIteratorsEarly() throws Exception {
+        try (SpillableRowStore store = new SpillableRowStore(1, 0, directory, 8)) {
+            store.addAll(0, ROWS);
+            Iterator<String[]> it = store.iterators().get(0);
+            assertArrayEquals(ROWS[0], it.next());
+            ((AutoCloseable) it).close();
+            ((AutoCloseable) it).close();
+            try {
+                it.next();
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("row iterator is closed", e.getMessage());
+            }
+            // the other iterators are not affected
+            assertArrayEquals(ROWS, readAll(store.iterators().get(0)).toArray());
+            // rows added after the creation of an iterator are not seen by it
+            Iterator<String[]> before = store.iterators().get(0);
+            store.add(0, ROWS[5]);
+            assertEquals(ROWS.length, readAll(before).size());
+        }
+        assertEquals(0, spillFileCount());
+    }
+
+    @Test
+    public void addsRowsConcurrentlyForDifferentCsps() throws Exception {
+        int cspCount = 4;
+        try (SpillableRowStore store = new SpillableRowStore(cspCount, 100_000, directory, 4096)) {
+            Thread[] threads = new Thread[cspCount];
+            for (int csp = 0; csp < cspCount; csp++) {
+                int index = csp;
+                threads[csp] = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        store.add(index, new String[] { Integer.toString(i), "csp" + index });
+                    }
+                });
+                threads[csp].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(store.isSpilled());
+            List<Iterator<String[]>> iterators = store.iterators();
+            for (int csp = 0; csp < cspCount; csp++) {
+                List<String[]> rows = readAll(iterators.get(csp));
+                assertEquals(2000, rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    assertArrayEquals(new String[] { Integer.toString(i), "csp" + csp }, rows.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsRowsAfterClose() throws IOException {
+        SpillableRowStore store = new SpillableRowStore(1, 0, directory, 64);
+        store.add(0, ROWS[0]);
+        store.close();
+        assertEquals(0, spillFileCount());
+        try {
+            store.add(0, ROWS[1]);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("row store is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidArguments() {
+        for (Runnable invalid : Arrays.<Runnable>asList(() -> new SpillableRowStore(-1, 0),
+                () -> new SpillableRowStore(1, -1), () -> new SpillableRowStore(1, 0, directory, 4))) {
+            try {
+                invalid.run();
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package eu.clarussecure.dataoperations.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ByteBufferPayloadTest {
+
+    private static final byte[] BYTES = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Payload on 23456, backed by a heap or a direct buffer
+     */
+    private static BinaryPayload payload(boolean direct) {
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(BYTES.length) : ByteBuffer.allocate(BYTES.length);
+        buffer.put(BYTES);
+        buffer.position(2).limit(7);
+        return BinaryPayload.wrap(buffer);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[3];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String transfer(BinaryPayload payload, long position, long count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(bytes);
+        assertEquals(count, payload.transferTo(channel, position, count));
+        return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void readsThePayloadSeveralTimes() throws IOException {
+        for (boolean direct : new boolean[] { false, true }) {
+            BinaryPayload payload = payload(direct);
+            assertEquals(5, payload.size());
+            InputStream first = payload.openStream();
+            assertEquals('2', first.read());
+            assertEquals(2, first.skip(2));
+            assertEquals(2, first.available());
+            // a new stream reads from the beginning, whatever the other ones read
+            try (InputStream second = payload.openStream()) {
+                assertEquals("23456", read(second));
+                assertEquals(-1, second.read());
+                assertEquals(0, second.skip(1));
+            }
+            assertEquals("56", read(first));
+            try (InputStream third = payload.openStream()) {
+                assertEquals("23456", read(third));
+            }
+        }
+    }
+
+    @Test
+    public void transfersSubRanges() throws IOException {
+        for (boolean direct : new boolean[] { false, true }) {
+            BinaryPayload payload = payload(direct);
+            assertEquals("345", transfer(payload, 1, 3));
+            assertEquals("", transfer(payload, 5, 0));
+            assertEquals("6", transfer(payload, 4, 1));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            assertEquals(5, payload.transferTo(Channels.newChannel(bytes)));
+            assertEquals("23456", new String(bytes.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void rejectsRangesOutOfThePayload() throws IOException {
+        BinaryPayload payload = payload(false);
+        long[][] ranges = { { -1, 1 }, { 0, -1 }, { 3, 3 }, { 6, 0 }, { 1, Long.MAX_VALUE } };
+        for (long[] range : ranges) {
+            try {
+                transfer(payload, range[0], range[1]);
+                fail(range[0] + " " + range[1]);
+            } catch (IndexOutOfBoundsException e) {
+                assertEquals(String.format("range [%d, %d) out of payload of 5 bytes", range[0], range[0] + range[1]),
+                        e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void returnsIndependentReadOnlyBuffers() throws IOException {
+        BinaryPayload payload = payload(true);
+        ByteBuffer buffer = payload.asByteBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(0, buffer.position());
+        assertEquals(5, buffer.remaining());
+        buffer.position(5);
+        ByteBuffer other = payload.asByteBuffer();
+        assertEquals(5, other.remaining());
+        byte[] bytes = new byte[5];
+        other.get(bytes);
+        assertArrayEquals("23456".getBytes(StandardCharsets.US_ASCII), bytes);
+    }
+}
@@ -0,0 +1,126 @@
+package eu.clarussecure.dataoperations.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRegionPayloadTest {
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("payload", ".bin");
+        Files.write(file, "0123456789".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.delete(file);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[3];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String transfer(BinaryPayload payload, long position, long count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(count, payload.transferTo(Channels.newChannel(bytes), position, count));
+        return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void readsTheRegionSeveralTimes() throws IOException {
+        BinaryPayload payload = BinaryPayload.of(file, 2, 5);
+        assertEquals(5, payload.size());
+        try (InputStream first = payload.openStream()) {
+            assertEquals('2', first.read());
+            assertEquals(4, first.available());
+            // a new stream reads from the beginning, whatever the other ones read
+            try (InputStream second = payload.openStream()) {
+                assertEquals("23456", read(second));
+                assertEquals(-1, second.read());
+            }
+            assertEquals("3456", read(first));
+            assertEquals(-1, first.read());
+        }
+        try (InputStream whole = BinaryPayload.of(file).openStream()) {
+            assertEquals("0123456789", read(whole));
+        }
+    }
+
+    @Test
+    public void transfersSubRanges() throws IOException {
+        BinaryPayload payload = BinaryPayload.of(file, 2, 5);
+        assertEquals("345", transfer(payload, 1, 3));
+        assertEquals("23456", transfer(payload, 0, 5));
+        assertEquals("", transfer(payload, 5, 0));
+        try {
+            transfer(payload, 3, 3);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("range [3, 6) out of payload of 5 bytes", e.getMessage());
+        }
+    }
+
+    @Test
+    public void mapsTheRegion() throws IOException {
+        ByteBuffer buffer = BinaryPayload.of(file, 2, 5).asByteBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals("23456", string(buffer));
+        assertEquals("0123456789", string(BinaryPayload.of(file).asByteBuffer()));
+        assertEquals("", string(BinaryPayload.of(file, 10, 0).asByteBuffer()));
+        assertEquals("89", string(BinaryPayload.map(file, 8, 2).asByteBuffer()));
+    }
+
+    @Test
+    public void rejectsRegionsBeyondTheEndOfTheFile() throws IOException {
+        BinaryPayload payload = BinaryPayload.of(file, 8, 5);
+        try {
+            payload.asByteBuffer();
+            fail();
+        } catch (IOException e) {
+            assertEquals(file + " is shorter than the payload", e.getMessage());
+        }
+        try {
+            transfer(payload, 0, 5);
+            fail();
+        } catch (IOException e) {
+            assertEquals(file + " is shorter than the payload", e.getMessage());
+        }
+        // the stream ends with the file
+        try (InputStream in = payload.openStream()) {
+            assertEquals("89", read(in));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeRegions() {
+        BinaryPayload.of(file, -1, 5);
+    }
+}
@@ -0,0 +1,70 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+import eu.clarussecure.dataoperations.table.LongColumn;
+
+public class CriteriaCompilerTest {
+
+    private static final String[] ATTRIBUTES = { "id", "name" };
+    private static final String[][] ROWS = { { "1", "alice" }, { "2", null }, { null, "bob" }, { "10", "Bob" } };
+
+    private static BitSet select(Criteria... criteria) {
+        CompiledCriteria compiled = new CriteriaCompiler(ATTRIBUTES).compile(criteria);
+        BitSet rows = compiled.select(ROWS);
+        BitSet tested = new BitSet();
+        for (int row = 0; row < ROWS.length; row++) {
+            if (compiled.test(ROWS[row])) {
+                tested.set(row);
+            }
+        }
+        assertEquals(rows, tested);
+        ColumnarTable table = ColumnarTable.fromRows(ROWS, ATTRIBUTES.length);
+        assertEquals(rows, compiled.select(table));
+        table.setColumn(0, LongColumn.parse(table.getColumn(0)));
+        assertEquals(rows, compiled.select(table));
+        return rows;
+    }
+
+    private static BitSet rows(int... rows) {
+        BitSet set = new BitSet();
+        for (int row : rows) {
+            set.set(row);
+        }
+        return set;
+    }
+
+    @Test
+    public void comparesUnquotedNumbersAsNumbers() {
+        assertEquals(rows(3), select(new Criteria("id", ">", "2")));
+        assertEquals(rows(0, 1), select(new Criteria("id", "<=", "2")));
+        // quoted constants are compared as strings
+        assertEquals(rows(0, 3), select(new Criteria("id", "<", "'2'")));
+    }
+
+    @Test
+    public void neverMatchesNullsExceptWithIsNull() {
+        assertEquals(rows(0, 3), select(new Criteria("id", "<>", "2")));
+        assertEquals(rows(0, 3), select(new Criteria("id", "NOT IN", "(2)")));
+        assertEquals(rows(0), select(new Criteria("name", "not like", "%ob")));
+        assertEquals(rows(2), select(new Criteria("id", "IS NULL", null)));
+        assertEquals(rows(0, 1, 3), select(new Criteria("id", "is not null", null)));
+    }
+
+    @Test
+    public void combinesCriteria() {
+        assertEquals(rows(2, 3), select(new Criteria("name", "ILIKE", "b%")));
+        assertEquals(rows(3), select(new Criteria("name", "ILIKE", "b%"), new Criteria("id", "IN", "(1, 10)")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownAttributes() {
+        new CriteriaCompiler(ATTRIBUTES).compile(new Criteria("age", "=", "1"));
+    }
+}
@@ -0,0 +1,215 @@
+package eu.clarussecure.dataoperations.criteria;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eu.clarussecure.dataoperations.BatchingRowCursor;
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.DataOperation;
+import eu.clarussecure.dataoperations.DataOperationCommand;
+import eu.clarussecure.dataoperations.DataOperationResponse;
+import eu.clarussecure.dataoperations.DataOperationResult;
+import eu.clarussecure.dataoperations.RowCursor;
+
+public class PushdownPlanTest {
+
+    private static class Command extends DataOperationCommand {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class Response extends DataOperationResponse {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Reconstructs the rows of the single CSP as they are, with fully
+     * qualified attribute names
+     */
+    private static class IdentityDataOperation implements DataOperation {
+        private final String[] attributeNames;
+
+        IdentityDataOperation(String... attributeNames) {
+            this.attributeNames = attributeNames;
+        }
+
+        @Override
+        public List<DataOperationResult> get(List<DataOperationCommand> promise, List<String[][]> contents) {
+            Response response = new Response();
+            response.setAttributeNames(attributeNames);
+            response.setContents(contents.get(0));
+            return Collections.singletonList(response);
+        }
+
+        @Override
+        public List<DataOperationCommand> get(String[] attributeNames, Criteria[] criteria) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> post(String[] attributeNames, String[][] contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> put(String[] attributeNames, Criteria[] criteria, String[][] contents) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<DataOperationCommand> delete(String[] attributeNames, Criteria[] criteria) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Map<String, String>> head(String[] attributeNames) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final Criteria[] CRITERIA = { new Criteria("a", "=", "x"), new Criteria("b", ">", "5") };
+
+    private static PushdownPlan split(String... attributeNames) {
+        // only equality is pushed down
+        return PushdownPlan.split(attributeNames, CRITERIA, c -> c.getOperator().equals("="));
+    }
+
+    @Test
+    public void fetchesTheAttributesOfResidualCriteriaThatAreNotReturned() {
+        PushdownPlan plan = split("a");
+        assertArrayEquals(new Criteria[] { CRITERIA[0] }, plan.getPushedCriteria());
+        assertArrayEquals(new Criteria[] { CRITERIA[1] }, plan.getResidualCriteria());
+        assertArrayEquals(new String[] { "a", "b" }, plan.getFetchedAttributeNames());
+        assertArrayEquals(new String[] { "b" }, plan.getResidualAttributeNames());
+    }
+
+    @Test
+    public void doesNotFetchTheAttributesThatAreReturned() {
+        assertArrayEquals(new String[] { "b", "a" }, split("b", "a").getFetchedAttributeNames());
+        assertArrayEquals(new String[] { "*" }, split("*").getFetchedAttributeNames());
+        assertArrayEquals(new String[] { "ds/*/*" }, split("ds/*/*").getFetchedAttributeNames());
+        assertArrayEquals(new String[] { "ds/t/a", "b" }, split("ds/t/a").getFetchedAttributeNames());
+    }
+
+    @Test
+    public void dropsTheFetchedAttributesAfterFiltering() {
+        PushdownPlan plan = split("a");
+        Command command = new Command();
+        command.setAttributeNames(plan.getFetchedAttributeNames());
+        List<Command> promise = Collections.singletonList(command);
+        plan.recordResidualCriteria(promise);
+        Response response = new Response();
+        response.setAttributeNames(new String[] { "a", "b" });
+        response.setContents(new String[][] { { "x", "1" }, { "x", "7" }, { "x", null }, { "x", "12" } });
+        PushdownPlan.filter(promise, Collections.singletonList(response));
+        assertArrayEquals(new String[] { "a" }, response.getAttributeNames());
+        assertArrayEquals(new String[][] { { "x" }, { "x" } }, response.getContents());
+    }
+
+    @Test
+    public void keepsTheColumnsWithoutResidualAttributes() {
+        PushdownPlan plan = split("*");
+        Command command = new Command();
+        List<Command> promise = Collections.singletonList(command);
+        plan.recordResidualCriteria(promise);
+        assertNull(command.getResidualAttributeNames());
+        Response response = new Response();
+        response.setAttributeNames(new String[] { "a", "b" });
+        response.setContents(new String[][] { { "x", "1" }, { "x", "7" } });
+        PushdownPlan.filter(promise, Collections.singletonList(response));
+        assertArrayEquals(new String[] { "a", "b" }, response.getAttributeNames());
+        assertArrayEquals(new String[][] { { "x", "7" } }, response.getContents());
+    }
+
+    private static final Criteria[] PATIENT_CRITERIA = { new Criteria("pat_id", "=", "1"),
+            new Criteria("pat_name", "LIKE", "'Zo%'") };
+
+    private static final String[][] PATIENT_ROWS = { { "1", "Zoe" }, { "1", "Ann" }, { "1", "Zora" } };
+
+    private static List<Command> promise(PushdownPlan plan) {
+        Command command = new Command();
+        command.setAttributeNames(plan.getFetchedAttributeNames());
+        List<Command> promise = Collections.singletonList(command);
+        plan.recordResidualCriteria(promise);
+        return promise;
+    }
+
+    @Test
+    public void resolvesUnqualifiedResidualAttributesToTheAttributesOfTheGetOperation() {
+        PushdownPlan plan = PushdownPlan.split(new String[] { "ds/patient/pat_id", "ds/patient/pat_name" },
+                PATIENT_CRITERIA, c -> c.getOperator().equals("="));
+        assertEquals("ds/patient/pat_name", plan.getResidualCriteria()[0].getAttributeName());
+        assertEquals("LIKE", plan.getResidualCriteria()[0].getOperator());
+        assertArrayEquals(new String[] { "ds/patient/pat_id", "ds/patient/pat_name" }, plan.getFetchedAttributeNames());
+        List<Command> promise = promise(plan);
+        assertEquals("ds/patient/pat_name", promise.get(0).getResidualCriteria()[0].getAttributeName());
+        Response response = new Response();
+        response.setAttributeNames(plan.getFetchedAttributeNames());
+        response.setContents(PATIENT_ROWS);
+        PushdownPlan.filter(promise, Collections.singletonList(response));
+        assertArrayEquals(new String[][] { PATIENT_ROWS[0], PATIENT_ROWS[2] }, response.getContents());
+    }
+
+    @Test
+    public void resolvesResidualAttributesCoveredByAsterisksOnTheReconstructedRows() {
+        String[] attributeNames = { "ds/patient/pat_id", "ds/patient/pat_name" };
+        for (String criteriaName : new String[] { "pat_name", "patient/pat_name", "*/*/pat_name" }) {
+            Criteria[] criteria = { new Criteria(criteriaName, "LIKE", "'Zo%'") };
+            PushdownPlan plan = PushdownPlan.split(new String[] { "*/patient/*" }, criteria, c -> false);
+            assertArrayEquals(new String[] { "*/patient/*" }, plan.getFetchedAttributeNames());
+            assertEquals(criteriaName, plan.getResidualCriteria()[0].getAttributeName());
+            List<Command> promise = promise(plan);
+            Response response = new Response();
+            response.setAttributeNames(attributeNames);
+            response.setContents(PATIENT_ROWS);
+            PushdownPlan.filter(promise, Collections.singletonList(response));
+            assertArrayEquals(criteriaName, new String[][] { PATIENT_ROWS[0], PATIENT_ROWS[2] },
+                    response.getContents());
+            // the same through a row cursor
+            List<Iterator<String[]>> contents = Collections.singletonList(Arrays.asList(PATIENT_ROWS).iterator());
+            try (RowCursor cursor = new BatchingRowCursor(new IdentityDataOperation(attributeNames),
+                    Collections.<DataOperationCommand>unmodifiableList(promise), contents, 2)) {
+                assertSame(PATIENT_ROWS[0], cursor.next());
+                assertSame(PATIENT_ROWS[2], cursor.next());
+                assertFalse(cursor.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void keepsTheResidualCriteriaOnTheReconstructedAttributes() {
+        Criteria[] criteria = { new Criteria("a", "=", "x") };
+        assertSame(criteria, PushdownPlan.resolveResidualCriteria(criteria, new String[] { "a", "ds/t/a" }));
+        // unknown attributes are left to the compiler
+        assertSame(criteria[0], PushdownPlan.resolveResidualCriteria(criteria, new String[] { "b" })[0]);
+    }
+
+    @Test
+    public void rejectsAmbiguousResidualAttributes() {
+        try {
+            PushdownPlan.split(new String[] { "ds1/patient/pat_name", "ds2/patient/pat_name" }, PATIENT_CRITERIA,
+                    c -> c.getOperator().equals("="));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("ambiguous attribute pat_name: ds1/patient/pat_name or ds2/patient/pat_name", e.getMessage());
+        }
+        try {
+            PushdownPlan.resolveResidualCriteria(new Criteria[] { PATIENT_CRITERIA[1] },
+                    new String[] { "ds1/patient/pat_name", "ds2/patient/pat_name" });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("ambiguous attribute pat_name: ds1/patient/pat_name or ds2/patient/pat_name", e.getMessage());
+        }
+    }
+}
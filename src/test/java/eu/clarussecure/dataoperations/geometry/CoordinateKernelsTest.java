@@ -0,0 +1,90 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CoordinateKernelsTest {
+
+    private static final ProjectedCRS EASTING_FIRST = new ProjectedCRS(1, "easting first",
+            Arrays.asList(new ProjectedCRS.Axis(1, "Easting", "E", "metre", "east", 0, 10),
+                    new ProjectedCRS.Axis(2, "Northing", "N", "metre", "north", 100, 200)));
+
+    private static final ProjectedCRS NORTHING_FIRST = new ProjectedCRS(2, "northing first",
+            Arrays.asList(new ProjectedCRS.Axis(1, "Northing", "N", "metre", "north", 100, 200),
+                    new ProjectedCRS.Axis(2, "Easting", "E", "metre", "east", 0, 10)));
+
+    @Test
+    public void clampsContiguousValues() {
+        double[] values = { -1, 5, 11, 42 };
+        CoordinateKernels.clamp(values, 0, 3, 0, 10);
+        assertArrayEquals(new double[] { 0, 5, 10, 42 }, values, 0);
+    }
+
+    @Test
+    public void wrapsContiguousValues() {
+        double[] values = { 190, -190, 180, 0 };
+        CoordinateKernels.wrap(values, 0, 4, -180, 180);
+        assertArrayEquals(new double[] { -170, 170, -180, 0 }, values, 0);
+    }
+
+    @Test
+    public void wrapsValuesJustBelowTheUpperBound() {
+        double below = Math.nextDown(180.0);
+        double[] values = { below, Math.nextDown(-180.0), below - 360 };
+        CoordinateKernels.wrap(values, 0, 3, -180, 180);
+        assertArrayEquals(new double[] { below, below, below }, values, 0);
+    }
+
+    @Test
+    public void wrapsToTheHalfOpenRange() {
+        Random random = new Random(42);
+        double[][] ranges = { { -180, 180 }, { -1, 1000 }, { 0, 0.1 }, { -1e-3, 1e6 } };
+        for (double[] range : ranges) {
+            double min = range[0];
+            double max = range[1];
+            // X, Y interleaved: only the Y values are wrapped
+            double[] coordinates = new double[20000];
+            for (int i = 1; i < coordinates.length; i += 2) {
+                double bound = random.nextBoolean() ? min : max;
+                coordinates[i] = random.nextBoolean() ? bound + (random.nextInt(5) - 2) * Math.ulp(bound)
+                        : (random.nextDouble() - 0.5) * 10 * (max - min);
+                coordinates[i - 1] = coordinates[i];
+            }
+            double[] values = coordinates.clone();
+            CoordinateKernels.wrap(values, 0, values.length, min, max);
+            CoordinateKernels.wrap(coordinates, 0, coordinates.length / 2, 2, 1, min, max);
+            for (int i = 1; i < coordinates.length; i += 2) {
+                assertTrue(min + " " + max + " " + coordinates[i], coordinates[i] >= min && coordinates[i] < max);
+                assertEquals(values[i], coordinates[i], 0);
+                assertEquals(values[i - 1], coordinates[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void clampsEastingsAndNorthingsWhateverTheAxisOrderIs() {
+        for (ProjectedCRS crs : Arrays.asList(EASTING_FIRST, NORTHING_FIRST)) {
+            // X, Y, Z
+            double[] coordinates = { -5, 50, 7, 20, 250, 8 };
+            CoordinateKernels.clamping(crs).transform(coordinates, 0, 2, 3);
+            assertArrayEquals(crs.getName(), new double[] { 0, 100, 7, 10, 200, 8 }, coordinates, 0);
+        }
+    }
+
+    @Test
+    public void normalizesEastingsAndNorthingsWhateverTheAxisOrderIs() {
+        for (ProjectedCRS crs : Arrays.asList(EASTING_FIRST, NORTHING_FIRST)) {
+            double[] coordinates = { 5, 150, 10, 100 };
+            CoordinateKernels.normalizing(crs).transform(coordinates, 0, 2, 2);
+            assertArrayEquals(crs.getName(), new double[] { 0.5, 0.5, 1, 0 }, coordinates, 0);
+            CoordinateKernels.denormalizing(crs).transform(coordinates, 0, 2, 2);
+            assertArrayEquals(crs.getName(), new double[] { 5, 150, 10, 100 }, coordinates, 0);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.clarussecure.dataoperations.Criteria;
+import eu.clarussecure.dataoperations.criteria.CompiledCriteria;
+import eu.clarussecure.dataoperations.criteria.CriteriaCompiler;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+public class EnvelopeIndexTest {
+
+    @Test
+    public void queriesTheRowsWhoseEnvelopeIntersectsTheBox() {
+        Random random = new Random(7);
+        double[] envelopes = new double[1000 * 4];
+        for (int row = 0; row < 1000; row++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            envelopes[row * 4] = x;
+            envelopes[row * 4 + 1] = y;
+            envelopes[row * 4 + 2] = x + random.nextDouble() * 5;
+            envelopes[row * 4 + 3] = y + random.nextDouble() * 5;
+        }
+        // never matches
+        envelopes[0] = Double.NaN;
+        // unbounded along X
+        envelopes[4] = Double.NEGATIVE_INFINITY;
+        envelopes[6] = Double.POSITIVE_INFINITY;
+        EnvelopeIndex index = new EnvelopeIndex(envelopes, 4);
+        for (int q = 0; q < 200; q++) {
+            double minX = random.nextDouble() * 120 - 10;
+            double minY = random.nextDouble() * 120 - 10;
+            double maxX = minX + random.nextDouble() * 30;
+            double maxY = minY + random.nextDouble() * 30;
+            BitSet expected = new BitSet();
+            for (int row = 0; row < 1000; row++) {
+                int i = row * 4;
+                if (envelopes[i] <= maxX && envelopes[i + 1] <= maxY && envelopes[i + 2] >= minX
+                        && envelopes[i + 3] >= minY) {
+                    expected.set(row);
+                }
+            }
+            assertEquals(expected, index.query(minX, minY, maxX, maxY));
+        }
+    }
+
+    @Test
+    public void filtersAsTheRowByRowCriteria() {
+        String[][] rows = { { "POINT(1 1)" }, { "LINESTRING(0 0,10 10)" }, { "POINT(20 20)" }, { null },
+                { "not a geometry" }, { "POINT EMPTY" }, { "POINT(Infinity 5)" }, { "BOX(4 4,6 6)" } };
+        CompiledCriteria criteria = new CriteriaCompiler(new String[] { "geom" })
+                .compile(new Criteria("geom", "&&", "'BOX(3 3,7 7)'"));
+        BitSet expected = new BitSet();
+        for (int row = 0; row < rows.length; row++) {
+            if (criteria.test(rows[row])) {
+                expected.set(row);
+            }
+        }
+        BitSet matching = new BitSet();
+        matching.set(1);
+        matching.set(7);
+        assertEquals(matching, expected);
+        assertEquals(expected, criteria.select(ColumnarTable.fromRows(rows, 1)));
+    }
+}
@@ -0,0 +1,147 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.postgis.Geometry;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryParser;
+import org.postgis.binary.BinaryWriter;
+import org.postgis.binary.ValueSetter;
+
+public class FlatGeometryTest {
+
+    private static final String[] GEOMETRIES = { "POINT(1 2)", "POINT(1 2 3)", "POINTM(1 2 4)", "POINT(1 2 3 4)",
+            "SRID=4326;POINT(1.5 -2.25)", "LINESTRING(0 0,1 1,2 0)", "SRID=2154;LINESTRING(0 0 1,1 1 2)",
+            "POLYGON((0 0,0 10,10 10,10 0,0 0),(2 2,2 4,4 4,4 2,2 2),(6 6,6 8,8 8,6 6))",
+            "POLYGONM((0 0 1,0 1 2,1 1 3,0 0 1))", "MULTIPOINT(1 2,3 4)", "MULTIPOINT(1 2 3 4,5 6 7 8)",
+            "MULTILINESTRING((0 0,1 1),(2 2,3 3,4 4))",
+            "SRID=4326;MULTIPOLYGON(((0 0,0 1,1 1,0 0)),((5 5,5 9,9 9,9 5,5 5),(6 6,6 7,7 7,6 6)))",
+            "MULTIPOLYGON(((0 0 0,0 1 0,1 1 0,0 0 0)))" };
+
+    private static final String[] EMPTY_GEOMETRIES = { "POINT EMPTY", "LINESTRING EMPTY", "POLYGON EMPTY",
+            "MULTIPOINT EMPTY", "MULTILINESTRING EMPTY", "MULTIPOLYGON EMPTY" };
+
+    private static byte[] wkb(FlatGeometry geometry, ByteOrder byteOrder) {
+        ByteBuffer wkb = ByteBuffer.allocate(geometry.getWkbSize());
+        geometry.writeWkb(wkb, byteOrder);
+        assertEquals(wkb.capacity(), wkb.position());
+        return wkb.array();
+    }
+
+    @Test
+    public void writesTheWktOfPostgis() throws SQLException {
+        for (String wkt : GEOMETRIES) {
+            FlatGeometry geometry = FlatGeometry.parseWkt(wkt);
+            assertEquals(wkt, PGgeometry.geomFromString(wkt).toString(), geometry.toWkt());
+            assertEquals(wkt, PGgeometry.geomFromString(wkt), geometry.toGeometry());
+        }
+    }
+
+    @Test
+    public void writesTheWkbOfPostgis() throws SQLException {
+        BinaryWriter writer = new BinaryWriter();
+        for (String wkt : GEOMETRIES) {
+            Geometry expected = PGgeometry.geomFromString(wkt);
+            FlatGeometry geometry = FlatGeometry.parseWkt(wkt);
+            assertArrayEquals(wkt, writer.writeBinary(expected, ValueSetter.NDR.NUMBER), geometry.toWkb());
+            assertArrayEquals(wkt, writer.writeBinary(expected, ValueSetter.NDR.NUMBER),
+                    wkb(geometry, ByteOrder.LITTLE_ENDIAN));
+            assertArrayEquals(wkt, writer.writeBinary(expected, ValueSetter.XDR.NUMBER),
+                    wkb(geometry, ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    @Test
+    public void readsTheWkbOfPostgis() throws SQLException {
+        BinaryWriter writer = new BinaryWriter();
+        BinaryParser parser = new BinaryParser();
+        for (String wkt : GEOMETRIES) {
+            Geometry expected = PGgeometry.geomFromString(wkt);
+            for (byte byteOrder : new byte[] { ValueSetter.NDR.NUMBER, ValueSetter.XDR.NUMBER }) {
+                FlatGeometry geometry = FlatGeometry.readWkb(writer.writeBinary(expected, byteOrder));
+                assertEquals(wkt, expected.getSrid(), geometry.getSrid());
+                assertEquals(wkt, expected.dimension == 3, geometry.hasZ());
+                assertEquals(wkt, expected.isMeasured(), geometry.hasM());
+                assertEquals(wkt, expected.numPoints(), geometry.getPointCount());
+                assertEquals(wkt, expected, parser.parse(geometry.toWkb()));
+            }
+        }
+    }
+
+    @Test
+    public void readsGeometriesAtThePositionOfTheBuffer() {
+        FlatGeometry first = FlatGeometry.parseWkt(GEOMETRIES[7]);
+        FlatGeometry second = FlatGeometry.parseWkt(GEOMETRIES[12]);
+        ByteBuffer wkb = ByteBuffer.allocate(first.getWkbSize() + second.getWkbSize()).order(ByteOrder.BIG_ENDIAN);
+        first.writeWkb(wkb, ByteOrder.LITTLE_ENDIAN);
+        second.writeWkb(wkb, ByteOrder.BIG_ENDIAN);
+        wkb.flip();
+        assertEquals(GEOMETRIES[7], FlatGeometry.readWkb(wkb).toWkt());
+        assertEquals(GEOMETRIES[12], FlatGeometry.readWkb(wkb).toWkt());
+        assertEquals(0, wkb.remaining());
+        assertEquals(ByteOrder.BIG_ENDIAN, wkb.order());
+    }
+
+    @Test
+    public void roundTripsEmptyGeometries() {
+        for (String wkt : EMPTY_GEOMETRIES) {
+            FlatGeometry geometry = FlatGeometry.parseWkt(wkt);
+            assertTrue(wkt, geometry.isEmpty());
+            assertEquals(wkt, geometry.toWkt());
+            for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+                FlatGeometry read = FlatGeometry.readWkb(wkb(geometry, byteOrder));
+                assertTrue(wkt, read.isEmpty());
+                assertEquals(wkt, read.toWkt());
+            }
+        }
+    }
+
+    @Test
+    public void skipsTheEmptyPointsOfMultiPoints() {
+        // POINT EMPTY is written as NaN coordinates
+        ByteBuffer wkb = ByteBuffer.allocate(9 + 3 * 21).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(Geometry.MULTIPOINT).putInt(3);
+        wkb.put((byte) 1).putInt(Geometry.POINT).putDouble(1).putDouble(2);
+        wkb.put((byte) 1).putInt(Geometry.POINT).putDouble(Double.NaN).putDouble(Double.NaN);
+        wkb.put((byte) 1).putInt(Geometry.POINT).putDouble(3).putDouble(4);
+        FlatGeometry geometry = FlatGeometry.readWkb(wkb.array());
+        assertEquals(2, geometry.getPartCount());
+        assertEquals("MULTIPOINT(1 2,3 4)", geometry.toWkt());
+        assertEquals("MULTIPOINT(1 2,3 4)", FlatGeometry.parseWkt("MULTIPOINT(1 2,EMPTY,3 4)").toWkt());
+        // POINT EMPTY alone
+        wkb = ByteBuffer.allocate(21).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(Geometry.POINT).putDouble(Double.NaN).putDouble(Double.NaN);
+        assertEquals("POINT EMPTY", FlatGeometry.readWkb(wkb.array()).toWkt());
+    }
+
+    @Test
+    public void rejectsGeometryCollections() throws SQLException {
+        String wkt = "GEOMETRYCOLLECTION(POINT(1 2),LINESTRING(3 4,5 6))";
+        try {
+            FlatGeometry.parseWkt(wkt);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("unsupported geometry type"));
+        }
+        byte[] wkb = new BinaryWriter().writeBinary(PGgeometry.geomFromString(wkt));
+        try {
+            FlatGeometry.readWkb(wkb);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("unsupported geometry type: " + Geometry.GEOMETRYCOLLECTION, e.getMessage());
+        }
+        // the envelope reader falls back to PostGIS
+        EnvelopeIndex.EnvelopeReader reader = new EnvelopeIndex.EnvelopeReader();
+        assertArrayEquals(new double[] { 1, 2, 5, 6 }, reader.read(wkt), 0);
+        assertArrayEquals(new double[] { 1, 2, 5, 6 },
+                reader.read(new BinaryWriter().writeHexed(PGgeometry.geomFromString(wkt))), 0);
+    }
+}
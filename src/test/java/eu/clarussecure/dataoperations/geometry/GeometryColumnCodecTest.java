@@ -0,0 +1,175 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+import org.postgis.Geometry;
+import org.postgis.PGbox2d;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+import org.postgis.binary.ValueSetter;
+
+import eu.clarussecure.dataoperations.table.Column;
+import eu.clarussecure.dataoperations.table.ColumnarTable;
+
+public class GeometryColumnCodecTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    // small threshold, so that the columns are split in many chunks
+    private final GeometryColumnCodec parallel = new GeometryColumnCodec(pool, 16);
+    private final GeometryColumnCodec sequential = new GeometryColumnCodec(pool, Integer.MAX_VALUE);
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static Geometry randomGeometry(Random random) throws SQLException {
+        double x = random.nextInt(1000) / 8.0;
+        double y = random.nextInt(1000) / 8.0;
+        switch (random.nextInt(3)) {
+        case 0:
+            return PGgeometry.geomFromString("POINT(" + x + " " + y + ")");
+        case 1:
+            return PGgeometry.geomFromString("LINESTRING(" + x + " " + y + "," + y + " " + x + ")");
+        default:
+            return PGgeometry.geomFromString("POLYGON((" + x + " " + y + "," + x + " " + (y + 1) + "," + (x + 1) + " "
+                    + y + "," + x + " " + y + "))");
+        }
+    }
+
+    /**
+     * Builds a column of hexadecimal WKB geometries, with some null values
+     */
+    private static String[] hexColumn(Geometry[] geometries, byte byteOrder) throws SQLException {
+        Random random = new Random(42);
+        BinaryWriter writer = new BinaryWriter();
+        String[] values = new String[geometries.length];
+        for (int row = 0; row < values.length; row++) {
+            if (row % 7 != 3) {
+                geometries[row] = randomGeometry(random);
+                values[row] = writer.writeHexed(geometries[row], byteOrder);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void detectsTheFormatOfTheFirstValue() {
+        GeometryColumnCodec codec = GeometryColumnCodec.INSTANCE;
+        assertEquals(GeometryFormat.HEX_WKB_LITTLE_ENDIAN,
+                codec.detectFormat(new String[] { null, "0101000000000000000000F03F0000000000000040" }));
+        assertEquals(GeometryFormat.HEX_WKB_BIG_ENDIAN,
+                codec.detectFormat(new String[] { "00000000013FF00000000000004000000000000000" }));
+        assertEquals(GeometryFormat.WKT,
+                codec.detectFormat(new String[] { "POINT(1 2)", "0101000000000000000000F03F0000000000000040" }));
+        assertEquals(new GeometryFormat(GeometryFormat.Encoding.EWKT, true, 4326),
+                codec.detectFormat(new String[] { "SRID=4326;POINT(1 2)" }));
+        assertEquals(GeometryFormat.Encoding.BOX, codec.detectFormat(new String[] { "BOX(1 2,3 4)" }).getEncoding());
+        assertNull(codec.detectFormat(new String[] { null, null }));
+        assertNull(codec.detectFormat(new String[] { "not a geometry", "POINT(1 2)" }));
+        assertNull(codec.detectFormat(new String[0]));
+    }
+
+    @Test
+    public void decodesAsGeometryCodec() throws SQLException {
+        for (byte byteOrder : new byte[] { ValueSetter.NDR.NUMBER, ValueSetter.XDR.NUMBER }) {
+            Geometry[] geometries = new Geometry[1000];
+            String[] values = hexColumn(geometries, byteOrder);
+            for (GeometryColumnCodec codec : new GeometryColumnCodec[] { sequential, parallel }) {
+                Object[] decoded = new Object[values.length];
+                GeometryFormat format = codec.decode(values, decoded);
+                assertEquals(byteOrder, format.getByteOrder());
+                assertArrayEquals(geometries, decoded);
+            }
+        }
+    }
+
+    @Test
+    public void decodesValuesThatAreNotInTheFormatOfTheColumn() throws SQLException {
+        String[] values = { "SRID=4326;0101000000000000000000F03F0000000000000040", "POINT(3 4)", "BOX(1 2,3 4)",
+                "not a geometry", null, "SRID=2154;LINESTRING(0 0,1 1)" };
+        Object[] decoded = new Object[values.length + 1];
+        GeometryFormat format = parallel.decode(values, decoded);
+        assertEquals(new GeometryFormat(GeometryFormat.Encoding.HEX_WKB, false, 4326), format);
+        assertEquals(PGgeometry.geomFromString("SRID=4326;POINT(1 2)"), decoded[0]);
+        assertEquals(PGgeometry.geomFromString("POINT(3 4)"), decoded[1]);
+        assertEquals(new PGbox2d("BOX(1 2,3 4)"), decoded[2]);
+        assertNull(decoded[3]);
+        assertNull(decoded[4]);
+        assertEquals(PGgeometry.geomFromString("SRID=2154;LINESTRING(0 0,1 1)"), decoded[5]);
+    }
+
+    @Test
+    public void encodesAsPostgis() throws SQLException {
+        Geometry[] geometries = new Geometry[1000];
+        hexColumn(geometries, ValueSetter.NDR.NUMBER);
+        BinaryWriter writer = new BinaryWriter();
+        for (GeometryFormat format : new GeometryFormat[] { GeometryFormat.HEX_WKB_LITTLE_ENDIAN,
+                GeometryFormat.HEX_WKB_BIG_ENDIAN, GeometryFormat.WKT }) {
+            String[] expected = new String[geometries.length];
+            for (int row = 0; row < geometries.length; row++) {
+                if (geometries[row] != null) {
+                    expected[row] = format.isBinary() ? writer.writeHexed(geometries[row], format.getByteOrder())
+                            : geometries[row].toString();
+                }
+            }
+            for (GeometryColumnCodec codec : new GeometryColumnCodec[] { sequential, parallel }) {
+                String[] encoded = new String[geometries.length];
+                codec.encode(geometries, format, encoded);
+                assertArrayEquals(format.toString(), expected, encoded);
+            }
+        }
+    }
+
+    @Test
+    public void decodesAndEncodesColumns() throws SQLException {
+        Geometry[] geometries = new Geometry[100];
+        String[] values = hexColumn(geometries, ValueSetter.XDR.NUMBER);
+        String[][] rows = new String[values.length + 1][];
+        for (int row = 0; row < values.length; row++) {
+            rows[row] = new String[] { values[row] };
+        }
+        rows[values.length] = new String[] { "BOX(1 2,3 4)" };
+        Column column = ColumnarTable.fromRows(rows, 1).getColumn(0);
+        Object[] decoded = new Object[column.size()];
+        GeometryFormat format = parallel.decode(column, decoded);
+        assertEquals(GeometryFormat.HEX_WKB_BIG_ENDIAN, format);
+        assertTrue(decoded[values.length] instanceof PGbox2d);
+        parallel.encode(decoded, format, column);
+        for (int row = 0; row < values.length; row++) {
+            assertEquals(values[row], column.get(row));
+        }
+        assertEquals(GeometryCodec.INSTANCE.encodeBox((PGbox2d) decoded[values.length]), column.get(values.length));
+    }
+
+    @Test
+    public void rejectsTooSmallArrays() {
+        try {
+            parallel.decode(new String[] { "POINT(1 2)", "POINT(3 4)" }, new Object[1]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("expected an array of at least 2 values, got 1", e.getMessage());
+        }
+        try {
+            parallel.encode(new Object[2], GeometryFormat.WKT, new String[1]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("expected an array of at least 2 values, got 1", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveThreshold() {
+        new GeometryColumnCodec(pool, 0);
+    }
+}
@@ -0,0 +1,70 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class HexCodecTest {
+
+    private static final byte[] BYTES = { 0, 1, 0x0F, 0x10, 0x7F, (byte) 0x80, (byte) 0xAB, (byte) 0xFF };
+
+    @Test
+    public void encodesBytes() {
+        assertEquals("00010F107F80ABFF", HexCodec.encode(BYTES, 0, BYTES.length, true));
+        assertEquals("00010f107f80abff", HexCodec.encode(BYTES, 0, BYTES.length, false));
+        assertEquals("0F107F", HexCodec.encode(BYTES, 2, 3, true));
+        assertEquals("", HexCodec.encode(BYTES, 0, 0, true));
+    }
+
+    @Test
+    public void encodesTheRemainingBytesOfABuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap(BYTES);
+        buffer.position(5).limit(7);
+        assertEquals("80AB", HexCodec.encode(buffer, true));
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    public void decodesBothCases() {
+        assertArrayEquals(BYTES, HexCodec.decode("00010F107F80ABFF"));
+        assertArrayEquals(BYTES, HexCodec.decode("00010f107f80abff"));
+        assertArrayEquals(BYTES, HexCodec.decode(new StringBuilder("00010f107F80aBfF")));
+    }
+
+    @Test
+    public void decodesAPartOfAString() {
+        ByteBuffer target = ByteBuffer.allocate(4);
+        target.put((byte) 0x55);
+        HexCodec.decode("SRID=4326;0F10", 10, 14, target);
+        assertEquals(3, target.position());
+        assertArrayEquals(new byte[] { 0x55, 0x0F, 0x10, 0 }, target.array());
+    }
+
+    @Test
+    public void rejectsOddLengths() {
+        try {
+            HexCodec.decode("ABC");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("odd number of hexadecimal digits: 3", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidDigits() {
+        String[][] cases = { { "0G", "'G' at 1" }, { "x0", "'x' at 0" }, { "0 ", "' ' at 1" },
+                { "0\u00e9", "'\u00e9' at 1" }, { "\u0660\u0660", "'\u0660' at 0" } };
+        for (String[] c : cases) {
+            try {
+                HexCodec.decode(c[0]);
+                fail(c[0]);
+            } catch (IllegalArgumentException e) {
+                assertEquals("invalid hexadecimal digit " + c[1], e.getMessage());
+            }
+        }
+    }
+}
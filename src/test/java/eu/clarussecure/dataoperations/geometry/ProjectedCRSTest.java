@@ -0,0 +1,45 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class ProjectedCRSTest {
+
+    @Test
+    public void bundlesTheCompiledCatalog() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = ProjectedCRS.class.getResourceAsStream("all-projected-crs.properties")) {
+            properties.load(in);
+        }
+        byte[] expected = ProjectedCRSCatalogCompiler.compile(properties);
+        try (InputStream in = ProjectedCRS.class.getResourceAsStream("all-projected-crs.bin")) {
+            assertNotNull("the catalog is compiled during the build (process-classes)", in);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            assertArrayEquals(expected, bytes.toByteArray());
+        }
+    }
+
+    @Test
+    public void resolvesTheCatalogEntries() {
+        ProjectedCRS crs = ProjectedCRS.resolve(3857);
+        assertEquals("WGS 84 / Pseudo-Mercator", crs.getName());
+        assertEquals(2, crs.getAxes().size());
+        assertEquals("east", crs.getAxis("X").getOrientation());
+        assertEquals(20048966.10, crs.getAxis("Y").getMax(), 0);
+        assertNull(ProjectedCRS.resolve(-1));
+    }
+}
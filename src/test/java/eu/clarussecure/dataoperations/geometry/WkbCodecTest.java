@@ -0,0 +1,111 @@
+package eu.clarussecure.dataoperations.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.postgis.Geometry;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+import org.postgis.binary.ValueSetter;
+
+public class WkbCodecTest {
+
+    private static final String[] GEOMETRIES = { "POINT(1 2)", "SRID=4326;POINT(1 2 3)", "POINTM(1 2 4)",
+            "LINESTRING(0 0,1 1,2 0)", "POLYGON((0 0,0 10,10 10,10 0,0 0),(2 2,2 4,4 4,4 2,2 2))",
+            "SRID=2154;MULTIPOLYGON(((0 0 1 2,0 1 1 2,1 1 1 2,0 0 1 2)))",
+            "GEOMETRYCOLLECTION(POINT(1 2),LINESTRING(3 4,5 6))" };
+
+    private static final byte[] BYTE_ORDERS = { ValueSetter.NDR.NUMBER, ValueSetter.XDR.NUMBER };
+
+    @Test
+    public void encodesAsPostgis() throws SQLException {
+        BinaryWriter writer = new BinaryWriter();
+        ByteBuffer buffer = null;
+        for (String wkt : GEOMETRIES) {
+            Geometry geometry = PGgeometry.geomFromString(wkt);
+            for (byte byteOrder : BYTE_ORDERS) {
+                buffer = WkbCodec.INSTANCE.encode(geometry, byteOrder, buffer);
+                assertEquals(wkt, WkbCodec.INSTANCE.size(geometry), buffer.remaining());
+                assertEquals(wkt, writer.writeHexed(geometry, byteOrder), WkbCodec.INSTANCE.toHex(buffer));
+                assertEquals(wkt, geometry, WkbCodec.INSTANCE.decode(buffer));
+            }
+        }
+    }
+
+    @Test
+    public void reusesTheBufferIfItIsLargeEnough() throws SQLException {
+        Geometry point = PGgeometry.geomFromString("POINT(1 2)");
+        Geometry polygon = PGgeometry.geomFromString(GEOMETRIES[4]);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        assertSame(buffer, WkbCodec.INSTANCE.encode(point, ValueSetter.NDR.NUMBER, buffer));
+        assertEquals(0, buffer.position());
+        assertEquals(21, buffer.limit());
+        ByteBuffer larger = WkbCodec.INSTANCE.encode(polygon, ValueSetter.NDR.NUMBER, buffer);
+        assertTrue(larger.capacity() >= WkbCodec.INSTANCE.size(polygon));
+        assertEquals(polygon, WkbCodec.INSTANCE.decode(larger));
+        assertEquals(21, WkbCodec.INSTANCE.encode(point, ValueSetter.NDR.NUMBER, null).remaining());
+    }
+
+    @Test
+    public void writesAndDecodesConsecutiveGeometries() throws SQLException, IOException {
+        Geometry[] geometries = new Geometry[GEOMETRIES.length];
+        int size = 0;
+        for (int i = 0; i < geometries.length; i++) {
+            geometries[i] = PGgeometry.geomFromString(GEOMETRIES[i]);
+            size += WkbCodec.INSTANCE.size(geometries[i]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < geometries.length; i++) {
+            WkbCodec.INSTANCE.write(geometries[i], BYTE_ORDERS[i % 2], buffer);
+        }
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        List<Geometry> decoded = WkbCodec.INSTANCE.decodeAll(buffer.duplicate());
+        assertEquals(Arrays.asList(geometries), decoded);
+        decoded = WkbCodec.INSTANCE.decodeAll(new ByteArrayInputStream(buffer.array()));
+        assertEquals(Arrays.asList(geometries), decoded);
+        // the position is moved after each geometry
+        WkbCodec.INSTANCE.decode(buffer);
+        assertEquals(WkbCodec.INSTANCE.size(geometries[0]), buffer.position());
+    }
+
+    @Test
+    public void rejectsTooSmallBuffers() throws SQLException {
+        Geometry geometry = PGgeometry.geomFromString(GEOMETRIES[3]);
+        ByteBuffer buffer = ByteBuffer.allocate(WkbCodec.INSTANCE.size(geometry) - 1);
+        try {
+            WkbCodec.INSTANCE.write(geometry, ValueSetter.NDR.NUMBER, buffer);
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void decodesHexWithAndWithoutSrid() throws SQLException {
+        BinaryWriter writer = new BinaryWriter();
+        for (String wkt : GEOMETRIES) {
+            Geometry geometry = PGgeometry.geomFromString(wkt);
+            for (byte byteOrder : BYTE_ORDERS) {
+                String hex = writer.writeHexed(geometry, byteOrder);
+                assertEquals(wkt, geometry, WkbCodec.INSTANCE.decodeHex(hex));
+                assertEquals(wkt, geometry, WkbCodec.INSTANCE.decodeHex(hex.toLowerCase()));
+            }
+        }
+        Geometry geometry = WkbCodec.INSTANCE
+                .decodeHex("SRID=3857;" + writer.writeHexed(PGgeometry.geomFromString("POINT(1 2)")));
+        assertEquals(3857, geometry.getSrid());
+        assertEquals(PGgeometry.geomFromString("SRID=3857;POINT(1 2)"), geometry);
+    }
+}
@@ -0,0 +1,45 @@
+package eu.clarussecure.dataoperations.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ColumnarTableTest {
+
+    @Test
+    public void convertsRowsToColumnsAndBack() {
+        String[][] rows = { { "1", "a" }, { null, "b" }, { "3", null } };
+        ColumnarTable table = ColumnarTable.fromRows(rows, 2);
+        assertEquals(3, table.getRowCount());
+        assertEquals(2, table.getColumnCount());
+        assertArrayEquals(rows, table.toRows());
+    }
+
+    @Test
+    public void readsDoublesAsTheyWereWritten() {
+        String[] values = { "10000000", "1.50", "1.5", "-0.0", "0", "1e3", null };
+        DoubleColumn column = DoubleColumn.parse(new StringColumn(values.clone()));
+        assertArrayEquals(values, column.toArray());
+        assertArrayEquals(values, column.copy().toArray());
+        assertEquals(1.0E7, column.getDouble(0), 0);
+        column.setDouble(1, 2.25);
+        assertEquals("2.25", column.get(1));
+        column.values()[0] = 5;
+        assertEquals("5.0", column.get(0));
+        column.set(5, null);
+        assertNull(column.get(5));
+    }
+
+    @Test
+    public void readsLongsAsTheyWereWritten() {
+        String[] values = { "007", "+7", "7", "-0", null };
+        LongColumn column = LongColumn.parse(new StringColumn(values.clone()));
+        assertArrayEquals(values, column.toArray());
+        column.setLong(0, 8);
+        assertEquals("8", column.get(0));
+        column.values()[1] = 9;
+        assertEquals("9", column.get(1));
+    }
+}
@@ -0,0 +1,50 @@
+package eu.clarussecure.dataoperations.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DictionaryColumnTest {
+
+    @Test
+    public void encodesFewDistinctValues() {
+        String[] values = { "a", "b", null, "a", "b", "a" };
+        DictionaryColumn column = DictionaryColumn.encode(values, 0.5);
+        assertEquals(2, column.getCardinality());
+        assertEquals(-1, column.getCode(2));
+        assertArrayEquals(values, column.toArray());
+        assertNull(DictionaryColumn.encode(values, 0.25));
+    }
+
+    @Test
+    public void dropsUnusedValuesWhenSetInPlace() {
+        String[] values = new String[100];
+        for (int row = 0; row < values.length; row++) {
+            values[row] = "v" + row % 4;
+        }
+        DictionaryColumn column = DictionaryColumn.encode(values);
+        for (int pass = 0; pass < 50; pass++) {
+            for (int row = 0; row < values.length; row++) {
+                values[row] = "p" + pass + "-" + row % 4;
+                column.set(row, values[row]);
+            }
+            assertTrue(column.getCardinality() <= DictionaryColumn.DEFAULT_MIN_ROWS);
+        }
+        assertArrayEquals(values, column.toArray());
+    }
+
+    @Test
+    public void mergesDuplicatedValues() {
+        DictionaryColumn column = DictionaryColumn.encode(new String[] { "a", "b", "c", null });
+        column.transformDistinct(value -> value.equals("c") ? null : "x");
+        assertArrayEquals(new String[] { "x", "x", null, null }, column.toArray());
+        for (int i = 0; i < 100; i++) {
+            column.set(3, "y" + i);
+        }
+        assertTrue(column.getCardinality() <= DictionaryColumn.DEFAULT_MIN_ROWS);
+        assertArrayEquals(new String[] { "x", "x", null, "y99" }, column.toArray());
+    }
+}